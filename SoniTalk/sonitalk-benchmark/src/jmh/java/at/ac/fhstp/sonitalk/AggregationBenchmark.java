@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import at.ac.fhstp.sonitalk.utils.Aggregator;
+import at.ac.fhstp.sonitalk.utils.Aggregators;
+
+/**
+ * Aggregation of a carrier and its 8 neighbors, done twice per bit by the demodulators. The
+ * legacy aggregation dispatches on the name and sorts a double array, the aggregators are
+ * resolved once and work on a float scratch buffer.
+ */
+@State(Scope.Benchmark)
+public class AggregationBenchmark {
+    private static final int N_SETS = 1024; // Different values for every call, like the cells of a message
+
+    @Param({"median", "mean", "max", "trimmedmean"})
+    public String aggFcn;
+
+    private Aggregator aggregator;
+    private float[][] sets;
+    private final float[] values = new float[9];
+    private final double[] legacyValues = new double[9];
+    private int setIndex;
+
+    @Setup
+    public void setUp() {
+        aggregator = Aggregators.forName(aggFcn);
+        Random random = new Random(42);
+        sets = new float[N_SETS][9];
+        for (float[] set : sets) {
+            for (int i = 0; i < set.length; i++) {
+                set[i] = random.nextFloat();
+            }
+        }
+    }
+
+    @Benchmark
+    public float aggregator() {
+        float[] set = sets[setIndex++ & (N_SETS - 1)];
+        System.arraycopy(set, 0, values, 0, 9);
+        return aggregator.aggregate(values, 9);
+    }
+
+    @Benchmark
+    public double legacyAggregate() {
+        float[] set = sets[setIndex++ & (N_SETS - 1)];
+        for (int i = 0; i < 9; i++) {
+            legacyValues[i] = set[i];
+        }
+        // No trimmed mean in the legacy aggregation, it returns -1
+        return legacyAggregate(legacyValues, aggFcn);
+    }
+
+    /*
+     * The aggregation of the demodulators before the Aggregators, kept as a baseline. The array is
+     * sorted in place for the median.
+     */
+    private static double legacyAggregate(double[] values, String aggFunction) {
+        double val = -1;
+        switch(aggFunction){
+            case "mean":
+                val = mean(values);
+                break;
+            case "max":
+                val = max(values);
+                break;
+            case "median":
+                Arrays.sort(values);
+                val = median(values);
+                break;
+        }
+        return val;
+    }
+
+    private static double max(double[] values) {
+        double max = 0;
+        double helper;
+        for(int i = 0; i < values.length; i++){
+            helper = values[i];
+            if(helper > max){
+                max = helper;
+            }
+        }
+        return max;
+    }
+
+    private static double mean(double[] m) {
+        double sum = 0;
+        for (int i = 0; i < m.length; i++) {
+            sum += m[i];
+        }
+        return sum / m.length;
+    }
+
+    // m must be sorted
+    private static double median(double[] m) {
+        int middle = m.length/2;
+        if (m.length%2 == 1) {
+            return m[middle];
+        } else {
+            return (m[middle-1] + m[middle]) / 2.0;
+        }
+    }
+}
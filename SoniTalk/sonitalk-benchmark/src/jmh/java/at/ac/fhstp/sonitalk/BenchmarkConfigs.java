@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import at.ac.fhstp.sonitalk.utils.ConfigConstants;
+
+/**
+ * Loads the configs shipped in assets/configs (the SDK's and the demo app's) and prepares the
+ * data shared by the benchmarks. ConfigFactory relies on the Android JsonReader, these flat JSON
+ * files are parsed directly instead.
+ */
+public final class BenchmarkConfigs {
+    public static final int SAMPLE_RATE = 44100;
+
+    private static final Pattern FIELD = Pattern.compile("\"([^\"]+)\"\\s*:\\s*(-?\\d+)");
+
+    private BenchmarkConfigs() {
+    }
+
+    /**
+     * @param name file name in assets/configs, without the .json extension
+     * @return the corresponding config
+     */
+    public static SoniTalkConfig load(String name) {
+        String json = readResource("configs/" + name + ".json");
+        Matcher matcher = FIELD.matcher(json);
+        int f0 = -1, bitperiod = -1, pauseperiod = -1, nMessageBlocks = -1, nFrequencies = -1, frequencySpace = -1;
+        while (matcher.find()) {
+            int value = Integer.parseInt(matcher.group(2));
+            switch (matcher.group(1)) {
+                case ConfigConstants.FREQUENCY_ZERO: f0 = value; break;
+                case ConfigConstants.BIT_PERIOD: bitperiod = value; break;
+                case ConfigConstants.PAUSE_PERIOD: pauseperiod = value; break;
+                case ConfigConstants.NUMBER_OF_MESSAGE_BLOCKS: nMessageBlocks = value; break;
+                case ConfigConstants.NUMBER_OF_FREQUENCIES: nFrequencies = value; break;
+                case ConfigConstants.SPACE_BETWEEN_FREQUENCIES: frequencySpace = value; break;
+                default: break;
+            }
+        }
+        if (f0 == -1 || bitperiod == -1 || pauseperiod == -1 || nMessageBlocks == -1 || nFrequencies == -1 || frequencySpace == -1) {
+            throw new IllegalArgumentException("The configuration file " + name + " does not match the required format.");
+        }
+        return new SoniTalkConfig(f0, bitperiod, pauseperiod, nMessageBlocks, nFrequencies, frequencySpace);
+    }
+
+    /**
+     * Text payload filling the whole message, as long as the config allows.
+     */
+    public static byte[] getPayload(SoniTalkConfig config) {
+        int maxBytes = config.getnMessageBlocks() * (config.getnFrequencies() / 8) - 2;
+        byte[] text = "SoniTalk benchmark payload, SoniTalk benchmark payload".getBytes(StandardCharsets.UTF_8);
+        byte[] payload = new byte[maxBytes];
+        for (int i = 0; i < maxBytes; i++) {
+            payload[i] = text[i % text.length];
+        }
+        return payload;
+    }
+
+    /**
+     * Encoded payload, attenuated and surrounded by noise (one history buffer before and after).
+     */
+    public static float[] generateStream(SoniTalkConfig config, int historyBufferSize) {
+        short[] audio = new SoniTalkEncoder(SAMPLE_RATE, config).generateMessage(getPayload(config)).getRawAudio();
+        Random random = new Random(42);
+        float[] stream = new float[historyBufferSize * 2 + audio.length];
+        for (int i = 0; i < stream.length; i++) {
+            stream[i] = (float) (random.nextGaussian() * 0.002);
+            if (i >= historyBufferSize && i < historyBufferSize + audio.length) {
+                stream[i] += 0.1f * audio[i - historyBufferSize] / Short.MAX_VALUE;
+            }
+        }
+        return stream;
+    }
+
+    private static String readResource(String path) {
+        InputStream in = BenchmarkConfigs.class.getClassLoader().getResourceAsStream(path);
+        if (in == null) {
+            throw new IllegalArgumentException("Config not found: " + path);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            in.close();
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read " + path, e);
+        }
+    }
+}
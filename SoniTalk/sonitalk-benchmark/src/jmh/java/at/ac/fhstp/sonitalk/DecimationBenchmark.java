@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import at.ac.fhstp.sonitalk.utils.HeterodyneDecimator;
+
+/**
+ * Decodes a message surrounded by noise (one history buffer before and after) at the sample rate
+ * of the recording, and after the HeterodyneDecimator front end with the largest decimation
+ * factor the config allows. Compare the time per operation: the audio is the same.
+ */
+@State(Scope.Benchmark)
+public class DecimationBenchmark {
+    @Param({"default_config", "hearable10000", "hearable4000", "near_ultrasonic", "short_ultrasonic"})
+    public String configName;
+
+    @Param({"1", "max"})
+    public String decimationFactor;
+
+    private SoniTalkConfig config;
+    private int factor;
+    private float[][] steps;
+
+    @Setup
+    public void setUp() {
+        config = BenchmarkConfigs.load(configName);
+        factor = decimationFactor.equals("max")
+                ? HeterodyneDecimator.getMaxDecimationFactor(BenchmarkConfigs.SAMPLE_RATE, config, 50)
+                : Integer.parseInt(decimationFactor);
+        DecodingPipeline pipeline = createPipeline();
+        int analysisWinStep = pipeline.getAnalysisWinStep();
+        // The reference stream is generated at the full rate, cut in steps of the decimated pipeline
+        float[] stream = BenchmarkConfigs.generateStream(config, new DecodingPipeline(BenchmarkConfigs.SAMPLE_RATE, config, 8, 50, 8, 2.0, 2.0).getHistoryBufferSize());
+        steps = new float[stream.length / analysisWinStep][analysisWinStep];
+        for (int s = 0; s < steps.length; s++) {
+            System.arraycopy(stream, s * analysisWinStep, steps[s], 0, analysisWinStep);
+        }
+    }
+
+    private DecodingPipeline createPipeline() {
+        DecodingPipeline pipeline = new DecodingPipeline(BenchmarkConfigs.SAMPLE_RATE, config, 8, 50, 8, 2.0, 2.0, factor);
+        pipeline.setSkipDecodedMessages(true);
+        return pipeline;
+    }
+
+    @Benchmark
+    public int decodeStream() {
+        DecodingPipeline pipeline = createPipeline();
+        int nDecoded = 0;
+        for (float[] step : steps) {
+            SoniTalkMessage message = pipeline.addSamples(step, 0);
+            if (message != null && message.isCrcCorrect()) {
+                nDecoded++;
+            }
+        }
+        return nDecoded;
+    }
+}
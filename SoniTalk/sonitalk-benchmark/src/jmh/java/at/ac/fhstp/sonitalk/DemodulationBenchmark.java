@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+
+/**
+ * Work done by the decoder for every detected message: demodulation, CRC check and conversion to
+ * bytes. The history buffer of a message detected in an encoded stream is injected into the
+ * DecodingPipeline instead of being recorded. In DEMODULATION_MODE_ROLLING the spectrogram was
+ * computed while the stream was added (see DetectionBenchmark), only the bit decisions are left.
+ * SPECTROGRAM_SIZING_POWER_OF_TWO shows the gain of power of two FFTs for each config.
+ */
+@State(Scope.Benchmark)
+public class DemodulationBenchmark {
+    @Param({"default_config", "hearable10000", "hearable4000", "near_ultrasonic", "short_ultrasonic"})
+    public String configName;
+
+    @Param({"" + DecoderModes.DEMODULATION_MODE_SPECTROGRAM, "" + DecoderModes.DEMODULATION_MODE_GOERTZEL, "" + DecoderModes.DEMODULATION_MODE_ROLLING})
+    public int demodulationMode;
+
+    // Like a decoder with or without SpectrumListener
+    @Param({"false", "true"})
+    public boolean spectrumRequired;
+
+    @Param({"" + DecoderModes.SPECTROGRAM_SIZING_BIT_PERIOD, "" + DecoderModes.SPECTROGRAM_SIZING_POWER_OF_TWO})
+    public int spectrogramSizing;
+
+    private DecodingPipeline pipeline;
+    private float[] messageHistory;
+
+    @Setup
+    public void setUp() {
+        SoniTalkConfig config = BenchmarkConfigs.load(configName);
+        pipeline = new DecodingPipeline(BenchmarkConfigs.SAMPLE_RATE, config, 8, 50, 8, 2.0, 2.0);
+        pipeline.setDemodulationMode(demodulationMode);
+        pipeline.setSpectrogramSizing(spectrogramSizing);
+        pipeline.setSpectrumRequired(spectrumRequired);
+        messageHistory = findMessageHistory(BenchmarkConfigs.generateStream(config, pipeline.getHistoryBufferSize()));
+    }
+
+    /**
+     * Copy of the history buffer when the message is detected. If it is not detected, the
+     * history starting with the message is used, the cost of the analysis is the same.
+     */
+    private float[] findMessageHistory(float[] stream) {
+        int analysisWinStep = pipeline.getAnalysisWinStep();
+        int historyBufferSize = pipeline.getHistoryBufferSize();
+        float[] step = new float[analysisWinStep];
+        for (int position = 0; position + analysisWinStep <= stream.length; position += analysisWinStep) {
+            System.arraycopy(stream, position, step, 0, analysisWinStep);
+            SoniTalkMessage message = pipeline.addSamples(step, System.nanoTime());
+            if (message != null && message.isCrcCorrect()) {
+                int start = (int) message.getSampleOffset();
+                return Arrays.copyOfRange(stream, start, start + historyBufferSize);
+            }
+        }
+        return Arrays.copyOfRange(stream, historyBufferSize, historyBufferSize * 2);
+    }
+
+    @Benchmark
+    public SoniTalkMessage analyzeMessage() {
+        return pipeline.analyzeMessage(messageHistory, 0);
+    }
+}
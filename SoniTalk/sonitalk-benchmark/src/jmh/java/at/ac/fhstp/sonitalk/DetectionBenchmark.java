@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Work done by the decoder for every analysis step: adding the new audio, updating the rolling
+ * spectrogram in DEMODULATION_MODE_ROLLING and looking for start and end blocks (skipped when the
+ * energy gate is enabled, as the noise is steady). The audio (noise, like most of the steps) is injected into the DecodingPipeline
+ * instead of being recorded.
+ */
+@State(Scope.Benchmark)
+public class DetectionBenchmark {
+    @Param({"default_config", "hearable10000", "hearable4000", "near_ultrasonic", "short_ultrasonic"})
+    public String configName;
+
+    @Param({"" + DecoderModes.DETECTION_MODE_HILBERT, "" + DecoderModes.DETECTION_MODE_ENVELOPE})
+    public int detectionMode;
+
+    @Param({"" + DecoderModes.DEMODULATION_MODE_SPECTROGRAM, "" + DecoderModes.DEMODULATION_MODE_ROLLING})
+    public int demodulationMode;
+
+    @Param({"false", "true"})
+    public boolean energyGate;
+
+    // Only changes the cost of the rolling spectrogram
+    @Param({"" + DecoderModes.SPECTROGRAM_SIZING_BIT_PERIOD, "" + DecoderModes.SPECTROGRAM_SIZING_POWER_OF_TWO})
+    public int spectrogramSizing;
+
+    private DecodingPipeline pipeline;
+    private float[][] noiseSteps;
+    private int stepIndex = 0;
+
+    @Setup
+    public void setUp() {
+        SoniTalkConfig config = BenchmarkConfigs.load(configName);
+        pipeline = new DecodingPipeline(BenchmarkConfigs.SAMPLE_RATE, config, 8, 50, 8, 2.0, 2.0);
+        pipeline.setDetectionMode(detectionMode);
+        pipeline.setDemodulationMode(demodulationMode);
+        pipeline.setSpectrogramSizing(spectrogramSizing);
+        pipeline.setEnergyGateEnabled(energyGate);
+        int analysisWinStep = pipeline.getAnalysisWinStep();
+
+        // One history buffer of noise, replayed step by step
+        Random random = new Random(1);
+        noiseSteps = new float[pipeline.getHistoryBufferSize() / analysisWinStep][analysisWinStep];
+        for (float[] step : noiseSteps) {
+            for (int i = 0; i < step.length; i++) {
+                step[i] = (float) (random.nextGaussian() * 0.002);
+            }
+        }
+        // Fill the history buffer, every step is then analyzed
+        for (int i = 0; i <= pipeline.getSamplesBeforeAnalysis() / analysisWinStep; i++) {
+            addStep();
+        }
+    }
+
+    @Benchmark
+    public SoniTalkMessage addStep() {
+        float[] step = noiseSteps[stepIndex];
+        stepIndex = (stepIndex + 1) % noiseSteps.length;
+        return pipeline.addSamples(step, 0);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+import at.ac.fhstp.sonitalk.utils.SignalGenerator;
+import at.ac.fhstp.sonitalk.utils.SignalType;
+
+/**
+ * Generation of a whole message and of a single block of it. Generated blocks are cached, the
+ * block with new bits at every invocation measures the generation of blocks missing in the cache.
+ */
+@State(Scope.Benchmark)
+public class EncoderBenchmark {
+    @Param({"default_config", "hearable10000", "hearable4000", "near_ultrasonic", "short_ultrasonic"})
+    public String configName;
+
+    private SoniTalkEncoder encoder;
+    private byte[] payload;
+    private SignalGenerator signalGenerator;
+    private String[] blockBits;
+    private String[] newBlockBits;
+    private int blockCounter;
+
+    @Setup
+    public void setUp() {
+        SoniTalkConfig config = BenchmarkConfigs.load(configName);
+        encoder = new SoniTalkEncoder(BenchmarkConfigs.SAMPLE_RATE, config);
+        payload = BenchmarkConfigs.getPayload(config);
+
+        signalGenerator = new SignalGenerator(BenchmarkConfigs.SAMPLE_RATE, config);
+        Random random = new Random(42);
+        blockBits = new String[config.getnFrequencies()];
+        for (int i = 0; i < blockBits.length; i++) {
+            blockBits[i] = random.nextBoolean() ? "1" : "0";
+        }
+        newBlockBits = new String[config.getnFrequencies()];
+    }
+
+    @Benchmark
+    public SoniTalkMessage generateMessage() {
+        return encoder.generateMessage(payload);
+    }
+
+    @Benchmark
+    public short[] getSignalBlock() {
+        return signalGenerator.getSignalBlock(SignalType.PLAYCONFIG, blockBits);
+    }
+
+    @Benchmark
+    public short[] getNewSignalBlock() {
+        blockCounter++;
+        for (int i = 0; i < newBlockBits.length; i++) {
+            newBlockBits[i] = ((blockCounter >> i) & 1) == 1 ? "1" : "0";
+        }
+        newBlockBits[0] = "1"; // At least two bands, as in the blocks of a message
+        newBlockBits[newBlockBits.length - 1] = "1";
+        return signalGenerator.getSignalBlock(SignalType.PLAYCONFIG, newBlockBits);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+
+import at.ac.fhstp.sonitalk.utils.CRC;
+import at.ac.fhstp.sonitalk.utils.ConfigConstants;
+import at.ac.fhstp.sonitalk.utils.DecoderUtils;
+import at.ac.fhstp.sonitalk.utils.EncoderUtils;
+import at.ac.fhstp.sonitalk.utils.FrameDecoder;
+
+/**
+ * Framing of a full message: CRC computation when sending and CRC check when receiving (on bits
+ * and on packed bytes), conversion of the payload bits to bytes. decodeFrame is what the
+ * DecodingPipeline does with the demodulated bits, legacyDecodeFrame the bit String conversions it
+ * did before.
+ */
+@State(Scope.Benchmark)
+public class FrameBenchmark {
+    @Param({"default_config", "hearable10000", "hearable4000", "near_ultrasonic", "short_ultrasonic"})
+    public String configName;
+
+    private CRC crc;
+    private String payloadBits;
+    private String messageBits;
+    private byte[] messageBytes;
+    private int[] receivedBits;
+    private byte[] receivedBytes;
+    private FrameDecoder frameDecoder;
+
+    @Setup
+    public void setUp() {
+        SoniTalkConfig config = BenchmarkConfigs.load(configName);
+        crc = new CRC();
+        payloadBits = EncoderUtils.changeToBitString(BenchmarkConfigs.getPayload(config));
+
+        // Same filling as the encoder: the message and its CRC fill all the blocks
+        int nBits = config.getnMessageBlocks() * config.getnFrequencies();
+        int parityLength = ConfigConstants.GENERATOR_POLYNOM.length - 1;
+        StringBuilder bits = new StringBuilder(payloadBits);
+        while (bits.length() + parityLength < nBits) {
+            bits.append(ConfigConstants.CONTROL_FILLING_CHARACTER);
+        }
+        messageBits = bits.toString();
+        messageBytes = DecoderUtils.binaryToBytes(messageBits);
+
+        String codeword = messageBits + crc.parityBit(messageBits);
+        receivedBits = new int[codeword.length()];
+        for (int i = 0; i < receivedBits.length; i++) {
+            receivedBits[i] = codeword.charAt(i) - '0';
+        }
+        receivedBytes = DecoderUtils.binaryToBytes(codeword);
+        frameDecoder = new FrameDecoder(crc, receivedBits.length);
+    }
+
+    @Benchmark
+    public String parityBit() {
+        return crc.parityBit(messageBits);
+    }
+
+    @Benchmark
+    public byte[] parityBytes() {
+        return crc.getParityBytes(messageBytes, messageBytes.length);
+    }
+
+    @Benchmark
+    public int checkMessageCRC() {
+        return crc.checkMessageCRC(receivedBits);
+    }
+
+    @Benchmark
+    public int checkPackedMessageCRC() {
+        return crc.checkMessageCRC(receivedBytes, receivedBits.length);
+    }
+
+    @Benchmark
+    public byte[] binaryToBytes() {
+        return DecoderUtils.binaryToBytes(payloadBits);
+    }
+
+    @Benchmark
+    public byte[] decodeFrame() {
+        if (frameDecoder.decode(receivedBits) != 0) {
+            throw new IllegalStateException("CRC check failed");
+        }
+        return frameDecoder.getPayload();
+    }
+
+    @Benchmark
+    public byte[] legacyDecodeFrame() {
+        if (crc.checkMessageCRC(receivedBits) != 0) {
+            throw new IllegalStateException("CRC check failed");
+        }
+        String decodedBitSequence = Arrays.toString(receivedBits).replace(", ", "").replace("[", "").replace("]", "");
+        String bitSequenceWithoutFillingAndCRC = DecoderUtils.removeFillingCharsAndCRCChars(decodedBitSequence, ConfigConstants.GENERATOR_POLYNOM.length);
+        return DecoderUtils.binaryToBytes(bitSequenceWithoutFillingAndCRC);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package at.ac.fhstp.sonitalk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Decodes a minute of noise with a message every ten seconds or so with the SoniTalkBatchDecoder,
+ * for an increasing number of threads. The realtime factor is the duration of the recording
+ * divided by the time per operation, divide it by the number of threads for the factor per core.
+ */
+@State(Scope.Benchmark)
+public class SoniTalkBatchDecoderBenchmark {
+    private static final int DURATION_SECONDS = 60;
+
+    @Param({"1", "2", "4", "8"})
+    public int nThreads;
+
+    private short[] recording;
+    private ForkJoinPool pool;
+    private SoniTalkBatchDecoder decoder;
+
+    @Setup
+    public void setUp() {
+        SoniTalkConfig config = BenchmarkConfigs.load("default_config");
+        // Five seconds of noise before and after each message
+        float[] stream = BenchmarkConfigs.generateStream(config, 5 * BenchmarkConfigs.SAMPLE_RATE);
+        recording = new short[DURATION_SECONDS * BenchmarkConfigs.SAMPLE_RATE];
+        for (int i = 0; i < recording.length; i++) {
+            recording[i] = (short) (stream[i % stream.length] * Short.MAX_VALUE);
+        }
+        pool = new ForkJoinPool(nThreads);
+        decoder = new SoniTalkBatchDecoder(BenchmarkConfigs.SAMPLE_RATE, config, pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public List<SoniTalkMessage> decode() {
+        return decoder.decode(recording);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+/**
+ * Destination of mono 16 bits PCM audio, e.g. the audio generated by a SoniTalkEncoder. Used by
+ * a single thread: write() as many times as needed, then release().
+ */
+public interface AudioSink {
+    /**
+     * Returns the sample rate of the audio.
+     * @return the sample rate in Hz
+     */
+    int getSampleRate();
+
+    /**
+     * Writes audio, blocking until all the samples are accepted.
+     * @param buffer samples to write
+     * @param offset index in the buffer of the first sample to write
+     * @param length number of samples to write
+     * @return the number of samples written, which is smaller than length if an error occurred
+     */
+    int write(short[] buffer, int offset, int length);
+
+    /**
+     * Finishes writing and releases the resources of the sink, it cannot be used anymore afterwards.
+     */
+    void release();
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+/**
+ * Source of mono 16 bits PCM audio the decoder pulls sample blocks from, e.g. the microphone
+ * (AudioRecord on Android). The source is used by a single capture thread: start(), read()
+ * until the decoding stops, stop() and finally release(). It can be stopped and started again
+ * in between, e.g. when listening with a duty cycle. Recordings are read by the sources of the
+ * utils package, a SyntheticAudioSource repeats an encoded message and on Android the microphone
+ * is recorded by an AudioRecordSource.
+ */
+public interface AudioSource {
+    /**
+     * Returned by read() when a finite source (e.g. a file) has no more samples.
+     */
+    int END_OF_STREAM = -1;
+
+    /**
+     * Returns the sample rate of the audio.
+     * @return the sample rate in Hz
+     */
+    int getSampleRate();
+
+    /**
+     * Returns true if the audio is produced in real time (e.g. the microphone). The decoder never
+     * waits for the analysis before reading a real time source, audio is dropped instead if the
+     * analysis is too slow. Other sources (e.g. files) are read as fast as the analysis goes.
+     * @return true if the source produces audio in real time
+     */
+    boolean isRealTime();
+
+    /**
+     * Starts capturing audio.
+     * @return false if the source could not start, e.g. the microphone is used by another application
+     */
+    boolean start();
+
+    /**
+     * Reads audio, blocking until the requested samples are available if the source is live.
+     * @param buffer destination of the samples
+     * @param offset index in the buffer of the first sample read
+     * @param length number of samples requested
+     * @return the number of samples read, which is smaller than length if an error occurred, or
+     * END_OF_STREAM
+     */
+    int read(short[] buffer, int offset, int length);
+
+    /**
+     * Stops capturing audio, the source can be started again.
+     */
+    void stop();
+
+    /**
+     * Releases the resources of the source, it cannot be used anymore afterwards.
+     */
+    void release();
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import at.ac.fhstp.sonitalk.utils.SampleRingBuffer;
+
+/**
+ * Decodes the audio of a live AudioSource. The thread calling run() reads the source into a
+ * captureBuffer and never waits for the analysis, samples which do not fit are dropped and
+ * counted, and the analysis restarts after them. The analysis runs in a separate Thread (see analyzeCapturedAudio()), so that a slow
+ * analysis step never blocks the capture. Used by the SoniTalkDecoder, which adds the Android
+ * parts (permissions, notifications, microphone).
+ */
+/*package-private*/ class CaptureLoop {
+    private static final Logger LOGGER = Logger.getLogger(CaptureLoop.class.getName());
+
+    // The analysis thread wakes up at least this often to check if the decoding was stopped
+    private static final long ANALYSIS_WAIT_MILLISECONDS = 100;
+
+    /**
+     * Called by the loop, from the capture thread (onListening, onError) or the analysis thread
+     * (onMessageDecoded, onError).
+     */
+    /*package-private*/ interface Callback {
+        void onListening();
+
+        void onMessageDecoded(SoniTalkMessage message);
+
+        void onError(String errorMessage);
+    }
+
+    private final DecodingPipeline pipeline;
+    private final int Fs;
+    private final int analysisWinStep;
+    private final Callback callback;
+
+    // Filled by the capture thread, consumed by the analysis thread
+    private final SampleRingBuffer captureBuffer;
+    private final AtomicLong shortReadCount = new AtomicLong();
+    private final AtomicLong listeningNanos = new AtomicLong();
+    private final AtomicLong sleepingNanos = new AtomicLong();
+    // Number of samples written to the captureBuffer before each restart of the recording or each
+    // run of dropped samples, read by the analysis
+    private final Queue<Long> recordingRestarts = new ConcurrentLinkedQueue<>();
+
+    private final ExecutorService analysisExecutor = Executors.newSingleThreadExecutor();
+    private boolean stopped = false;
+
+    /**
+     * @param pipeline pipeline analyzing the audio
+     * @param sampleRate sample rate of the audio
+     * @param captureBufferSize number of samples the capture can get ahead of the analysis before samples are dropped
+     * @param callback receives the decoded messages and the errors
+     */
+    /*package-private*/ CaptureLoop(DecodingPipeline pipeline, int sampleRate, int captureBufferSize, Callback callback) {
+        this.pipeline = pipeline;
+        this.Fs = sampleRate;
+        this.analysisWinStep = pipeline.getAnalysisWinStep();
+        this.callback = callback;
+        this.captureBuffer = new SampleRingBuffer(captureBufferSize);
+    }
+
+    /**
+     * Starts the source and decodes its audio until stop() is called or the source ends, then
+     * stops the source (releasing it is left to the caller). If sleepMillis is positive the
+     * source is only started for windows of listenMillis, separated by pauses of sleepMillis.
+     * A source which is not real time is read as fast as the analysis goes, no audio is dropped.
+     * @param source source of the audio, with the sample rate of the pipeline
+     * @param listenMillis duration of each listening window, in milliseconds
+     * @param sleepMillis duration of the pauses, in milliseconds, 0 to listen continuously
+     * @return false if the source could not be started
+     */
+    /*package-private*/ boolean run(AudioSource source, long listenMillis, long sleepMillis) {
+        try {
+            if (!source.start()) {
+                callback.onError("The microphone is not available.");
+                return false;
+            }
+        } catch (Exception e) {
+            LOGGER.severe("Could not start recording. Error: " + e.getMessage());
+            callback.onError("Audio error, could not start recording.");
+            return false;
+        }
+
+        callback.onListening();
+
+        int readSamples;
+        int neededSamples = analysisWinStep;
+        boolean realTime = source.isRealTime();
+        short tempBuffer[] = new short[neededSamples];
+
+        // The analysis thread is the only consumer of the captureBuffer, it is not running here
+        captureBuffer.clear();
+        recordingRestarts.clear();
+        long listenNanos = listenMillis * 1000000L;
+        Future<?> analysis = analysisExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                analyzeCapturedAudio();
+            }
+        });
+
+        boolean overrunLogged = false; // Once per listening window, the DecoderStats count them all
+        long samplesWritten = 0;
+        boolean dropping = false;
+        long windowStart = System.nanoTime();
+        boolean recording = true;
+        while (!isStopped()) {
+            if (!realTime && !captureBuffer.awaitFree(neededSamples, ANALYSIS_WAIT_MILLISECONDS, TimeUnit.MILLISECONDS)) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                continue; // Checks if the decoding was stopped
+            }
+            // ACTUAL AUDIO READ
+            readSamples = source.read(tempBuffer, 0, neededSamples);
+            if (readSamples == AudioSource.END_OF_STREAM) {
+                break;
+            }
+
+            if (readSamples != neededSamples) {
+                shortReadCount.incrementAndGet();
+            }
+            if (readSamples > 0) {
+                // Never waits for the analysis, samples which do not fit are dropped and counted
+                int nWritten = captureBuffer.write(tempBuffer, 0, readSamples);
+                samplesWritten += nWritten;
+                if (nWritten < readSamples && !dropping) {
+                    // The audio around the dropped samples is not continuous, like around a pause of the recording
+                    recordingRestarts.add(samplesWritten);
+                }
+                dropping = nWritten < readSamples;
+                if (dropping && !overrunLogged) {
+                    overrunLogged = true;
+                    LOGGER.warning("Analysis too slow, samples dropped in this listening window.");
+                }
+            }
+
+            if (sleepMillis > 0 && System.nanoTime() - windowStart >= listenNanos) {
+                listeningNanos.addAndGet(System.nanoTime() - windowStart);
+                recording = false;
+                if (!sleepBetweenWindows(source, sleepMillis)) {
+                    break;
+                }
+                recording = true;
+                recordingRestarts.add(samplesWritten);
+                overrunLogged = false;
+                windowStart = System.nanoTime();
+            }
+        } // THREAD-LOOP ENDS HERE
+        if (recording) {
+            listeningNanos.addAndGet(System.nanoTime() - windowStart);
+            source.stop();
+        }
+        if (!isStopped()) {
+            // End of the source, the analysis stops once it has read the remaining samples
+            awaitAnalysis();
+            stop();
+        }
+
+        try {
+            analysis.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();  // set interrupt flag
+        } catch (ExecutionException e) {
+            LOGGER.severe("Analysis stopped with an error: " + e.getCause());
+        }
+        return true;
+    }
+
+    /**
+     * Stops the source for sleepMillis and restarts it.
+     * @param source source of the audio
+     * @param sleepMillis duration of the pause
+     * @return false if the decoding was stopped in the meantime or the source could not restart
+     */
+    private boolean sleepBetweenWindows(AudioSource source, long sleepMillis) {
+        source.stop();
+        long sleepStart = System.nanoTime();
+        try {
+            // Sleeps in short periods to stop quickly after stop()
+            long remainingMillis = sleepMillis;
+            while (remainingMillis > 0 && !isStopped()) {
+                Thread.sleep(Math.min(remainingMillis, ANALYSIS_WAIT_MILLISECONDS));
+                remainingMillis = sleepMillis - (System.nanoTime() - sleepStart) / 1000000;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();  // set interrupt flag
+            return false;
+        } finally {
+            sleepingNanos.addAndGet(System.nanoTime() - sleepStart);
+        }
+        if (isStopped()) {
+            return false;
+        }
+
+        if (!source.start()) {
+            callback.onError("The microphone is not available.");
+            stop(); // Also stops the analysis
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Waits until the analysis has consumed the captured samples, except the last incomplete step.
+     */
+    private void awaitAnalysis() {
+        while (!isStopped() && captureBuffer.available() >= analysisWinStep) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();  // set interrupt flag
+                return;
+            }
+        }
+    }
+
+    /**
+     * Consumes the captureBuffer one analysis step at a time and passes the audio to the decoding
+     * pipeline, until the loop is stopped.
+     */
+    private void analyzeCapturedAudio() {
+        short stepBuffer[] = new short[analysisWinStep];
+        float currentData[] = new float[analysisWinStep];
+        long samplesRead = 0;
+
+        while (!isStopped()) {
+            Long restart = recordingRestarts.peek();
+            if (restart != null && restart < samplesRead + analysisWinStep) {
+                // The last samples before the pause or the gap do not fill a step, they are dropped
+                int nDropped = (int) (restart - samplesRead);
+                if (nDropped > 0) {
+                    if (!captureBuffer.awaitAvailable(nDropped, ANALYSIS_WAIT_MILLISECONDS, TimeUnit.MILLISECONDS)) {
+                        continue;
+                    }
+                    captureBuffer.read(stepBuffer, 0, nDropped);
+                    samplesRead += nDropped;
+                }
+                recordingRestarts.poll();
+                pipeline.restartHistory();
+                continue;
+            }
+            if (!captureBuffer.awaitAvailable(analysisWinStep, ANALYSIS_WAIT_MILLISECONDS, TimeUnit.MILLISECONDS)) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                continue;
+            }
+            captureBuffer.read(stepBuffer, 0, analysisWinStep);
+            samplesRead += analysisWinStep;
+            // The samples still waiting in the buffer were recorded after this step
+            long readTimestamp = System.nanoTime() - captureBuffer.available() * 1000000000L / Fs;
+            DecodingPipeline.convertShortToFloat(stepBuffer, currentData, analysisWinStep);
+
+            // The history buffer is analyzed as soon as it is full
+            SoniTalkMessage message = pipeline.addSamples(currentData, readTimestamp);
+            if (message != null) {
+                callback.onMessageDecoded(message);
+            }
+        }
+    }
+
+    /**
+     * Ends run(), the capture and the analysis stop after their current step.
+     */
+    /*package-private*/ synchronized void stop() {
+        stopped = true;
+    }
+
+    /*package-private*/ synchronized boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Interrupts the analysis thread and releases it.
+     */
+    /*package-private*/ void shutdown() {
+        analysisExecutor.shutdownNow();
+    }
+
+    /*package-private*/ long getOverrunCount() {
+        return captureBuffer.getOverrunCount();
+    }
+
+    /*package-private*/ long getDroppedSampleCount() {
+        return captureBuffer.getDroppedSampleCount();
+    }
+
+    /*package-private*/ long getShortReadCount() {
+        return shortReadCount.get();
+    }
+
+    /*package-private*/ long getListeningNanos() {
+        return listeningNanos.get();
+    }
+
+    /*package-private*/ long getSleepingNanos() {
+        return sleepingNanos.get();
+    }
+}
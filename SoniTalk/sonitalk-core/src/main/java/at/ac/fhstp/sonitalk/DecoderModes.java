@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import android.support.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Detection, demodulation and spectrogram sizing modes of the decoders (SoniTalkDecoder, SoniTalkOfflineDecoder and
+ * SoniTalkBatchDecoder). SoniTalkDecoder exposes the same constants.
+ */
+public final class DecoderModes {
+    // Define the list of accepted constants for DetectionMode annotation
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({DETECTION_MODE_HILBERT, DETECTION_MODE_ENVELOPE})
+    public @interface DetectionMode {}
+
+    // Define the list of accepted constants for DemodulationMode annotation
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({DEMODULATION_MODE_SPECTROGRAM, DEMODULATION_MODE_GOERTZEL, DEMODULATION_MODE_ROLLING})
+    public @interface DemodulationMode {}
+
+    // Define the list of accepted constants for SpectrogramSizing annotation
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({SPECTROGRAM_SIZING_BIT_PERIOD, SPECTROGRAM_SIZING_POWER_OF_TWO})
+    public @interface SpectrogramSizing {}
+
+    // DetectionMode constants
+    /**
+     * Start and end blocks are detected by filtering the first and last analysis windows and
+     * computing their Hilbert envelopes at every step (default).
+     */
+    public static final int DETECTION_MODE_HILBERT = 0;
+    /**
+     * Start and end blocks are detected with running band energy envelopes, only the new audio is
+     * filtered at every step. Cheaper, recommended for long listening sessions.
+     */
+    public static final int DETECTION_MODE_ENVELOPE = 1;
+
+    // DemodulationMode constants
+    /**
+     * Bits are decided on the full spectrogram of the message, which is also passed to the
+     * SpectrumListeners (default, reference implementation). Only the columns needed for the bits
+     * are computed while no SpectrumListener is registered.
+     */
+    public static final int DEMODULATION_MODE_SPECTROGRAM = 0;
+    /**
+     * Bits are decided with a bank of Goertzel filters evaluated only on the spectrogram columns
+     * around the center of each block. Same bits as DEMODULATION_MODE_SPECTROGRAM at a lower cost,
+     * but no spectrum is passed to the SpectrumListeners.
+     */
+    public static final int DEMODULATION_MODE_GOERTZEL = 1;
+    /**
+     * Bits are decided on a rolling spectrogram, one column is computed per analysis step and
+     * detected messages only read the columns already computed. Cheapest when a message is
+     * detected on several consecutive steps. The columns are spaced by exactly one analysis step,
+     * so rare bits close to the threshold can differ from DEMODULATION_MODE_SPECTROGRAM, and no
+     * spectrum is passed to the SpectrumListeners.
+     */
+    public static final int DEMODULATION_MODE_ROLLING = 2;
+
+    // SpectrogramSizing constants
+    /**
+     * The FFT of each spectrogram column is as long as a bit period, so that every carrier falls
+     * on a bin (default). Bit periods that are not powers of two (4410 samples for 100ms at
+     * 44100Hz) use a slower mixed radix FFT.
+     */
+    public static final int SPECTROGRAM_SIZING_BIT_PERIOD = 0;
+    /**
+     * Each spectrogram column is truncated or zero-padded to the closest power of two (4096
+     * samples for 100ms at 44100Hz) and transformed by a faster FFT. The carriers fall between two
+     * bins, their magnitudes are interpolated. Bits close to the threshold can differ from
+     * SPECTROGRAM_SIZING_BIT_PERIOD, and the spectrum passed to the SpectrumListeners has half this
+     * power of two bins per column.
+     */
+    public static final int SPECTROGRAM_SIZING_POWER_OF_TWO = 1;
+
+    private DecoderModes() {
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+/**
+ * Snapshot of the statistics of a SoniTalkDecoder (see SoniTalkDecoder.getStats()): what happened
+ * to the captured audio, how long each stage took and how many history buffers the decoding allocated.
+ * All the values are counted since the creation of the decoder.
+ */
+public class DecoderStats {
+    private final long hopsAnalyzed;
+    private final long hopsGated;
+    private final long hopsSkipped;
+    private final long startBlockHits;
+    private final long candidates;
+    private final long crcPasses;
+    private final long crcFailures;
+    private final long shortReads;
+    private final long overruns;
+    private final long droppedSamples;
+    private final long historyBufferBytesAllocated;
+    private final LatencyHistogram readToDetect;
+    private final LatencyHistogram detectToDecode;
+    private final LatencyHistogram decodeToListener;
+
+    /*package-private*/ DecoderStats(long hopsAnalyzed, long hopsGated, long hopsSkipped, long startBlockHits, long candidates,
+                                     long crcPasses, long crcFailures, long shortReads, long overruns, long droppedSamples,
+                                     long historyBufferBytesAllocated, LatencyHistogram readToDetect, LatencyHistogram detectToDecode,
+                                     LatencyHistogram decodeToListener) {
+        this.hopsAnalyzed = hopsAnalyzed;
+        this.hopsGated = hopsGated;
+        this.hopsSkipped = hopsSkipped;
+        this.startBlockHits = startBlockHits;
+        this.candidates = candidates;
+        this.crcPasses = crcPasses;
+        this.crcFailures = crcFailures;
+        this.shortReads = shortReads;
+        this.overruns = overruns;
+        this.droppedSamples = droppedSamples;
+        this.historyBufferBytesAllocated = historyBufferBytesAllocated;
+        this.readToDetect = readToDetect;
+        this.detectToDecode = detectToDecode;
+        this.decodeToListener = decodeToListener;
+    }
+
+    /**
+     * @return number of analysis steps on which start and end blocks were looked for
+     */
+    public long getHopsAnalyzed() {
+        return hopsAnalyzed;
+    }
+
+    /**
+     * @return number of analysis steps not analyzed because the energy gate was closed
+     */
+    public long getHopsGated() {
+        return hopsGated;
+    }
+
+    /**
+     * @return number of analysis steps not analyzed because a decoded message was skipped
+     */
+    public long getHopsSkipped() {
+        return hopsSkipped;
+    }
+
+    /**
+     * @return number of analysis steps with a start block at the beginning of the history
+     */
+    public long getStartBlockHits() {
+        return startBlockHits;
+    }
+
+    /**
+     * The end block is only looked for after a start block was found, so this is also the number
+     * of end block hits.
+     * @return number of analysis steps with a start and an end block, i.e. demodulated messages
+     */
+    public long getCandidates() {
+        return candidates;
+    }
+
+    /**
+     * @return number of demodulated messages with a correct CRC
+     */
+    public long getCrcPasses() {
+        return crcPasses;
+    }
+
+    /**
+     * @return number of demodulated messages with a wrong CRC
+     */
+    public long getCrcFailures() {
+        return crcFailures;
+    }
+
+    /**
+     * @return number of reads from the microphone that returned less audio than requested
+     */
+    public long getShortReads() {
+        return shortReads;
+    }
+
+    /**
+     * @return number of times audio was dropped because the analysis lagged behind the capture
+     */
+    public long getOverruns() {
+        return overruns;
+    }
+
+    /**
+     * @return number of samples dropped by the overruns
+     */
+    public long getDroppedSamples() {
+        return droppedSamples;
+    }
+
+    /**
+     * Bytes of the buffers holding a whole history allocated while decoding (copies of the history,
+     * raw audio, new histories after a reset or a gap). Once listening, it only grows when messages
+     * are detected. This is not a full allocation count: the detectors, demodulators, filters and
+     * FFT plans created again on a restart, the messages and their payloads are not included.
+     * @return the number of bytes allocated for history buffers
+     */
+    public long getHistoryBufferBytesAllocated() {
+        return historyBufferBytesAllocated;
+    }
+
+    /**
+     * @return time from the capture of the last samples of an analysis step to the end of its detection
+     */
+    public LatencyHistogram getReadToDetect() {
+        return readToDetect;
+    }
+
+    /**
+     * @return time to demodulate a candidate, check its CRC and convert it to bytes
+     */
+    public LatencyHistogram getDetectToDecode() {
+        return detectToDecode;
+    }
+
+    /**
+     * @return time from a decoded message to the call of the MessageListeners (spectrum included)
+     */
+    public LatencyHistogram getDecodeToListener() {
+        return decodeToListener;
+    }
+
+    @Override
+    public String toString() {
+        return "DecoderStats{hopsAnalyzed=" + hopsAnalyzed + ", hopsGated=" + hopsGated + ", hopsSkipped=" + hopsSkipped
+                + ", startBlockHits=" + startBlockHits + ", candidates=" + candidates
+                + ", crcPasses=" + crcPasses + ", crcFailures=" + crcFailures
+                + ", shortReads=" + shortReads + ", overruns=" + overruns + ", droppedSamples=" + droppedSamples
+                + ", historyBufferBytesAllocated=" + historyBufferBytesAllocated
+                + ", readToDetect=" + readToDetect + ", detectToDecode=" + detectToDecode
+                + ", decodeToListener=" + decodeToListener + "}";
+    }
+
+    /**
+     * Distribution of durations, in buckets of powers of two nanoseconds: bucket i counts the
+     * durations between 2^(i-1) (included) and 2^i nanoseconds (excluded), bucket 0 the zeros.
+     */
+    public static class LatencyHistogram {
+        private final long[] bucketCounts;
+        private final long count;
+        private final long totalNanos;
+
+        /*package-private*/ LatencyHistogram(long[] bucketCounts, long totalNanos) {
+            this.bucketCounts = bucketCounts;
+            this.totalNanos = totalNanos;
+            long sum = 0;
+            for (long bucketCount : bucketCounts) {
+                sum += bucketCount;
+            }
+            this.count = sum;
+        }
+
+        /**
+         * @return number of durations measured
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the mean duration in nanoseconds, 0 if nothing was measured
+         */
+        public long getMeanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        /**
+         * Returns an upper bound of a percentile, i.e. the upper limit of the bucket containing it.
+         * @param percentile between 0 and 100, e.g. 99 for the 99th percentile
+         * @return the upper bound in nanoseconds, 0 if nothing was measured
+         */
+        public long getPercentileNanos(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("The percentile must be between 0 and 100.");
+            }
+            long rank = (long) Math.ceil(percentile / 100 * count);
+            long cumulated = 0;
+            for (int i = 0; i < bucketCounts.length; i++) {
+                cumulated += bucketCounts[i];
+                if (cumulated >= rank && cumulated > 0) {
+                    return i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : 1L << i);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * @return a copy of the number of durations in each bucket
+         */
+        public long[] getBucketCounts() {
+            return bucketCounts.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "{count=" + count + ", mean=" + getMeanNanos() / 1000 + "us, p50<" + getPercentileNanos(50) / 1000
+                    + "us, p99<" + getPercentileNanos(99) / 1000 + "us}";
+        }
+    }
+}
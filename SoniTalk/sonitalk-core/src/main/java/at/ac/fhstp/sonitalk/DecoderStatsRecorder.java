@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects the statistics of a decoder while it runs. Recording is lock-free (atomic increments
+ * only) and does not allocate, so it can stay enabled in production. Snapshots can be taken from
+ * any thread.
+ */
+/*package-private*/ class DecoderStatsRecorder {
+    private final AtomicLong hopsAnalyzed = new AtomicLong();
+    private final AtomicLong hopsGated = new AtomicLong();
+    private final AtomicLong hopsSkipped = new AtomicLong();
+    private final AtomicLong startBlockHits = new AtomicLong();
+    private final AtomicLong candidates = new AtomicLong();
+    private final AtomicLong crcPasses = new AtomicLong();
+    private final AtomicLong crcFailures = new AtomicLong();
+    private final AtomicLong historyBufferBytesAllocated = new AtomicLong();
+    private final Histogram readToDetect = new Histogram();
+    private final Histogram detectToDecode = new Histogram();
+    private final Histogram decodeToListener = new Histogram();
+
+    void onHopAnalyzed(boolean startBlock, boolean candidate, long readToDetectNanos) {
+        hopsAnalyzed.incrementAndGet();
+        if (startBlock) {
+            startBlockHits.incrementAndGet();
+        }
+        if (candidate) {
+            candidates.incrementAndGet();
+        }
+        readToDetect.record(readToDetectNanos);
+    }
+
+    void onHopGated() {
+        hopsGated.incrementAndGet();
+    }
+
+    void onHopSkipped() {
+        hopsSkipped.incrementAndGet();
+    }
+
+    void onMessageDecoded(boolean crcIsCorrect, long detectToDecodeNanos) {
+        if (crcIsCorrect) {
+            crcPasses.incrementAndGet();
+        }
+        else {
+            crcFailures.incrementAndGet();
+        }
+        detectToDecode.record(detectToDecodeNanos);
+    }
+
+    void onListenersCalled(long decodeToListenerNanos) {
+        decodeToListener.record(decodeToListenerNanos);
+    }
+
+    void onHistoryBufferAllocated(long bytes) {
+        historyBufferBytesAllocated.addAndGet(bytes);
+    }
+
+    DecoderStats snapshot(long shortReads, long overruns, long droppedSamples) {
+        return new DecoderStats(hopsAnalyzed.get(), hopsGated.get(), hopsSkipped.get(), startBlockHits.get(), candidates.get(),
+                crcPasses.get(), crcFailures.get(), shortReads, overruns, droppedSamples, historyBufferBytesAllocated.get(),
+                readToDetect.snapshot(), detectToDecode.snapshot(), decodeToListener.snapshot());
+    }
+
+    /**
+     * Durations in 64 buckets of powers of two nanoseconds.
+     */
+    private static class Histogram {
+        private final AtomicLongArray bucketCounts = new AtomicLongArray(64);
+        private final AtomicLong totalNanos = new AtomicLong();
+
+        void record(long nanos) {
+            long duration = Math.max(0, nanos);
+            // Bucket i holds [2^(i-1), 2^i)
+            bucketCounts.incrementAndGet(Math.min(63, 64 - Long.numberOfLeadingZeros(duration)));
+            totalNanos.addAndGet(duration);
+        }
+
+        DecoderStats.LatencyHistogram snapshot() {
+            long[] counts = new long[bucketCounts.length()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = bucketCounts.get(i);
+            }
+            return new DecoderStats.LatencyHistogram(counts, totalNanos.get());
+        }
+    }
+}
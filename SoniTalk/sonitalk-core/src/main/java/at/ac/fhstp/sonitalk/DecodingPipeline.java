@@ -0,0 +1,538 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import at.ac.fhstp.sonitalk.utils.Aggregators;
+import at.ac.fhstp.sonitalk.utils.BlockDetector;
+import at.ac.fhstp.sonitalk.utils.CRC;
+import at.ac.fhstp.sonitalk.utils.CircularArray;
+import at.ac.fhstp.sonitalk.utils.DecoderUtils;
+import at.ac.fhstp.sonitalk.utils.Demodulator;
+import at.ac.fhstp.sonitalk.utils.EnergyGate;
+import at.ac.fhstp.sonitalk.utils.EnvelopeBlockDetector;
+import at.ac.fhstp.sonitalk.utils.FrameDecoder;
+import at.ac.fhstp.sonitalk.utils.HeterodyneDecimator;
+import at.ac.fhstp.sonitalk.utils.GoertzelDemodulator;
+import at.ac.fhstp.sonitalk.utils.HilbertBlockDetector;
+import at.ac.fhstp.sonitalk.utils.RollingSpectrogram;
+import at.ac.fhstp.sonitalk.utils.RollingSpectrogramDemodulator;
+import at.ac.fhstp.sonitalk.utils.SpectrogramDemodulator;
+import at.ac.fhstp.sonitalk.utils.SpectrogramLayout;
+import at.ac.fhstp.sonitalk.utils.SpectrogramWorkspace;
+
+/**
+ * Detection and demodulation of messages, independent of where the audio comes from. Audio is
+ * pushed one analysis step at a time, the history buffer is analyzed as soon as it is full and a
+ * SoniTalkMessage is returned every time a start and an end block are detected.
+ * Used by the SoniTalkDecoder (microphone) and the SoniTalkOfflineDecoder (recordings).
+ * With a decimation factor, the audio first goes through a HeterodyneDecimator and the analysis
+ * runs at the reduced sample rate on the shifted carriers. The raw audio of the detected messages
+ * is then this shifted, decimated signal.
+ * This class is NOT thread safe.
+ */
+/*package-private*/ class DecodingPipeline {
+    private final int inputSampleRate;
+    private final HeterodyneDecimator frontEnd; // null without decimation
+    private final int decimationFactor;
+    private final float[] decimatedData; // Output of the front end, reused at every step
+    private final int Fs; // Sample rate of the analysis, after the front end
+    private final SoniTalkConfig config; // Carriers as seen by the analysis, after the front end
+    private final int bandPassFilterOrder;
+    private final int frequencyOffsetForSpectrogram;
+    private final double startFactor;
+    private final double endFactor;
+
+    private final int nNeighborsFreqUpDown = 1;
+    private final int nNeighborsTimeLeftRight = 1;
+    private String aggFcn = "median";
+
+    private final int nBlocks;
+    private final int winLenForSpectrogramInSamples;
+    private final int analysisWinLen;
+    private final int analysisWinStep;
+    private final int nStepsBeforeAnalysis;
+    private final int historyBufferSize;
+    private final int nStepsSkippedAfterMessage;
+
+    private CircularArray historyBuffer;
+    private EnergyGate energyGate; // null when disabled
+    private BlockDetector blockDetector;
+    private SpectrogramLayout spectrogramLayout;
+    private SpectrogramWorkspace spectrogramWorkspace;
+    private Demodulator demodulator;
+    private RollingSpectrogram rollingSpectrogram; // Only updated in DEMODULATION_MODE_ROLLING
+    private final FrameDecoder frameDecoder;
+    private final int[] messageBits; // Decided by the demodulator, reused for every message
+
+    private int detectionMode = DecoderModes.DETECTION_MODE_HILBERT;
+    private int demodulationMode = DecoderModes.DEMODULATION_MODE_SPECTROGRAM;
+    private int spectrogramSizing = DecoderModes.SPECTROGRAM_SIZING_BIT_PERIOD;
+    private volatile boolean returnRawAudio = false;
+    private volatile boolean spectrumRequired = false;
+    private volatile boolean skipDecodedMessages = false;
+
+    private int stepCounter = 0;
+    private int stepsToSkip = 0;
+    private volatile long gatedStepCounter = 0; // Read by other threads for the statistics
+    private long sampleCounter = 0;
+    private final DecoderStatsRecorder stats = new DecoderStatsRecorder();
+
+    /*package-private*/ DecodingPipeline(int sampleRate, SoniTalkConfig config, int stepFactor, int frequencyOffsetForSpectrogram, int bandPassFilterOrder, double startFactor, double endFactor) {
+        this(sampleRate, config, stepFactor, frequencyOffsetForSpectrogram, bandPassFilterOrder, startFactor, endFactor, 1);
+    }
+
+    /**
+     * @param decimationFactor 1 to analyze the audio at its sample rate, otherwise the band of the
+     *                         carriers is moved down and decimated by this factor before the
+     *                         analysis (see HeterodyneDecimator). The factor must divide the sample rate.
+     */
+    /*package-private*/ DecodingPipeline(int sampleRate, SoniTalkConfig config, int stepFactor, int frequencyOffsetForSpectrogram, int bandPassFilterOrder, double startFactor, double endFactor, int decimationFactor) {
+        this.inputSampleRate = sampleRate;
+        this.bandPassFilterOrder = bandPassFilterOrder;
+        this.frequencyOffsetForSpectrogram = frequencyOffsetForSpectrogram;
+        this.startFactor = startFactor;
+        this.endFactor = endFactor;
+
+        int f0 = config.getFrequencyZero();
+        if ((f0*2) > sampleRate) {
+            throw new IllegalArgumentException("Sample rate cannot be lower than two times the frequency zero. Please try a sample rate of 44100Hz and f0 under 22050Hz");
+        }
+        if (decimationFactor < 1) {
+            throw new IllegalArgumentException("The decimation factor must be at least 1, got: " + decimationFactor);
+        }
+        this.decimationFactor = decimationFactor;
+        if (decimationFactor > 1) {
+            frontEnd = new HeterodyneDecimator(sampleRate, config, frequencyOffsetForSpectrogram, decimationFactor);
+            this.Fs = frontEnd.getOutputSampleRate();
+            this.config = frontEnd.getShiftedConfig();
+        } else {
+            frontEnd = null;
+            this.Fs = sampleRate;
+            this.config = config;
+        }
+        int bitperiod = config.getBitperiod();
+        int pauseperiod = config.getPauseperiod();
+
+        int winLenForSpectrogramInSamples = Math.round(Fs * (float) bitperiod/1000);
+        if (winLenForSpectrogramInSamples % 2 != 0) {
+            winLenForSpectrogramInSamples ++; // Make sure winLenForSpectrogramInSamples is even
+        }
+        this.winLenForSpectrogramInSamples = winLenForSpectrogramInSamples;
+
+        this.nBlocks = (int)Math.ceil(config.getnMessageBlocks()*2)+2;
+        this.messageBits = new int[(nBlocks-2)/2 * config.getnFrequencies()];
+        this.frameDecoder = new FrameDecoder(new CRC(), messageBits.length);
+        int bitperiodInSamples = (int)Math.round(bitperiod * (float)Fs/1000);
+        int pauseperiodInSamples = (int)Math.round(pauseperiod * (float)Fs/1000);
+
+        analysisWinLen = (int)Math.round((float) bitperiodInSamples / 2 );
+        analysisWinStep = (int)Math.round((float) analysisWinLen/ stepFactor);
+        decimatedData = frontEnd == null ? null : new float[analysisWinStep];
+
+        int nAnalysisWindowsPerBit =  Math.round((bitperiodInSamples+pauseperiodInSamples)/(float)analysisWinStep); //number of analysis windows of bit+pause
+        int nAnalysisWindowsPerPause =  Math.round(pauseperiodInSamples/(float)analysisWinStep) ; //number of analysis windows during a pause
+        nStepsBeforeAnalysis = nBlocks*nAnalysisWindowsPerBit-nAnalysisWindowsPerPause; // Looks more like Octave version
+
+        historyBufferSize = ((bitperiodInSamples*nBlocks+pauseperiodInSamples*(nBlocks-1)));
+        // Until the end block of a decoded message reaches the first analysis window (it cannot be taken for a start block)
+        nStepsSkippedAfterMessage = (historyBufferSize - bitperiodInSamples + analysisWinStep - 1) / analysisWinStep - 1;
+        historyBuffer = new CircularArray(historyBufferSize);
+        blockDetector = new HilbertBlockDetector(Fs, this.config, analysisWinLen, bandPassFilterOrder, startFactor, endFactor);
+        createSpectrogram(winLenForSpectrogramInSamples);
+        setDemodulationMode(demodulationMode); // Without spectrum until setSpectrumRequired(true)
+    }
+
+    /*
+     * Like all the lengths below, in samples at the sample rate of the input, before the front end.
+     */
+    /*package-private*/ int getAnalysisWinLen() {
+        return analysisWinLen * decimationFactor;
+    }
+
+    /**
+     * Number of samples to pass to every call of addSamples().
+     * @return the analysis step, in samples
+     */
+    /*package-private*/ int getAnalysisWinStep() {
+        return analysisWinStep * decimationFactor;
+    }
+
+    /**
+     * Number of samples to add before the history buffer is analyzed for the first time. Slightly
+     * longer than the history buffer, as the analysis steps do not exactly fit in it.
+     * @return the number of samples needed for a first detection
+     */
+    /*package-private*/ int getSamplesBeforeAnalysis() {
+        return nStepsBeforeAnalysis * analysisWinStep * decimationFactor;
+    }
+
+    /*package-private*/ int getHistoryBufferSize() {
+        return historyBufferSize * decimationFactor;
+    }
+
+    /*package-private*/ int getFrontEndFilterLength() {
+        return frontEnd == null ? 0 : frontEnd.getFilterLength();
+    }
+
+    /**
+     * Positions the front end at samplePosition of a stream, for a pipeline decoding the stream
+     * from there (see SoniTalkBatchDecoder). Call it before the first addSamples().
+     * @param samplePosition index of the next sample, a multiple of getAnalysisWinStep()
+     */
+    /*package-private*/ void setFrontEndPosition(long samplePosition) {
+        if (frontEnd != null) {
+            frontEnd.reset(samplePosition);
+        }
+    }
+
+    /**
+     * Number of samples after the offset of a decoded message during which no other message is
+     * detected when decoded messages are skipped.
+     * @return the length skipped after a message, in samples
+     */
+    /*package-private*/ int getSkippedSamplesAfterMessage() {
+        return (nStepsSkippedAfterMessage + 1) * analysisWinStep * decimationFactor;
+    }
+
+    /*package-private*/ int getSampleRate() {
+        return inputSampleRate;
+    }
+
+    /**
+     * @return the factor by which the audio is decimated before the analysis, 1 without front end
+     */
+    /*package-private*/ int getDecimationFactor() {
+        return decimationFactor;
+    }
+
+    /**
+     * Adds one analysis step of audio to the history buffer and analyzes it if it is full.
+     * @param samples audio in [-1.0;1.0], only the first getAnalysisWinStep() values are read
+     * @param readTimestamp System.nanoTime() when the samples were read, used to compute the decoding time
+     * @return the decoded message (check its CRC), or null if no message was detected at this step
+     */
+    /*package-private*/ SoniTalkMessage addSamples(float[] samples, long readTimestamp) {
+        if (frontEnd != null) {
+            frontEnd.process(samples, analysisWinStep * decimationFactor, decimatedData);
+            samples = decimatedData;
+        }
+        historyBuffer.add(samples);
+        blockDetector.onSamplesAdded(samples, analysisWinStep);
+        if (rollingSpectrogram != null) {
+            rollingSpectrogram.update(historyBuffer);
+        }
+        // The gate tracks the noise floor at every step, also before the history is full
+        boolean bandActive = energyGate == null || energyGate.onSamplesAdded(samples, analysisWinStep);
+        sampleCounter += analysisWinStep * decimationFactor;
+        stepCounter++;
+        if (stepCounter < nStepsBeforeAnalysis) {
+            return null; // The history buffer is not full yet
+        }
+        if (stepsToSkip > 0) {
+            // The last decoded message is still in the history
+            stepsToSkip--;
+            stats.onHopSkipped();
+            historyBuffer.incrementAnalysisIndex(analysisWinStep);
+            return null;
+        }
+        if (!bandActive) {
+            // Only noise in the band of the carriers, no end block can be at the end of the history
+            gatedStepCounter++;
+            stats.onHopGated();
+            historyBuffer.incrementAnalysisIndex(analysisWinStep);
+            return null;
+        }
+
+        SoniTalkMessage message = null;
+        // The detector reads the first and last windows in place, the history is only copied when a message is detected
+        boolean startBlock = blockDetector.isStartBlock(historyBuffer);
+        boolean candidate = startBlock && blockDetector.isEndBlock(historyBuffer);
+        stats.onHopAnalyzed(startBlock, candidate, System.nanoTime() - readTimestamp);
+        if (candidate) {
+            // The rolling spectrogram already contains the columns, the history is then only needed for the raw audio
+            float[] analysisHistoryBuffer = null;
+            if (rollingSpectrogram == null || returnRawAudio) {
+                analysisHistoryBuffer = historyBuffer.getArray();
+                stats.onHistoryBufferAllocated(4L * historyBufferSize);
+            }
+            message = analyzeMessage(analysisHistoryBuffer, readTimestamp);
+            if (skipDecodedMessages && message.isCrcCorrect()) {
+                stepsToSkip = nStepsSkippedAfterMessage;
+            }
+        }
+        historyBuffer.incrementAnalysisIndex(analysisWinStep);
+        return message;
+    }
+
+    /**
+     * Demodulates a detected message, checks its CRC and converts it to bytes.
+     * @param analysisHistoryBuffer copy of the history buffer, starting with the start block (can be null in DEMODULATION_MODE_ROLLING without raw audio)
+     * @param readTimestamp System.nanoTime() when the last samples were read
+     * @return the decoded message
+     */
+    /*package-private*/ SoniTalkMessage analyzeMessage(float[] analysisHistoryBuffer, long readTimestamp) {
+        long detectionTimestamp = System.nanoTime();
+        demodulator.demodulate(analysisHistoryBuffer, messageBits);
+
+        // CRC check and removal of the filling bytes on the packed bits
+        int parityCheckResult = frameDecoder.decode(messageBits);
+        final byte[] receivedMessage = frameDecoder.getPayload();
+
+        final long decodingTimeNanosecond = System.nanoTime()-readTimestamp;
+
+        SoniTalkMessage message = new SoniTalkMessage(receivedMessage, parityCheckResult == 0, decodingTimeNanosecond);
+        // If the history buffer was not completely filled yet, its beginning is silence
+        message.setSampleOffset(Math.max(0, sampleCounter - (long) historyBufferSize * decimationFactor));
+        if (returnRawAudio) {
+            message.setRawAudio(convertFloatToShort(analysisHistoryBuffer));
+            stats.onHistoryBufferAllocated(2L * historyBufferSize);
+        }
+        stats.onMessageDecoded(message.isCrcCorrect(), System.nanoTime() - detectionTimestamp);
+        return message;
+    }
+
+    /**
+     * Bits decided for the last analyzed message, before the CRC check. The array is overwritten
+     * when the next message is analyzed.
+     * @return the bits of the message, in the order they were sent
+     */
+    /*package-private*/ int[] getMessageBits() {
+        return messageBits;
+    }
+
+    /**
+     * @return the statistics of this pipeline, counted since its creation (not cleared by reset())
+     */
+    /*package-private*/ DecoderStatsRecorder getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the spectrum of the last decoded message, to be passed to the SpectrumListeners.
+     * @return the spectrum, or null if the current demodulation mode does not compute one
+     */
+    /*package-private*/ float[][] getSpectrum() {
+        return demodulator.getSpectrum();
+    }
+
+    /**
+     * Forgets all the audio added so far, the next sample added is considered as sample 0.
+     */
+    /*package-private*/ void reset() {
+        restartHistory();
+        gatedStepCounter = 0;
+        setEnergyGateEnabled(isEnergyGateEnabled()); // Learns the noise floor again
+    }
+
+    /**
+     * Forgets the audio added so far after a gap in the recording, so that no message is detected
+     * across the gap. Unlike reset(), the noise floor of the energy gate and the statistics are kept.
+     */
+    /*package-private*/ void restartHistory() {
+        historyBuffer = new CircularArray(historyBufferSize);
+        stats.onHistoryBufferAllocated(4L * historyBufferSize);
+        setDetectionMode(detectionMode); // The envelope detector keeps track of the history
+        setDemodulationMode(demodulationMode); // So does the rolling spectrogram
+        if (frontEnd != null) {
+            frontEnd.reset();
+        }
+        stepCounter = 0;
+        stepsToSkip = 0;
+        sampleCounter = 0;
+    }
+
+    /*package-private*/ void setDetectionMode(int detectionMode) {
+        switch (detectionMode) {
+            case DecoderModes.DETECTION_MODE_HILBERT:
+                blockDetector = new HilbertBlockDetector(Fs, config, analysisWinLen, bandPassFilterOrder, startFactor, endFactor);
+                break;
+            case DecoderModes.DETECTION_MODE_ENVELOPE:
+                blockDetector = new EnvelopeBlockDetector(Fs, config, analysisWinLen, historyBufferSize, bandPassFilterOrder, startFactor, endFactor);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown detection mode: " + detectionMode);
+        }
+        this.detectionMode = detectionMode;
+    }
+
+    /*package-private*/ int getDetectionMode() {
+        return detectionMode;
+    }
+
+    /*package-private*/ void setDemodulationMode(int demodulationMode) {
+        RollingSpectrogram newRollingSpectrogram = null;
+        switch (demodulationMode) {
+            case DecoderModes.DEMODULATION_MODE_SPECTROGRAM:
+                SpectrogramDemodulator spectrogramDemodulator = new SpectrogramDemodulator(spectrogramLayout, spectrogramWorkspace, config.getnFrequencies(), nNeighborsFreqUpDown, nNeighborsTimeLeftRight, aggFcn);
+                spectrogramDemodulator.setSpectrumComputed(spectrumRequired);
+                demodulator = spectrogramDemodulator;
+                break;
+            case DecoderModes.DEMODULATION_MODE_GOERTZEL:
+                demodulator = new GoertzelDemodulator(spectrogramLayout, config.getnFrequencies(), nNeighborsFreqUpDown, nNeighborsTimeLeftRight, aggFcn);
+                break;
+            case DecoderModes.DEMODULATION_MODE_ROLLING:
+                // Its columns are filled step by step from now on, like the history after a reset
+                newRollingSpectrogram = new RollingSpectrogram(spectrogramLayout, analysisWinStep, historyBufferSize);
+                demodulator = new RollingSpectrogramDemodulator(spectrogramLayout, newRollingSpectrogram, config.getnFrequencies(), nNeighborsFreqUpDown, nNeighborsTimeLeftRight, aggFcn);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown demodulation mode: " + demodulationMode);
+        }
+        rollingSpectrogram = newRollingSpectrogram;
+        this.demodulationMode = demodulationMode;
+    }
+
+    /*package-private*/ int getDemodulationMode() {
+        return demodulationMode;
+    }
+
+    /**
+     * Selects the length of the FFT of each spectrogram column. If it changes, the demodulator is
+     * created again, like after a change of the demodulation mode.
+     * @param spectrogramSizing DecoderModes.SPECTROGRAM_SIZING_BIT_PERIOD or DecoderModes.SPECTROGRAM_SIZING_POWER_OF_TWO
+     */
+    /*package-private*/ void setSpectrogramSizing(int spectrogramSizing) {
+        if (spectrogramSizing == this.spectrogramSizing) {
+            return; // The spectrogram buffers are large, they are not allocated again for nothing
+        }
+        switch (spectrogramSizing) {
+            case DecoderModes.SPECTROGRAM_SIZING_BIT_PERIOD:
+                createSpectrogram(winLenForSpectrogramInSamples);
+                break;
+            case DecoderModes.SPECTROGRAM_SIZING_POWER_OF_TWO:
+                createSpectrogram(DecoderUtils.nearestPowerOfTwo(winLenForSpectrogramInSamples));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown spectrogram sizing: " + spectrogramSizing);
+        }
+        this.spectrogramSizing = spectrogramSizing;
+        setDemodulationMode(demodulationMode);
+    }
+
+    /*package-private*/ int getSpectrogramSizing() {
+        return spectrogramSizing;
+    }
+
+    private void createSpectrogram(int fftLength) {
+        spectrogramLayout = new SpectrogramLayout(Fs, config, winLenForSpectrogramInSamples, analysisWinStep, historyBufferSize, frequencyOffsetForSpectrogram, fftLength);
+        spectrogramWorkspace = new SpectrogramWorkspace(spectrogramLayout);
+    }
+
+    /**
+     * Selects how the magnitudes around each carrier are aggregated before the bits are decided.
+     * The demodulator is created again, like after a change of the demodulation mode.
+     * @param aggFcn "mean", "max", "median" or "trimmedmean"
+     */
+    /*package-private*/ void setAggregationFunction(String aggFcn) {
+        Aggregators.forName(aggFcn); // Throws if the name is unknown
+        this.aggFcn = aggFcn;
+        setDemodulationMode(demodulationMode);
+    }
+
+    /*package-private*/ String getAggregationFunction() {
+        return aggFcn;
+    }
+
+    /**
+     * Enables or disables the energy gate, which skips the detection of start and end blocks
+     * while the band of the carriers only contains noise.
+     * @param enabled true to enable the gate (disabled by default)
+     */
+    /*package-private*/ void setEnergyGateEnabled(boolean enabled) {
+        energyGate = enabled ? new EnergyGate(Fs, config, analysisWinLen, analysisWinStep, bandPassFilterOrder, EnergyGate.DEFAULT_THRESHOLD_FACTOR) : null;
+    }
+
+    /*package-private*/ boolean isEnergyGateEnabled() {
+        return energyGate != null;
+    }
+
+    /**
+     * Number of samples during which the detection did not run because the energy gate was
+     * closed, since the creation or the last reset.
+     * @return the number of gated samples
+     */
+    /*package-private*/ long getGatedSampleCount() {
+        return gatedStepCounter * analysisWinStep * decimationFactor;
+    }
+
+    /*package-private*/ boolean skipsDecodedMessages() {
+        return skipDecodedMessages;
+    }
+
+    /**
+     * Decides if the detection pauses after a message was decoded with a correct CRC, until its
+     * end block leaves the beginning of the history. The same message is then not detected and
+     * analyzed again on the next steps, only the new audio is.
+     * @param skipDecodedMessages true to skip decoded messages (false by default)
+     */
+    /*package-private*/ void setSkipDecodedMessages(boolean skipDecodedMessages) {
+        this.skipDecodedMessages = skipDecodedMessages;
+    }
+
+    /**
+     * Decides if getSpectrum() will be called after the next detections. Without a spectrum, only
+     * the spectrogram columns needed to decide the bits are computed. Can be called from another
+     * thread, a message being analyzed may then have no spectrum.
+     * @param spectrumRequired true if the spectrum of the detected messages is needed (false by default)
+     */
+    /*package-private*/ void setSpectrumRequired(boolean spectrumRequired) {
+        this.spectrumRequired = spectrumRequired;
+        Demodulator currentDemodulator = demodulator;
+        if (currentDemodulator instanceof SpectrogramDemodulator) {
+            ((SpectrogramDemodulator) currentDemodulator).setSpectrumComputed(spectrumRequired);
+        }
+    }
+
+    /*package-private*/ boolean returnsRawAudio() {
+        return returnRawAudio;
+    }
+
+    /*package-private*/ void setReturnRawAudio(boolean returnRawAudio) {
+        this.returnRawAudio = returnRawAudio;
+    }
+
+    /**
+     * Converts an input array from short to [-1.0;1.0] float, result is put into the (pre-allocated) output array
+     * @param input
+     * @param output Should be allocated beforehand
+     * @param arrayLength
+     */
+    /*package-private*/ static void convertShortToFloat(short[] input, float[] output, int arrayLength) {
+        for (int i = 0; i < arrayLength; i++) {
+            // Do we actually need float anywhere ? Switch to double ?
+            output[i] = ((float) input[i]) / Short.MAX_VALUE;
+        }
+    }
+
+    /**
+     *
+     * Converts an input array from [-1.0;1.0] float to short full range and returns it
+     * @param input
+     * @return a short array containing short values with a distribution similar to the input one
+     */
+    /*package-private*/ static short [] convertFloatToShort(float[] input) {
+        short[] output = new short[input.length];
+        for (int i = 0; i < input.length; i++) {
+            // Do we actually need float anywhere ? Switch to double ?
+            output[i] = (short) (input[i] * Short.MAX_VALUE);
+        }
+        return output;
+    }
+}
@@ -0,0 +1,437 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import at.ac.fhstp.sonitalk.utils.WavHeader;
+
+/**
+ * Decodes long recordings on several cores, e.g. to scan hours of field recordings on a server.
+ * The recording is split into segments decoded in parallel on a ForkJoinPool, each with its own
+ * detection and demodulation pipeline. Consecutive segments overlap by (at least) one history
+ * buffer so that no message is lost at their boundaries, and the messages found twice in the
+ * overlaps are removed (same sample offset and same content).
+ *
+ * Segments start on the analysis step grid of the whole recording, so with the default
+ * DETECTION_MODE_HILBERT the result is the same as decoding the recording with a
+ * SoniTalkOfflineDecoder. With a decimation factor, each segment also decodes the length of the
+ * front end filter before its start, so that the filter is filled when the segment starts. DETECTION_MODE_ENVELOPE restarts its running envelopes at every segment,
+ * its decisions can then slightly differ around the segment boundaries.
+ *
+ * When decoded messages are skipped, each segment skips its own messages and the same rule is
+ * applied again to the merged messages, which removes the ones a segment found while the previous
+ * one was skipping.
+ */
+public class SoniTalkBatchDecoder {
+    private static final int SEGMENTS_PER_THREAD = 4; // Balances the load if some segments take longer
+
+    private final int sampleRate;
+    private final SoniTalkConfig config;
+    private final int stepFactor;
+    private final int frequencyOffsetForSpectrogram;
+    private final int bandPassFilterOrder;
+    private final double startFactor;
+    private final double endFactor;
+    private final int decimationFactor;
+    private final ForkJoinPool pool;
+
+    private final int analysisWinStep;
+    private final int overlap;
+    private final int frontEndWarmUp;
+    private final int skippedSamplesAfterMessage;
+    private int detectionMode = DecoderModes.DETECTION_MODE_HILBERT;
+    private int demodulationMode = DecoderModes.DEMODULATION_MODE_SPECTROGRAM;
+    private int spectrogramSizing = DecoderModes.SPECTROGRAM_SIZING_BIT_PERIOD;
+    private int segmentLength = 0; // 0: adapt to the recording length and the number of threads
+    private boolean skipDecodedMessages = false;
+
+    /**
+     * Creates a batch decoder with the default parameters of the SoniTalkDecoder, running on a new
+     * ForkJoinPool with one thread per available processor.
+     * @param sampleRate sample rate of the recordings to decode
+     * @param config configuration used to send the messages
+     */
+    public SoniTalkBatchDecoder(int sampleRate, SoniTalkConfig config) {
+        this(sampleRate, config, new ForkJoinPool(Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Creates a batch decoder with the default parameters of the SoniTalkDecoder.
+     * @param sampleRate sample rate of the recordings to decode
+     * @param config configuration used to send the messages
+     * @param pool pool executing the decoding of the segments, its parallelism decides the number of cores used
+     */
+    public SoniTalkBatchDecoder(int sampleRate, SoniTalkConfig config, ForkJoinPool pool) {
+        this(sampleRate, config, 8, 50, 8, 2.0, 2.0, pool);
+    }
+
+    /**
+     * Creates a batch decoder, the parameters have the same meaning as for the SoniTalkDecoder.
+     * @param sampleRate sample rate of the recordings to decode
+     * @param config configuration used to send the messages
+     * @param stepFactor number of analysis steps per analysis window
+     * @param frequencyOffsetForSpectrogram margin (in Hz) of the analyzed band around the carriers
+     * @param bandPassFilterOrder order of the band-pass filters used to detect start and end blocks
+     * @param startFactor how much more energy the upper band needs to detect a start block
+     * @param endFactor how much more energy the lower band needs to detect an end block
+     * @param pool pool executing the decoding of the segments, its parallelism decides the number of cores used
+     */
+    public SoniTalkBatchDecoder(int sampleRate, SoniTalkConfig config, int stepFactor, int frequencyOffsetForSpectrogram, int bandPassFilterOrder, double startFactor, double endFactor, ForkJoinPool pool) {
+        this(sampleRate, config, stepFactor, frequencyOffsetForSpectrogram, bandPassFilterOrder, startFactor, endFactor, 1, pool);
+    }
+
+    /**
+     * Creates a batch decoder analyzing the band of the carriers at a reduced sample rate, like
+     * the SoniTalkOfflineDecoder with a decimation factor.
+     * @param sampleRate sample rate of the recordings to decode
+     * @param config configuration used to send the messages
+     * @param stepFactor number of analysis steps per analysis window
+     * @param frequencyOffsetForSpectrogram margin (in Hz) of the analyzed band around the carriers
+     * @param bandPassFilterOrder order of the band-pass filters used to detect start and end blocks
+     * @param startFactor how much more energy the upper band needs to detect a start block
+     * @param endFactor how much more energy the lower band needs to detect an end block
+     * @param decimationFactor 1 to analyze the audio at its sample rate, otherwise a divisor of the
+     *                         sample rate, at most HeterodyneDecimator.getMaxDecimationFactor()
+     * @param pool pool executing the decoding of the segments, its parallelism decides the number of cores used
+     */
+    public SoniTalkBatchDecoder(int sampleRate, SoniTalkConfig config, int stepFactor, int frequencyOffsetForSpectrogram, int bandPassFilterOrder, double startFactor, double endFactor, int decimationFactor, ForkJoinPool pool) {
+        this.sampleRate = sampleRate;
+        this.config = config;
+        this.stepFactor = stepFactor;
+        this.frequencyOffsetForSpectrogram = frequencyOffsetForSpectrogram;
+        this.bandPassFilterOrder = bandPassFilterOrder;
+        this.startFactor = startFactor;
+        this.endFactor = endFactor;
+        this.decimationFactor = decimationFactor;
+        this.pool = pool;
+
+        // Also validates the parameters
+        DecodingPipeline pipeline = createPipeline();
+        analysisWinStep = pipeline.getAnalysisWinStep();
+        // A detection needs a full history buffer: with this overlap, the first detection of a
+        // segment is the step following the last detection of the previous one (or the same step).
+        int minimumOverlap = Math.max(pipeline.getSamplesBeforeAnalysis(), pipeline.getHistoryBufferSize());
+        overlap = roundUpToStep(minimumOverlap);
+        frontEndWarmUp = roundUpToStep(pipeline.getFrontEndFilterLength());
+        skippedSamplesAfterMessage = pipeline.getSkippedSamplesAfterMessage();
+    }
+
+    /**
+     * Decodes 16 bits PCM samples, from the current position to the limit of the buffer. The
+     * buffer is only read (through duplicates), e.g. a memory-mapped file can be shared.
+     * @param samples mono audio at the sample rate of this decoder
+     * @return the detected messages, sorted by sample offset (check their CRC)
+     */
+    public List<SoniTalkMessage> decode(ShortBuffer samples) {
+        return decode(samples, 1);
+    }
+
+    /**
+     * Decodes 16 bits PCM samples.
+     * @param samples mono audio at the sample rate of this decoder
+     * @return the detected messages, sorted by sample offset (check their CRC)
+     */
+    public List<SoniTalkMessage> decode(short[] samples) {
+        return decode(ShortBuffer.wrap(samples), 1);
+    }
+
+    /**
+     * Decodes a 16 bits PCM WAV file, which is memory-mapped instead of being loaded on the heap.
+     * If it contains several channels, only the first one is decoded. The audio data cannot be
+     * larger than 2GB (about 6 hours of mono audio at 44100Hz).
+     * @param wavFile recording at the sample rate of this decoder
+     * @return the detected messages, sorted by sample offset (check their CRC)
+     * @throws IOException if the file cannot be read or is not a 16 bits PCM WAV file
+     * @throws IllegalArgumentException if the sample rate of the file differs from the one of this decoder
+     */
+    public List<SoniTalkMessage> decodeWav(File wavFile) throws IOException {
+        try (FileInputStream in = new FileInputStream(wavFile)) {
+            WavHeader header = WavHeader.read(in); // Unbuffered, the channel is left at the first sample
+            if (header.getSampleRate() != sampleRate) {
+                throw new IllegalArgumentException("The recording was made at " + header.getSampleRate() + "Hz, this decoder expects " + sampleRate + "Hz.");
+            }
+            FileChannel channel = in.getChannel();
+            long dataStart = channel.position();
+            long dataSize = channel.size() - dataStart;
+            if (header.getDataSize() != 0 && header.getDataSize() != 0xFFFFFFFFL) {
+                dataSize = Math.min(dataSize, header.getDataSize());
+            }
+            // Keep whole frames only
+            int frameSize = 2 * header.getnChannels();
+            dataSize -= dataSize % frameSize;
+            ShortBuffer samples = channel.map(FileChannel.MapMode.READ_ONLY, dataStart, dataSize)
+                    .order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+            return decode(samples, header.getnChannels());
+        }
+    }
+
+    /**
+     * @param samples interleaved audio, the first channel is decoded
+     * @param nChannels number of interleaved channels
+     */
+    private List<SoniTalkMessage> decode(ShortBuffer samples, int nChannels) {
+        ShortBuffer recording = samples.slice();
+        long nSamples = recording.limit() / nChannels;
+        int length = getSegmentLength(nSamples);
+        int nSegments = (int) Math.max(1, (nSamples - overlap + length - 1) / length);
+
+        List<SoniTalkMessage> messages = pool.invoke(new SegmentsTask(recording, nChannels, nSamples, length, 0, nSegments));
+        messages = removeDuplicates(messages);
+        return skipsDecodedMessages() ? removeSkippedMessages(messages) : messages;
+    }
+
+    private int getSegmentLength(long nSamples) {
+        int length = getSegmentLengthInSamples();
+        if (length == 0) {
+            long adaptedLength = nSamples / ((long) pool.getParallelism() * SEGMENTS_PER_THREAD);
+            length = (int) Math.min(Integer.MAX_VALUE / 2, Math.max(adaptedLength, overlap)); // Shorter segments would mostly decode overlaps
+        }
+        return roundUpToStep(length);
+    }
+
+    private int roundUpToStep(int length) {
+        return ((length + analysisWinStep - 1) / analysisWinStep) * analysisWinStep;
+    }
+
+    /**
+     * Sorts the messages by sample offset and removes the ones detected in two segments.
+     */
+    private static List<SoniTalkMessage> removeDuplicates(List<SoniTalkMessage> messages) {
+        Collections.sort(messages, new Comparator<SoniTalkMessage>() {
+            @Override
+            public int compare(SoniTalkMessage m1, SoniTalkMessage m2) {
+                return Long.compare(m1.getSampleOffset(), m2.getSampleOffset());
+            }
+        });
+        List<SoniTalkMessage> uniqueMessages = new ArrayList<>(messages.size());
+        for (SoniTalkMessage message : messages) {
+            if (!containsSameMessage(uniqueMessages, message)) {
+                uniqueMessages.add(message);
+            }
+        }
+        return uniqueMessages;
+    }
+
+    /**
+     * Removes the messages detected less than skippedSamplesAfterMessage after a message decoded
+     * with a correct CRC, like a single pipeline skipping decoded messages would.
+     */
+    private List<SoniTalkMessage> removeSkippedMessages(List<SoniTalkMessage> sortedMessages) {
+        List<SoniTalkMessage> keptMessages = new ArrayList<>(sortedMessages.size());
+        long skippedUntil = Long.MIN_VALUE;
+        for (SoniTalkMessage message : sortedMessages) {
+            if (message.getSampleOffset() < skippedUntil) {
+                continue;
+            }
+            keptMessages.add(message);
+            if (message.isCrcCorrect()) {
+                skippedUntil = message.getSampleOffset() + skippedSamplesAfterMessage;
+            }
+        }
+        return keptMessages;
+    }
+
+    private static boolean containsSameMessage(List<SoniTalkMessage> sortedMessages, SoniTalkMessage message) {
+        // Only the last messages can have the same offset
+        for (int i = sortedMessages.size() - 1; i >= 0 && sortedMessages.get(i).getSampleOffset() == message.getSampleOffset(); i--) {
+            if (Arrays.equals(sortedMessages.get(i).getMessage(), message.getMessage())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private DecodingPipeline createPipeline() {
+        DecodingPipeline pipeline = new DecodingPipeline(sampleRate, config, stepFactor, frequencyOffsetForSpectrogram, bandPassFilterOrder, startFactor, endFactor, decimationFactor);
+        synchronized (this) {
+            pipeline.setDetectionMode(detectionMode);
+            pipeline.setDemodulationMode(demodulationMode);
+            pipeline.setSpectrogramSizing(spectrogramSizing);
+            pipeline.setSkipDecodedMessages(skipDecodedMessages);
+        }
+        return pipeline;
+    }
+
+    /**
+     * Decodes a range of segments, split in halves until a single segment is left.
+     */
+    private class SegmentsTask extends RecursiveTask<List<SoniTalkMessage>> {
+        private static final long serialVersionUID = 1L;
+
+        private final ShortBuffer recording;
+        private final int nChannels;
+        private final long nSamples;
+        private final int segmentLength;
+        private final int firstSegment;
+        private final int endSegment;
+
+        SegmentsTask(ShortBuffer recording, int nChannels, long nSamples, int segmentLength, int firstSegment, int endSegment) {
+            this.recording = recording;
+            this.nChannels = nChannels;
+            this.nSamples = nSamples;
+            this.segmentLength = segmentLength;
+            this.firstSegment = firstSegment;
+            this.endSegment = endSegment;
+        }
+
+        @Override
+        protected List<SoniTalkMessage> compute() {
+            if (endSegment - firstSegment > 1) {
+                int middle = (firstSegment + endSegment) >>> 1;
+                SegmentsTask second = new SegmentsTask(recording, nChannels, nSamples, segmentLength, middle, endSegment);
+                second.fork();
+                List<SoniTalkMessage> messages = new SegmentsTask(recording, nChannels, nSamples, segmentLength, firstSegment, middle).compute();
+                messages.addAll(second.join());
+                return messages;
+            }
+            return decodeSegment();
+        }
+
+        private List<SoniTalkMessage> decodeSegment() {
+            long start = (long) firstSegment * segmentLength;
+            // The last segment goes until the end of the recording
+            long end = endSegment * (long) segmentLength >= nSamples - overlap ? nSamples : start + segmentLength + overlap;
+
+            // The front end filter is filled before the segment starts
+            long firstPosition = Math.max(0, start - frontEndWarmUp);
+
+            DecodingPipeline pipeline = createPipeline();
+            pipeline.setFrontEndPosition(firstPosition);
+            List<SoniTalkMessage> messages = new ArrayList<>();
+            float[] currentData = new float[analysisWinStep];
+            for (long position = firstPosition; position + analysisWinStep <= end; position += analysisWinStep) {
+                for (int i = 0; i < analysisWinStep; i++) {
+                    currentData[i] = ((float) recording.get((int) ((position + i) * nChannels))) / Short.MAX_VALUE;
+                }
+                SoniTalkMessage message = pipeline.addSamples(currentData, System.nanoTime());
+                if (message != null) {
+                    message.setSampleOffset(firstPosition + message.getSampleOffset());
+                    // Messages starting before the segment are decoded by the previous one, with a filled filter
+                    if (message.getSampleOffset() >= start) {
+                        messages.add(message);
+                    }
+                }
+            }
+            return messages;
+        }
+    }
+
+    /**
+     * Sets the length of the segments decoded in parallel, rounded up to a multiple of the analysis
+     * step. Longer segments decode less overlap, shorter ones balance the load between threads better.
+     * @param segmentLengthInSamples length of the segments (without their overlap), or 0 to adapt it
+     *                               to the recording length and the parallelism of the pool (default)
+     */
+    public synchronized void setSegmentLengthInSamples(int segmentLengthInSamples) {
+        if (segmentLengthInSamples < 0) {
+            throw new IllegalArgumentException("The segment length cannot be negative.");
+        }
+        this.segmentLength = segmentLengthInSamples;
+    }
+
+    public synchronized int getSegmentLengthInSamples() {
+        return segmentLength;
+    }
+
+    /**
+     * Returns the number of samples decoded by two consecutive segments, at least one history
+     * buffer (plus the length of the front end filter with a decimation factor).
+     * @return the overlap between segments, in samples
+     */
+    public int getOverlapInSamples() {
+        return overlap + frontEndWarmUp;
+    }
+
+    /**
+     * Selects how start and end blocks are detected.
+     * @param detectionMode DecoderModes.DETECTION_MODE_HILBERT (default) or DecoderModes.DETECTION_MODE_ENVELOPE
+     */
+    public synchronized void setDetectionMode(@DecoderModes.DetectionMode int detectionMode) {
+        if (detectionMode != DecoderModes.DETECTION_MODE_HILBERT && detectionMode != DecoderModes.DETECTION_MODE_ENVELOPE) {
+            throw new IllegalArgumentException("Unknown detection mode: " + detectionMode);
+        }
+        this.detectionMode = detectionMode;
+    }
+
+    @DecoderModes.DetectionMode
+    public synchronized int getDetectionMode() {
+        return detectionMode;
+    }
+
+    /**
+     * Selects how the bits of a detected message are decided.
+     * @param demodulationMode DecoderModes.DEMODULATION_MODE_SPECTROGRAM (default), DecoderModes.DEMODULATION_MODE_GOERTZEL or DecoderModes.DEMODULATION_MODE_ROLLING
+     */
+    public synchronized void setDemodulationMode(@DecoderModes.DemodulationMode int demodulationMode) {
+        if (demodulationMode != DecoderModes.DEMODULATION_MODE_SPECTROGRAM && demodulationMode != DecoderModes.DEMODULATION_MODE_GOERTZEL
+                && demodulationMode != DecoderModes.DEMODULATION_MODE_ROLLING) {
+            throw new IllegalArgumentException("Unknown demodulation mode: " + demodulationMode);
+        }
+        this.demodulationMode = demodulationMode;
+    }
+
+    @DecoderModes.DemodulationMode
+    public synchronized int getDemodulationMode() {
+        return demodulationMode;
+    }
+
+    /**
+     * Selects the length of the FFT of each spectrogram column.
+     * @param spectrogramSizing DecoderModes.SPECTROGRAM_SIZING_BIT_PERIOD (default) or DecoderModes.SPECTROGRAM_SIZING_POWER_OF_TWO
+     */
+    public synchronized void setSpectrogramSizing(@DecoderModes.SpectrogramSizing int spectrogramSizing) {
+        if (spectrogramSizing != DecoderModes.SPECTROGRAM_SIZING_BIT_PERIOD && spectrogramSizing != DecoderModes.SPECTROGRAM_SIZING_POWER_OF_TWO) {
+            throw new IllegalArgumentException("Unknown spectrogram sizing: " + spectrogramSizing);
+        }
+        this.spectrogramSizing = spectrogramSizing;
+    }
+
+    @DecoderModes.SpectrogramSizing
+    public synchronized int getSpectrogramSizing() {
+        return spectrogramSizing;
+    }
+
+    public synchronized boolean skipsDecodedMessages() {
+        return skipDecodedMessages;
+    }
+
+    /**
+     * Decides if the detection pauses after a message was decoded with a correct CRC, until the
+     * message has left the history. Otherwise the same message is usually returned several times,
+     * with slightly different offsets.
+     * @param skipDecodedMessages true to skip decoded messages (false by default)
+     */
+    public synchronized void setSkipDecodedMessages(boolean skipDecodedMessages) {
+        this.skipDecodedMessages = skipDecodedMessages;
+    }
+}
@@ -91,4 +91,13 @@ public class SoniTalkConfig {
     public void setFrequencySpace(int frequencySpace) {
         this.frequencySpace = frequencySpace;
     }
+
+    /**
+     * Returns the longest duration of a message: start block, normal and inverted message blocks
+     * and end block, each counted with a pause.
+     * @return the duration of a message in milliseconds
+     */
+    public int getMessageDurationMillis() {
+        return (nMessageBlocks*2+2) * (bitperiod+pauseperiod);
+    }
 }
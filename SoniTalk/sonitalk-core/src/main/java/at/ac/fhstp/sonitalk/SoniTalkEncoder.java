@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import at.ac.fhstp.sonitalk.utils.CRC;
+import at.ac.fhstp.sonitalk.utils.ConfigConstants;
+import at.ac.fhstp.sonitalk.utils.EncoderUtils;
+import at.ac.fhstp.sonitalk.utils.SignalGenerator;
+import at.ac.fhstp.sonitalk.utils.SignalType;
+
+
+/**
+ * Encodes the forwarded byte array and uses a SignalGenerator to get the raw
+ * audio data. This audio data is then concatenated to have the right
+ * shape for creating an audio track and sending it.
+ * On Android, get an encoder from SoniTalkContext. The encoder does not need any permission, the
+ * constructors are public so that messages can also be generated without Android (e.g. on a server).
+ */
+public class SoniTalkEncoder {
+    private int Fs;
+    private SoniTalkConfig config;
+    private SignalGenerator signalGen;
+
+    private CRC crc;
+
+    /**
+     * Default constructor using a 44100Hz sample rate (works on all devices)
+     * @param config
+     */
+    public SoniTalkEncoder(SoniTalkConfig config){
+        this(44100, config);
+    }
+
+    public SoniTalkEncoder(int sampleRate, SoniTalkConfig config){
+        this.Fs = sampleRate;
+        this.config = config;
+
+        int f0 = config.getFrequencyZero();
+        if ((f0*2) > Fs) {
+            throw new IllegalArgumentException("Sample rate cannot be lower than two times the frequency zero. Please try a sample rate of 44100Hz and f0 under 22050Hz");
+        }
+
+        signalGen = new SignalGenerator(Fs, config);
+        //storageUtils = new StorageUtils();
+
+        crc = new CRC();
+    }
+
+    /**
+     * Encodes a byte array of data using the configuration specified in the constructor.
+     * The SoniTalkMessage returned can then be send via a SoniTalkSender object.
+     * @param data to be encoded
+     * @return a SoniTalkMessage containing the encoded data to be sent via a SoniTalkSender
+     */
+    public SoniTalkMessage generateMessage(byte[] data) {
+        SoniTalkMessage message = new SoniTalkMessage(data);
+        short[] generatedSignal = encode(data);
+        message.setRawAudio(generatedSignal);
+
+        //setDecoderState(STATE_GENERATED);
+
+        return message;
+    }
+
+    /**
+     * Takes a byte array and encodes it to a bit sequence. Adds CRC bit sequence for error checking.
+     * Splits the bit sequence into the carriers of each block and creates a short array with signal
+     * data for the blocks and their inverted version.
+     * @param data to be encoded
+     * @return a short array with signal data
+     */
+    private short[] encode(byte[] data){
+        if (!EncoderUtils.isAllowedByteArraySize(data, config)) {
+            throw new IllegalArgumentException("Entered Message is too long");
+        }
+        boolean doubleInverted = true;
+
+        int nMessageBlocks = config.getnMessageBlocks();
+        int numberOfFrequencies = config.getnFrequencies();
+        int maxBytes = nMessageBlocks*(numberOfFrequencies/8) - (ConfigConstants.GENERATOR_POLYNOM.length-1) / 8;
+
+        byte[] frame = createFrameWithParity(data, numberOfFrequencies, maxBytes);
+        BitSet[] carriers = createCarriers(frame, numberOfFrequencies);
+        BitSet[] carriersInverted = new BitSet[carriers.length];
+        for (int k = 0; k < carriers.length; k++) {
+            carriersInverted[k] = (BitSet) carriers[k].clone();
+            carriersInverted[k].flip(0, numberOfFrequencies);
+        }
+
+        return generateSignalData(carriers, carriersInverted, numberOfFrequencies, doubleInverted);
+    }
+
+    /**
+     * Controls the number of message blocks depending on the message length and the number of frequencies used.
+     * If there are gaps at the end, filling characters are added. Adds error detection bit sequences.
+     * @param data The message after which the error detection code is generated.
+     * @param numberOfFrequencies How many frequencies the message should use
+     * @param maxBytes the maximum of bytes the message should consist of
+     * @return the message, filling characters and error detection bytes
+     */
+    private byte[] createFrameWithParity(byte[] data, int numberOfFrequencies, int maxBytes){
+        int parityLength = crc.getParityLength();
+        int nBytes = data.length;
+        while ((nBytes * 8 + parityLength) % numberOfFrequencies != 0 || nBytes < maxBytes) {
+            nBytes++;
+        }
+
+        byte[] frame = new byte[nBytes + parityLength / 8];
+        System.arraycopy(data, 0, frame, 0, data.length);
+        Arrays.fill(frame, data.length, nBytes, ConfigConstants.CONTROL_FILLING_BYTE);
+        byte[] parity = crc.getParityBytes(frame, nBytes);
+        System.arraycopy(parity, 0, frame, nBytes, parity.length);
+        return frame;
+    }
+
+    /**
+     * Splits the bits of the frame into blocks, one bit per frequency.
+     * @param frame bits of the message, most significant bit first
+     * @param numberOfFrequencies number of frequencies
+     * @return the carriers of every block, bit i set if the frequency i is played
+     */
+    private BitSet[] createCarriers(byte[] frame, int numberOfFrequencies){
+        int nBits = frame.length * 8;
+        BitSet[] carriers = new BitSet[(nBits + numberOfFrequencies - 1) / numberOfFrequencies];
+        for (int k = 0; k < carriers.length; k++) {
+            carriers[k] = new BitSet(numberOfFrequencies);
+        }
+        for (int bit = 0; bit < nBits; bit++) {
+            if (((frame[bit / 8] >> (7 - bit % 8)) & 1) == 1) {
+                carriers[bit / numberOfFrequencies].set(bit % numberOfFrequencies);
+            }
+        }
+        return carriers;
+    }
+
+    /**
+     * Creates the audio data of the start-block, end-block and pause, and of every message block and
+     * its inverted version, then concatenates them in the right order.
+     * @param carriers carriers of the message blocks
+     * @param carriersInverted carriers of the inverted message blocks
+     * @param numberOfFrequencies number of frequencies
+     * @param doubleInverted boolean if inverting is used
+     * @return short array with whole encoded message
+     */
+    private short[] generateSignalData(BitSet[] carriers, BitSet[] carriersInverted, int numberOfFrequencies, boolean doubleInverted){
+        short[][] frequencyZeroTrack = new short[carriers.length][];
+        short[][] frequencyZeroTrackInverted = new short[carriers.length][];
+
+        // --- Create start and end blocks signals ---
+        BitSet protoCarriersStart = new BitSet(numberOfFrequencies);
+        protoCarriersStart.set(numberOfFrequencies/2, numberOfFrequencies);
+        short[] protoTrackStart = signalGen.getSignalBlock(SignalType.PLAYCONFIG, protoCarriersStart);
+        BitSet protoCarriersEnd = new BitSet(numberOfFrequencies);
+        protoCarriersEnd.set(0, numberOfFrequencies/2);
+        short[] protoTrackEnd = signalGen.getSignalBlock(SignalType.PLAYCONFIG, protoCarriersEnd);
+        // --- ----------------------------------- ---
+        int pauseduration = config.getPauseperiod();
+        short[] pauseTrack = null;
+        if(pauseduration != 0) {
+            // --- Create the pause signal to be reused---
+            pauseTrack = signalGen.getSignalBlock(SignalType.PAUSECONFIG, new BitSet(numberOfFrequencies));
+            // --- ----------------------------------- ---
+        }
+
+        // --- Create the message block signals ---
+        for(int k=0;k<carriers.length;k++) {
+            frequencyZeroTrack[k] = signalGen.getSignalBlock(SignalType.PLAYCONFIG, carriers[k]);
+            frequencyZeroTrackInverted[k] = signalGen.getSignalBlock(SignalType.PLAYCONFIG, carriersInverted[k]);
+        }
+        // --- ----------------------------------- ---
+
+        return concatenateSignalBlocks(frequencyZeroTrack, frequencyZeroTrackInverted, protoTrackStart, protoTrackEnd, pauseTrack, doubleInverted);
+    }
+
+    /**
+     * Takes all blocks and concatenates them in the right order.
+     * @param frequencyZeroTrack normal message array with audio data
+     * @param frequencyZeroTrackInverted inverted message array with audio data
+     * @param protoTrackStart start block of the message
+     * @param protoTrackEnd end block of the message
+     * @param pauseTrack pause block, null if there is no pause between blocks
+     * @param doubleInverted boolean if inverting is used
+     * @return concatenated message short array
+     */
+    private short[] concatenateSignalBlocks(short[][] frequencyZeroTrack, short[][] frequencyZeroTrackInverted, short[] protoTrackStart, short[] protoTrackEnd, short[] pauseTrack, boolean doubleInverted){
+        if (pauseTrack == null) {
+            pauseTrack = new short[0];
+        }
+        short[][] blocks = new short[3 + frequencyZeroTrack.length * 4][];
+        int nBlocks = 0;
+        blocks[nBlocks++] = protoTrackStart;
+        blocks[nBlocks++] = pauseTrack;
+        for(int i=0; i<frequencyZeroTrack.length; i++){
+            blocks[nBlocks++] = frequencyZeroTrack[i];
+            if(doubleInverted) {
+                blocks[nBlocks++] = pauseTrack;
+                blocks[nBlocks++] = frequencyZeroTrackInverted[i];
+            }
+            blocks[nBlocks++] = pauseTrack;
+        }
+        blocks[nBlocks++] = protoTrackEnd;
+
+        int length = 0;
+        for (int i = 0; i < nBlocks; i++) {
+            length += blocks[i].length;
+        }
+        short[] encodedMessage = new short[length];
+        int position = 0;
+        for (int i = 0; i < nBlocks; i++) {
+            System.arraycopy(blocks[i], 0, encodedMessage, position, blocks[i].length);
+            position += blocks[i].length;
+        }
+
+        return encodedMessage;
+    }
+}
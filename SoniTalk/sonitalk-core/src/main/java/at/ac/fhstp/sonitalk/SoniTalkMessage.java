@@ -43,6 +43,11 @@ public class SoniTalkMessage {
      * Received historyBuffer or generated buffer to be sent
      */
     private short[] rawAudio;
+    /**
+     * Position of the first sample of the detected message (start of the analyzed history buffer),
+     * counted in samples since the decoding started. 0 for messages to be sent.
+     */
+    private long sampleOffset;
 
     // Add optional spectrum array ?
     /*package-private*/SoniTalkMessage(byte[] message) {
@@ -90,6 +95,19 @@ public class SoniTalkMessage {
         this.decodingTimeNanosecond = decodingTimeNanosecond;
     }
 
+    /**
+     * Returns the position of the received message in the decoded audio, useful to locate it in a
+     * recording.
+     * @return the number of samples between the start of the decoding and the start of the message
+     */
+    public long getSampleOffset() {
+        return sampleOffset;
+    }
+
+    /*package-private*/void setSampleOffset(long sampleOffset) {
+        this.sampleOffset = sampleOffset;
+    }
+
     /**
      * returns the raw audio signal (after generation for sending or after receiving)
      * PLEASE DO NOT MAKE PUBLIC
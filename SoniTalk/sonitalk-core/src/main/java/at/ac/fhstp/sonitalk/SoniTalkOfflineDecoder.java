@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import at.ac.fhstp.sonitalk.utils.WavHeader;
+
+/**
+ * Decodes messages from recorded audio instead of the microphone, e.g. to scan long field
+ * recordings for missed messages. Uses the same detection and demodulation as the SoniTalkDecoder
+ * and does not depend on any Android API, it can run on a plain JVM.
+ *
+ * Like the SoniTalkDecoder in silent mode, every detection is returned: a message is usually
+ * detected on several consecutive analysis steps, with the same content and close sample offsets.
+ * Each call to a decode function processes an independent recording, sample offsets start at 0.
+ */
+public class SoniTalkOfflineDecoder {
+    private final DecodingPipeline pipeline;
+
+    /**
+     * Creates an offline decoder with the default parameters of the SoniTalkDecoder.
+     * @param sampleRate sample rate of the recordings to decode
+     * @param config configuration used to send the messages
+     */
+    public SoniTalkOfflineDecoder(int sampleRate, SoniTalkConfig config) {
+        this(sampleRate, config, 8, 50, 8, 2.0, 2.0);
+    }
+
+    /**
+     * Creates an offline decoder, the parameters have the same meaning as for the SoniTalkDecoder.
+     * @param sampleRate sample rate of the recordings to decode
+     * @param config configuration used to send the messages
+     * @param stepFactor number of analysis steps per analysis window
+     * @param frequencyOffsetForSpectrogram margin (in Hz) of the analyzed band around the carriers
+     * @param bandPassFilterOrder order of the band-pass filters used to detect start and end blocks
+     * @param startFactor how much more energy the upper band needs to detect a start block
+     * @param endFactor how much more energy the lower band needs to detect an end block
+     */
+    public SoniTalkOfflineDecoder(int sampleRate, SoniTalkConfig config, int stepFactor, int frequencyOffsetForSpectrogram, int bandPassFilterOrder, double startFactor, double endFactor) {
+        this(sampleRate, config, stepFactor, frequencyOffsetForSpectrogram, bandPassFilterOrder, startFactor, endFactor, 1);
+    }
+
+    /**
+     * Creates an offline decoder analyzing the band of the carriers at a reduced sample rate: it
+     * is moved down and decimated first (see HeterodyneDecimator), which divides the cost of the
+     * detection and the demodulation by about the decimation factor. The raw audio of the
+     * detected messages is then the decimated signal.
+     * @param sampleRate sample rate of the recordings to decode
+     * @param config configuration used to send the messages
+     * @param stepFactor number of analysis steps per analysis window
+     * @param frequencyOffsetForSpectrogram margin (in Hz) of the analyzed band around the carriers
+     * @param bandPassFilterOrder order of the band-pass filters used to detect start and end blocks
+     * @param startFactor how much more energy the upper band needs to detect a start block
+     * @param endFactor how much more energy the lower band needs to detect an end block
+     * @param decimationFactor 1 to analyze the audio at its sample rate, otherwise a divisor of the
+     *                         sample rate, at most HeterodyneDecimator.getMaxDecimationFactor()
+     */
+    public SoniTalkOfflineDecoder(int sampleRate, SoniTalkConfig config, int stepFactor, int frequencyOffsetForSpectrogram, int bandPassFilterOrder, double startFactor, double endFactor, int decimationFactor) {
+        pipeline = new DecodingPipeline(sampleRate, config, stepFactor, frequencyOffsetForSpectrogram, bandPassFilterOrder, startFactor, endFactor, decimationFactor);
+    }
+
+    /**
+     * Decodes 16 bits PCM samples.
+     * @param samples mono audio at the sample rate of this decoder
+     * @return the detected messages, in the order of the recording (check their CRC)
+     */
+    public synchronized List<SoniTalkMessage> decode(short[] samples) {
+        return decode(ShortBuffer.wrap(samples));
+    }
+
+    /**
+     * Decodes 16 bits PCM samples, from the current position to the limit of the buffer. The last
+     * samples are ignored if they do not fill a complete analysis step.
+     * @param samples mono audio at the sample rate of this decoder, its position is moved
+     * @return the detected messages, in the order of the recording (check their CRC)
+     */
+    public synchronized List<SoniTalkMessage> decode(ShortBuffer samples) {
+        pipeline.reset();
+        List<SoniTalkMessage> messages = new ArrayList<>();
+        int analysisWinStep = pipeline.getAnalysisWinStep();
+        short[] stepBuffer = new short[analysisWinStep];
+        float[] currentData = new float[analysisWinStep];
+        while (samples.remaining() >= analysisWinStep) {
+            samples.get(stepBuffer);
+            DecodingPipeline.convertShortToFloat(stepBuffer, currentData, analysisWinStep);
+            addStep(currentData, messages);
+        }
+        return messages;
+    }
+
+    /**
+     * Decodes a stream of raw 16 bits little-endian mono PCM samples (no header), until its end.
+     * The stream is not closed.
+     * @param pcmStream audio at the sample rate of this decoder
+     * @return the detected messages, in the order of the recording (check their CRC)
+     * @throws IOException if reading the stream fails
+     */
+    public synchronized List<SoniTalkMessage> decode(InputStream pcmStream) throws IOException {
+        return decodePcm(pcmStream, 1, -1);
+    }
+
+    /**
+     * Decodes a 16 bits PCM WAV file. If it contains several channels, only the first one is decoded.
+     * @param wavFile recording at the sample rate of this decoder
+     * @return the detected messages, in the order of the recording (check their CRC)
+     * @throws IOException if the file cannot be read or is not a 16 bits PCM WAV file
+     * @throws IllegalArgumentException if the sample rate of the file differs from the one of this decoder
+     */
+    public synchronized List<SoniTalkMessage> decodeWav(File wavFile) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(wavFile))) {
+            return decodeWav(in);
+        }
+    }
+
+    /**
+     * Decodes a stream containing a 16 bits PCM WAV file. If it contains several channels, only
+     * the first one is decoded. The stream is not closed.
+     * @param wavStream stream positioned at the beginning of the WAV header
+     * @return the detected messages, in the order of the recording (check their CRC)
+     * @throws IOException if reading the stream fails or it is not a 16 bits PCM WAV file
+     * @throws IllegalArgumentException if the sample rate of the file differs from the one of this decoder
+     */
+    public synchronized List<SoniTalkMessage> decodeWav(InputStream wavStream) throws IOException {
+        WavHeader header = WavHeader.read(wavStream);
+        if (header.getSampleRate() != pipeline.getSampleRate()) {
+            throw new IllegalArgumentException("The recording was made at " + header.getSampleRate() + "Hz, this decoder expects " + pipeline.getSampleRate() + "Hz.");
+        }
+        long dataSize = header.getDataSize();
+        if (dataSize == 0 || dataSize == 0xFFFFFFFFL) {
+            dataSize = -1; // Size not written by the recorder, read until the end
+        }
+        return decodePcm(wavStream, header.getnChannels(), dataSize);
+    }
+
+    /**
+     * Reads interleaved 16 bits little-endian samples and decodes the first channel.
+     * @param in stream positioned at the first sample
+     * @param nChannels number of interleaved channels
+     * @param nBytes number of bytes to read, or -1 to read until the end of the stream
+     */
+    private List<SoniTalkMessage> decodePcm(InputStream in, int nChannels, long nBytes) throws IOException {
+        pipeline.reset();
+        List<SoniTalkMessage> messages = new ArrayList<>();
+        int analysisWinStep = pipeline.getAnalysisWinStep();
+        int frameSize = 2 * nChannels;
+        byte[] bytes = new byte[analysisWinStep * frameSize];
+        float[] currentData = new float[analysisWinStep];
+        long bytesLeft = nBytes < 0 ? Long.MAX_VALUE : nBytes;
+        // The last samples are ignored if they do not fill a complete analysis step
+        while (bytesLeft >= bytes.length && readFully(in, bytes) == bytes.length) {
+            bytesLeft -= bytes.length;
+            for (int i = 0; i < analysisWinStep; i++) {
+                short sample = (short) ((bytes[i*frameSize] & 0xFF) | (bytes[i*frameSize + 1] << 8));
+                currentData[i] = ((float) sample) / Short.MAX_VALUE;
+            }
+            addStep(currentData, messages);
+        }
+        return messages;
+    }
+
+    private void addStep(float[] currentData, List<SoniTalkMessage> messages) {
+        SoniTalkMessage message = pipeline.addSamples(currentData, System.nanoTime());
+        if (message != null) {
+            messages.add(message);
+        }
+    }
+
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int nRead = 0;
+        while (nRead < buffer.length) {
+            int n = in.read(buffer, nRead, buffer.length - nRead);
+            if (n < 0) {
+                break;
+            }
+            nRead += n;
+        }
+        return nRead;
+    }
+
+    /**
+     * Selects how start and end blocks are detected.
+     * @param detectionMode DecoderModes.DETECTION_MODE_HILBERT (default) or DecoderModes.DETECTION_MODE_ENVELOPE
+     */
+    public synchronized void setDetectionMode(@DecoderModes.DetectionMode int detectionMode) {
+        pipeline.setDetectionMode(detectionMode);
+    }
+
+    /**
+     * Returns the current detection mode.
+     * @return DecoderModes.DETECTION_MODE_HILBERT or DecoderModes.DETECTION_MODE_ENVELOPE
+     */
+    @DecoderModes.DetectionMode
+    public synchronized int getDetectionMode() {
+        return pipeline.getDetectionMode();
+    }
+
+    /**
+     * Selects how the bits of a detected message are decided.
+     * @param demodulationMode DecoderModes.DEMODULATION_MODE_SPECTROGRAM (default), DecoderModes.DEMODULATION_MODE_GOERTZEL or DecoderModes.DEMODULATION_MODE_ROLLING
+     */
+    public synchronized void setDemodulationMode(@DecoderModes.DemodulationMode int demodulationMode) {
+        pipeline.setDemodulationMode(demodulationMode);
+    }
+
+    /**
+     * Returns the current demodulation mode.
+     * @return DecoderModes.DEMODULATION_MODE_SPECTROGRAM, DecoderModes.DEMODULATION_MODE_GOERTZEL or DecoderModes.DEMODULATION_MODE_ROLLING
+     */
+    @DecoderModes.DemodulationMode
+    public synchronized int getDemodulationMode() {
+        return pipeline.getDemodulationMode();
+    }
+
+    /**
+     * Selects the length of the FFT of each spectrogram column.
+     * @param spectrogramSizing DecoderModes.SPECTROGRAM_SIZING_BIT_PERIOD (default) or DecoderModes.SPECTROGRAM_SIZING_POWER_OF_TWO
+     */
+    public synchronized void setSpectrogramSizing(@DecoderModes.SpectrogramSizing int spectrogramSizing) {
+        pipeline.setSpectrogramSizing(spectrogramSizing);
+    }
+
+    /**
+     * Returns the current spectrogram sizing.
+     * @return DecoderModes.SPECTROGRAM_SIZING_BIT_PERIOD or DecoderModes.SPECTROGRAM_SIZING_POWER_OF_TWO
+     */
+    @DecoderModes.SpectrogramSizing
+    public synchronized int getSpectrogramSizing() {
+        return pipeline.getSpectrogramSizing();
+    }
+
+    /**
+     * Selects how the magnitudes of a carrier and its neighbors (in time and frequency) are
+     * aggregated before its bit is decided.
+     * @param aggFcn "mean", "max", "median" (default) or "trimmedmean"
+     */
+    public synchronized void setAggregationFunction(String aggFcn) {
+        pipeline.setAggregationFunction(aggFcn);
+    }
+
+    /**
+     * Returns the current aggregation function.
+     * @return "mean", "max", "median" or "trimmedmean"
+     */
+    public synchronized String getAggregationFunction() {
+        return pipeline.getAggregationFunction();
+    }
+
+    /**
+     * Returns true if detected messages will be returned with the original audio.
+     * @return true if detected messages will be returned with the original audio
+     */
+    public synchronized boolean returnsRawAudio() {
+        return pipeline.returnsRawAudio();
+    }
+
+    /**
+     * Decides if detected messages will be returned with the original audio or not. Keep it
+     * disabled when decoding long recordings, every detection would hold a copy of the history buffer.
+     * @param returnRawAudio
+     */
+    public synchronized void setReturnRawAudio(boolean returnRawAudio) {
+        pipeline.setReturnRawAudio(returnRawAudio);
+    }
+
+    /**
+     * Enables a first detection stage measuring the energy in the band of the carriers. The
+     * detection of start and end blocks only runs when this energy rises above the noise floor,
+     * which is learnt from the beginning of every recording.
+     * @param enabled true to enable the energy gate (disabled by default)
+     */
+    public synchronized void setEnergyGateEnabled(boolean enabled) {
+        pipeline.setEnergyGateEnabled(enabled);
+    }
+
+    public synchronized boolean isEnergyGateEnabled() {
+        return pipeline.isEnergyGateEnabled();
+    }
+
+    /**
+     * Returns how much of the last decoded recording was not searched for messages because the
+     * energy gate was closed.
+     * @return duration of the gated audio, in milliseconds
+     */
+    public synchronized long getGatedTimeMillis() {
+        return pipeline.getGatedSampleCount() * 1000 / pipeline.getSampleRate();
+    }
+
+    /**
+     * Returns a snapshot of the statistics of all the recordings decoded so far. There is no
+     * capture, short reads and overruns are always 0.
+     * @return the statistics since the creation of the decoder
+     */
+    public DecoderStats getStats() {
+        return pipeline.getStats().snapshot(0, 0, 0);
+    }
+
+    /**
+     * Returns true if messages decoded with a correct CRC are skipped.
+     * @return true if the detection pauses after each decoded message
+     */
+    public synchronized boolean skipsDecodedMessages() {
+        return pipeline.skipsDecodedMessages();
+    }
+
+    /**
+     * Decides if the detection pauses after a message was decoded with a correct CRC, until the
+     * message has left the history. Otherwise the same message is usually returned several times,
+     * with slightly different offsets.
+     * @param skipDecodedMessages true to skip decoded messages (false by default)
+     */
+    public synchronized void setSkipDecodedMessages(boolean skipDecodedMessages) {
+        pipeline.setSkipDecodedMessages(skipDecodedMessages);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import java.util.Random;
+
+/**
+ * AudioSource generating the same encoded message over and over, separated by pauses, with white
+ * noise, like a recording of a message sent repeatedly. Useful to test the decoding (e.g. soak or
+ * throughput tests) without a device. By default the audio is generated as fast as the decoder
+ * analyzes it and never ends.
+ */
+public class SyntheticAudioSource implements AudioSource {
+    private final int sampleRate;
+    private final float[] period; // Pause followed by the message
+    private final float noiseLevel;
+    private final Random random;
+
+    private boolean realTime = false;
+    private long maxSamples = Long.MAX_VALUE;
+    private long position = 0;
+    private long startNanos;
+    private long startPosition;
+
+    /**
+     * @param sampleRate sample rate of the audio
+     * @param config configuration used to encode the message
+     * @param data content of the message
+     * @param pauseSamples number of samples of noise before every message
+     * @param messageLevel amplitude of the message, relative to the encoder output (e.g. 0.1)
+     * @param noiseLevel standard deviation of the noise, relative to the full scale (e.g. 0.002)
+     * @param seed seed of the noise
+     */
+    public SyntheticAudioSource(int sampleRate, SoniTalkConfig config, byte[] data, int pauseSamples, double messageLevel, double noiseLevel, long seed) {
+        if (pauseSamples < 0) {
+            throw new IllegalArgumentException("The pause cannot be negative.");
+        }
+        this.sampleRate = sampleRate;
+        this.noiseLevel = (float) noiseLevel;
+        this.random = new Random(seed);
+
+        short[] message = new SoniTalkEncoder(sampleRate, config).generateMessage(data).getRawAudio();
+        period = new float[pauseSamples + message.length];
+        for (int i = 0; i < message.length; i++) {
+            period[pauseSamples + i] = (float) (messageLevel * message[i] / Short.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Paces the generation like a microphone: read() blocks until the audio would have been
+     * recorded. Must be called before the decoding starts.
+     * @param realTime true to generate the audio in real time (false by default)
+     */
+    public void setRealTime(boolean realTime) {
+        this.realTime = realTime;
+    }
+
+    /**
+     * Ends the audio after maxSamples samples. Must be called before the decoding starts.
+     * @param maxSamples number of samples generated before END_OF_STREAM
+     */
+    public void setMaxSamples(long maxSamples) {
+        this.maxSamples = maxSamples;
+    }
+
+    /**
+     * Number of samples of a pause and a message.
+     */
+    public int getPeriodLength() {
+        return period.length;
+    }
+
+    /**
+     * Returns how many messages were completely generated so far, only call it from the thread reading the source.
+     * @return number of complete messages read
+     */
+    public long getMessageCount() {
+        return position / period.length;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public boolean isRealTime() {
+        return realTime;
+    }
+
+    @Override
+    public boolean start() {
+        startNanos = System.nanoTime();
+        startPosition = position;
+        return true;
+    }
+
+    @Override
+    public int read(short[] buffer, int offset, int length) {
+        if (position >= maxSamples) {
+            return END_OF_STREAM;
+        }
+        int nRead = (int) Math.min(length, maxSamples - position);
+        if (realTime && !awaitRecording(position + nRead)) {
+            return 0;
+        }
+        int index = (int) (position % period.length);
+        for (int i = 0; i < nRead; i++) {
+            float value = period[index] + noiseLevel * (float) random.nextGaussian();
+            buffer[offset + i] = (short) (Math.max(-1f, Math.min(1f, value)) * Short.MAX_VALUE);
+            if (++index == period.length) {
+                index = 0;
+            }
+        }
+        position += nRead;
+        return nRead;
+    }
+
+    /**
+     * Sleeps until the sample before endPosition would have been recorded.
+     * @return false if the thread was interrupted
+     */
+    private boolean awaitRecording(long endPosition) {
+        long recordedNanos = (endPosition - startPosition) * 1000000000L / sampleRate;
+        long remainingMillis = (startNanos + recordedNanos - System.nanoTime()) / 1000000;
+        if (remainingMillis > 0) {
+            try {
+                Thread.sleep(remainingMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();  // set interrupt flag
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public void release() {
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+/**
+ * Aggregates the values read around a carrier (the cell of the carrier and its neighbors) into
+ * the single value compared between the normal and the inverted block. Implementations do not
+ * allocate memory and are stateless, see Aggregators for the available ones.
+ */
+public interface Aggregator {
+
+    /**
+     * @param values scratch buffer holding the values, it can be reordered
+     * @param length number of values in the buffer, at least 1
+     * @return the aggregated value
+     */
+    float aggregate(float[] values, int length);
+}
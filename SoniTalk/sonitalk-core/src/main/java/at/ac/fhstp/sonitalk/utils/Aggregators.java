@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+import java.util.Arrays;
+
+/**
+ * The aggregation functions of the demodulators, resolved once from their name when a demodulator
+ * is created instead of on every call.
+ */
+public final class Aggregators {
+    private static final int MAX_INSERTION_SORT_LENGTH = 32;
+
+    /**
+     * Mean of the values, summed in double precision.
+     */
+    public static final Aggregator MEAN = new Aggregator() {
+        @Override
+        public float aggregate(float[] values, int length) {
+            double sum = 0;
+            for (int i = 0; i < length; i++) {
+                sum += values[i];
+            }
+            return (float) (sum / length);
+        }
+    };
+
+    /**
+     * Largest value.
+     */
+    public static final Aggregator MAX = new Aggregator() {
+        @Override
+        public float aggregate(float[] values, int length) {
+            float max = values[0];
+            for (int i = 1; i < length; i++) {
+                if (values[i] > max) {
+                    max = values[i];
+                }
+            }
+            return max;
+        }
+    };
+
+    /**
+     * Median of the values (mean of the two middle values for an even length). Nine values (a
+     * carrier and its 8 neighbors) go through a fixed selection network of 19 comparisons,
+     * other lengths are sorted in place.
+     */
+    public static final Aggregator MEDIAN = new Aggregator() {
+        @Override
+        public float aggregate(float[] values, int length) {
+            if (length == 9) {
+                return medianOf9(values);
+            }
+            sort(values, length);
+            int middle = length / 2;
+            if (length % 2 == 1) {
+                return values[middle];
+            }
+            return (values[middle - 1] + values[middle]) / 2.0f;
+        }
+    };
+
+    /**
+     * Mean of the values without the lowest and the highest quarter, more robust than the mean
+     * to a noisy neighbor and smoother than the median.
+     */
+    public static final Aggregator TRIMMED_MEAN = new Aggregator() {
+        @Override
+        public float aggregate(float[] values, int length) {
+            sort(values, length);
+            int trimmed = length / 4;
+            double sum = 0;
+            for (int i = trimmed; i < length - trimmed; i++) {
+                sum += values[i];
+            }
+            return (float) (sum / (length - 2 * trimmed));
+        }
+    };
+
+    private Aggregators() {
+    }
+
+    /**
+     * @param name "mean", "max", "median" or "trimmedmean"
+     * @return the corresponding aggregator
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static Aggregator forName(String name) {
+        switch (name) {
+            case "mean":
+                return MEAN;
+            case "max":
+                return MAX;
+            case "median":
+                return MEDIAN;
+            case "trimmedmean":
+                return TRIMMED_MEAN;
+            default:
+                throw new IllegalArgumentException("Unknown aggregation function: " + name);
+        }
+    }
+
+    /**
+     * Insertion sort, faster than Arrays.sort() for the few values of a neighborhood.
+     */
+    private static void sort(float[] values, int length) {
+        if (length > MAX_INSERTION_SORT_LENGTH) {
+            Arrays.sort(values, 0, length);
+            return;
+        }
+        for (int i = 1; i < length; i++) {
+            float value = values[i];
+            int j = i - 1;
+            for (; j >= 0 && values[j] > value; j--) {
+                values[j + 1] = values[j];
+            }
+            values[j + 1] = value;
+        }
+    }
+
+    /**
+     * Median of the first 9 values with the selection network of A. Paeth (Graphics Gems), the
+     * values are only read.
+     */
+    private static float medianOf9(float[] values) {
+        float p0 = values[0], p1 = values[1], p2 = values[2], p3 = values[3], p4 = values[4];
+        float p5 = values[5], p6 = values[6], p7 = values[7], p8 = values[8];
+        float t;
+        // Each block swaps the pair so that the first value is the smaller one
+        if (p1 > p2) { t = p1; p1 = p2; p2 = t; }
+        if (p4 > p5) { t = p4; p4 = p5; p5 = t; }
+        if (p7 > p8) { t = p7; p7 = p8; p8 = t; }
+        if (p0 > p1) { t = p0; p0 = p1; p1 = t; }
+        if (p3 > p4) { t = p3; p3 = p4; p4 = t; }
+        if (p6 > p7) { t = p6; p6 = p7; p7 = t; }
+        if (p1 > p2) { t = p1; p1 = p2; p2 = t; }
+        if (p4 > p5) { t = p4; p4 = p5; p5 = t; }
+        if (p7 > p8) { t = p7; p7 = p8; p8 = t; }
+        // Rows are sorted: the largest of the minimums, the median of the medians and the smallest of the maximums remain
+        if (p0 > p3) { p3 = p0; }
+        if (p5 > p8) { p5 = p8; }
+        if (p4 > p7) { t = p4; p4 = p7; p7 = t; }
+        if (p3 > p6) { p6 = p3; }
+        if (p1 > p4) { p4 = p1; }
+        if (p2 > p5) { p2 = p5; }
+        if (p4 > p7) { p4 = p7; }
+        if (p4 > p2) { t = p4; p4 = p2; p2 = t; }
+        if (p6 > p4) { p4 = p6; }
+        if (p4 > p2) { p4 = p2; }
+        return p4;
+    }
+}
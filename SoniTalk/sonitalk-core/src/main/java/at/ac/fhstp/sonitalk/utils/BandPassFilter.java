@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+import uk.me.berndporr.iirj.Biquad;
+import uk.me.berndporr.iirj.Butterworth;
+
+/**
+ * Butterworth band-pass filter running in single precision. The filter is designed by iirj (in
+ * double precision) and its second order sections are copied and run as a cascade of float
+ * biquads in transposed direct form II, which keeps the states small even when the poles are
+ * close to the unit circle.
+ * This class is NOT thread safe.
+ */
+public class BandPassFilter {
+    private final int nSections;
+    private final float[] coefficients; // b0, b1, b2, a1, a2 of each section, normalized by a0
+    private final float[] states; // Two states per section
+
+    /**
+     * @param order order of the Butterworth prototype
+     * @param sampleRate sample rate of the filtered audio
+     * @param centerFrequency center frequency of the pass band, in Hz
+     * @param frequencyWidth width of the pass band, in Hz
+     */
+    public BandPassFilter(int order, double sampleRate, double centerFrequency, double frequencyWidth) {
+        Butterworth butterworth = new Butterworth();
+        butterworth.bandPass(order, sampleRate, centerFrequency, frequencyWidth);
+        nSections = butterworth.getNumBiquads();
+        coefficients = new float[nSections * 5];
+        states = new float[nSections * 2];
+        for (int s = 0; s < nSections; s++) {
+            Biquad biquad = butterworth.getBiquad(s);
+            double a0 = biquad.getA0();
+            coefficients[5*s] = (float) (biquad.getB0() / a0);
+            coefficients[5*s+1] = (float) (biquad.getB1() / a0);
+            coefficients[5*s+2] = (float) (biquad.getB2() / a0);
+            coefficients[5*s+3] = (float) (biquad.getA1() / a0);
+            coefficients[5*s+4] = (float) (biquad.getA2() / a0);
+        }
+    }
+
+    /**
+     * Filters one sample.
+     * @param in input sample
+     * @return the output of the filter
+     */
+    public float filter(float in) {
+        float out = in;
+        for (int s = 0; s < nSections; s++) {
+            int c = 5 * s;
+            float x = out;
+            out = coefficients[c] * x + states[2*s];
+            states[2*s] = coefficients[c+1] * x - coefficients[c+3] * out + states[2*s+1];
+            states[2*s+1] = coefficients[c+2] * x - coefficients[c+4] * out;
+        }
+        return out;
+    }
+
+    /**
+     * Clears the state of the filter, the next sample is filtered as if it was the first one.
+     */
+    public void reset() {
+        for (int i = 0; i < states.length; i++) {
+            states[i] = 0;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+/**
+ * Detects the start and end blocks of a message at the edges of the history buffer. Start blocks
+ * use the upper half of the frequencies and end blocks the lower half.
+ */
+public interface BlockDetector {
+
+    /**
+     * Called every time new samples were added to the history buffer, also before it is full.
+     * @param samples array containing the new samples
+     * @param length number of new samples in the array
+     */
+    void onSamplesAdded(float[] samples, int length);
+
+    /**
+     * Checks if the first analysis window of the history buffer contains a start block.
+     * @param historyBuffer buffer to analyze
+     * @return true if a start block was detected
+     */
+    boolean isStartBlock(CircularArray historyBuffer);
+
+    /**
+     * Checks if the last analysis window of the history buffer contains an end block.
+     * @param historyBuffer buffer to analyze
+     * @return true if an end block was detected
+     */
+    boolean isEndBlock(CircularArray historyBuffer);
+}
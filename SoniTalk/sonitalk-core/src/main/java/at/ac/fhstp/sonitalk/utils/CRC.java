@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+/**
+ * The CRC class adds and also checks the parity bits.
+ * The remainder of the division by the generator polynom is computed one byte at a time with
+ * a precomputed table: the remainder of every byte value shifted by the degree of the polynom.
+ * Beside that it has a helper function for counting occurrences.
+ * Instances of this class are immutable and thread safe.
+ */
+public class CRC {
+    private static final int MAX_PARITY_LENGTH = 64;
+
+    private final byte[] generatorPolynom;
+    private final int parityLength;
+    private final long parityMask;
+    private final long[] table = new long[256];
+
+    public CRC(){
+        this(ConfigConstants.GENERATOR_POLYNOM);
+    }
+
+    /**
+     * @param generatorPolynom coefficients of the generator polynom, highest degree first. The
+     *                         degree must be a multiple of eight, and at most 64.
+     */
+    public CRC(byte[] generatorPolynom){
+        if((generatorPolynom.length-1)%8!=0){
+            throw new IllegalArgumentException("The CRC generator polynom length minus one must be dividable by eight. Please try the default CRC");
+        }
+        if(generatorPolynom.length-1 > MAX_PARITY_LENGTH){
+            throw new IllegalArgumentException("The CRC generator polynom degree cannot be higher than " + MAX_PARITY_LENGTH);
+        }
+        this.generatorPolynom = generatorPolynom.clone();
+        this.parityLength = generatorPolynom.length - 1;
+        this.parityMask = parityLength == MAX_PARITY_LENGTH ? -1L : (1L << parityLength) - 1;
+
+        if (parityLength > 0) {
+            // The highest coefficient is implicit in the table
+            long polynom = 0;
+            for (int i = 1; i < generatorPolynom.length; i++) {
+                polynom = (polynom << 1) | (generatorPolynom[i] & 1);
+            }
+            long topBit = 1L << (parityLength - 1);
+            for (int value = 0; value < 256; value++) {
+                long remainder = (long) value << (parityLength - 8);
+                for (int bit = 0; bit < 8; bit++) {
+                    remainder = (remainder & topBit) != 0 ? (remainder << 1) ^ polynom : remainder << 1;
+                }
+                table[value] = remainder & parityMask;
+            }
+        }
+    }
+
+    /**
+     * @return the number of error detection bits, i.e. the degree of the generator polynom
+     */
+    public int getParityLength() {
+        return parityLength;
+    }
+
+    /**
+     * Checks if a message was received correctly. Returns 0 if the CRC is correct.
+     * @param messageDecoded bit sequence containing the message to be checked
+     * @return 0 if the CRC is correct otherwise a positive integer
+     */
+    public int checkMessageCRC(int[] messageDecoded){
+        byte[] codeword = new byte[(messageDecoded.length + 7) / 8];
+        for (int i = 0; i < messageDecoded.length; i++) {
+            codeword[i / 8] |= (messageDecoded[i] & 1) << (7 - i % 8);
+        }
+        return checkMessageCRC(codeword, messageDecoded.length);
+    }
+
+    /**
+     * Checks if a message was received correctly. Returns 0 if the CRC is correct.
+     * @param codeword bits of the message followed by its error detection bits, packed in bytes
+     *                 (most significant bit first)
+     * @param nBits number of bits of the codeword
+     * @return 0 if the CRC is correct otherwise the number of ones in the remainder
+     */
+    public int checkMessageCRC(byte[] codeword, int nBits){
+        // The codeword is the message multiplied by x^parityLength plus its last bits
+        int nMessageBits = Math.max(0, nBits - parityLength);
+        long remainder;
+        if (nMessageBits % 8 == 0) {
+            remainder = getRemainder(codeword, nMessageBits / 8);
+        } else {
+            // Leading zeros do not change the remainder, the first byte is completed with zeros
+            remainder = 0;
+            int value = 0;
+            for (int i = 0; i < nMessageBits; i++) {
+                value = (value << 1) | getBit(codeword, i);
+                if ((nMessageBits - 1 - i) % 8 == 0) {
+                    remainder = update(remainder, value);
+                    value = 0;
+                }
+            }
+        }
+        for (int i = nMessageBits; i < nBits; i++) {
+            remainder ^= (long) getBit(codeword, i) << (nBits - 1 - i);
+        }
+        return Long.bitCount(remainder);
+    }
+
+    /**
+     * Generates the error detection bit sequence of a message.
+     * @param bitOfText the message after which the error detection bit sequence is generated
+     * @return error detection bit sequence
+     */
+    public String parityBit(String bitOfText){
+        long remainder = 0;
+        int value = 0;
+        int nBits = bitOfText.length();
+        for (int i = 0; i < nBits; i++) {
+            value = (value << 1) | (bitOfText.charAt(i) - '0');
+            if ((nBits - 1 - i) % 8 == 0) {
+                remainder = update(remainder, value);
+                value = 0;
+            }
+        }
+
+        StringBuilder helpString = new StringBuilder(parityLength);
+        for (int i = parityLength - 1; i >= 0; i--) {
+            helpString.append((remainder >>> i) & 1);
+        }
+        return helpString.toString();
+    }
+
+    /**
+     * Generates the error detection bits of a message packed in bytes (most significant bit first),
+     * as parityBit does for a bit sequence.
+     * @param message bytes of the message
+     * @param length number of bytes of the message to use
+     * @return the error detection bits, packed in getParityLength()/8 bytes
+     */
+    public byte[] getParityBytes(byte[] message, int length) {
+        long remainder = getRemainder(message, length);
+        byte[] parity = new byte[parityLength / 8];
+        for (int i = 0; i < parity.length; i++) {
+            parity[i] = (byte) (remainder >>> (parityLength - 8 * (i + 1)));
+        }
+        return parity;
+    }
+
+    /**
+     * @param message bytes of the message
+     * @param length number of bytes of the message to use
+     * @return the remainder of the message multiplied by x^parityLength, divided by the generator polynom
+     */
+    private long getRemainder(byte[] message, int length) {
+        long remainder = 0;
+        for (int i = 0; i < length; i++) {
+            remainder = update(remainder, message[i]);
+        }
+        return remainder;
+    }
+
+    /**
+     * Adds one byte to the message.
+     * @param remainder remainder of the message so far
+     * @param value next eight bits of the message
+     * @return the remainder of the message followed by the given byte
+     */
+    private long update(long remainder, int value) {
+        if (parityLength == 0) {
+            return 0;
+        }
+        int index = ((int) (remainder >>> (parityLength - 8)) ^ value) & 0xFF;
+        return ((remainder << 8) ^ table[index]) & parityMask;
+    }
+
+    private static int getBit(byte[] bits, int position) {
+        return (bits[position / 8] >> (7 - position % 8)) & 1;
+    }
+
+    /**
+     * Returns the number of occurrences of searchedChar in input.
+     * Source : https://stackoverflow.com/a/275969/5232306
+     * @param input
+     * @param searchedChar
+     * @return How many occurrences of searchedChar are in input.
+     */
+    public static int countOccurrences(String input, char searchedChar)
+    {
+        int count = 0;
+        for (int i=0; i < input.length(); i++)
+        {
+            if (input.charAt(i) == searchedChar)
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+}
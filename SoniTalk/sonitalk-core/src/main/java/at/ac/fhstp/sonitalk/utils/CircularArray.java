@@ -65,6 +65,19 @@ public class CircularArray {
         return size;
     }
 
+    /**
+     * Returns one element without copying the array, position 0 being the oldest element.
+     * @param position position relative to the oldest element, between 0 and size()-1
+     * @return the element at the given position
+     */
+    public float get(int position) {
+        int i = index + position;
+        if (i >= size) {
+            i -= size;
+        }
+        return circularArray[i];
+    }
+
     public float[] getFirstWindow(int windowLength) {
         float array[] = new float[windowLength];
         int nbElemToEnd = size - index;
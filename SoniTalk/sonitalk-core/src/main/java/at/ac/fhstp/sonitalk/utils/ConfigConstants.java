@@ -51,4 +51,5 @@ public class ConfigConstants {
 */
     public static final byte[] GENERATOR_POLYNOM = new byte[] { 1, 0, 1, 1, 0, 1, 0, 0, 0, 0, 1, 0, 1, 1, 0, 1, 1}; //CRC-17-CAN : 0x1685B
     public static final String CONTROL_FILLING_CHARACTER = "00011001";
+    public static final byte CONTROL_FILLING_BYTE = 0b00011001; // CONTROL_FILLING_CHARACTER as a byte
 }
@@ -19,12 +19,10 @@
 
 package at.ac.fhstp.sonitalk.utils;
 
-import android.util.Log;
-
 //import org.apache.commons.lang3.*;
 
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import java.util.logging.Logger;
 
 /**
  * Provides functions for removing filling characters and the crc-bits and for
@@ -52,7 +50,7 @@ public final class DecoderUtils {
         if (input == null)
             return null;
         else if (input.length() % 8 != 0) {
-            Log.w("binaryToBytes", "got an input with a length not dividable by 8.");
+            Logger.getLogger(DecoderUtils.class.getName()).warning("binaryToBytes got an input with a length not dividable by 8.");
             // raise an exception ? This case should never happen, and should not crash the decoding.
         }
 
@@ -119,50 +117,6 @@ public final class DecoderUtils {
     }
 
 
-    /**
-     * Helper to get maximum value out of double array
-     * @param values array to get the max of
-     * @return the highest value of the array passed
-     */
-    public static double max(double[] values) {
-        double max = 0;
-        double helper;
-        for(int i = 0; i < values.length; i++){
-            helper = values[i];
-            if(helper > max){
-                max = helper;
-            }
-        }
-        return max;
-    }
-
-    /**
-     * the array double[] m MUST BE SORTED
-     * @param m
-     * @return the mean of the array passed
-     */
-    public static double mean(double[] m) {
-        double sum = 0;
-        for (int i = 0; i < m.length; i++) {
-            sum += m[i];
-        }
-        return sum / m.length;
-    }
-
-    /**
-     * the array double[] m MUST BE SORTED
-     * @param m
-     * @return the median of the array passed
-     */
-    public static double median(double[] m) {
-        int middle = m.length/2;
-        if (m.length%2 == 1) {
-            return m[middle];
-        } else {
-            return (m[middle-1] + m[middle]) / 2.0;
-        }
-    }
-
     public static float getRelativeIndexPosition(float value, float minValue, float maxValue) {
         //Log.d("getrelatvieIndex", String.valueOf((value-minValue)/(maxValue-minValue)));
         return (value-minValue)/(maxValue-minValue);
@@ -177,10 +131,38 @@ public final class DecoderUtils {
      */
     public static float freq2idx(int freq, int fs, int winlen){
         float freqIdx;
-        freqIdx = Math.round((float)freq/(float)fs*(float)winlen)+1;
+        freqIdx = Math.round(freq2bin(freq, fs, winlen))+1;
         return freqIdx;
     }
 
+    /**
+     * Get the exact (fractional) FFT bin of a frequency, without the rounding and the Matlab
+     * offset of freq2idx()
+     * @param freq frequency to get the bin of
+     * @param fs sample rate
+     * @param fftLength number of points of the FFT
+     * @return the position of the frequency, bin k being centered on k * fs / fftLength
+     */
+    public static float freq2bin(int freq, int fs, int fftLength){
+        return (float)freq/(float)fs*(float)fftLength;
+    }
+
+    /**
+     * Linear interpolation between two consecutive values of an array
+     * @param data array to read
+     * @param offset index of the value at position 0
+     * @param position fractional position (not negative), relative to offset
+     * @return the interpolated value, exactly data[offset + position] for integer positions
+     */
+    public static float interpolate(float[] data, int offset, float position){
+        int index = (int) position;
+        float fraction = position - index;
+        if (fraction == 0) {
+            return data[offset + index];
+        }
+        return data[offset + index] + fraction * (data[offset + index + 1] - data[offset + index]);
+    }
+
     /**
      * Calculates power of two values
      * @param n initial value
@@ -190,6 +172,16 @@ public final class DecoderUtils {
         return (int) Math.pow(2.0, Math.ceil(Math.log(n)/Math.log(2)));
     }
 
+    /**
+     * Calculates the power of two closest to a value, used to size FFTs without large prime factors
+     * @param n initial value
+     * @return the power of two closest to n, the larger one if both are at the same distance
+     */
+    public static int nearestPowerOfTwo(int n) {
+        int next = nextPowerOfTwo(n);
+        return next - n <= n - next / 2 ? next : next / 2;
+    }
+
     /**
      * Calculates an absolute value of a complex number
      * @param real
@@ -200,5 +192,15 @@ public final class DecoderUtils {
         return Math.sqrt(real*real + (imaginary*imaginary));
     }
 
+    /**
+     * Calculates an absolute value of a complex number in single precision
+     * @param real
+     * @param imaginary
+     * @return the absolute value of the real and imaginary parts passed
+     */
+    public static float getComplexAbsolute(float real, float imaginary) {
+        return (float) Math.sqrt(real*real + (imaginary*imaginary));
+    }
+
 
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+/**
+ * Decides the bits of a message once its start and end blocks were detected, by comparing the
+ * energy of each carrier frequency in the normal and inverted blocks.
+ */
+public interface Demodulator {
+
+    /**
+     * Decides the value of every bit (message, filling characters and CRC) of the message
+     * contained in the history.
+     * @param analysisHistoryBuffer the history buffer, oldest sample first, starting with the start block
+     * @param bits output array of length nMessageBlocks * nFrequencies, receives 0 or 1 for each bit
+     */
+    void demodulate(float[] analysisHistoryBuffer, int[] bits);
+
+    /**
+     * Returns the normalized spectrogram computed during the last call to demodulate(), used for
+     * visualization.
+     * @return the spectrogram of the last demodulated history, or null if this demodulator does not compute one
+     */
+    float[][] getSpectrum();
+}
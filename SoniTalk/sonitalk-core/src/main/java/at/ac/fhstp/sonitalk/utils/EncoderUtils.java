@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+
+import at.ac.fhstp.sonitalk.SoniTalkConfig;
+
+/**
+ * The main part of EncoderUtils is to change the message bytes to bit.
+ * Beside that it offers a function to check if the number of bytes exceed a
+ * specific value.
+ */
+public class EncoderUtils {
+
+    /**
+     * Casts a byte array to bit, eight bits per byte with the most significant bit first.
+     * @param textToSend text to cast
+     * @return bit sequence as string
+     */
+    public static String changeToBitString(byte[] textToSend) {
+        StringBuilder bitOfText = new StringBuilder(textToSend.length * 8);
+        for (byte b : textToSend) {
+            for (int i = 7; i >= 0; i--) {
+                bitOfText.append((b >> i) & 1);
+            }
+        }
+        return bitOfText.toString();
+    }
+
+    /**
+     * Uses byte array length check and returns the casted bit sequence or Exception.
+     * @param textToSend text to check
+     * @param config SoniTalkConfig to get number of message blocks
+     * @return casted bit sequence or throws IllegalArgument if size exceeded
+     */
+    public String getStringOfEncodedBits(byte[] textToSend, SoniTalkConfig config){
+        String bitOfText = changeToBitString(textToSend);
+
+        if(isAllowedByteArraySize(textToSend, config)) {
+            return bitOfText;
+        }else{
+            throw new IllegalArgumentException("Entered Message is too long");
+        }
+    }
+
+    /**
+     * Checks if the byte array does not exceed the number of allowed bytes.
+     * @param textToSend byte array to check
+     * @param config SoniTalkConfig to get number of message blocks
+     * @return boolean depending on the number of bytes
+     */
+    public static boolean isAllowedByteArraySize(byte[] textToSend, SoniTalkConfig config){
+        int maxChars =  config.getnMessageBlocks()*(config.getnFrequencies()/8)-2;
+        return textToSend.length <= maxChars;
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+import at.ac.fhstp.sonitalk.SoniTalkConfig;
+
+/**
+ * First stage of the detection: tracks the short-term energy of the band containing all the
+ * carriers and only opens when it rises above the noise floor. While it is closed there is no
+ * need to look for start and end blocks, which saves most of the work during silence.
+ * The energy over the last analysis window is compared to thresholdFactor times the noise floor.
+ * The floor follows decreases quickly but only rises slowly while the gate is closed, so that
+ * messages (even repeated ones) never raise it. If the noise itself rises, the gate stays open
+ * until the floor caught up: it errs on the side of running the detection.
+ * This class is NOT thread safe.
+ */
+public class EnergyGate {
+    /**
+     * Default factor between the energy of the band and the noise floor to open the gate (6dB).
+     */
+    public static final double DEFAULT_THRESHOLD_FACTOR = 4.0;
+
+    private static final double FLOOR_DECAY = 0.1; // Per step, when the energy is below the floor
+    private static final double FLOOR_RISE_TIME_SECONDS = 10.0; // Time constant when the energy is above the floor and the gate closed
+
+    private final double thresholdFactor;
+    private final double floorRise;
+    private final int nHangoverSteps;
+
+    private final BandPassFilter bandPassFilter;
+    private final double[] stepEnergies; // Energy of the last steps covering one analysis window
+    private int stepIndex = 0;
+    private double windowEnergy = 0;
+
+    private double noiseFloor = -1; // Unknown until the first window is complete
+    private int nStepsAdded = 0;
+    private int hangover = 0;
+
+    /**
+     * @param sampleRate sample rate of the analyzed audio
+     * @param config configuration used to compute the band of the carriers
+     * @param analysisWinLen length (in samples) of the window the energy is measured on
+     * @param analysisWinStep number of samples added at every step
+     * @param bandPassFilterOrder order of the Butterworth band-pass filter
+     * @param thresholdFactor factor between the energy and the noise floor to open the gate, e.g. DEFAULT_THRESHOLD_FACTOR
+     */
+    public EnergyGate(int sampleRate, SoniTalkConfig config, int analysisWinLen, int analysisWinStep, int bandPassFilterOrder, double thresholdFactor) {
+        if (thresholdFactor <= 1.0) {
+            throw new IllegalArgumentException("The threshold factor must be larger than 1.");
+        }
+        this.thresholdFactor = thresholdFactor;
+        this.floorRise = analysisWinStep / (FLOOR_RISE_TIME_SECONDS * sampleRate);
+
+        int nStepsPerWindow = Math.max(1, Math.round((float) analysisWinLen / analysisWinStep));
+        stepEnergies = new double[nStepsPerWindow];
+        // Stays open as long as the last window can still contain the end block of a message
+        nHangoverSteps = 2 * nStepsPerWindow;
+
+        // From half a frequency space below the first carrier to half a frequency space above the last one
+        int bandWidth = config.getFrequencySpace() * config.getnFrequencies();
+        int centerFrequency = config.getFrequencyZero() + config.getFrequencySpace() * (config.getnFrequencies() - 1) / 2;
+        bandPassFilter = new BandPassFilter(bandPassFilterOrder, sampleRate, centerFrequency, bandWidth);
+    }
+
+    /**
+     * Filters the new samples and decides if the detection should run at this step.
+     * @param samples array containing the new samples
+     * @param length number of new samples in the array
+     * @return true if the gate is open, i.e. the band contains more than noise
+     */
+    public boolean onSamplesAdded(float[] samples, int length) {
+        double stepEnergy = 0;
+        for (int i = 0; i < length; i++) {
+            float filtered = bandPassFilter.filter(samples[i]);
+            stepEnergy += filtered * filtered;
+        }
+        windowEnergy += stepEnergy - stepEnergies[stepIndex];
+        stepEnergies[stepIndex] = stepEnergy;
+        stepIndex = (stepIndex + 1) % stepEnergies.length;
+        if (stepIndex == 0) {
+            windowEnergy = sum(stepEnergies); // Avoid accumulating rounding errors
+        }
+
+        nStepsAdded++;
+        if (nStepsAdded < stepEnergies.length) {
+            return true; // The window is not complete yet
+        }
+        if (noiseFloor < 0) {
+            noiseFloor = windowEnergy;
+        }
+
+        boolean aboveFloor = windowEnergy > thresholdFactor * noiseFloor;
+        if (aboveFloor) {
+            hangover = nHangoverSteps;
+        }
+        else if (hangover > 0) {
+            hangover--;
+        }
+        boolean open = aboveFloor || hangover > 0;
+
+        if (windowEnergy < noiseFloor) {
+            noiseFloor += FLOOR_DECAY * (windowEnergy - noiseFloor);
+        }
+        else if (!open) {
+            noiseFloor += floorRise * (windowEnergy - noiseFloor);
+        }
+        return open;
+    }
+
+    /**
+     * @return the current estimate of the noise energy over one analysis window, or -1 if unknown yet
+     */
+    public double getNoiseFloor() {
+        return noiseFloor;
+    }
+
+    private static double sum(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
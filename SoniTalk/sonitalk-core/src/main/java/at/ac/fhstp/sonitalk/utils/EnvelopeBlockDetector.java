@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+import at.ac.fhstp.sonitalk.SoniTalkConfig;
+
+/**
+ * Detects the start and end blocks of a message with running band energy envelopes. Each new
+ * sample goes once through the upper and lower band-pass filters (their state is kept between
+ * calls), its rectified value is stored in an envelope ring aligned with the history buffer, and
+ * the sums over the first and last analysis windows are updated by sliding. The cost per step is
+ * therefore proportional to the number of new samples instead of the window length.
+ * The ratios between both bands are compared to startFactor and endFactor like in
+ * HilbertBlockDetector (the mean of a rectified narrow band signal is proportional to its
+ * Hilbert envelope).
+ * This class is NOT thread safe.
+ */
+public class EnvelopeBlockDetector implements BlockDetector {
+    private final int analysisWinLen;
+    private final int historyBufferSize;
+    private final double startFactor;
+    private final double endFactor;
+
+    private final BandPassFilter butterworthUp;
+    private final BandPassFilter butterworthDown;
+
+    // Rectified filter outputs, aligned with the history buffer (writeIndex points to the oldest sample)
+    private final float[] envelopeUpper;
+    private final float[] envelopeLower;
+    private int writeIndex = 0;
+
+    // Updated by sliding, kept in double precision so that the rounding errors stay small
+    private double sumFirstUpper = 0;
+    private double sumFirstLower = 0;
+    private double sumLastUpper = 0;
+    private double sumLastLower = 0;
+
+    /**
+     * @param sampleRate sample rate of the analyzed audio
+     * @param config configuration used to compute the center frequencies of the band-pass filters
+     * @param analysisWinLen length (in samples) of the first and last windows
+     * @param historyBufferSize length (in samples) of the history buffer
+     * @param bandPassFilterOrder order of the Butterworth band-pass filters
+     * @param startFactor how much more energy the upper band needs to detect a start block
+     * @param endFactor how much more energy the lower band needs to detect an end block
+     */
+    public EnvelopeBlockDetector(int sampleRate, SoniTalkConfig config, int analysisWinLen, int historyBufferSize, int bandPassFilterOrder, double startFactor, double endFactor) {
+        if (analysisWinLen >= historyBufferSize) {
+            throw new IllegalArgumentException("The analysis window must be shorter than the history buffer.");
+        }
+        this.analysisWinLen = analysisWinLen;
+        this.historyBufferSize = historyBufferSize;
+        this.startFactor = startFactor;
+        this.endFactor = endFactor;
+
+        int bandpassWidth = config.getFrequencySpace() * (config.getnFrequencies() / 2);
+        int centerFrequencyBandPassDown = config.getFrequencyZero() + (bandpassWidth/2);
+        int centerFrequencyBandPassUp = config.getFrequencyZero() + bandpassWidth + (bandpassWidth/2);
+
+        butterworthDown = new BandPassFilter(bandPassFilterOrder, sampleRate, centerFrequencyBandPassDown, bandpassWidth);
+        butterworthUp = new BandPassFilter(bandPassFilterOrder, sampleRate, centerFrequencyBandPassUp, bandpassWidth);
+
+        envelopeUpper = new float[historyBufferSize];
+        envelopeLower = new float[historyBufferSize];
+    }
+
+    @Override
+    public void onSamplesAdded(float[] samples, int length) {
+        for (int i = 0; i < length; i++) {
+            float upper = Math.abs(butterworthUp.filter(samples[i]));
+            float lower = Math.abs(butterworthDown.filter(samples[i]));
+
+            // The oldest sample leaves the first window, the one at analysisWinLen enters it
+            int enteringFirst = ringIndex(analysisWinLen);
+            sumFirstUpper += envelopeUpper[enteringFirst] - envelopeUpper[writeIndex];
+            sumFirstLower += envelopeLower[enteringFirst] - envelopeLower[writeIndex];
+            // The new sample enters the last window, the one at historyBufferSize-analysisWinLen leaves it
+            int leavingLast = ringIndex(historyBufferSize - analysisWinLen);
+            sumLastUpper += upper - envelopeUpper[leavingLast];
+            sumLastLower += lower - envelopeLower[leavingLast];
+
+            envelopeUpper[writeIndex] = upper;
+            envelopeLower[writeIndex] = lower;
+            writeIndex++;
+            if (writeIndex == historyBufferSize) {
+                writeIndex = 0;
+                recomputeSums(); // Avoid accumulating rounding errors
+            }
+        }
+    }
+
+    /**
+     * Checks if the first analysis window of the history buffer contains a start block, i.e. if
+     * the upper band contains startFactor times more energy than the lower band.
+     * @param historyBuffer not read, the envelopes are tracked in onSamplesAdded
+     * @return true if a start block was detected
+     */
+    @Override
+    public boolean isStartBlock(CircularArray historyBuffer) {
+        return sumFirstUpper > startFactor * sumFirstLower;
+    }
+
+    /**
+     * Checks if the last analysis window of the history buffer contains an end block, i.e. if
+     * the lower band contains endFactor times more energy than the upper band.
+     * @param historyBuffer not read, the envelopes are tracked in onSamplesAdded
+     * @return true if an end block was detected
+     */
+    @Override
+    public boolean isEndBlock(CircularArray historyBuffer) {
+        return sumLastLower > endFactor * sumLastUpper;
+    }
+
+    private int ringIndex(int position) {
+        int i = writeIndex + position;
+        if (i >= historyBufferSize) {
+            i -= historyBufferSize;
+        }
+        return i;
+    }
+
+    private void recomputeSums() {
+        sumFirstUpper = 0;
+        sumFirstLower = 0;
+        sumLastUpper = 0;
+        sumLastLower = 0;
+        for (int i = 0; i < analysisWinLen; i++) {
+            int first = ringIndex(i);
+            int last = ringIndex(historyBufferSize - analysisWinLen + i);
+            sumFirstUpper += envelopeUpper[first];
+            sumFirstLower += envelopeLower[first];
+            sumLastUpper += envelopeUpper[last];
+            sumLastLower += envelopeLower[last];
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+/**
+ * Turns the bits decided by a demodulator into the received message without going through bit
+ * strings: the bits are packed into a reused codeword buffer, the CRC is checked on the packed
+ * bytes, and the payload is copied without the error detection bytes and the filling bytes the
+ * encoder appended after the data.
+ * This class is NOT thread safe.
+ */
+public class FrameDecoder {
+    private final CRC crc;
+    private final int nBits;
+    private final int nMessageBytes; // Data and filling bytes, before the error detection bits
+    private final byte[] codeword;
+    private int payloadLength;
+
+    /**
+     * @param crc CRC the frames were encoded with
+     * @param nBits number of bits of a frame (nMessageBlocks * nFrequencies)
+     */
+    public FrameDecoder(CRC crc, int nBits) {
+        if (nBits < crc.getParityLength()) {
+            throw new IllegalArgumentException("A frame of " + nBits + " bits cannot contain " + crc.getParityLength() + " error detection bits.");
+        }
+        this.crc = crc;
+        this.nBits = nBits;
+        this.nMessageBytes = (nBits - crc.getParityLength()) / 8;
+        this.codeword = new byte[(nBits + 7) / 8];
+    }
+
+    /**
+     * Packs the bits of a frame, checks its CRC and finds the end of its payload.
+     * @param bits one bit (0 or 1) per value, as decided by the demodulator
+     * @return 0 if the CRC is correct otherwise a positive integer, see CRC.checkMessageCRC()
+     */
+    public int decode(int[] bits) {
+        if (bits.length != nBits) {
+            throw new IllegalArgumentException("Expected " + nBits + " bits, got " + bits.length);
+        }
+        int value = 0;
+        for (int i = 0; i < nBits; i++) {
+            value = (value << 1) | (bits[i] & 1);
+            if ((i & 7) == 7) {
+                codeword[i >> 3] = (byte) value;
+                value = 0;
+            }
+        }
+        if ((nBits & 7) != 0) {
+            codeword[nBits >> 3] = (byte) (value << (8 - (nBits & 7)));
+        }
+
+        payloadLength = nMessageBytes;
+        while (payloadLength > 0 && codeword[payloadLength - 1] == ConfigConstants.CONTROL_FILLING_BYTE) {
+            payloadLength--;
+        }
+        return crc.checkMessageCRC(codeword, nBits);
+    }
+
+    /**
+     * @return a new array containing the payload of the last decoded frame
+     */
+    public byte[] getPayload() {
+        byte[] payload = new byte[payloadLength];
+        System.arraycopy(codeword, 0, payload, 0, payloadLength);
+        return payload;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+/**
+ * Demodulator evaluating only the spectrogram columns that are actually read to decide the bits,
+ * i.e. the columns around the center of each message block, instead of the whole spectrogram.
+ * Every column is windowed like in the SpectrogramDemodulator and its bins between the lower and
+ * upper cutoff frequencies are computed with a bank of Goertzel filters. All the bins of the band
+ * are needed because each column is normalized by the sum of its log magnitudes, which keeps the
+ * bit decisions identical to the ones of the SpectrogramDemodulator.
+ * Buffers are allocated once, this class is NOT thread safe.
+ */
+public class GoertzelDemodulator implements Demodulator {
+    private final SpectrogramLayout layout;
+    private final int nFrequencies;
+    private final int nNeighborsFreqUpDown;
+    private final int nNeighborsTimeLeftRight;
+    private final Aggregator aggregator;
+
+    private final HammingWindow hammWin;
+    private final float[] column;
+    private final float[] coefficients; // Goertzel coefficient of each bin of the band
+    private final float[] logMagnitudes;
+    private final int nColumnsPerBlock;
+    private final float[][][] input; // [data block][column around the block center][bin], normalized
+    private final float[] values;
+
+    /**
+     * @param layout columns, block centers and carrier indices of the spectrogram
+     * @param nFrequencies number of carrier frequencies
+     * @param nNeighborsFreqUpDown how many neighboring frequency bins (above AND below) are aggregated
+     * @param nNeighborsTimeLeftRight how many neighboring columns (left AND right) are aggregated
+     * @param aggFcn aggregation function: "mean", "max", "median" or "trimmedmean"
+     */
+    public GoertzelDemodulator(SpectrogramLayout layout, int nFrequencies, int nNeighborsFreqUpDown, int nNeighborsTimeLeftRight, String aggFcn) {
+        this.layout = layout;
+        this.nFrequencies = nFrequencies;
+        this.nNeighborsFreqUpDown = nNeighborsFreqUpDown;
+        this.nNeighborsTimeLeftRight = nNeighborsTimeLeftRight;
+        this.aggregator = Aggregators.forName(aggFcn);
+
+        // Zero-padding does not change the magnitudes computed by the filters, only the transformed samples are read
+        int frameLength = layout.getFrameLength();
+        hammWin = new HammingWindow(frameLength);
+        column = new float[frameLength];
+
+        coefficients = new float[layout.getnBins()];
+        for (int b = 0; b < coefficients.length; b++) {
+            coefficients[b] = (float) (2 * Math.cos(2 * Math.PI * (layout.getLowerCutoffFrequencyIdx() + b) / layout.getFftLength()));
+        }
+        logMagnitudes = new float[coefficients.length];
+        nColumnsPerBlock = 2 * nNeighborsTimeLeftRight + 1;
+        input = new float[layout.getnBlocks() - 2][nColumnsPerBlock][coefficients.length];
+        values = new float[(2*nNeighborsFreqUpDown+1)*(2*nNeighborsTimeLeftRight+1)]; // The carrier and its neighbors
+    }
+
+    @Override
+    public void demodulate(float[] analysisHistoryBuffer, int[] bits) {
+        // Start and end blocks do not carry any bit
+        for (int j = 1; j < layout.getnBlocks() - 1; j++) {
+            for (int t = -nNeighborsTimeLeftRight; t <= nNeighborsTimeLeftRight; t++) {
+                computeColumn(analysisHistoryBuffer, layout.getBlockCenter(j) + t, input[j - 1][t + nNeighborsTimeLeftRight]);
+            }
+        }
+
+        int arrayCounter = 0;
+        // Go through all message blocks with a stepsize of 2 (because we always have a normal block and an inverted block)
+        for (int j = 1; j < layout.getnBlocks() - 1; j = j + 2) {
+            for (int m = nFrequencies - 1; m >= 0; m--) {
+                float currentCenterFreqIdx = layout.getFrequencyCenterPosition(m);
+                float currentBit = getPointAndNeighborsAggreagate(input[j - 1], currentCenterFreqIdx);
+                float currentBitInv = getPointAndNeighborsAggreagate(input[j], currentCenterFreqIdx);
+
+                // Same comparison as the SpectrogramDemodulator (the normalization factor is negative)
+                if (currentBit < currentBitInv) {
+                    bits[arrayCounter] = 1;
+                }
+                else{
+                    bits[arrayCounter] = 0;
+                }
+                arrayCounter++;
+            }
+        }
+    }
+
+    /**
+     * No spectrogram is computed by this demodulator.
+     * @return null
+     */
+    @Override
+    public float[][] getSpectrum() {
+        return null;
+    }
+
+    /**
+     * Windows one spectrogram column, computes the magnitude of every bin of the band, takes its
+     * logarithm and normalizes it like the SpectrogramDemodulator.
+     * @param analysisHistoryBuffer the history buffer
+     * @param columnIndex index of the spectrogram column
+     * @param output receives the normalized log magnitude of each bin of the band
+     */
+    private void computeColumn(float[] analysisHistoryBuffer, int columnIndex, float[] output) {
+        int frameStart = layout.getFrameStart(columnIndex);
+        for (int i = 0; i < column.length; i++) {
+            int position = frameStart + i;
+            column[i] = position < analysisHistoryBuffer.length ? analysisHistoryBuffer[position] : 0;
+        }
+        hammWin.applyWindow(column);
+
+        // Filters are run four at a time, their recursions are independent
+        int b = 0;
+        for (; b + 4 <= coefficients.length; b += 4) {
+            float c0 = coefficients[b], c1 = coefficients[b+1], c2 = coefficients[b+2], c3 = coefficients[b+3];
+            float s01 = 0, s02 = 0, s11 = 0, s12 = 0, s21 = 0, s22 = 0, s31 = 0, s32 = 0;
+            for (int i = 0; i < column.length; i++) {
+                float x = column[i];
+                float s00 = x + c0 * s01 - s02;
+                s02 = s01;
+                s01 = s00;
+                float s10 = x + c1 * s11 - s12;
+                s12 = s11;
+                s11 = s10;
+                float s20 = x + c2 * s21 - s22;
+                s22 = s21;
+                s21 = s20;
+                float s30 = x + c3 * s31 - s32;
+                s32 = s31;
+                s31 = s30;
+            }
+            logMagnitudes[b] = getLogMagnitude(s01, s02, c0);
+            logMagnitudes[b+1] = getLogMagnitude(s11, s12, c1);
+            logMagnitudes[b+2] = getLogMagnitude(s21, s22, c2);
+            logMagnitudes[b+3] = getLogMagnitude(s31, s32, c3);
+        }
+        for (; b < coefficients.length; b++) {
+            float c = coefficients[b];
+            float s1 = 0, s2 = 0;
+            for (int i = 0; i < column.length; i++) {
+                float s0 = column[i] + c * s1 - s2;
+                s2 = s1;
+                s1 = s0;
+            }
+            logMagnitudes[b] = getLogMagnitude(s1, s2, c);
+        }
+
+        double logSum = 0; // Summed in double precision like the SpectrogramDemodulator
+        for (b = 0; b < logMagnitudes.length; b++) {
+            logSum += logMagnitudes[b];
+        }
+        // Normalization
+        for (b = 0; b < logMagnitudes.length; b++) {
+            output[b] = (float) (logMagnitudes[b] / logSum);
+        }
+    }
+
+    /**
+     * Computes the log magnitude of a bin from the last two states of its Goertzel filter.
+     */
+    private static float getLogMagnitude(float s1, float s2, float coefficient) {
+        float power = s1 * s1 + s2 * s2 - coefficient * s1 * s2;
+        float absolute = power > 0 ? (float) Math.sqrt(power) : 0;
+        if (absolute == 0) {
+            absolute = 0.0000001f;
+        }
+        return (float) Math.log(absolute);
+    }
+
+    /**
+     * Aggregates the cells around a carrier, in the same order as the SpectrogramDemodulator.
+     * @param blockInput normalized columns around the center of one block
+     * @param row frequency center position
+     * @return the aggregated value
+     */
+    private float getPointAndNeighborsAggreagate(float[][] blockInput, float row) {
+        float neighborSpacing = layout.getNeighborSpacing();
+        int valuecounter = 0;
+        for(int i = nNeighborsFreqUpDown*(-1); i <= nNeighborsFreqUpDown; i++){
+            for(int j = nNeighborsTimeLeftRight*(-1); j <= nNeighborsTimeLeftRight; j++){
+                if(i!=0 || j!=0){ //[0,0] is done lower
+                    values[valuecounter] = DecoderUtils.interpolate(blockInput[j + nNeighborsTimeLeftRight], 0, row + i*neighborSpacing);
+                    valuecounter++;
+                }
+            }
+        }
+        values[valuecounter] = DecoderUtils.interpolate(blockInput[nNeighborsTimeLeftRight], 0, row);
+        return aggregator.aggregate(values, valuecounter + 1);
+    }
+}
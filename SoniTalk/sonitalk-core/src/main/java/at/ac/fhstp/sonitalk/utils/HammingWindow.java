@@ -16,7 +16,7 @@ package at.ac.fhstp.sonitalk.utils;
 public class HammingWindow implements WindowFunction {
 
     private final int windowSize;
-    private final double[] hammingWindow;
+    private final float[] hammingWindow;
 
     public HammingWindow(int windowSize) {
         this.windowSize = windowSize;
@@ -27,23 +27,23 @@ public class HammingWindow implements WindowFunction {
     /**
      * Generates a Hamming Window.
      * @param windowSize - the size of the window (in elements)
-     * @return a {@code double[]} of window coefficients.
+     * @return a {@code float[]} of window coefficients.
      */
-    private static double[] generateHammingWindow(int windowSize) {
+    private static float[] generateHammingWindow(int windowSize) {
 		/*
 		 * This method generates an appropriately-sized Hamming window to be used later.
 		 */
         int m = windowSize/2;
         double r = Math.PI/(m+1);
-        double[] window = new double[windowSize];
+        float[] window = new float[windowSize];
         for (int i = -m; i < m; i++) {
-            window[m + i] = 0.5 + 0.5 * Math.cos(i * r);
+            window[m + i] = (float) (0.5 + 0.5 * Math.cos(i * r));
         }
         return window;
     }
 
     @Override
-    public void applyWindow(double[] samples) {
+    public void applyWindow(float[] samples) {
         //apply windowing function through multiplication with time-domain samples
         for (int i = 0; i < windowSize; i++) {
             samples[i] *= hammingWindow[i];
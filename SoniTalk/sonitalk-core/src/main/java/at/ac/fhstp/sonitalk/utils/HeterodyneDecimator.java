@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+import at.ac.fhstp.sonitalk.SoniTalkConfig;
+
+/**
+ * Front end moving the band of the carriers down to a low intermediate frequency and decimating
+ * it, so that the detection and the demodulation run on a fraction of the samples. The band
+ * (with a margin) is mixed down to complex baseband, low-pass filtered and decimated by an
+ * integer factor, then moved back up to about a quarter of the output sample rate as a real
+ * signal. The shift is a multiple of the frequency space, so that the carriers keep their position
+ * relative to the frequency bins of the spectrogram.
+ * The output is the same audio as the input in the band, shifted down by getFrequencyShift():
+ * the decoder runs unchanged on it with getShiftedConfig() and getOutputSampleRate(). Noise
+ * outside of the band is removed, including the audible range, which cannot fold into the band.
+ *
+ * The mixing is folded into the coefficients of the filter (a complex band-pass filter), which is
+ * only evaluated for the output samples: the cost per input sample is 2*nTaps/decimationFactor
+ * multiply-adds. The filter is a Kaiser windowed sinc with 60dB of stopband attenuation.
+ * This class is NOT thread safe.
+ */
+public class HeterodyneDecimator {
+    private static final double STOPBAND_ATTENUATION_DB = 60;
+
+    private final int decimationFactor;
+    private final int outputSampleRate;
+    private final int frequencyShift;
+    private final SoniTalkConfig shiftedConfig;
+
+    private final int nTaps;
+    private final float[] coefficientsRe; // Low-pass filter modulated to the center of the band
+    private final float[] coefficientsIm;
+    private final float[] rotationCos; // Moves the baseband to a quarter of the output sample rate
+    private final float[] rotationSin;
+    private int rotationIndex = 0;
+    private float[] buffer = new float[0]; // Last nTaps-1 input samples followed by the new ones
+
+    /**
+     * @param sampleRate sample rate of the input
+     * @param config configuration of the messages
+     * @param frequencyMargin margin kept below the first carrier and above the band of the last one, in Hz
+     * @param decimationFactor ratio between the input and the output sample rates, must divide the sample rate
+     * @throws IllegalArgumentException if the band of the carriers does not fit in the output sample rate
+     */
+    public HeterodyneDecimator(int sampleRate, SoniTalkConfig config, int frequencyMargin, int decimationFactor) {
+        if (decimationFactor < 2 || sampleRate % decimationFactor != 0) {
+            throw new IllegalArgumentException("The decimation factor must be at least 2 and divide the sample rate (" + sampleRate + "Hz), got: " + decimationFactor);
+        }
+        if (!fits(sampleRate, config, frequencyMargin, decimationFactor)) {
+            throw new IllegalArgumentException("The band of the carriers does not fit in a quarter of " + sampleRate / decimationFactor + "Hz, use a smaller decimation factor.");
+        }
+        this.decimationFactor = decimationFactor;
+        this.outputSampleRate = sampleRate / decimationFactor;
+        this.frequencyShift = getFrequencyShift(config, frequencyMargin, outputSampleRate);
+        double halfBandwidth = getHalfBandwidth(config, frequencyMargin, outputSampleRate);
+        this.shiftedConfig = new SoniTalkConfig(config.getFrequencyZero() - frequencyShift, config.getBitperiod(), config.getPauseperiod(), config.getnMessageBlocks(), config.getnFrequencies(), config.getFrequencySpace());
+        double centerFrequency = frequencyShift + outputSampleRate / 4.0;
+
+        // Nothing may fold into the band: neither through the decimation, nor when taking the real part
+        double passbandEdge = halfBandwidth;
+        double stopbandEdge = outputSampleRate / 2.0 - halfBandwidth;
+        double transitionWidth = 2 * Math.PI * (stopbandEdge - passbandEdge) / sampleRate;
+        int length = (int) Math.ceil((STOPBAND_ATTENUATION_DB - 8) / (2.285 * transitionWidth)) + 1;
+        nTaps = length % 2 == 0 ? length + 1 : length;
+        double beta = 0.1102 * (STOPBAND_ATTENUATION_DB - 8.7);
+        double cutoff = (passbandEdge + stopbandEdge) / 2 / sampleRate; // Relative to the sample rate
+        double[] lowPass = new double[nTaps];
+        double sum = 0;
+        for (int k = 0; k < nTaps; k++) {
+            double x = k - (nTaps - 1) / 2.0;
+            double sinc = x == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * x) / (Math.PI * x);
+            double r = 2.0 * k / (nTaps - 1) - 1;
+            lowPass[k] = sinc * besselI0(beta * Math.sqrt(1 - r * r)) / besselI0(beta);
+            sum += lowPass[k];
+        }
+        // Applied to x[n-k]: exp(-2*i*pi*fc*(n-k)) = exp(-2*i*pi*fc*n) * exp(2*i*pi*fc*k), the first
+        // factor is applied at the output rate. Doubled, as the real part only keeps half of the power.
+        coefficientsRe = new float[nTaps];
+        coefficientsIm = new float[nTaps];
+        for (int k = 0; k < nTaps; k++) {
+            double phase = 2 * Math.PI * centerFrequency * k / sampleRate;
+            coefficientsRe[k] = (float) (2 * lowPass[k] / sum * Math.cos(phase));
+            coefficientsIm[k] = (float) (2 * lowPass[k] / sum * Math.sin(phase));
+        }
+        // exp(-2*i*pi*fc*n*D/fs) then exp(i*pi*m/2) at the output rate: a rotation of -frequencyShift,
+        // periodic as the shift and the output sample rate are integers
+        int period = outputSampleRate / gcd(Math.abs(frequencyShift), outputSampleRate);
+        rotationCos = new float[period];
+        rotationSin = new float[period];
+        for (int m = 0; m < period; m++) {
+            double phase = -2 * Math.PI * ((long) frequencyShift * m % outputSampleRate) / outputSampleRate;
+            rotationCos[m] = (float) Math.cos(phase);
+            rotationSin[m] = (float) Math.sin(phase);
+        }
+    }
+
+    /**
+     * Returns the largest decimation factor dividing the sample rate for which the band of the
+     * carriers fits in the output.
+     * @param sampleRate sample rate of the input
+     * @param config configuration of the messages
+     * @param frequencyMargin margin kept below the first carrier and above the band of the last one, in Hz
+     * @return the largest possible decimation factor, or 1 if the band is too wide to decimate
+     */
+    public static int getMaxDecimationFactor(int sampleRate, SoniTalkConfig config, int frequencyMargin) {
+        for (int factor = sampleRate / 2; factor >= 2; factor--) {
+            if (fits(sampleRate, config, frequencyMargin, factor)) {
+                return factor;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Filters and decimates a block of audio.
+     * @param input audio at the input sample rate
+     * @param length number of input samples, a multiple of the decimation factor
+     * @param output receives length/decimationFactor samples at the output sample rate
+     */
+    public void process(float[] input, int length, float[] output) {
+        if (length % decimationFactor != 0) {
+            throw new IllegalArgumentException("The length must be a multiple of the decimation factor (" + decimationFactor + "), got: " + length);
+        }
+        int historyLength = nTaps - 1;
+        if (buffer.length != historyLength + length) {
+            // The first samples are silence
+            float[] newBuffer = new float[historyLength + length];
+            int kept = Math.min(historyLength, buffer.length);
+            System.arraycopy(buffer, buffer.length - kept, newBuffer, historyLength - kept, kept);
+            buffer = newBuffer;
+        } else {
+            System.arraycopy(buffer, length, buffer, 0, historyLength);
+        }
+        System.arraycopy(input, 0, buffer, historyLength, length);
+
+        int nOutput = length / decimationFactor;
+        for (int m = 0; m < nOutput; m++) {
+            // Newest sample of this output, the coefficient k applies to the sample k steps before it
+            int newest = historyLength + (m + 1) * decimationFactor - 1;
+            float sumRe = 0;
+            float sumIm = 0;
+            for (int k = 0; k < nTaps; k++) {
+                float sample = buffer[newest - k];
+                sumRe += coefficientsRe[k] * sample;
+                sumIm += coefficientsIm[k] * sample;
+            }
+            output[m] = sumRe * rotationCos[rotationIndex] - sumIm * rotationSin[rotationIndex];
+            rotationIndex = rotationIndex + 1 == rotationCos.length ? 0 : rotationIndex + 1;
+        }
+    }
+
+    /**
+     * Clears the state of the filter, the next block is processed as if it was the first one.
+     */
+    public void reset() {
+        reset(0);
+    }
+
+    /**
+     * Clears the state of the filter, the next block is processed as if it was the first one of a
+     * stream, but with the phase of the shift at inputPosition of the stream. Once the filter is
+     * filled (getFilterLength() samples later), the output is the same as for the whole stream.
+     * @param inputPosition index of the next input sample in the stream, a multiple of the decimation factor
+     */
+    public void reset(long inputPosition) {
+        if (inputPosition < 0 || inputPosition % decimationFactor != 0) {
+            throw new IllegalArgumentException("The position must be a positive multiple of the decimation factor (" + decimationFactor + "), got: " + inputPosition);
+        }
+        buffer = new float[0];
+        rotationIndex = (int) (inputPosition / decimationFactor % rotationCos.length);
+    }
+
+    public int getDecimationFactor() {
+        return decimationFactor;
+    }
+
+    public int getOutputSampleRate() {
+        return outputSampleRate;
+    }
+
+    /**
+     * @return how much the carriers are moved down, in Hz
+     */
+    public int getFrequencyShift() {
+        return frequencyShift;
+    }
+
+    /**
+     * @return the configuration of the messages in the output, the carriers moved down by getFrequencyShift()
+     */
+    public SoniTalkConfig getShiftedConfig() {
+        return shiftedConfig;
+    }
+
+    /**
+     * @return number of taps of the filter
+     */
+    public int getFilterLength() {
+        return nTaps;
+    }
+
+    /*
+     * The band-pass filters detecting start and end blocks cover nFrequencies*frequencySpace from f0.
+     */
+    private static double getLowFrequency(SoniTalkConfig config, int frequencyMargin) {
+        return config.getFrequencyZero() - Math.max(frequencyMargin, config.getFrequencySpace());
+    }
+
+    private static double getHighFrequency(SoniTalkConfig config, int frequencyMargin) {
+        return config.getFrequencyZero() + config.getnFrequencies() * config.getFrequencySpace() + Math.max(frequencyMargin, config.getFrequencySpace());
+    }
+
+    /*
+     * Moves the center of the band close to a quarter of the output sample rate. The shift is a
+     * multiple of the frequency space, so that the carriers keep their position relative to the
+     * frequency bins of the spectrogram.
+     */
+    private static int getFrequencyShift(SoniTalkConfig config, int frequencyMargin, int outputSampleRate) {
+        double center = (getLowFrequency(config, frequencyMargin) + getHighFrequency(config, frequencyMargin)) / 2;
+        int space = config.getFrequencySpace();
+        return (int) Math.round((center - outputSampleRate / 4.0) / space) * space;
+    }
+
+    /*
+     * Half the width of the band around a quarter of the output sample rate, on the widest side.
+     */
+    private static double getHalfBandwidth(SoniTalkConfig config, int frequencyMargin, int outputSampleRate) {
+        double center = getFrequencyShift(config, frequencyMargin, outputSampleRate) + outputSampleRate / 4.0;
+        return Math.max(center - getLowFrequency(config, frequencyMargin), getHighFrequency(config, frequencyMargin) - center);
+    }
+
+    /*
+     * The band needs room for the transition of the filter, below half the output sample rate.
+     */
+    private static boolean fits(int sampleRate, SoniTalkConfig config, int frequencyMargin, int decimationFactor) {
+        if (sampleRate % decimationFactor != 0) {
+            return false;
+        }
+        int outputSampleRate = sampleRate / decimationFactor;
+        return outputSampleRate / 2.0 - 2 * getHalfBandwidth(config, frequencyMargin, outputSampleRate) >= outputSampleRate / 16.0;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /*
+     * Modified Bessel function of the first kind, order 0 (power series).
+     */
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        for (int k = 1; k < 50; k++) {
+            term *= (x / (2 * k)) * (x / (2 * k));
+            sum += term;
+            if (term < sum * 1e-12) {
+                break;
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+import at.ac.fhstp.sonitalk.SoniTalkConfig;
+import edu.emory.mathcs.jtransforms.fft.FloatFFT_1D;
+
+/**
+ * Detects the start and end blocks of a message in the history buffer. The first (resp. last)
+ * analysis window is band-pass filtered around the upper and lower half of the frequencies, and
+ * the sums of the Hilbert envelopes of both bands are compared.
+ * Filters, FFT plan and buffers are created once and reused for every analysis step, so that
+ * detecting does not allocate any memory. Filtering and FFT run in single precision.
+ * This class is NOT thread safe.
+ */
+public class HilbertBlockDetector implements BlockDetector {
+    private final int analysisWinLen;
+    private final int fftSize;
+    private final double startFactor;
+    private final double endFactor;
+
+    private final BandPassFilter butterworthUp;
+    private final BandPassFilter butterworthDown;
+    private final FloatFFT_1D fft;
+    private final float[] analyticSignal; // Interleaved real and imaginary parts
+
+    /**
+     * @param sampleRate sample rate of the analyzed audio
+     * @param config configuration used to compute the center frequencies of the band-pass filters
+     * @param analysisWinLen length (in samples) of the first and last windows
+     * @param bandPassFilterOrder order of the Butterworth band-pass filters
+     * @param startFactor how much more energy the upper band needs to detect a start block
+     * @param endFactor how much more energy the lower band needs to detect an end block
+     */
+    public HilbertBlockDetector(int sampleRate, SoniTalkConfig config, int analysisWinLen, int bandPassFilterOrder, double startFactor, double endFactor) {
+        this.analysisWinLen = analysisWinLen;
+        this.fftSize = DecoderUtils.nextPowerOfTwo(analysisWinLen);
+        this.startFactor = startFactor;
+        this.endFactor = endFactor;
+
+        int bandpassWidth = config.getFrequencySpace() * (config.getnFrequencies() / 2);
+        int centerFrequencyBandPassDown = config.getFrequencyZero() + (bandpassWidth/2);
+        int centerFrequencyBandPassUp = config.getFrequencyZero() + bandpassWidth + (bandpassWidth/2);
+
+        butterworthDown = new BandPassFilter(bandPassFilterOrder, sampleRate, centerFrequencyBandPassDown, bandpassWidth);
+        butterworthUp = new BandPassFilter(bandPassFilterOrder, sampleRate, centerFrequencyBandPassUp, bandpassWidth);
+
+        fft = new FloatFFT_1D(fftSize);
+        analyticSignal = new float[fftSize * 2];
+    }
+
+    @Override
+    public void onSamplesAdded(float[] samples, int length) {
+        // Each window is filtered from scratch, nothing to track
+    }
+
+    /**
+     * Checks if the first analysis window of the history buffer contains a start block, i.e. if
+     * the upper band contains startFactor times more energy than the lower band.
+     * @param historyBuffer buffer to analyze, it is read in place
+     * @return true if a start block was detected
+     */
+    @Override
+    public boolean isStartBlock(CircularArray historyBuffer) {
+        double sumAbsStartResponseUpper = getEnvelopeSum(butterworthUp, historyBuffer, 0);
+        double sumAbsStartResponseLower = getEnvelopeSum(butterworthDown, historyBuffer, 0);
+        //Log.e("StartResponseAvgBefore", "detection with factor: " + sumAbsStartResponseUpper/sumAbsStartResponseLower);
+        return sumAbsStartResponseUpper > startFactor * sumAbsStartResponseLower;
+    }
+
+    /**
+     * Checks if the last analysis window of the history buffer contains an end block, i.e. if
+     * the lower band contains endFactor times more energy than the upper band.
+     * @param historyBuffer buffer to analyze, it is read in place
+     * @return true if an end block was detected
+     */
+    @Override
+    public boolean isEndBlock(CircularArray historyBuffer) {
+        int offset = historyBuffer.size() - analysisWinLen;
+        double sumAbsEndResponseUpper = getEnvelopeSum(butterworthUp, historyBuffer, offset);
+        double sumAbsEndResponseLower = getEnvelopeSum(butterworthDown, historyBuffer, offset);
+        //Log.d("EndResponseAvgBefore", "end factor: " + sumAbsEndResponseLower/sumAbsEndResponseUpper);
+        return sumAbsEndResponseLower > endFactor * sumAbsEndResponseUpper;
+    }
+
+    /**
+     * Filters one window of the history buffer (zero-padded to the next power of two), computes
+     * its analytic signal and returns the sum of its absolute values.
+     * @param filter band-pass filter, its state is reset before filtering
+     * @param historyBuffer buffer to read the window from
+     * @param offset position of the window, relative to the oldest element of the buffer
+     * @return the sum of the Hilbert envelope of the filtered window
+     */
+    private double getEnvelopeSum(BandPassFilter filter, CircularArray historyBuffer, int offset) {
+        filter.reset();
+        for (int i = 0; i < analysisWinLen; i++) {
+            analyticSignal[2*i] = filter.filter(historyBuffer.get(offset + i));
+            analyticSignal[2*i+1] = 0;
+        }
+        for (int i = analysisWinLen * 2; i < analyticSignal.length; i++) {
+            analyticSignal[i] = 0;
+        }
+
+        // Hilbert transform: keep DC and Nyquist, double the positive and remove the negative frequencies
+        fft.complexForward(analyticSignal);
+        for (int i = 1; i < fftSize/2; i++) {
+            analyticSignal[2*i] *= 2;
+            analyticSignal[2*i+1] *= 2;
+        }
+        for (int i = fftSize/2 + 1; i < fftSize; i++) {
+            analyticSignal[2*i] = 0;
+            analyticSignal[2*i+1] = 0;
+        }
+        fft.complexInverse(analyticSignal, true);
+
+        double sumAbs = 0;
+        for (int i = 0; i < fftSize; i++) {
+            sumAbs += DecoderUtils.getComplexAbsolute(analyticSignal[2*i], analyticSignal[2*i+1]);
+        }
+        return sumAbs;
+    }
+}
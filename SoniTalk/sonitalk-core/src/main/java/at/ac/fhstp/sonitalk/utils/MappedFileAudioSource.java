@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+import at.ac.fhstp.sonitalk.AudioSource;
+
+/**
+ * AudioSource reading a 16 bits PCM file (WAV or raw little-endian PCM), which is memory-mapped
+ * instead of being loaded on the heap. If it contains several channels, only the first one is
+ * read. The audio data cannot be larger than 2GB (about 6 hours of mono audio at 44100Hz). The
+ * file is read as fast as the decoder analyzes it.
+ */
+public class MappedFileAudioSource implements AudioSource {
+    private final int sampleRate;
+    private final int nChannels;
+    private ShortBuffer samples;
+
+    private MappedFileAudioSource(ShortBuffer samples, int sampleRate, int nChannels) {
+        this.samples = samples;
+        this.sampleRate = sampleRate;
+        this.nChannels = nChannels;
+    }
+
+    /**
+     * Maps a WAV file.
+     * @param wavFile 16 bits PCM WAV file
+     * @return a source reading the first channel of the file
+     * @throws IOException if the file cannot be read or is not a 16 bits PCM WAV file
+     */
+    public static MappedFileAudioSource openWav(File wavFile) throws IOException {
+        try (FileInputStream in = new FileInputStream(wavFile)) {
+            WavHeader header = WavHeader.read(in); // Unbuffered, the channel is left at the first sample
+            FileChannel channel = in.getChannel();
+            long dataStart = channel.position();
+            long dataSize = channel.size() - dataStart;
+            if (header.getDataSize() != 0 && header.getDataSize() != 0xFFFFFFFFL) {
+                dataSize = Math.min(dataSize, header.getDataSize());
+            }
+            return map(channel, dataStart, dataSize, header.getSampleRate(), header.getnChannels());
+        }
+    }
+
+    /**
+     * Maps a raw PCM file (16 bits little-endian samples, interleaved channels, no header).
+     * @param pcmFile raw PCM file
+     * @param sampleRate sample rate of the audio
+     * @param nChannels number of interleaved channels
+     * @return a source reading the first channel of the file
+     * @throws IOException if the file cannot be read
+     */
+    public static MappedFileAudioSource openPcm(File pcmFile, int sampleRate, int nChannels) throws IOException {
+        if (nChannels < 1) {
+            throw new IllegalArgumentException("Invalid number of channels: " + nChannels);
+        }
+        try (FileInputStream in = new FileInputStream(pcmFile)) {
+            FileChannel channel = in.getChannel();
+            return map(channel, 0, channel.size(), sampleRate, nChannels);
+        }
+    }
+
+    private static MappedFileAudioSource map(FileChannel channel, long dataStart, long dataSize, int sampleRate, int nChannels) throws IOException {
+        if (dataSize > Integer.MAX_VALUE) {
+            throw new IOException("The audio data is larger than 2GB.");
+        }
+        // Keep whole frames only
+        int frameSize = 2 * nChannels;
+        dataSize -= dataSize % frameSize;
+        // The mapping stays valid after the channel is closed
+        ShortBuffer samples = channel.map(FileChannel.MapMode.READ_ONLY, dataStart, dataSize)
+                .order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+        return new MappedFileAudioSource(samples, sampleRate, nChannels);
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public boolean isRealTime() {
+        return false;
+    }
+
+    @Override
+    public boolean start() {
+        return samples != null;
+    }
+
+    @Override
+    public int read(short[] buffer, int offset, int length) {
+        int remaining = samples.remaining() / nChannels;
+        if (remaining == 0) {
+            return END_OF_STREAM;
+        }
+        int nRead = Math.min(length, remaining);
+        if (nChannels == 1) {
+            samples.get(buffer, offset, nRead);
+        }
+        else {
+            int position = samples.position();
+            for (int i = 0; i < nRead; i++) {
+                buffer[offset + i] = samples.get(position + i * nChannels);
+            }
+            samples.position(position + nRead * nChannels);
+        }
+        return nRead;
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public void release() {
+        samples = null; // The file is unmapped once the buffer is garbage collected
+    }
+}
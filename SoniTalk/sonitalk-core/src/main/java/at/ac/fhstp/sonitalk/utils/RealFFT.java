@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+import edu.emory.mathcs.jtransforms.fft.FloatFFT_1D;
+
+/**
+ * Forward FFT of real data of any even length, which does not allocate memory when transforming.
+ * It works in single precision like the rest of the decoder, the twiddle factors are computed in
+ * double precision and rounded once.
+ * The output has the same layout as FloatFFT_1D.realForward() from JTransforms (which allocates
+ * a working array on every call for lengths that are not powers of two):
+ * a[0] = Re[0], a[1] = Re[n/2], a[2*k] = Re[k] and a[2*k+1] = Im[k] for 0 &lt; k &lt; n/2.
+ * The real signal is packed into a complex signal of half the length, transformed with a mixed
+ * radix FFT (decimation in time over the prime factors of the length) and split back. If the
+ * length has a large prime factor, the packed signal is transformed with Bluestein's algorithm
+ * (a convolution computed with power of two FFTs) instead.
+ * Powers of two are transformed by FloatFFT_1D directly: it does not allocate memory for them and
+ * its split radix FFT is faster than the mixed radix one.
+ * This class is NOT thread safe.
+ */
+public class RealFFT {
+    // Above this prime factor, Bluestein's algorithm is faster than the direct butterfly
+    private static final int MAX_DIRECT_FACTOR = 64;
+
+    private final int n;
+    private final int half; // Length of the packed complex signal
+    private final int[] factors; // Prime factors of half, in the order they are used
+    private final FloatFFT_1D powerOfTwoFFT; // null if n is not a power of two
+
+    private final float[] twiddles; // exp(-2*i*pi*k/half), interleaved
+    private final float[] packed; // Packed signal, interleaved real and imaginary parts
+    private final float[] spectrum; // DFT of the packed signal
+    private final float[] scratch; // One butterfly of the largest factor
+
+    // Split of the packed DFT into the DFT of the real signal
+    private final float[] splitCos;
+    private final float[] splitSin;
+
+    // Bluestein's algorithm, only allocated if the length has a large prime factor
+    private final int convolutionLength; // Power of two
+    private float[] chirp; // exp(-i*pi*k^2/half), interleaved
+    private float[] chirpFilterSpectrum; // DFT of the conjugated chirp, wrapped around
+    private float[] convolution;
+    private float[] convolutionTwiddles; // exp(-2*i*pi*k/convolutionLength), interleaved
+
+    /**
+     * @param n length of the real signal, must be even
+     */
+    public RealFFT(int n) {
+        if (n < 2 || n % 2 != 0) {
+            throw new IllegalArgumentException("The length of the signal must be even, got: " + n);
+        }
+        this.n = n;
+        this.half = n / 2;
+        this.factors = factorize(half);
+        this.powerOfTwoFFT = (n & (n - 1)) == 0 ? new FloatFFT_1D(n) : null;
+
+        int maxFactor = 1;
+        for (int factor : factors) {
+            maxFactor = Math.max(maxFactor, factor);
+        }
+        packed = new float[2 * half];
+        spectrum = new float[2 * half];
+        if (maxFactor > MAX_DIRECT_FACTOR) {
+            twiddles = null;
+            scratch = null;
+            convolutionLength = DecoderUtils.nextPowerOfTwo(2 * half - 1);
+            initBluestein();
+        } else {
+            twiddles = new float[2 * half];
+            for (int k = 0; k < half; k++) {
+                twiddles[2*k] = (float) Math.cos(2 * Math.PI * k / half);
+                twiddles[2*k+1] = (float) -Math.sin(2 * Math.PI * k / half);
+            }
+            scratch = new float[2 * maxFactor];
+            convolutionLength = 0;
+        }
+
+        splitCos = new float[half];
+        splitSin = new float[half];
+        for (int k = 0; k < half; k++) {
+            splitCos[k] = (float) Math.cos(2 * Math.PI * k / n);
+            splitSin[k] = (float) Math.sin(2 * Math.PI * k / n);
+        }
+    }
+
+    /**
+     * @return length of the real signal
+     */
+    public int getLength() {
+        return n;
+    }
+
+    /**
+     * Computes the DFT of real data in place, see the class description for the output layout.
+     * @param a real signal of length n, replaced by its DFT
+     */
+    public void realForward(float[] a) {
+        if (powerOfTwoFFT != null) {
+            powerOfTwoFFT.realForward(a);
+            return;
+        }
+        // Even samples are the real parts and odd samples the imaginary parts of the packed signal
+        System.arraycopy(a, 0, packed, 0, n);
+        if (factors.length == 0) {
+            System.arraycopy(packed, 0, spectrum, 0, n);
+        } else if (convolutionLength > 0) {
+            bluestein();
+        } else {
+            transform(0, 0, 1, 0);
+        }
+
+        // Split the DFT of the packed signal into the DFT of the real signal
+        a[0] = spectrum[0] + spectrum[1];
+        a[1] = spectrum[0] - spectrum[1];
+        for (int k = 1; k < half; k++) {
+            float zRe = spectrum[2*k];
+            float zIm = spectrum[2*k+1];
+            float zcRe = spectrum[2*(half-k)]; // conj(Z[half-k])
+            float zcIm = -spectrum[2*(half-k)+1];
+            float evenRe = (zRe + zcRe) / 2;
+            float evenIm = (zIm + zcIm) / 2;
+            // odd = (Z[k] - conj(Z[half-k])) / 2i
+            float oddRe = (zIm - zcIm) / 2;
+            float oddIm = -(zRe - zcRe) / 2;
+            // X[k] = even + exp(-2*i*pi*k/n) * odd
+            a[2*k] = evenRe + splitCos[k] * oddRe + splitSin[k] * oddIm;
+            a[2*k+1] = evenIm + splitCos[k] * oddIm - splitSin[k] * oddRe;
+        }
+    }
+
+    /**
+     * Recursive decimation in time: computes the DFT of the packed samples starting at
+     * inputOffset with the given stride into spectrum, starting at outputOffset.
+     * @param outputOffset first complex element written in spectrum
+     * @param inputOffset first complex element read from packed
+     * @param stride distance between two samples of this sub-sequence
+     * @param factorIndex index of the factor used at this level
+     */
+    private void transform(int outputOffset, int inputOffset, int stride, int factorIndex) {
+        int p = factors[factorIndex];
+        int m = half / (stride * p); // Length of each of the p sub-transforms
+        if (m == 1) {
+            for (int i = 0; i < p; i++) {
+                spectrum[2*(outputOffset + i)] = packed[2*(inputOffset + i * stride)];
+                spectrum[2*(outputOffset + i)+1] = packed[2*(inputOffset + i * stride)+1];
+            }
+        } else {
+            for (int i = 0; i < p; i++) {
+                transform(outputOffset + i * m, inputOffset + i * stride, stride * p, factorIndex + 1);
+            }
+        }
+
+        // Combine the p sub-transforms of length m
+        int twiddleStride = stride; // half / (m * p)
+        if (p == 2) {
+            for (int u = 0; u < m; u++) {
+                int a0 = 2 * (outputOffset + u);
+                int a1 = 2 * (outputOffset + u + m);
+                float wRe = twiddles[2 * (u * twiddleStride)];
+                float wIm = twiddles[2 * (u * twiddleStride) + 1];
+                float tRe = spectrum[a1] * wRe - spectrum[a1+1] * wIm;
+                float tIm = spectrum[a1] * wIm + spectrum[a1+1] * wRe;
+                spectrum[a1] = spectrum[a0] - tRe;
+                spectrum[a1+1] = spectrum[a0+1] - tIm;
+                spectrum[a0] += tRe;
+                spectrum[a0+1] += tIm;
+            }
+            return;
+        }
+        // Odd factor: the outputs q1 and p-q1 share the same products, only the sign of the sine part differs
+        int rootStride = half / p; // exp(-2*i*pi*k/p) is twiddles[k * rootStride]
+        for (int u = 0; u < m; u++) {
+            scratch[0] = spectrum[2*(outputOffset + u)];
+            scratch[1] = spectrum[2*(outputOffset + u)+1];
+            for (int q = 1; q < p; q++) {
+                int k = 2 * (outputOffset + u + q * m);
+                int twiddleIndex = 2 * (q * u * twiddleStride);
+                float wRe = twiddles[twiddleIndex];
+                float wIm = twiddles[twiddleIndex + 1];
+                scratch[2*q] = spectrum[k] * wRe - spectrum[k+1] * wIm;
+                scratch[2*q+1] = spectrum[k] * wIm + spectrum[k+1] * wRe;
+            }
+
+            float sumRe = scratch[0];
+            float sumIm = scratch[1];
+            for (int q = 1; q < p; q++) {
+                sumRe += scratch[2*q];
+                sumIm += scratch[2*q+1];
+            }
+            spectrum[2*(outputOffset + u)] = sumRe;
+            spectrum[2*(outputOffset + u)+1] = sumIm;
+
+            for (int q1 = 1; q1 <= p / 2; q1++) {
+                float aRe = scratch[0];
+                float aIm = scratch[1];
+                float bRe = 0;
+                float bIm = 0;
+                int rootIndex = 0;
+                for (int j = 1; j <= p / 2; j++) {
+                    rootIndex += q1;
+                    if (rootIndex >= p) {
+                        rootIndex -= p;
+                    }
+                    float cos = twiddles[2 * rootIndex * rootStride];
+                    float sin = -twiddles[2 * rootIndex * rootStride + 1];
+                    aRe += cos * (scratch[2*j] + scratch[2*(p-j)]);
+                    aIm += cos * (scratch[2*j+1] + scratch[2*(p-j)+1]);
+                    bRe += sin * (scratch[2*j+1] - scratch[2*(p-j)+1]);
+                    bIm -= sin * (scratch[2*j] - scratch[2*(p-j)]);
+                }
+                int k1 = 2 * (outputOffset + u + q1 * m);
+                int k2 = 2 * (outputOffset + u + (p - q1) * m);
+                spectrum[k1] = aRe + bRe;
+                spectrum[k1+1] = aIm + bIm;
+                spectrum[k2] = aRe - bRe;
+                spectrum[k2+1] = aIm - bIm;
+            }
+        }
+    }
+
+    private void initBluestein() {
+        chirp = new float[2 * half];
+        for (int k = 0; k < half; k++) {
+            // k^2 modulo 2*half keeps the angle small and precise
+            long kSquared = ((long) k * k) % (2L * half);
+            chirp[2*k] = (float) Math.cos(Math.PI * kSquared / half);
+            chirp[2*k+1] = (float) -Math.sin(Math.PI * kSquared / half);
+        }
+        convolutionTwiddles = new float[convolutionLength];
+        for (int k = 0; k < convolutionLength / 2; k++) {
+            convolutionTwiddles[2*k] = (float) Math.cos(2 * Math.PI * k / convolutionLength);
+            convolutionTwiddles[2*k+1] = (float) -Math.sin(2 * Math.PI * k / convolutionLength);
+        }
+        convolution = new float[2 * convolutionLength];
+
+        // The filter is the conjugated chirp, for positive and negative indices
+        chirpFilterSpectrum = new float[2 * convolutionLength];
+        for (int k = 0; k < half; k++) {
+            chirpFilterSpectrum[2*k] = chirp[2*k];
+            chirpFilterSpectrum[2*k+1] = -chirp[2*k+1];
+            if (k > 0) {
+                chirpFilterSpectrum[2*(convolutionLength-k)] = chirp[2*k];
+                chirpFilterSpectrum[2*(convolutionLength-k)+1] = -chirp[2*k+1];
+            }
+        }
+        powerOfTwoForward(chirpFilterSpectrum);
+    }
+
+    /**
+     * DFT of packed into spectrum with Bluestein's algorithm:
+     * X[k] = chirp[k] * sum(x[j] * chirp[j] * conj(chirp[k-j])), the sum being a convolution.
+     */
+    private void bluestein() {
+        for (int k = 0; k < half; k++) {
+            float xRe = packed[2*k];
+            float xIm = packed[2*k+1];
+            convolution[2*k] = xRe * chirp[2*k] - xIm * chirp[2*k+1];
+            convolution[2*k+1] = xRe * chirp[2*k+1] + xIm * chirp[2*k];
+        }
+        for (int i = 2 * half; i < convolution.length; i++) {
+            convolution[i] = 0;
+        }
+
+        powerOfTwoForward(convolution);
+        // Multiply by the filter, conjugated so that the forward FFT computes the inverse FFT
+        for (int k = 0; k < convolutionLength; k++) {
+            float aRe = convolution[2*k];
+            float aIm = convolution[2*k+1];
+            float bRe = chirpFilterSpectrum[2*k];
+            float bIm = chirpFilterSpectrum[2*k+1];
+            convolution[2*k] = aRe * bRe - aIm * bIm;
+            convolution[2*k+1] = -(aRe * bIm + aIm * bRe);
+        }
+        powerOfTwoForward(convolution);
+
+        for (int k = 0; k < half; k++) {
+            float cRe = convolution[2*k] / convolutionLength;
+            float cIm = -convolution[2*k+1] / convolutionLength;
+            spectrum[2*k] = cRe * chirp[2*k] - cIm * chirp[2*k+1];
+            spectrum[2*k+1] = cRe * chirp[2*k+1] + cIm * chirp[2*k];
+        }
+    }
+
+    /**
+     * In place iterative radix 2 FFT of convolutionLength complex values.
+     * @param a interleaved real and imaginary parts
+     */
+    private void powerOfTwoForward(float[] a) {
+        int length = convolutionLength;
+        for (int i = 1, j = 0; i < length; i++) {
+            int bit = length >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                float tRe = a[2*i];
+                float tIm = a[2*i+1];
+                a[2*i] = a[2*j];
+                a[2*i+1] = a[2*j+1];
+                a[2*j] = tRe;
+                a[2*j+1] = tIm;
+            }
+        }
+        for (int size = 2; size <= length; size <<= 1) {
+            int halfSize = size >> 1;
+            int twiddleStride = length / size;
+            for (int start = 0; start < length; start += size) {
+                for (int u = 0; u < halfSize; u++) {
+                    float wRe = convolutionTwiddles[2 * (u * twiddleStride)];
+                    float wIm = convolutionTwiddles[2 * (u * twiddleStride) + 1];
+                    int a0 = 2 * (start + u);
+                    int a1 = 2 * (start + u + halfSize);
+                    float tRe = a[a1] * wRe - a[a1+1] * wIm;
+                    float tIm = a[a1] * wIm + a[a1+1] * wRe;
+                    a[a1] = a[a0] - tRe;
+                    a[a1+1] = a[a0+1] - tIm;
+                    a[a0] += tRe;
+                    a[a0+1] += tIm;
+                }
+            }
+        }
+    }
+
+    private static int[] factorize(int length) {
+        int[] buffer = new int[32];
+        int nFactors = 0;
+        int remaining = length;
+        for (int factor = 2; remaining > 1; factor++) {
+            while (remaining % factor == 0) {
+                buffer[nFactors++] = factor;
+                remaining /= factor;
+            }
+            if (factor * factor > remaining && remaining > 1) {
+                buffer[nFactors++] = remaining;
+                remaining = 1;
+            }
+        }
+        int[] result = new int[nFactors];
+        System.arraycopy(buffer, 0, result, 0, nFactors);
+        return result;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+/**
+ * Ring of spectrogram columns updated once per analysis step, so that a history analyzed on
+ * several consecutive steps does not recompute its spectrogram every time. The columns are
+ * spaced by exactly one analysis step (the grid the block centers of the SpectrogramLayout are
+ * computed on) so that every column keeps its index from one step to the next, shifted by one.
+ * Each column contains the normalized log magnitudes of the band around the carriers, computed
+ * like in the SpectrogramDemodulator.
+ * Buffers are allocated once, this class is NOT thread safe.
+ */
+public class RollingSpectrogram {
+    private final int frameLength;
+    private final int frameOffset;
+    private final int stepInSamples;
+    private final int nColumns;
+    private final int nBins;
+    private final int lowerCutoffFrequencyIdx;
+    private final int upperCutoffFrequencyIdx;
+
+    private final HammingWindow hammWin;
+    private final RealFFT fft;
+    private final float[] column;
+    private final float[] ring; // One row of nBins values per column
+    private int newestSlot;
+
+    /**
+     * @param layout window length and frequency band of the columns
+     * @param stepInSamples number of samples added to the history between two updates
+     * @param historyBufferSize length of the history, the columns are kept as long as they are completely inside it
+     */
+    public RollingSpectrogram(SpectrogramLayout layout, int stepInSamples, int historyBufferSize) {
+        int winLenInSamples = layout.getWinLenInSamples();
+        if (winLenInSamples > historyBufferSize) {
+            throw new IllegalArgumentException("The spectrogram window cannot be longer than the history.");
+        }
+        this.stepInSamples = stepInSamples;
+        this.nColumns = (historyBufferSize - winLenInSamples) / stepInSamples + 1;
+        this.nBins = layout.getnBins();
+        this.lowerCutoffFrequencyIdx = layout.getLowerCutoffFrequencyIdx();
+        this.upperCutoffFrequencyIdx = layout.getUpperCutoffFrequencyIdx();
+        this.frameLength = layout.getFrameLength();
+        this.frameOffset = layout.getFrameStart(0); // Column 0 starts with the history
+
+        hammWin = new HammingWindow(frameLength);
+        fft = new RealFFT(layout.getFftLength());
+        column = new float[layout.getFftLength()];
+        ring = new float[nColumns * nBins];
+        newestSlot = nColumns - 1;
+    }
+
+    /**
+     * Computes the newest column, the one ending at most one step before the end of the history.
+     * Must be called every time one analysis step was added to the history.
+     * @param historyBuffer the history, read in place
+     */
+    public void update(CircularArray historyBuffer) {
+        int frameStart = (nColumns - 1) * stepInSamples + frameOffset;
+        for (int i = 0; i < frameLength; i++) {
+            column[i] = historyBuffer.get(frameStart + i);
+        }
+        hammWin.applyWindow(column);
+        // Zero-padding up to the FFT length
+        for (int i = frameLength; i < column.length; i++) {
+            column[i] = 0;
+        }
+        fft.realForward(column);
+
+        newestSlot = newestSlot == nColumns - 1 ? 0 : newestSlot + 1;
+        int offset = newestSlot * nBins;
+        double logSum = 0;
+        for (int i = lowerCutoffFrequencyIdx; i <= upperCutoffFrequencyIdx; i++) {
+            float absolute = DecoderUtils.getComplexAbsolute(column[2*i], column[2*i+1]);
+            float logAbsolute = (float) Math.log(absolute == 0 ? 0.0000001 : absolute);
+            ring[offset + i - lowerCutoffFrequencyIdx] = logAbsolute;
+            logSum += logAbsolute;
+        }
+
+        // Normalization
+        for (int i = 0; i < nBins; i++) {
+            ring[offset + i] = (float) (ring[offset + i] / logSum);
+        }
+    }
+
+    /**
+     * @return number of columns kept, column 0 starts with the history and column i starts i steps later
+     */
+    public int getnColumns() {
+        return nColumns;
+    }
+
+    /**
+     * @return number of samples between the starts of two consecutive columns
+     */
+    public int getStepInSamples() {
+        return stepInSamples;
+    }
+
+    /**
+     * @return number of frequency bins per column
+     */
+    public int getnBins() {
+        return nBins;
+    }
+
+    /**
+     * @return normalized log magnitudes of every column, see getColumnOffset()
+     */
+    public float[] getValues() {
+        return ring;
+    }
+
+    /**
+     * Returns where a column of the current history is stored, the value of its bin i is at
+     * getColumnOffset(column) + i in getValues().
+     * @param column index of the column, between 0 and getnColumns()-1
+     * @return offset of the column in getValues()
+     */
+    public int getColumnOffset(int column) {
+        int slot = newestSlot - (nColumns - 1 - column);
+        if (slot < 0) {
+            slot += nColumns;
+        }
+        return slot * nBins;
+    }
+}
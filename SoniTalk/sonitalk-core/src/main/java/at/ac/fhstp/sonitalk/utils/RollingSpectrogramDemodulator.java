@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+/**
+ * Demodulator reading the columns of a RollingSpectrogram, which are computed once per analysis
+ * step. Demodulating a detected message then only aggregates the cells around each carrier, it
+ * does not read the history. Its columns are spaced by exactly one analysis step, whereas the
+ * SpectrogramDemodulator spreads them evenly over each bit period, so some bits close to the
+ * decision threshold can differ. Each block center is read on the rolling column starting
+ * closest to the column of the layout, the rounding of the analysis step does not accumulate.
+ */
+public class RollingSpectrogramDemodulator implements Demodulator {
+    private final SpectrogramLayout layout;
+    private final RollingSpectrogram spectrogram;
+    private final int nFrequencies;
+    private final int nNeighborsFreqUpDown;
+    private final int nNeighborsTimeLeftRight;
+    private final Aggregator aggregator;
+    private final float[] values;
+    private final int[] blockCenters; // Index of the rolling column at the center of each block
+
+    /**
+     * @param layout block centers and carrier indices of the spectrogram
+     * @param spectrogram columns of the current history, updated by the caller at every step
+     * @param nFrequencies number of carrier frequencies
+     * @param nNeighborsFreqUpDown how many neighboring frequency bins (above AND below) are aggregated
+     * @param nNeighborsTimeLeftRight how many neighboring columns (left AND right) are aggregated
+     * @param aggFcn aggregation function: "mean", "max", "median" or "trimmedmean"
+     */
+    public RollingSpectrogramDemodulator(SpectrogramLayout layout, RollingSpectrogram spectrogram, int nFrequencies, int nNeighborsFreqUpDown, int nNeighborsTimeLeftRight, String aggFcn) {
+        blockCenters = new int[layout.getnBlocks()];
+        for (int j = 0; j < blockCenters.length; j++) {
+            blockCenters[j] = Math.round((float) layout.getColumnStart(layout.getBlockCenter(j)) / spectrogram.getStepInSamples());
+        }
+        // Start and end blocks are not read
+        if (blockCenters[blockCenters.length - 2] + nNeighborsTimeLeftRight >= spectrogram.getnColumns()) {
+            throw new IllegalArgumentException("The last message block is not completely inside the history, use another demodulation mode.");
+        }
+        this.layout = layout;
+        this.spectrogram = spectrogram;
+        this.nFrequencies = nFrequencies;
+        this.nNeighborsFreqUpDown = nNeighborsFreqUpDown;
+        this.nNeighborsTimeLeftRight = nNeighborsTimeLeftRight;
+        this.aggregator = Aggregators.forName(aggFcn);
+        this.values = new float[(2*nNeighborsFreqUpDown+1)*(2*nNeighborsTimeLeftRight+1)]; // The carrier and its neighbors
+    }
+
+    /**
+     * @param analysisHistoryBuffer not read (can be null), the columns come from the RollingSpectrogram
+     * @param bits output array of length nMessageBlocks * nFrequencies, receives 0 or 1 for each bit
+     */
+    @Override
+    public void demodulate(float[] analysisHistoryBuffer, int[] bits) {
+        int arrayCounter = 0;
+        // Go through all message blocks, skipping start and end block with a stepsize of 2 (because we always have a normal block and an inverted block)
+        for (int j = 1; j < layout.getnBlocks() - 1; j = j + 2) {
+            for (int m = nFrequencies - 1; m >= 0; m--) {
+                float currentCenterFreqIdx = layout.getFrequencyCenterPosition(m);
+                float currentBit = getPointAndNeighborsAggreagate(currentCenterFreqIdx, blockCenters[j]);
+                float currentBitInv = getPointAndNeighborsAggreagate(currentCenterFreqIdx, blockCenters[j + 1]);
+
+                // Same comparison as the SpectrogramDemodulator (the normalization factor is negative)
+                if (currentBit < currentBitInv) {
+                    bits[arrayCounter] = 1;
+                }
+                else{
+                    bits[arrayCounter] = 0;
+                }
+                arrayCounter++;
+            }
+        }
+    }
+
+    /**
+     * Only the band around the carriers is kept, no spectrum is available.
+     * @return null
+     */
+    @Override
+    public float[][] getSpectrum() {
+        return null;
+    }
+
+    /**
+     * Aggregates the cells around a carrier, in the same order as the SpectrogramDemodulator.
+     * @param row frequency center position
+     * @param col index of the rolling column at the block center
+     * @return the aggregated value
+     */
+    private float getPointAndNeighborsAggreagate(float row, int col) {
+        float[] data = spectrogram.getValues();
+        float neighborSpacing = layout.getNeighborSpacing();
+        int valuecounter = 0;
+        for(int i = nNeighborsFreqUpDown*(-1); i <= nNeighborsFreqUpDown; i++){
+            for(int j = nNeighborsTimeLeftRight*(-1); j <= nNeighborsTimeLeftRight; j++){
+                if(i!=0 || j!=0){ //[0,0] is done lower
+                    values[valuecounter] = DecoderUtils.interpolate(data, spectrogram.getColumnOffset(col + j), row + i * neighborSpacing);
+                    valuecounter++;
+                }
+            }
+        }
+        values[valuecounter] = DecoderUtils.interpolate(data, spectrogram.getColumnOffset(col), row);
+        return aggregator.aggregate(values, valuecounter + 1);
+    }
+}
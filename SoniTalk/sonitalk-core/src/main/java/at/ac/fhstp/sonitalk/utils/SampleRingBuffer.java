@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free ring buffer of audio samples between exactly one producer thread (e.g. the capture
+ * thread) and one consumer thread (e.g. the analysis thread). Each position is only modified by
+ * its own thread, so writing never waits for the consumer: samples that do not fit anymore are
+ * dropped and counted as an overrun instead. A producer which can wait (e.g. reading a file) can
+ * call awaitFree() before writing.
+ */
+public class SampleRingBuffer {
+    private final short[] buffer;
+    private final int mask;
+
+    // Total number of samples written and read since the creation, only modified by the producer and the consumer respectively
+    private final AtomicLong writePosition = new AtomicLong();
+    private final AtomicLong readPosition = new AtomicLong();
+
+    private final AtomicLong overrunCount = new AtomicLong();
+    private final AtomicLong droppedSampleCount = new AtomicLong();
+
+    private volatile Thread waitingConsumer;
+    private volatile Thread waitingProducer;
+
+    /**
+     * @param minCapacity minimal number of samples the buffer can hold, rounded up to a power of two
+     */
+    public SampleRingBuffer(int minCapacity) {
+        if (minCapacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive.");
+        }
+        int capacity = DecoderUtils.nextPowerOfTwo(minCapacity);
+        this.buffer = new short[capacity];
+        this.mask = capacity - 1;
+    }
+
+    public int getCapacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Producer side. Copies as many samples as there is space left and drops the rest.
+     * @param samples source array
+     * @param offset index of the first sample to write
+     * @param length number of samples to write
+     * @return the number of samples actually written
+     */
+    public int write(short[] samples, int offset, int length) {
+        long write = writePosition.get();
+        int free = buffer.length - (int) (write - readPosition.get());
+        int nWritten = Math.min(length, free);
+        if (nWritten < length) {
+            overrunCount.incrementAndGet();
+            droppedSampleCount.addAndGet(length - nWritten);
+        }
+
+        int start = (int) (write & mask);
+        int firstPart = Math.min(nWritten, buffer.length - start);
+        System.arraycopy(samples, offset, buffer, start, firstPart);
+        System.arraycopy(samples, offset + firstPart, buffer, 0, nWritten - firstPart);
+        // Publishes the samples copied above to the consumer
+        writePosition.lazySet(write + nWritten);
+
+        Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+        return nWritten;
+    }
+
+    /**
+     * Producer side. Number of samples that can be written without dropping any.
+     */
+    public int free() {
+        return buffer.length - (int) (writePosition.get() - readPosition.get());
+    }
+
+    /**
+     * Producer side. Blocks until at least length samples can be written, the timeout elapses or
+     * the thread is interrupted.
+     * @param length number of samples to write, at most the capacity
+     * @param timeout maximum time to wait
+     * @param unit unit of the timeout
+     * @return true if the samples can be written
+     */
+    public boolean awaitFree(int length, long timeout, TimeUnit unit) {
+        if (free() >= length) {
+            return true;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        waitingProducer = Thread.currentThread();
+        try {
+            // A read between the check and parkNanos leaves a permit, so no wake-up is lost
+            while (free() < length) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || Thread.currentThread().isInterrupted()) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+            return true;
+        } finally {
+            waitingProducer = null;
+        }
+    }
+
+    /**
+     * Consumer side. Number of samples that can be read.
+     */
+    public int available() {
+        return (int) (writePosition.get() - readPosition.get());
+    }
+
+    /**
+     * Consumer side. Reads exactly length samples, or nothing if not enough are available.
+     * @param destination destination array
+     * @param offset index of the first sample to fill in destination
+     * @param length number of samples to read, at most the capacity
+     * @return true if the samples were read
+     */
+    public boolean read(short[] destination, int offset, int length) {
+        long read = readPosition.get();
+        if (writePosition.get() - read < length) {
+            return false;
+        }
+
+        int start = (int) (read & mask);
+        int firstPart = Math.min(length, buffer.length - start);
+        System.arraycopy(buffer, start, destination, offset, firstPart);
+        System.arraycopy(buffer, 0, destination, offset + firstPart, length - firstPart);
+        // Gives the space back to the producer once the samples are copied
+        readPosition.lazySet(read + length);
+
+        Thread producer = waitingProducer;
+        if (producer != null) {
+            LockSupport.unpark(producer);
+        }
+        return true;
+    }
+
+    /**
+     * Consumer side. Blocks until at least length samples are available, the timeout elapses or
+     * the thread is interrupted.
+     * @param length number of samples needed
+     * @param timeout maximum time to wait
+     * @param unit unit of the timeout
+     * @return true if the samples are available
+     */
+    public boolean awaitAvailable(int length, long timeout, TimeUnit unit) {
+        if (available() >= length) {
+            return true;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        waitingConsumer = Thread.currentThread();
+        try {
+            // A write between the check and parkNanos leaves a permit, so no wake-up is lost
+            while (available() < length) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || Thread.currentThread().isInterrupted()) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+            return true;
+        } finally {
+            waitingConsumer = null;
+        }
+    }
+
+    /**
+     * Consumer side. Discards all the samples available.
+     */
+    public void clear() {
+        readPosition.lazySet(writePosition.get());
+    }
+
+    /**
+     * Number of writes that could not be stored completely because the consumer lagged behind.
+     */
+    public long getOverrunCount() {
+        return overrunCount.get();
+    }
+
+    /**
+     * Total number of samples dropped by overruns.
+     */
+    public long getDroppedSampleCount() {
+        return droppedSampleCount.get();
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+import at.ac.fhstp.sonitalk.AudioSource;
+
+/**
+ * AudioSource reading audio already in memory, as fast as the decoder analyzes it.
+ */
+public class ShortArrayAudioSource implements AudioSource {
+    private final short[] samples;
+    private final int sampleRate;
+    private int position = 0;
+
+    /**
+     * @param samples mono audio, not copied
+     * @param sampleRate sample rate of the audio
+     */
+    public ShortArrayAudioSource(short[] samples, int sampleRate) {
+        this.samples = samples;
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public boolean isRealTime() {
+        return false;
+    }
+
+    @Override
+    public boolean start() {
+        return true;
+    }
+
+    @Override
+    public int read(short[] buffer, int offset, int length) {
+        if (position == samples.length) {
+            return END_OF_STREAM;
+        }
+        int nRead = Math.min(length, samples.length - position);
+        System.arraycopy(samples, position, buffer, offset, nRead);
+        position += nRead;
+        return nRead;
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public void release() {
+    }
+}
@@ -19,7 +19,12 @@
 
 package at.ac.fhstp.sonitalk.utils;
 
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 
 import at.ac.fhstp.sonitalk.SoniTalkConfig;
 import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
@@ -29,8 +34,28 @@ import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
  * It creates the blocks depending on the message forwarded. The generator
  * includes indexing the frequencies, fft, normalization, fade-in/fade-out
  * and casting to the right format.
+ * Generated blocks are kept in a template cache shared by all generators, keyed by the
+ * parameters they depend on (sample rate, block length and frequency bands), so that
+ * generating a block that was already generated once is a copy of its samples.
+ * Instances of this class are NOT thread safe, the caches are.
  */
 public class SignalGenerator {
+    /**
+     * Default maximum number of block templates kept in the cache. One template of the default
+     * configuration takes about 44kB.
+     */
+    public static final int DEFAULT_TEMPLATE_CACHE_CAPACITY = 32;
+
+    private static int templateCacheCapacity = DEFAULT_TEMPLATE_CACHE_CAPACITY;
+    private static final Map<String, BlockTemplate> templateCache = new LinkedHashMap<String, BlockTemplate>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BlockTemplate> eldest) {
+            return size() > templateCacheCapacity;
+        }
+    };
+    // The random signal is always seeded with the same value, so its spectrum only depends on its length
+    private static final ConcurrentHashMap<Integer, double[]> noiseSpectrumCache = new ConcurrentHashMap<>();
+
     private SoniTalkConfig config;
 
     private int fs;
@@ -42,11 +67,10 @@ public class SignalGenerator {
     private double[] cutoffFreqDownIdx;
     private double[] cutoffFreqUpIdx;
 
-    private short[] whiteNoise;
-
-    private Random randomGen = new Random(42);
+    private DoubleFFT_1D fft;
+    private int fftSize;
 
-    private double bandWidth; //the bandwith for every specified frequencyband
+    private double bandWidth = 1; //the bandwith for every specified frequencyband
 
 
     /**
@@ -74,27 +98,118 @@ public class SignalGenerator {
      * @return one short array audio message block
      */
     public short[] getSignalBlock(final SignalType signalType, String[] bitStringArray){
-        android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND); //set the handler thread to background
+        return getSignalBlock(signalType, useSignalConfig(signalType, bitStringArray));
+    }
+
+    /**
+     * Starts generating an audio message block.
+     * @param signalType type of specification for getting frequency bands
+     * @param carriers message to transform into frequency bands, bit i set if the frequency i is played
+     * @return one short array audio message block
+     */
+    public short[] getSignalBlock(final SignalType signalType, BitSet carriers){
+        return getSignalBlock(signalType, getFrequencyBands(signalType, carriers));
+    }
+
+    private short[] getSignalBlock(SignalType signalType, double[][] frequencyBands){
+        BlockTemplate template = getBlockTemplate(signalType, frequencyBands);
+        if (template.maxAbs > max) {
+            max = template.maxAbs; //the normalization uses the maximum of all the blocks generated so far
+        }
+        NormalizedBlock normalizedBlock = template.normalizedBlock;
+        if (normalizedBlock == null || normalizedBlock.max != max) {
+            normalizedBlock = new NormalizedBlock(max, transformDoubleArrayIntoShortArray(signalType, template));
+            template.normalizedBlock = normalizedBlock;
+        }
+        return normalizedBlock.samples.clone();
+    }
+
+    /**
+     * Sets the maximum number of block templates kept in the cache shared by all generators.
+     * Applications generating many different messages (e.g. on a server) can increase it.
+     * @param capacity maximum number of templates, 0 disables the cache
+     */
+    public static void setTemplateCacheCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("The template cache capacity cannot be negative");
+        }
+        synchronized (templateCache) {
+            templateCacheCapacity = capacity;
+            templateCache.clear();
+        }
+    }
 
-        return transformDoubleArrayIntoShortArray(signalType, bitStringArray);
+    /**
+     * Returns the template of a block, generating it if it is not cached yet.
+     * @param signalType type of specification for getting frequency bands
+     * @param frequencyBands lower and higher frequency of every band
+     * @return the template of the block
+     */
+    private BlockTemplate getBlockTemplate(SignalType signalType, double[][] frequencyBands) {
+        String key = getTemplateKey(signalType, frequencyBands);
+        BlockTemplate template;
+        synchronized (templateCache) {
+            template = templateCache.get(key);
+        }
+        if (template == null) {
+            template = new BlockTemplate(generateSignalBlock(signalType, frequencyBands), winLenSamples);
+            synchronized (templateCache) {
+                templateCache.put(key, template);
+            }
+        }
+        return template;
+    }
+
+    /**
+     * Builds a key from everything a generated block depends on. The values are copied as the
+     * configuration can be modified after creating the generator.
+     */
+    private String getTemplateKey(SignalType signalType, double[][] frequencyBands) {
+        int period = signalType.equals(SignalType.PAUSECONFIG) ? config.getPauseperiod() : config.getBitperiod();
+        StringBuilder key = new StringBuilder();
+        key.append(signalType.name()).append('/').append(fs).append('/').append(period).append('/');
+        for (double[] band : frequencyBands) {
+            key.append(band[0]).append('-').append(band[1]).append(',');
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the spectrum (as computed by realForwardFull) of the random signal used to
+     * generate blocks of the given length.
+     * @param winLenSamples length of the blocks in samples
+     * @return the spectrum, it must not be modified
+     */
+    private static double[] getNoiseSpectrum(int winLenSamples) {
+        double[] spectrum = noiseSpectrumCache.get(winLenSamples);
+        if (spectrum == null) {
+            spectrum = new double[winLenSamples * 2];
+            Random randomGen = new Random(42);
+            for (int j = 0; j < winLenSamples; j++) {
+                spectrum[j] = randomGen.nextDouble(); //generate random double values and store it in the signal array
+            }
+            new DoubleFFT_1D(winLenSamples).realForwardFull(spectrum);
+            noiseSpectrumCache.putIfAbsent(winLenSamples, spectrum);
+        }
+        return spectrum;
     }
 
     /**
      * Calculates the samples depending on the window length. Takes the frequency bands and
      * check their order with a bubble sort. Calculates the indices in the samples depending
-     * on the frequency bands. Fills an array, with the size of the samples, with random values.
-     * Calls the fft with those array.
+     * on the frequency bands. Calls the fft with the spectrum of an array, with the size of
+     * the samples, filled with random values.
      * @param signalType type of specification for getting frequency bands
-     * @param bitStringArray message to transform into frequency bands
+     * @param frequencyBands lower and higher frequency of every band, sorted in place
      * @return a complex array of audio data
      */
-    private double[] generateSignalBlock(SignalType signalType, String[] bitStringArray){
+    private double[] generateSignalBlock(SignalType signalType, double[][] frequencyBands){
         if(signalType.equals(SignalType.PLAYCONFIG)) {
             winLen = config.getBitperiod();
         }else if(signalType.equals(SignalType.PAUSECONFIG)) {
             winLen = config.getPauseperiod();
         }
-        whiteNoiseBands = useSignalConfig(signalType, bitStringArray); //import the frequencies
+        whiteNoiseBands = frequencyBands;
         if (winLen==0){winLen= 30;}
         winLenSamples = winLen*fs/1000;
 
@@ -129,39 +244,20 @@ public class SignalGenerator {
             cutoffFreqUpIdx[i] = Math.round(freqUp / (fs / 2) * (winLen * fs / 1000) + 1); //calculate the index of the higher frequency
         }
 
-        double[] signal = new double[winLenSamples]; //initializing the double array for the signal
-
-        randomGen = new Random(42);
-        for (int j = 0; j < winLenSamples; j++) {
-            signal[j] = randomGen.nextDouble(); //generate random double values and store it in the signal array
-        }
-
-        double[] complexWhiteNoise = doFFT(winLenSamples, signal); //execute the fft method for creating whitenoisebands
+        double[] complexWhiteNoise = doFFT(winLenSamples, getNoiseSpectrum(winLenSamples)); //execute the fft method for creating whitenoisebands
 
         return complexWhiteNoise;
     }
 
     /**
-     * Normalizes the audio signal by dividing with the max value of the signal and only saves the real values.
-     * @param signalType type of specification for getting frequency bands
-     * @param bitStringArray message to transform into frequency bands
+     * Normalizes the audio signal by dividing with the max value of all the signals generated so far.
+     * @param template generated block, holding the real values of the signal
      * @return a normalized audio array
      */
-    private double[] normalizeWhitenoiseSignal(SignalType signalType, String[] bitStringArray){
-        double[] complexWhiteNoise = generateSignalBlock(signalType, bitStringArray);
-        for (int i = 0; i < (winLenSamples * 2); i++) {
-            if (Math.abs(complexWhiteNoise[i]) > max) {
-                max = Math.abs(complexWhiteNoise[i]); //searching for the maximum value of the whitenoisesignal
-            }
-        }
-
-        double[] helpNoise = new double[winLenSamples]; //creating a help array for the real values of the generated noise
-        int noiseCounter = 0; //helpvariable for counting the real values
-        for (int l = 0; l < (winLenSamples * 2); l++) {
-            if (l % 2 == 0) { //every array row with no remain has real values
-                helpNoise[noiseCounter] = (complexWhiteNoise[l] / max); //divide the complexNoise by the maximum value and then store it in the realNoise array
-                noiseCounter++; //counter plus one for every real value
-            }
+    private double[] normalizeWhitenoiseSignal(BlockTemplate template){
+        double[] helpNoise = new double[template.realSignal.length]; //creating a help array for the real values of the generated noise
+        for (int l = 0; l < helpNoise.length; l++) {
+            helpNoise[l] = (template.realSignal[l] / max); //divide the real values by the maximum value
         }
 
         return helpNoise;
@@ -170,11 +266,11 @@ public class SignalGenerator {
     /**
      * Performs a fade-in and fade-out on the signal to avoid cracking noises.
      * @param signalType type of specification for getting frequency bands
-     * @param bitStringArray message to transform into frequency bands
+     * @param template generated block
      * @return a loudness adjusted audio signal array
      */
-    private double[] makeFadeInAndFadeOut(SignalType signalType, String[] bitStringArray){
-        double[] helpNoiseFull = normalizeWhitenoiseSignal(signalType, bitStringArray);
+    private double[] makeFadeInAndFadeOut(SignalType signalType, BlockTemplate template){
+        double[] helpNoiseFull = normalizeWhitenoiseSignal(template);
         if(signalType.equals(SignalType.PLAYCONFIG)) {
             winLen = config.getBitperiod();
         }else if(signalType.equals(SignalType.PAUSECONFIG)) {
@@ -206,11 +302,11 @@ public class SignalGenerator {
      * Checks if all values are in the range of -1 to 1.
      * Casts the message to the range of short (-32760 to 32760)
      * @param signalType type of specification for getting frequency bands
-     * @param bitStringArray message to transform into frequency bands
+     * @param template generated block
      * @return casted short array
      */
-    private short[] transformDoubleArrayIntoShortArray(SignalType signalType, String[] bitStringArray){
-        double[] helpNoise = makeFadeInAndFadeOut(signalType, bitStringArray);
+    private short[] transformDoubleArrayIntoShortArray(SignalType signalType, BlockTemplate template){
+        double[] helpNoise = makeFadeInAndFadeOut(signalType, template);
 
         for (int i = 0; i < winLenSamples; i++) {
             if(helpNoise[i] > 1){ //if new value higher than 1
@@ -221,7 +317,7 @@ public class SignalGenerator {
             }
         }
 
-        whiteNoise = new short[winLenSamples]; //short array for the whitenoise
+        short[] whiteNoise = new short[winLenSamples]; //short array for the whitenoise
 
         for (int i = 0; i < winLenSamples; i++) {
             whiteNoise[i] = (short) (helpNoise[i] * 32760); //scale the double values up to short by multiplying with 32760
@@ -237,21 +333,19 @@ public class SignalGenerator {
     }
 
     /**
-     * Performs the fft to get a frequency-referenced signal and sets everything to zero where no audio signal should be in the message.
+     * Takes the frequency-referenced signal and sets everything to zero where no audio signal should be in the message.
      * Executes the complex inverse to get a time-referenced signal again.
      * @param fftSize size for fft
-     * @param inputSignal the signal to be transformed
+     * @param spectrum the spectrum of the signal to be transformed, it is not modified
      * @return
      */
-    private double[] doFFT(int fftSize, double[] inputSignal) {
-
-        DoubleFFT_1D mFFT = new DoubleFFT_1D(fftSize); //creating a new fft object
-
-        double[] complexSignal = new double[winLenSamples * 2]; //creating and initializing a new double array for the complex numbers
-
-        System.arraycopy(inputSignal, 0, complexSignal, 0, winLenSamples); //copy the array with the random numbers into the new one
+    private double[] doFFT(int fftSize, double[] spectrum) {
+        if (fft == null || this.fftSize != fftSize) {
+            fft = new DoubleFFT_1D(fftSize); //creating a new fft object only when the block length changes
+            this.fftSize = fftSize;
+        }
 
-        mFFT.realForwardFull(complexSignal); //make the fft on the complex signal
+        double[] complexSignal = spectrum.clone(); //copy the spectrum of the random numbers into a new array
 
         double minFreq = cutoffFreqDownIdx[0]; //get the lowest frequency after the sort
         double maxFreq = cutoffFreqUpIdx[whiteNoiseBands.length-1]; //get the highest frequency after the sort
@@ -293,7 +387,7 @@ public class SignalGenerator {
             }
         }
 
-        mFFT.complexInverse(complexSignal,false);
+        fft.complexInverse(complexSignal,false);
 
         return complexSignal; //return the signal with the complex values
 
@@ -304,66 +398,80 @@ public class SignalGenerator {
      * Takes the message array with zeros and ones to calculate frequency bands.
      * @param signalTypeConfig type of specification for getting frequency bands
      * @param bitStringArray message to transform into frequency bands
-     * @returna frequency bands as two-dimensional array depending on the signal type and the message array.
+     * @return frequency bands as two-dimensional array depending on the signal type and the message array.
      */
     private double[][] useSignalConfig(SignalType signalTypeConfig, String[] bitStringArray) {
-        double[][] frequencyBands; //helparray for storing the frequencybands of the technologies
-        bandWidth = 1;
-
         int numberOfFrequencies = config.getnFrequencies();
-
-        String[] mLine = new String[numberOfFrequencies];
+        double[][] frequencyBands = new double[numberOfFrequencies][]; //helparray for storing the frequencybands of the technologies
         int freqCounter = 0;
+        for(int i = 0; i<numberOfFrequencies; i++) {
+            if ("1".equals(bitStringArray[i])) {
+                frequencyBands[freqCounter++] = getFrequencyBand(i);
+            } else if ("0".equals(bitStringArray[i]) && signalTypeConfig.equals(SignalType.PAUSECONFIG)) {
+                frequencyBands[freqCounter++] = new double[2]; //the pause uses an empty band for every zero
+            }
+        }
+        return Arrays.copyOf(frequencyBands, freqCounter); //the array with the frequencybands will be returned
+    }
 
-        switch (signalTypeConfig) {
-            case PLAYCONFIG:
-                int frequencyZero = config.getFrequencyZero();
-                int spaceBetweenFrequencies = config.getFrequencySpace();
-
-                for(int i = 0; i<numberOfFrequencies; i++) {
-                    if(bitStringArray[i]!=null) {
-                        if (bitStringArray[i].equals("0")) {
-                            //mLine[i] = "0";
-                        } else if (bitStringArray[i].equals("1")) {
-                            mLine[freqCounter] = String.valueOf((frequencyZero + (i * spaceBetweenFrequencies)));
-                            freqCounter++;
-                        }
-                    }
-                }
+    /**
+     * Takes the carriers of a block to calculate frequency bands.
+     * @param signalTypeConfig type of specification for getting frequency bands
+     * @param carriers message to transform into frequency bands, bit i set if the frequency i is played
+     * @return frequency bands as two-dimensional array depending on the signal type and the carriers.
+     */
+    private double[][] getFrequencyBands(SignalType signalTypeConfig, BitSet carriers) {
+        int numberOfFrequencies = config.getnFrequencies();
+        double[][] frequencyBands = new double[numberOfFrequencies][];
+        int freqCounter = 0;
+        for(int i = 0; i<numberOfFrequencies; i++) {
+            if (carriers.get(i)) {
+                frequencyBands[freqCounter++] = getFrequencyBand(i);
+            } else if (signalTypeConfig.equals(SignalType.PAUSECONFIG)) {
+                frequencyBands[freqCounter++] = new double[2]; //the pause uses an empty band for every zero
+            }
+        }
+        return Arrays.copyOf(frequencyBands, freqCounter);
+    }
 
+    /**
+     * @param index index of the frequency in the configuration
+     * @return lower and higher frequency of the band
+     */
+    private double[] getFrequencyBand(int index) {
+        int frequency = config.getFrequencyZero() + (index * config.getFrequencySpace());
+        return new double[] { frequency - (bandWidth / 2), frequency + (bandWidth / 2) };
+    }
 
-                break;
-            case PAUSECONFIG:
-                int frequencyPause = config.getFrequencyZero();
-                int spaceBetweenFrequencies_ = config.getFrequencySpace();
-
-                for(int i = 0; i<numberOfFrequencies; i++) {
-                    if(bitStringArray[i]!=null) {
-                        if (bitStringArray[i].equals("0")) {
-                            mLine[i] = "0";
-                            freqCounter++;
-                        } else if (bitStringArray[i].equals("1")) {
-                            mLine[freqCounter] = String.valueOf((frequencyPause + (i * spaceBetweenFrequencies_)));
-                            freqCounter++;
-                        }
-                    }
+    /**
+     * Generated block before its normalization: the real values of the signal and the maximum
+     * absolute value of its complex values.
+     */
+    private static class BlockTemplate {
+        private final double[] realSignal;
+        private final double maxAbs;
+        private volatile NormalizedBlock normalizedBlock; // Last output, valid as long as the normalization does not change
+
+        BlockTemplate(double[] complexSignal, int winLenSamples) {
+            double maxAbs = 0;
+            realSignal = new double[winLenSamples];
+            for (int i = 0; i < winLenSamples * 2; i++) {
+                maxAbs = Math.max(maxAbs, Math.abs(complexSignal[i]));
+                if (i % 2 == 0) {
+                    realSignal[i / 2] = complexSignal[i];
                 }
-                break;
-        }
-
-         frequencyBands = new double[freqCounter][2];
-         for(int j = 0; j<freqCounter; j++) {
-            if(mLine[j].equals("0")){
-                frequencyBands[j][0] = 0;
-                frequencyBands[j][1] = 0;
-            }else {
-                frequencyBands[j][0] = (Integer.parseInt(mLine[j]) - (bandWidth / 2)); //lower frequencyparts of one band are stored in the first place of each arrayrow
-                frequencyBands[j][1] = (Integer.parseInt(mLine[j]) + (bandWidth / 2)); //higher frequencyparts of one band are stored in the second place of each arrayrow
             }
+            this.maxAbs = maxAbs;
         }
+    }
 
-        return frequencyBands; //the array with the frequencybands will be returned
+    private static class NormalizedBlock {
+        private final double max;
+        private final short[] samples;
 
+        NormalizedBlock(double max, short[] samples) {
+            this.max = max;
+            this.samples = samples;
+        }
     }
-
 }
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+/**
+ * Reference demodulator: computes the spectrogram of the whole history (one FFT per overlapping
+ * column), keeps the band around the carriers, takes its logarithm and normalizes each column.
+ * Each bit is then decided by comparing the aggregated neighborhood of its carrier in the normal
+ * block and in the inverted block.
+ * When no spectrum is needed (see setSpectrumComputed()), only the columns read by the bit
+ * decisions are computed, the bits are the same.
+ * All the buffers come from a SpectrogramWorkspace, demodulating does not allocate memory.
+ */
+public class SpectrogramDemodulator implements Demodulator {
+    private final SpectrogramLayout layout;
+    private final SpectrogramWorkspace workspace;
+    private final int nFrequencies;
+    private final int nNeighborsFreqUpDown;
+    private final int nNeighborsTimeLeftRight;
+    private final Aggregator aggregator;
+    private final float[] values;
+    private final boolean[] columnRead; // Columns around the centers of the message blocks
+    private volatile boolean spectrumComputed = true;
+    private boolean lastSpectrumComputed = false;
+
+    /**
+     * @param layout columns, block centers and carrier indices of the spectrogram
+     * @param workspace buffers sized for this layout, reused for every message
+     * @param nFrequencies number of carrier frequencies
+     * @param nNeighborsFreqUpDown how many neighboring frequency bins (above AND below) are aggregated
+     * @param nNeighborsTimeLeftRight how many neighboring columns (left AND right) are aggregated
+     * @param aggFcn aggregation function: "mean", "max", "median" or "trimmedmean"
+     */
+    public SpectrogramDemodulator(SpectrogramLayout layout, SpectrogramWorkspace workspace, int nFrequencies, int nNeighborsFreqUpDown, int nNeighborsTimeLeftRight, String aggFcn) {
+        this.layout = layout;
+        this.workspace = workspace;
+        this.nFrequencies = nFrequencies;
+        this.nNeighborsFreqUpDown = nNeighborsFreqUpDown;
+        this.nNeighborsTimeLeftRight = nNeighborsTimeLeftRight;
+        this.aggregator = Aggregators.forName(aggFcn);
+        this.values = new float[(2*nNeighborsFreqUpDown+1)*(2*nNeighborsTimeLeftRight+1)]; // The carrier and its neighbors
+
+        columnRead = new boolean[workspace.getnColumns()];
+        for (int j = 1; j < layout.getnBlocks() - 1; j++) {
+            for (int t = -nNeighborsTimeLeftRight; t <= nNeighborsTimeLeftRight; t++) {
+                columnRead[layout.getBlockCenter(j) + t] = true;
+            }
+        }
+    }
+
+    /**
+     * Decides if the next calls to demodulate() compute the whole spectrogram (default), or only
+     * the columns needed to decide the bits. Can be called from another thread.
+     * @param spectrumComputed false if getSpectrum() is not needed
+     */
+    public void setSpectrumComputed(boolean spectrumComputed) {
+        this.spectrumComputed = spectrumComputed;
+    }
+
+    @Override
+    public void demodulate(float[] analysisHistoryBuffer, int[] bits) {
+        int frameLength = layout.getFrameLength();
+        int fftLength = workspace.getFftLength();
+        int nbWinLenForSpectrogram = workspace.getnColumns();
+        int nMagnitudes = workspace.getnMagnitudes();
+        int nBins = workspace.getnBins();
+        int lowerCutoffFrequencyIdx = layout.getLowerCutoffFrequencyIdx();
+        int upperCutoffFrequencyIdx = layout.getUpperCutoffFrequencyIdx();
+
+        HammingWindow hammWin = workspace.getHammingWindow();
+        float[] column = workspace.getColumn();
+        float[] magnitudes = workspace.getMagnitudes();
+        float[] input = workspace.getInput();
+
+        //Log.d("nbWinLenForSpectrogram",String.valueOf(nbWinLenForSpectrogram));
+
+        boolean fullSpectrogram = spectrumComputed;
+        double fftSum = 0;
+        for(int j = 0; j<nbWinLenForSpectrogram;j++ ) {
+            if (!fullSpectrogram && !columnRead[j]) {
+                continue;
+            }
+            int helpArrayCounter = 0;
+            int frameStart = layout.getFrameStart(j);
+            for (int i = frameStart; i < analysisHistoryBuffer.length && i < frameStart + frameLength; i++) {
+                column[helpArrayCounter] = analysisHistoryBuffer[i];
+                helpArrayCounter++;
+            }
+            // The last columns exceed the history, missing samples are 0
+            for (; helpArrayCounter < frameLength; helpArrayCounter++) {
+                column[helpArrayCounter] = 0;
+            }
+
+            // n is even [DONE on winLenForSpectrogramInSamples]
+            hammWin.applyWindow(column);
+            // Zero-padding up to the FFT length
+            for (; helpArrayCounter < fftLength; helpArrayCounter++) {
+                column[helpArrayCounter] = 0;
+            }
+
+            workspace.getFFT().realForward(column);
+
+            // Get absolute value of the complex FFT result, cut away unimportant frequencies and logarithmize
+            int columnOffset = j * nMagnitudes;
+            int inputOffset = j * nBins;
+            double logSum = 0;
+            for (int i = 0; i < nMagnitudes; i++) {
+                float absolute = DecoderUtils.getComplexAbsolute(column[2*i], column[2*i+1]);
+                magnitudes[columnOffset + i] = absolute;
+                fftSum += absolute;
+                if (i >= lowerCutoffFrequencyIdx && i <= upperCutoffFrequencyIdx) {
+                    float logAbsolute = (float) Math.log(absolute == 0 ? 0.0000001 : absolute);
+                    input[inputOffset + i - lowerCutoffFrequencyIdx] = logAbsolute;
+                    logSum += logAbsolute;
+                }
+            }
+
+            // Normalization
+            for (int i = 0; i < nBins; i++) {
+                input[inputOffset + i] = (float) (input[inputOffset + i] / logSum);
+            }
+        }
+        workspace.setFftSum(fftSum);
+        lastSpectrumComputed = fullSpectrogram;
+
+        //decode using spectrogram
+        int arrayCounter = 0;
+        // Go through all message blocks, skipping start and end block with a stepsize of 2 (because we always have a normal block and an inverted block)
+        for(int j = 1; j<layout.getnBlocks()-1; j=j+2){
+            for(int m = nFrequencies-1; m>=0; m--){
+                float currentCenterFreqIdx = layout.getFrequencyCenterPosition(m);
+
+                // Matlab values range between 0 and -20 or so, always negative and not so small
+                // Android values do not seem to have a clear range, sometimes positive sometimes negative, often close to 0
+                float currentBit = getPointAndNeighborsAggreagate(input, nBins, currentCenterFreqIdx, layout.getBlockCenter(j), nNeighborsFreqUpDown, nNeighborsTimeLeftRight);
+                float currentBitInv = getPointAndNeighborsAggreagate(input, nBins, currentCenterFreqIdx, layout.getBlockCenter(j + 1), nNeighborsFreqUpDown, nNeighborsTimeLeftRight);
+
+                // Check why we had to change > to <
+                if (currentBit < currentBitInv) {
+                    bits[arrayCounter] = 1;
+                }
+                else{
+                    bits[arrayCounter] = 0;
+                }
+                arrayCounter++;
+            }
+        }
+        //Log.d("Decoded bit sequence", Arrays.toString(bits));
+    }
+
+    /**
+     * Builds the spectrogram of the last demodulated history, normalized by the sum of all its
+     * magnitudes. A new array is returned on every call, it is only needed for visualization.
+     * @return the normalized spectrogram, one row per column, or null if only the columns needed for the bits were computed
+     */
+    @Override
+    public float[][] getSpectrum() {
+        if (!lastSpectrumComputed) {
+            return null;
+        }
+        int nMagnitudes = workspace.getnMagnitudes();
+        float[] magnitudes = workspace.getMagnitudes();
+        double fftSum = workspace.getFftSum();
+        float[][] historyBufferFloatNormalized = new float[workspace.getnColumns()][nMagnitudes];
+        for(int j = 0; j<historyBufferFloatNormalized.length;j++ ) {
+            for (int i = 0; i < nMagnitudes; i++) {
+                float normalized = 0.0001F;
+                if(fftSum != 0) {
+                    //  Normalize over one block at a time and check if it improves the visualization [NOTE: It looks like results are better with fftSum over the whole spectrum, maybe because of the overlap]
+                    normalized = (float) (magnitudes[j * nMagnitudes + i]/fftSum);
+                } // Else all the values are 0 so we do not really care
+                historyBufferFloatNormalized[j][i] = normalized;
+            }
+        }
+        return historyBufferFloatNormalized;
+    }
+
+    /**
+     * Returns an aggregation (e.g. mean) of the values contained in the cell(s) around the one at [row][col] position
+     * Row and column are "reversed" compared to the matlab prototype
+     * @param data flat array, one row of rowLength values per spectrogram column
+     * @param rowLength number of frequency bins per spectrogram column
+     * @param row Frequency center position (interpolated between two bins if it is not an integer)
+     * @param col Block center index
+     * @param nRowsNeighborsLeftRight How many frequency-index rows to include (on the left AND right side)
+     * @param nColsNeighborsLeftRight How many block-index columns to include (on the left AND right side)
+     * @return
+     */
+    private float getPointAndNeighborsAggreagate(float[] data, int rowLength, float row, int col, int nRowsNeighborsLeftRight, int nColsNeighborsLeftRight){
+        int valuecounter = 0;
+        float neighborSpacing = layout.getNeighborSpacing();
+
+        for(int i = nRowsNeighborsLeftRight*(-1); i <= nRowsNeighborsLeftRight; i++){
+            for(int j = nColsNeighborsLeftRight*(-1); j <= nColsNeighborsLeftRight; j++){
+                if(i!=0 || j!=0){ //[0,0] is done lower
+                    values[valuecounter] = DecoderUtils.interpolate(data, (col+j)*rowLength, row + i*neighborSpacing);
+                    valuecounter++;
+
+                }
+            }
+        }
+        // Note: Values are extremely similar on the same row (same frequency), but different for the frequencies above and under.
+        // Handling the [0,0] case
+        values[valuecounter] = DecoderUtils.interpolate(data, col*rowLength, row);
+
+        //Log.d("ValuesAgg", Arrays.toString(values));
+        return aggregator.aggregate(values, valuecounter + 1);
+    }
+}
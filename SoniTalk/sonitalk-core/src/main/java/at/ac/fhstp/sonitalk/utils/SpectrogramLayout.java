@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+import at.ac.fhstp.sonitalk.SoniTalkConfig;
+
+/**
+ * Describes how the history buffer is cut into overlapping spectrogram columns, where the
+ * message blocks are centered and which frequency indices contain the carriers. It is computed
+ * once per decoder and shared by the demodulators so that they all read the same cells.
+ * The FFT of a column can be shorter (the center of the column is transformed) or longer (the
+ * column is zero-padded) than the column itself. The carriers then fall between two bins and the
+ * demodulators interpolate their magnitudes, see getFrequencyCenterPosition().
+ */
+public class SpectrogramLayout {
+    private final int sampleRate;
+    private final int winLenInSamples;
+    private final int fftLength;
+    private final int frameLength;
+    private final int frameOffset;
+    private final int overlapFactor;
+    private final int nColumns;
+    private final int lowerCutoffFrequencyIdx;
+    private final int upperCutoffFrequencyIdx;
+    private final int[] blockCenters;
+    private final float[] frequencyCenterPositions;
+
+    /**
+     * @param sampleRate sample rate of the analyzed audio
+     * @param config configuration of the messages to decode
+     * @param winLenInSamples length of one spectrogram column (even)
+     * @param stepInSamples step between two spectrogram columns
+     * @param historyBufferSize length of the analyzed history
+     * @param frequencyOffsetForSpectrogram frequency margin kept below and above the carriers
+     */
+    public SpectrogramLayout(int sampleRate, SoniTalkConfig config, int winLenInSamples, int stepInSamples, int historyBufferSize, int frequencyOffsetForSpectrogram) {
+        this(sampleRate, config, winLenInSamples, stepInSamples, historyBufferSize, frequencyOffsetForSpectrogram, winLenInSamples);
+    }
+
+    /**
+     * @param sampleRate sample rate of the analyzed audio
+     * @param config configuration of the messages to decode
+     * @param winLenInSamples length of one spectrogram column (even)
+     * @param stepInSamples step between two spectrogram columns
+     * @param historyBufferSize length of the analyzed history
+     * @param frequencyOffsetForSpectrogram frequency margin kept below and above the carriers
+     * @param fftLength number of points of the FFT of each column (even), e.g. a power of two close to winLenInSamples
+     */
+    public SpectrogramLayout(int sampleRate, SoniTalkConfig config, int winLenInSamples, int stepInSamples, int historyBufferSize, int frequencyOffsetForSpectrogram, int fftLength) {
+        if (fftLength < 2 || fftLength % 2 != 0) {
+            throw new IllegalArgumentException("The FFT length must be even, got: " + fftLength);
+        }
+        this.sampleRate = sampleRate;
+        this.winLenInSamples = winLenInSamples;
+        this.fftLength = fftLength;
+        this.frameLength = Math.min(winLenInSamples, fftLength);
+        this.frameOffset = (winLenInSamples - frameLength) / 2;
+
+        int overlapForSpectrogramInSamples = winLenInSamples - stepInSamples;
+        //int overlapForSpectrogramInSamples = Math.round(winLenForSpectrogramInSamples * 0.875f);
+
+        // High overlap (8) makes the visualization more accurate but is quite slow. Low overlap (2) is a minimum to see something
+        overlapFactor = Math.round((float) winLenInSamples / (winLenInSamples - overlapForSpectrogramInSamples));
+        nColumns = Math.round(overlapFactor * (float) historyBufferSize / (float) winLenInSamples);
+
+        int nFrequencies = config.getnFrequencies();
+        int[] frequencies = new int[nFrequencies];
+        for(int i = 0; i < nFrequencies; i++){
+            frequencies[i] = config.getFrequencyZero() + config.getFrequencySpace()*i;
+        }
+        int lowerCutoffFrequency = frequencies[0]-frequencyOffsetForSpectrogram;
+        int upperCutoffFrequency = frequencies[frequencies.length-1]+frequencyOffsetForSpectrogram;
+        lowerCutoffFrequencyIdx = (int)((float)lowerCutoffFrequency/(float)sampleRate*(float)fftLength);// + 1;
+        upperCutoffFrequencyIdx = (int)((float)upperCutoffFrequency/(float)sampleRate*(float)fftLength);// + 1;
+
+        int nBlocks = config.getnMessageBlocks()*2+2;
+        int pauseperiodInSamples = Math.round(config.getPauseperiod() * (float)sampleRate/1000);
+        int step = winLenInSamples-overlapForSpectrogramInSamples;
+        int nVectorsPerBlock =  overlapFactor;//Math.round(bitperiodInSamples/step); // Isn't nVectorsPerBlock equal to overlapFactor ?! Not in matlab.
+        int nVectorsPerPause =   Math.round((float) pauseperiodInSamples/step);
+        blockCenters = new int[nBlocks];
+
+        // Compute block centers
+        // [CHECKED] blockCenters are equivalent to matlab indices
+        blockCenters[0] = Math.round((float) nVectorsPerBlock/2) - 1; //We substract one compared to Octave because indexes start at 0 in Java
+        for(int i=1; i < nBlocks; i++) {
+            blockCenters[i] = blockCenters[i - 1] + nVectorsPerBlock + nVectorsPerPause;
+        }
+
+        // [CHECKED] frequencyCenterIndices are equivalent to matlab indices (one below, but it starts at 0 in Java, at 1 in matlab)
+        frequencyCenterPositions = new float[nFrequencies];
+        for (int idxFrequencies = 0; idxFrequencies < nFrequencies; idxFrequencies++) {
+            if (fftLength == winLenInSamples) {
+                // TODO: Upper and Lower inverted (hence the need for the demodulators to go through the frequencies in reverse)
+                frequencyCenterPositions[idxFrequencies] = (int) findClosestValueIn1DArray(frequencies[idxFrequencies], fftLength, getnBins(), upperCutoffFrequencyIdx, lowerCutoffFrequencyIdx); //computation is different than in Matlab
+            } else {
+                // Carriers between two bins, kept in the same (reversed) order as above
+                frequencyCenterPositions[idxFrequencies] = DecoderUtils.freq2bin(frequencies[nFrequencies - 1 - idxFrequencies], sampleRate, fftLength) - lowerCutoffFrequencyIdx;
+            }
+        }
+    }
+
+    private float findClosestValueIn1DArray(int value, int winlen, int arraylength, int upperIdx, int lowerIdx){
+        float arrayIndexRelative;
+        float arrayIndex;
+
+        float frequencyIndex = DecoderUtils.freq2idx(value, sampleRate, winlen);
+        arrayIndexRelative = DecoderUtils.getRelativeIndexPosition(frequencyIndex, upperIdx, lowerIdx);
+        arrayIndex = ((float)arraylength*arrayIndexRelative);
+        //Log.d("findClosest", "arrayIndex: " + arrayIndex);
+        //arrayIndex = frequencyIndex;
+        return arrayIndex;
+    }
+
+    /**
+     * Returns the position of the first sample of a column in the history buffer. The last
+     * columns can exceed the history, missing samples are then considered to be 0.
+     * @param column index of the column
+     * @return position of the first sample of the column
+     */
+    public int getColumnStart(int column) {
+        return (column/overlapFactor)*winLenInSamples + ((column%overlapFactor) * winLenInSamples/overlapFactor);
+    }
+
+    public int getWinLenInSamples() {
+        return winLenInSamples;
+    }
+
+    /**
+     * @return number of points of the FFT of each column, the magnitudes of a column have getFftLength()/2 bins
+     */
+    public int getFftLength() {
+        return fftLength;
+    }
+
+    /**
+     * @return number of samples of a column actually transformed, the smallest of the column and FFT lengths
+     */
+    public int getFrameLength() {
+        return frameLength;
+    }
+
+    /**
+     * Returns the position of the first sample transformed for a column. Columns longer than the
+     * FFT are truncated evenly on both sides.
+     * @param column index of the column
+     * @return position of the first transformed sample of the column
+     */
+    public int getFrameStart(int column) {
+        return getColumnStart(column) + frameOffset;
+    }
+
+    /**
+     * @return distance (in bins) between a carrier and its neighbors in frequency, i.e. one bin of a column of winLenInSamples
+     */
+    public float getNeighborSpacing() {
+        return (float) fftLength / winLenInSamples;
+    }
+
+    public int getOverlapFactor() {
+        return overlapFactor;
+    }
+
+    public int getnColumns() {
+        return nColumns;
+    }
+
+    public int getLowerCutoffFrequencyIdx() {
+        return lowerCutoffFrequencyIdx;
+    }
+
+    public int getUpperCutoffFrequencyIdx() {
+        return upperCutoffFrequencyIdx;
+    }
+
+    /**
+     * @return number of frequency bins kept between the lower and upper cutoff frequencies
+     */
+    public int getnBins() {
+        return upperCutoffFrequencyIdx - lowerCutoffFrequencyIdx + 1;
+    }
+
+    /**
+     * @return number of blocks, i.e. start block, end block and two blocks (normal and inverted) per message block
+     */
+    public int getnBlocks() {
+        return blockCenters.length;
+    }
+
+    /**
+     * @param block index of the block
+     * @return index of the column at the center of the block
+     */
+    public int getBlockCenter(int block) {
+        return blockCenters[block];
+    }
+
+    /**
+     * Position of a carrier in the bins kept between the cutoff frequencies. It is an integer when
+     * the FFT length is the column length, otherwise the magnitude at this position is interpolated
+     * (see DecoderUtils.interpolate()).
+     * @param frequency index of the carrier frequency
+     * @return position of the carrier, relative to the lower cutoff frequency index
+     */
+    public float getFrequencyCenterPosition(int frequency) {
+        return frequencyCenterPositions[frequency];
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+/**
+ * Preallocated buffers, window and FFT plan used to compute the spectrogram of a candidate
+ * message. It is created once per decoder (sized from its configuration) and reused for every
+ * detection, so that false positives do not allocate anything.
+ * Two dimensional data is stored in flat arrays, row after row (one row per spectrogram column).
+ * This class is NOT thread safe.
+ */
+public class SpectrogramWorkspace {
+    private final int fftLength;
+    private final int nColumns;
+    private final int nMagnitudes;
+    private final int nBins;
+
+    private final HammingWindow hammWin;
+    private final RealFFT fft;
+    private final float[] column;
+    private final float[] magnitudes;
+    private final float[] input;
+    private double fftSum;
+
+    /**
+     * @param layout geometry of the spectrogram, it defines the size of every buffer
+     */
+    public SpectrogramWorkspace(SpectrogramLayout layout) {
+        this.fftLength = layout.getFftLength();
+        this.nColumns = layout.getnColumns();
+        this.nMagnitudes = fftLength / 2;
+        this.nBins = layout.getnBins();
+
+        hammWin = new HammingWindow(layout.getFrameLength());
+        fft = new RealFFT(fftLength);
+        column = new float[fftLength];
+        magnitudes = new float[nColumns * nMagnitudes];
+        input = new float[nColumns * nBins];
+    }
+
+    public int getFftLength() {
+        return fftLength;
+    }
+
+    public int getnColumns() {
+        return nColumns;
+    }
+
+    /**
+     * @return number of magnitudes per column (half the FFT length)
+     */
+    public int getnMagnitudes() {
+        return nMagnitudes;
+    }
+
+    /**
+     * @return number of frequency bins per column kept in the input
+     */
+    public int getnBins() {
+        return nBins;
+    }
+
+    /**
+     * @return window of the transformed samples of a column, see SpectrogramLayout.getFrameLength()
+     */
+    public HammingWindow getHammingWindow() {
+        return hammWin;
+    }
+
+    /**
+     * @return FFT plan for one column, it does not allocate memory (unlike FloatFFT_1D for lengths that are not powers of two)
+     */
+    public RealFFT getFFT() {
+        return fft;
+    }
+
+    /**
+     * @return scratch buffer holding one column (zero-padded to the FFT length), used in place by the FFT
+     */
+    public float[] getColumn() {
+        return column;
+    }
+
+    /**
+     * @return magnitudes of every column, the magnitude of bin i of column j is at j * getnMagnitudes() + i
+     */
+    public float[] getMagnitudes() {
+        return magnitudes;
+    }
+
+    /**
+     * @return normalized log magnitudes of the band, the value of bin i of column j is at j * getnBins() + i
+     */
+    public float[] getInput() {
+        return input;
+    }
+
+    /**
+     * @return sum of all the magnitudes of the spectrogram
+     */
+    public double getFftSum() {
+        return fftSum;
+    }
+
+    public void setFftSum(double fftSum) {
+        this.fftSum = fftSum;
+    }
+}
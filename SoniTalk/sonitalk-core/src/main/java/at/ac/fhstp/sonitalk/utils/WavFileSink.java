@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import at.ac.fhstp.sonitalk.AudioSink;
+
+/**
+ * Writes the audio to a mono 16 bits PCM WAV file (see WavHeader for reading it). The sizes in the
+ * header are written when the sink is released.
+ */
+public class WavFileSink implements AudioSink {
+    private static final Logger LOGGER = Logger.getLogger(WavFileSink.class.getName());
+    private static final int HEADER_SIZE = 44;
+
+    private final RandomAccessFile file;
+    private final int sampleRate;
+    private byte[] bytes = new byte[0];
+    private long dataSize = 0;
+
+    /**
+     * Creates the file, or truncates it if it exists.
+     * @param file destination of the audio
+     * @param sampleRate sample rate of the audio, in Hz
+     * @throws IOException if the file cannot be written
+     */
+    public WavFileSink(File file, int sampleRate) throws IOException {
+        this.file = new RandomAccessFile(file, "rw");
+        this.sampleRate = sampleRate;
+        this.file.setLength(0);
+        this.file.write(createHeader(0));
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public int write(short[] buffer, int offset, int length) {
+        if (bytes.length < length * 2) {
+            bytes = new byte[length * 2];
+        }
+        for (int i = 0; i < length; i++) {
+            short sample = buffer[offset + i];
+            bytes[2 * i] = (byte) sample;
+            bytes[2 * i + 1] = (byte) (sample >> 8);
+        }
+        try {
+            file.write(bytes, 0, length * 2);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not write to the WAV file.", e);
+            return 0;
+        }
+        dataSize += length * 2;
+        return length;
+    }
+
+    @Override
+    public void release() {
+        try {
+            file.seek(0);
+            file.write(createHeader(dataSize));
+            file.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not finish the WAV file.", e);
+        }
+    }
+
+    private byte[] createHeader(long dataSize) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[]{'R', 'I', 'F', 'F'});
+        header.putInt((int) (HEADER_SIZE - 8 + dataSize));
+        header.put(new byte[]{'W', 'A', 'V', 'E'});
+        header.put(new byte[]{'f', 'm', 't', ' '});
+        header.putInt(16);
+        header.putShort((short) 1); // PCM
+        header.putShort((short) 1); // Mono
+        header.putInt(sampleRate);
+        header.putInt(sampleRate * 2); // Byte rate
+        header.putShort((short) 2); // Block align
+        header.putShort((short) 16);
+        header.put(new byte[]{'d', 'a', 't', 'a'});
+        header.putInt((int) dataSize);
+        return header.array();
+    }
+}
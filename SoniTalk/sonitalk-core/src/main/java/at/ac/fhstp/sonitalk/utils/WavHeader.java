@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk.utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Minimal parser for the header of RIFF/WAVE files containing 16 bits PCM audio. Reading the
+ * header consumes the stream up to the first sample of the "data" chunk, the samples can then be
+ * read from the same stream (little-endian, interleaved channels).
+ */
+public class WavHeader {
+    private static final int WAVE_FORMAT_PCM = 1;
+    private static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private final int sampleRate;
+    private final int nChannels;
+    private final int bitsPerSample;
+    private final long dataSize;
+
+    private WavHeader(int sampleRate, int nChannels, int bitsPerSample, long dataSize) {
+        this.sampleRate = sampleRate;
+        this.nChannels = nChannels;
+        this.bitsPerSample = bitsPerSample;
+        this.dataSize = dataSize;
+    }
+
+    /**
+     * Reads the header of a WAV file, chunks other than "fmt " and "data" are skipped.
+     * @param in stream positioned at the beginning of the file, left at the first sample
+     * @return the parsed header
+     * @throws IOException if the stream is not a 16 bits PCM WAV file or ends before the data chunk
+     */
+    public static WavHeader read(InputStream in) throws IOException {
+        if (!"RIFF".equals(readTag(in))) {
+            throw new IOException("Not a RIFF file.");
+        }
+        readInt(in); // Size of the file, unreliable for streamed recordings
+        if (!"WAVE".equals(readTag(in))) {
+            throw new IOException("Not a WAVE file.");
+        }
+
+        int sampleRate = -1;
+        int nChannels = -1;
+        int bitsPerSample = -1;
+        while (true) {
+            String chunkId = readTag(in);
+            long chunkSize = readInt(in) & 0xFFFFFFFFL;
+            if ("fmt ".equals(chunkId)) {
+                if (chunkSize < 16) {
+                    throw new IOException("Invalid fmt chunk.");
+                }
+                int format = readShort(in);
+                nChannels = readShort(in);
+                sampleRate = readInt(in);
+                readInt(in); // Byte rate
+                readShort(in); // Block align
+                bitsPerSample = readShort(in);
+                if (format != WAVE_FORMAT_PCM && format != WAVE_FORMAT_EXTENSIBLE) {
+                    throw new IOException("Unsupported WAV format " + format + ", only PCM is supported.");
+                }
+                if (bitsPerSample != 16) {
+                    throw new IOException("Unsupported WAV sample size " + bitsPerSample + ", only 16 bits are supported.");
+                }
+                if (nChannels < 1) {
+                    throw new IOException("Invalid number of channels: " + nChannels);
+                }
+                skip(in, chunkSize - 16 + (chunkSize % 2));
+            }
+            else if ("data".equals(chunkId)) {
+                if (sampleRate < 0) {
+                    throw new IOException("Missing fmt chunk before the data chunk.");
+                }
+                return new WavHeader(sampleRate, nChannels, bitsPerSample, chunkSize);
+            }
+            else {
+                skip(in, chunkSize + (chunkSize % 2)); // Chunks are padded to an even size
+            }
+        }
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getnChannels() {
+        return nChannels;
+    }
+
+    public int getBitsPerSample() {
+        return bitsPerSample;
+    }
+
+    /**
+     * Size of the data chunk as written in the header. Recordings that were not closed properly
+     * can contain 0 or 0xFFFFFFFF here, the stream should then be read until its end.
+     * @return size of the audio data, in bytes
+     */
+    public long getDataSize() {
+        return dataSize;
+    }
+
+    private static String readTag(InputStream in) throws IOException {
+        char[] tag = new char[4];
+        for (int i = 0; i < tag.length; i++) {
+            tag[i] = (char) readByte(in);
+        }
+        return new String(tag);
+    }
+
+    private static int readShort(InputStream in) throws IOException {
+        return readByte(in) | (readByte(in) << 8);
+    }
+
+    private static int readInt(InputStream in) throws IOException {
+        return readByte(in) | (readByte(in) << 8) | (readByte(in) << 16) | (readByte(in) << 24);
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Unexpected end of the WAV header.");
+        }
+        return b;
+    }
+
+    private static void skip(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                readByte(in); // skip() may return 0 before the end of the stream
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+}
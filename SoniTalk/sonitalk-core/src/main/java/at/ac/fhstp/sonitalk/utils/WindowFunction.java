@@ -19,5 +19,5 @@ public interface WindowFunction {
      * Apply the windowing function to the provided input data in-place.
      * @param samples - the array of audio samples
      */
-    void applyWindow(double[] samples);
+    void applyWindow(float[] samples);
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import at.ac.fhstp.sonitalk.utils.Aggregators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class AggregatorsTest {
+
+    @Test
+    public void medianNetworkMatchesSorting() {
+        Random random = new Random(9);
+        float[] values = new float[9];
+        for (int n = 0; n < 10000; n++) {
+            for (int i = 0; i < values.length; i++) {
+                // Few distinct values, so that ties are frequent
+                values[i] = n % 2 == 0 ? random.nextFloat() : random.nextInt(4);
+            }
+            float[] sorted = values.clone();
+            Arrays.sort(sorted);
+            float[] unchanged = values.clone();
+            assertEquals(sorted[4], Aggregators.MEDIAN.aggregate(values, 9), 0);
+            assertEquals(Arrays.toString(unchanged), Arrays.toString(values));
+        }
+    }
+
+    @Test
+    public void aggregatesOtherLengths() {
+        assertEquals(2.5f, Aggregators.MEDIAN.aggregate(new float[]{4, 1, 3, 2}, 4), 0);
+        assertEquals(3f, Aggregators.MEDIAN.aggregate(new float[]{5, 1, 3, 2, 4, 99}, 5), 0);
+        assertEquals(2.5f, Aggregators.MEAN.aggregate(new float[]{4, 1, 3, 2}, 4), 0);
+        assertEquals(-1f, Aggregators.MAX.aggregate(new float[]{-3, -1, -2}, 3), 0);
+        // 9 values: the 2 lowest and 2 highest are dropped
+        assertEquals(5f, Aggregators.TRIMMED_MEAN.aggregate(new float[]{-100, 3, 4, 5, 6, 7, 100, 1, 9}, 9), 0);
+    }
+
+    @Test
+    public void resolvesNames() {
+        assertSame(Aggregators.MEAN, Aggregators.forName("mean"));
+        assertSame(Aggregators.MAX, Aggregators.forName("max"));
+        assertSame(Aggregators.MEDIAN, Aggregators.forName("median"));
+        assertSame(Aggregators.TRIMMED_MEAN, Aggregators.forName("trimmedmean"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownNameIsRejected() {
+        Aggregators.forName("mode");
+    }
+}
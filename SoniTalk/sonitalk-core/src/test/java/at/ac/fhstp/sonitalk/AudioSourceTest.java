@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import at.ac.fhstp.sonitalk.utils.MappedFileAudioSource;
+import at.ac.fhstp.sonitalk.utils.ShortArrayAudioSource;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class AudioSourceTest {
+    private static final int FS = 44100;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final SoniTalkConfig config = new SoniTalkConfig(18000, 100, 0, 10, 16, 100);
+    private final short[] recording = SyntheticSignals.generateRecording(config, FS, 4410, new Random(1), "Hello".getBytes(StandardCharsets.UTF_8));
+
+    @Test
+    public void readsTheArrayInBlocks() {
+        assertArrayEquals(recording, readAll(new ShortArrayAudioSource(recording, FS), 1000));
+    }
+
+    @Test
+    public void readsTheFirstChannelOfMappedFiles() throws IOException {
+        for (int nChannels = 1; nChannels <= 2; nChannels++) {
+            MappedFileAudioSource wav = MappedFileAudioSource.openWav(write("recording.wav", SyntheticSignals.toWav(recording, FS, nChannels)));
+            assertEquals(FS, wav.getSampleRate());
+            assertArrayEquals(recording, readAll(wav, 276));
+
+            MappedFileAudioSource pcm = MappedFileAudioSource.openPcm(write("recording.pcm", SyntheticSignals.toPcm(recording, nChannels)), FS, nChannels);
+            assertArrayEquals(recording, readAll(pcm, 276));
+        }
+    }
+
+    @Test
+    public void repeatsTheMessageUntilTheLimit() {
+        byte[] data = "Hello".getBytes(StandardCharsets.UTF_8);
+        SyntheticAudioSource source = new SyntheticAudioSource(FS, config, data, 1000, 0.1, 0, 1);
+        short[] message = new SoniTalkEncoder(FS, config).generateMessage(data).getRawAudio();
+        assertEquals(1000 + message.length, source.getPeriodLength());
+        source.setMaxSamples(3L * source.getPeriodLength() + 10);
+
+        short[] audio = readAll(source, 4410);
+        assertEquals(3L * source.getPeriodLength() + 10, audio.length);
+        assertEquals(3, source.getMessageCount());
+        for (int m = 0; m < 3; m++) {
+            int messageStart = m * source.getPeriodLength() + 1000;
+            assertEquals(0, audio[messageStart - 1]);
+            for (int i = 0; i < message.length; i += 101) {
+                assertEquals((short) (0.1 * message[i] / Short.MAX_VALUE * Short.MAX_VALUE), audio[messageStart + i], 1);
+            }
+        }
+    }
+
+    private File write(String name, byte[] content) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        return file;
+    }
+
+    private static short[] readAll(AudioSource source, int blockLength) {
+        short[] block = new short[blockLength];
+        short[] audio = new short[0];
+        source.start();
+        int nRead;
+        while ((nRead = source.read(block, 0, blockLength)) != AudioSource.END_OF_STREAM) {
+            short[] longer = new short[audio.length + nRead];
+            System.arraycopy(audio, 0, longer, 0, audio.length);
+            System.arraycopy(block, 0, longer, audio.length, nRead);
+            audio = longer;
+        }
+        source.stop();
+        source.release();
+        return audio;
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import at.ac.fhstp.sonitalk.utils.CRC;
+import at.ac.fhstp.sonitalk.utils.ConfigConstants;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CRCTest {
+    private static final byte[] CRC_8 = {1, 0, 0, 0, 0, 0, 1, 1, 1};
+    private static final byte[] CRC_32 = toCoefficients(0x104C11DB7L, 32);
+    private static final byte[] CRC_64_ECMA = toCoefficients(0x42F0E1EBA9EA3693L, 64);
+
+    private final byte[][] generatorPolynoms = {ConfigConstants.GENERATOR_POLYNOM, CRC_8, CRC_32, CRC_64_ECMA};
+
+    @Test
+    public void sameParityAsReference() {
+        Random random = new Random(42);
+        for (byte[] generatorPolynom : generatorPolynoms) {
+            CRC crc = new CRC(generatorPolynom);
+            ReferenceCRC reference = new ReferenceCRC(generatorPolynom);
+            for (int nBits = 1; nBits < 300; nBits += 7) {
+                String bits = getRandomBits(random, nBits);
+                // The reference leaves out the first bit on Java 8 and later, a leading zero does not change the parity
+                assertEquals(reference.parityBit("0" + bits), crc.parityBit(bits));
+            }
+            for (int nBytes = 0; nBytes < 40; nBytes++) {
+                byte[] message = new byte[nBytes];
+                random.nextBytes(message);
+                assertArrayEquals(reference.getParityBytes(message, nBytes), crc.getParityBytes(message, nBytes));
+            }
+        }
+    }
+
+    @Test
+    public void sameCheckAsReference() {
+        Random random = new Random(42);
+        for (byte[] generatorPolynom : generatorPolynoms) {
+            CRC crc = new CRC(generatorPolynom);
+            ReferenceCRC reference = new ReferenceCRC(generatorPolynom);
+            for (int nBits = generatorPolynom.length; nBits < 300; nBits += 5) {
+                // Valid codewords, then with errors
+                String message = getRandomBits(random, nBits - (generatorPolynom.length - 1));
+                int[] codeword = toInts(message + crc.parityBit(message));
+                assertEquals(0, crc.checkMessageCRC(codeword));
+                for (int nErrors = 1; nErrors < 4; nErrors++) {
+                    codeword[random.nextInt(nBits)] ^= 1;
+                    assertEquals(reference.checkMessageCRC(codeword.clone()), crc.checkMessageCRC(codeword));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sameCheckOnPackedBits() {
+        Random random = new Random(42);
+        CRC crc = new CRC();
+        for (int nBits = ConfigConstants.GENERATOR_POLYNOM.length; nBits < 300; nBits += 3) {
+            int[] bits = toInts(getRandomBits(random, nBits));
+            byte[] packed = new byte[(nBits + 7) / 8];
+            for (int i = 0; i < nBits; i++) {
+                packed[i / 8] |= bits[i] << (7 - i % 8);
+            }
+            assertEquals(crc.checkMessageCRC(bits), crc.checkMessageCRC(packed, nBits));
+        }
+    }
+
+    @Test
+    public void instancesDoNotShareState() throws Exception {
+        final Random random = new Random(42);
+        final byte[][] messages = new byte[200][];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = new byte[20 + random.nextInt(20)];
+            random.nextBytes(messages[i]);
+        }
+        final byte[][][] expected = new byte[generatorPolynoms.length][messages.length][];
+        for (int p = 0; p < generatorPolynoms.length; p++) {
+            for (int i = 0; i < messages.length; i++) {
+                expected[p][i] = new CRC(generatorPolynoms[p]).getParityBytes(messages[i], messages[i].length);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(generatorPolynoms.length);
+        try {
+            Future<?>[] futures = new Future<?>[generatorPolynoms.length];
+            for (int p = 0; p < generatorPolynoms.length; p++) {
+                final int polynom = p;
+                futures[p] = executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        CRC crc = new CRC(generatorPolynoms[polynom]);
+                        for (int repetition = 0; repetition < 50; repetition++) {
+                            for (int i = 0; i < messages.length; i++) {
+                                assertArrayEquals(expected[polynom][i], crc.getParityBytes(messages[i], messages[i].length));
+                            }
+                        }
+                        return null;
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void polynomDegreeMustBeAMultipleOfEight() {
+        new CRC(new byte[] {1, 0, 1, 1});
+    }
+
+    private static String getRandomBits(Random random, int nBits) {
+        StringBuilder bits = new StringBuilder(nBits);
+        for (int i = 0; i < nBits; i++) {
+            bits.append(random.nextBoolean() ? '1' : '0');
+        }
+        return bits.toString();
+    }
+
+    private static int[] toInts(String bits) {
+        int[] values = new int[bits.length()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = bits.charAt(i) - '0';
+        }
+        return values;
+    }
+
+    private static byte[] toCoefficients(long polynom, int degree) {
+        byte[] coefficients = new byte[degree + 1];
+        coefficients[0] = 1;
+        for (int i = 1; i <= degree; i++) {
+            coefficients[i] = (byte) ((polynom >>> (degree - i)) & 1);
+        }
+        return coefficients;
+    }
+
+    /*
+     * Reference implementation, as the CRC was computed bit by bit before using a table (its state
+     * was static).
+     */
+    private static class ReferenceCRC {
+        private int n = 0;
+        private final byte[] generatorPolynom;
+
+        ReferenceCRC(byte[] generatorPolynom){
+            this.generatorPolynom = generatorPolynom;
+        }
+
+        int checkMessageCRC(int[] messageDecoded){
+            String[] bitArray = new String[messageDecoded.length];
+
+            for(int j = 0; j<messageDecoded.length; j++){
+                bitArray[j] = String.valueOf(messageDecoded[j]);
+            }
+
+            byte[] byteMessage = new byte[bitArray.length];
+
+            for (int i = 0; i < bitArray.length; i++) {
+                byteMessage[i] = Byte.parseByte(bitArray[i]);
+            }
+
+            int countMatches = checkCRC(byteMessage);
+
+            return countMatches;
+        }
+
+        private int checkCRC(byte[] byteMessage){
+            n = 0;
+            byte[] helpBitArray = new byte[generatorPolynom.length];
+            xorArray(byteMessage, helpBitArray);
+            int countMatches = CRC.countOccurrences(Arrays.toString(byteMessage),'1');
+            return countMatches;
+        }
+
+        String parityBit(String bitOfText){
+            String[] helpArray = bitOfText.split("");
+            String[] bitArray = Arrays.copyOfRange(helpArray, 1, helpArray.length);
+
+            byte[] byteMessage = new byte[bitArray.length+(generatorPolynom.length-1)];
+
+            for (int i = 0; i < bitArray.length; i++) {
+                byteMessage[i] = Byte.parseByte(bitArray[i]);
+            }
+
+            n = 0;
+            byte[] helpBitArray = new byte[generatorPolynom.length-1];
+
+            xorArray(byteMessage, helpBitArray);
+
+            String helpString = "";
+            for (byte b : helpBitArray) {
+                helpString = helpString + b;
+            }
+
+            return helpString;
+        }
+
+        byte[] getParityBytes(byte[] message, int length) {
+            int parityLength = generatorPolynom.length - 1;
+            byte[] remainder = new byte[parityLength];
+            for (int i = 0; i < length * 8; i++) {
+                int feedback = ((message[i / 8] >> (7 - i % 8)) & 1) ^ remainder[0];
+                System.arraycopy(remainder, 1, remainder, 0, parityLength - 1);
+                remainder[parityLength - 1] = 0;
+                if (feedback == 1) {
+                    for (int j = 0; j < parityLength; j++) {
+                        remainder[j] ^= generatorPolynom[j + 1];
+                    }
+                }
+            }
+
+            byte[] parity = new byte[parityLength / 8];
+            for (int j = 0; j < parityLength; j++) {
+                parity[j / 8] |= remainder[j] << (7 - j % 8);
+            }
+            return parity;
+        }
+
+        private void xorArray(byte[] byteMessage, byte[] helpBitArray){
+            int j = 0;
+            int m = checkZeroMessage(byteMessage,j);
+            if(byteMessage.length-m<generatorPolynom.length){
+                int p = 0;
+                for(int o = byteMessage.length-(generatorPolynom.length-1); o<byteMessage.length;o++){
+                    helpBitArray[p] = byteMessage[o];
+                    p++;
+                }
+            }else{
+                for(j = 0; j<generatorPolynom.length; j++){
+                    int xor = byteMessage[m] ^ generatorPolynom[j];
+                    byteMessage[m] = (byte)(0xff & xor);
+                    m++;
+                }
+                xorArray(byteMessage, helpBitArray);
+            }
+        }
+
+        private int checkZeroMessage(byte[] byteMessage, int index){
+            if(n<byteMessage.length) {
+                if (byteMessage[index] == 0) {
+                    n++;
+                    checkZeroMessage(byteMessage, n);
+                } else if (byteMessage[index] == 1) {
+                    return n;
+                }
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+
+import at.ac.fhstp.sonitalk.utils.ShortArrayAudioSource;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CaptureLoopTest {
+    private static final int FS = 44100;
+    private static final int PADDING = 4410 * 11;
+    private static final int CAPTURE_BUFFER_SIZE = 5 * FS;
+
+    private final SoniTalkConfig config = new SoniTalkConfig(18000, 100, 0, 10, 16, 100);
+    private final byte[] data = "Hello SoniTalk".getBytes(StandardCharsets.UTF_8);
+
+    private final List<SoniTalkMessage> messages = new ArrayList<>();
+    private final List<String> errors = new ArrayList<>();
+
+    // Lets decodesNoMessageAcrossAnOverrun() stall the analysis while the capture goes on
+    private volatile boolean gateClosed = false;
+    private final Semaphore gate = new Semaphore(0);
+    private final Semaphore stalled = new Semaphore(0);
+    private final Semaphore processedSteps = new Semaphore(0);
+
+    @Test
+    public void decodesTheSourceUntilItEnds() {
+        short[] recording = SyntheticSignals.generateRecording(config, FS, PADDING, new Random(3), data);
+        CaptureLoop loop = newCaptureLoop(newPipeline());
+
+        // Read faster than real time, the capture waits for the analysis
+        assertTrue(loop.run(new ShortArrayAudioSource(recording, FS), 0, 0));
+        assertTrue(errors.isEmpty());
+        assertEquals(0, loop.getDroppedSampleCount());
+        assertTrue(countDecoded() > 0);
+        loop.shutdown();
+    }
+
+    @Test(timeout = 120000)
+    public void decodesEveryRepetitionOfTheMessage() {
+        int nMessages = 8;
+        SyntheticAudioSource source = new SyntheticAudioSource(FS, config, data, PADDING, 0.1, 0.002, 7);
+        source.setMaxSamples((long) nMessages * source.getPeriodLength() + PADDING);
+        DecodingPipeline pipeline = newPipeline();
+        pipeline.setSkipDecodedMessages(true);
+        CaptureLoop loop = newCaptureLoop(pipeline);
+
+        assertTrue(loop.run(source, 0, 0));
+        assertEquals(nMessages, source.getMessageCount());
+        assertEquals(0, loop.getDroppedSampleCount());
+        assertEquals(nMessages, countDecoded());
+        loop.shutdown();
+    }
+
+    @Test(timeout = 120000)
+    public void decodesNoMessageAcrossAnOverrun() {
+        final DecodingPipeline pipeline = newGatedPipeline();
+        final int step = pipeline.getAnalysisWinStep();
+        final int capacity = 4096; // A power of two, as the SampleRingBuffer rounds its capacity
+        short[] original = SyntheticSignals.generateRecording(config, FS, PADDING, new Random(3), data);
+        int messageLength = original.length - 2 * PADDING;
+
+        // The analysis stalls on the step starting at gateStart, the capture fills the buffer and
+        // drops the samples from gapStart until gateEnd, where the analysis resumes
+        final int gateStart = (PADDING + messageLength / 2 - capacity) / step * step;
+        int gapStart = gateStart + step + capacity;
+        final int gateEnd = (gapStart + FS / 10) / step * step + step;
+        // Without the dropped samples, what reaches the analysis is the original recording
+        short[] recording = new short[(original.length + gateEnd - gapStart) / step * step];
+        System.arraycopy(original, 0, recording, 0, gapStart);
+        System.arraycopy(original, gapStart, recording, gateEnd, recording.length - gateEnd);
+
+        AudioSource source = new ShortArrayAudioSource(recording, FS) {
+            private int position = 0;
+
+            @Override
+            public boolean isRealTime() {
+                return true;
+            }
+
+            @Override
+            public int read(short[] buffer, int offset, int length) {
+                if (position == gateEnd) {
+                    gate.release();
+                    processedSteps.acquireUninterruptibly(); // The step which waited at the gate
+                }
+                if (position > 0 && (position <= gateStart || position >= gateEnd)) {
+                    // One step at a time, so that no other sample is dropped
+                    processedSteps.acquireUninterruptibly();
+                }
+                if (position == gateStart) {
+                    gateClosed = true;
+                } else if (position == gateStart + step) {
+                    stalled.acquireUninterruptibly();
+                }
+                int nRead = super.read(buffer, offset, length);
+                position += Math.max(nRead, 0);
+                return nRead;
+            }
+        };
+        CaptureLoop loop = new CaptureLoop(pipeline, FS, capacity, newCallback());
+
+        assertTrue(loop.run(source, 0, 0));
+        assertEquals(gateEnd - gapStart, loop.getDroppedSampleCount());
+        assertEquals(0, countDecoded());
+        loop.shutdown();
+    }
+
+    @Test
+    public void reportsSourcesWhichCannotStart() {
+        AudioSource source = new ShortArrayAudioSource(new short[FS], FS) {
+            @Override
+            public boolean start() {
+                return false;
+            }
+        };
+        CaptureLoop loop = newCaptureLoop(newPipeline());
+
+        assertFalse(loop.run(source, 0, 0));
+        assertEquals(1, errors.size());
+        loop.shutdown();
+    }
+
+    private int countDecoded() {
+        int nDecoded = 0;
+        for (SoniTalkMessage message : messages) {
+            if (message.isCrcCorrect()) {
+                assertArrayEquals(data, message.getMessage());
+                nDecoded++;
+            }
+        }
+        return nDecoded;
+    }
+
+    private DecodingPipeline newPipeline() {
+        return new DecodingPipeline(FS, config, 8, 50, 8, 2.0, 2.0);
+    }
+
+    /**
+     * Pipeline whose analysis stops at the gate once gateClosed is set, until the gate is released.
+     */
+    private DecodingPipeline newGatedPipeline() {
+        return new DecodingPipeline(FS, config, 8, 50, 8, 2.0, 2.0) {
+            @Override
+            SoniTalkMessage addSamples(float[] samples, long readTimestamp) {
+                if (gateClosed) {
+                    gateClosed = false;
+                    stalled.release();
+                    gate.acquireUninterruptibly();
+                }
+                SoniTalkMessage message = super.addSamples(samples, readTimestamp);
+                processedSteps.release();
+                return message;
+            }
+        };
+    }
+
+    private CaptureLoop newCaptureLoop(DecodingPipeline pipeline) {
+        return new CaptureLoop(pipeline, FS, CAPTURE_BUFFER_SIZE, newCallback());
+    }
+
+    private CaptureLoop.Callback newCallback() {
+        return new CaptureLoop.Callback() {
+            @Override
+            public void onListening() {
+            }
+
+            @Override
+            public void onMessageDecoded(SoniTalkMessage message) {
+                synchronized (messages) {
+                    messages.add(message);
+                }
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                errors.add(errorMessage);
+            }
+        };
+    }
+}
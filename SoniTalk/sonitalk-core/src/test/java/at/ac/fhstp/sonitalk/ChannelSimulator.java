@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import java.util.Random;
+
+import at.ac.fhstp.sonitalk.utils.DecoderUtils;
+import edu.emory.mathcs.jtransforms.fft.FloatFFT_1D;
+import uk.me.berndporr.iirj.Butterworth;
+
+/**
+ * Simulates the acoustic channel between a sender and a decoder, to measure how the decoder
+ * copes with it without devices. The encoded message goes through, in this order: a clock drift
+ * between sender and receiver, the reverberation of the room (an impulse response), the roll-off
+ * of the microphone above a corner frequency, additive white or pink noise and the clipping of
+ * the converter. All the effects are disabled by default.
+ * The SNR is given relative to the power of the emitted message, the reverberation and the
+ * roll-off change the power received.
+ * This class is NOT thread safe.
+ */
+public class ChannelSimulator {
+    public static final int NOISE_NONE = 0;
+    public static final int NOISE_WHITE = 1;
+    /**
+     * Noise with a power decreasing by 3dB per octave, like most ambient noise.
+     */
+    public static final int NOISE_PINK = 2;
+
+    // Half the number of taps of the interpolation filter used to resample the message
+    private static final int INTERPOLATION_HALF_WIDTH = 16;
+
+    private final int sampleRate;
+    private final Random random;
+
+    private float signalLevel = 0.1f;
+    private int noiseType = NOISE_NONE;
+    private double snrDb = Double.POSITIVE_INFINITY;
+    private float[] impulseResponse; // null when disabled
+    private double clockDriftPpm = 0;
+    private double rollOffFrequency = 0;
+    private int rollOffOrder = 0; // 0 when disabled
+    private float clippingLevel = 1.0f;
+
+    /**
+     * @param sampleRate sample rate of the simulated audio
+     * @param seed seed of the noise
+     */
+    public ChannelSimulator(int sampleRate, long seed) {
+        this.sampleRate = sampleRate;
+        this.random = new Random(seed);
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @param signalLevel amplitude of the emitted message relative to the encoder output (0.1 by default)
+     */
+    public void setSignalLevel(float signalLevel) {
+        if (signalLevel <= 0) {
+            throw new IllegalArgumentException("The signal level must be positive.");
+        }
+        this.signalLevel = signalLevel;
+    }
+
+    public float getSignalLevel() {
+        return signalLevel;
+    }
+
+    /**
+     * Adds noise to the received audio.
+     * @param noiseType NOISE_NONE (default), NOISE_WHITE or NOISE_PINK
+     * @param snrDb power of the emitted message relative to the power of the noise, in dB
+     */
+    public void setNoise(int noiseType, double snrDb) {
+        if (noiseType != NOISE_NONE && noiseType != NOISE_WHITE && noiseType != NOISE_PINK) {
+            throw new IllegalArgumentException("Unknown noise type: " + noiseType);
+        }
+        this.noiseType = noiseType;
+        this.snrDb = snrDb;
+    }
+
+    public int getNoiseType() {
+        return noiseType;
+    }
+
+    public double getSnrDb() {
+        return snrDb;
+    }
+
+    /**
+     * Convolves the message with the impulse response of a room, see createRoomImpulseResponse().
+     * @param impulseResponse impulse response at the sample rate of the simulator, or null to disable the reverberation
+     */
+    public void setImpulseResponse(float[] impulseResponse) {
+        if (impulseResponse != null && impulseResponse.length == 0) {
+            throw new IllegalArgumentException("The impulse response cannot be empty.");
+        }
+        this.impulseResponse = impulseResponse == null ? null : impulseResponse.clone();
+    }
+
+    /**
+     * Resamples the message as if the clock of the receiver ran faster than the one of the
+     * sender: a positive drift stretches the message and lowers its frequencies.
+     * @param clockDriftPpm relative difference between the clocks, in parts per million
+     */
+    public void setClockDrift(double clockDriftPpm) {
+        if (clockDriftPpm <= -1e6) {
+            throw new IllegalArgumentException("The clock drift must be above -1000000 ppm.");
+        }
+        this.clockDriftPpm = clockDriftPpm;
+    }
+
+    public double getClockDrift() {
+        return clockDriftPpm;
+    }
+
+    /**
+     * Low-pass filters the received audio, like a microphone losing sensitivity in the ultrasonic
+     * range (Butterworth response).
+     * @param cornerFrequency -3dB frequency, in Hz
+     * @param order order of the filter, 0 to disable the roll-off
+     */
+    public void setRollOff(double cornerFrequency, int order) {
+        if (order < 0) {
+            throw new IllegalArgumentException("The order of the roll-off cannot be negative.");
+        }
+        if (order > 0 && (cornerFrequency <= 0 || cornerFrequency >= sampleRate / 2.0)) {
+            throw new IllegalArgumentException("The corner frequency must be between 0 and " + sampleRate / 2 + "Hz.");
+        }
+        this.rollOffFrequency = cornerFrequency;
+        this.rollOffOrder = order;
+    }
+
+    /**
+     * Clips the received audio, like a converter driven above its range.
+     * @param clippingLevel highest absolute value of the audio, relative to the full scale (1.0 by default)
+     */
+    public void setClippingLevel(float clippingLevel) {
+        if (clippingLevel <= 0 || clippingLevel > 1) {
+            throw new IllegalArgumentException("The clipping level must be in ]0;1].");
+        }
+        this.clippingLevel = clippingLevel;
+    }
+
+    public float getClippingLevel() {
+        return clippingLevel;
+    }
+
+    /**
+     * Sends a message through the channel. The received audio starts and ends with padding,
+     * which contains only noise and the reverberation of the message.
+     * @param message 16 bits audio generated by the encoder
+     * @param paddingSamples number of samples before and after the message
+     * @return the received audio, 16 bits
+     */
+    public short[] transmit(short[] message, int paddingSamples) {
+        float[] emitted = new float[message.length];
+        for (int i = 0; i < message.length; i++) {
+            emitted[i] = signalLevel * message[i] / Short.MAX_VALUE;
+        }
+        float emittedRms = rms(emitted, 0, emitted.length);
+        float[] drifted = clockDriftPpm == 0 ? emitted : resample(emitted, 1 + clockDriftPpm * 1e-6);
+
+        float[] received = new float[paddingSamples + drifted.length + paddingSamples];
+        System.arraycopy(drifted, 0, received, paddingSamples, drifted.length);
+        if (impulseResponse != null) {
+            received = convolve(received, impulseResponse);
+        }
+        if (rollOffOrder > 0) {
+            lowPass(received);
+        }
+        addNoise(received, emittedRms);
+        return toShort(received);
+    }
+
+    /**
+     * Noise received while nothing is emitted, at the same level as when the given message is
+     * transmitted. Used to count the false detections of a decoder.
+     * @param referenceMessage message the SNR refers to
+     * @param length number of samples
+     * @return the received audio, 16 bits
+     */
+    public short[] receiveNoiseOnly(short[] referenceMessage, int length) {
+        float emittedRms = 0;
+        if (referenceMessage.length > 0) {
+            double sum = 0;
+            for (short sample : referenceMessage) {
+                double value = signalLevel * sample / Short.MAX_VALUE;
+                sum += value * value;
+            }
+            emittedRms = (float) Math.sqrt(sum / referenceMessage.length);
+        }
+        float[] received = new float[length];
+        addNoise(received, emittedRms);
+        return toShort(received);
+    }
+
+    /**
+     * Generates the impulse response of a room: the direct path followed by a diffuse
+     * reverberation, gaussian noise decaying exponentially, starting with the first reflections.
+     * @param sampleRate sample rate of the impulse response
+     * @param rt60Seconds time for the reverberation to decay by 60dB, in seconds
+     * @param directToReverberantDb energy of the direct path relative to the reverberation, in dB
+     * @param seed seed of the reverberation
+     * @return the impulse response, 1 for the direct path
+     */
+    public static float[] createRoomImpulseResponse(int sampleRate, double rt60Seconds, double directToReverberantDb, long seed) {
+        if (rt60Seconds <= 0) {
+            throw new IllegalArgumentException("The reverberation time must be positive.");
+        }
+        int firstReflection = Math.max(1, sampleRate / 200); // 5ms, about 1.7m more than the direct path
+        int length = firstReflection + (int) Math.ceil(rt60Seconds * sampleRate);
+        float[] impulseResponse = new float[length];
+        impulseResponse[0] = 1;
+        Random random = new Random(seed);
+        double energy = 0;
+        for (int i = firstReflection; i < length; i++) {
+            double decay = Math.pow(10, -3.0 * (i - firstReflection) / (rt60Seconds * sampleRate)); // -60dB at rt60
+            impulseResponse[i] = (float) (random.nextGaussian() * decay);
+            energy += impulseResponse[i] * impulseResponse[i];
+        }
+        float gain = (float) Math.sqrt(Math.pow(10, -directToReverberantDb / 10) / energy);
+        for (int i = firstReflection; i < length; i++) {
+            impulseResponse[i] *= gain;
+        }
+        return impulseResponse;
+    }
+
+    /**
+     * Band-limited interpolation with a Blackman windowed sinc.
+     * @param ratio number of output samples per input sample
+     */
+    private static float[] resample(float[] input, double ratio) {
+        int length = (int) Math.floor((input.length - 1) * ratio) + 1;
+        float[] output = new float[length];
+        for (int i = 0; i < length; i++) {
+            double position = i / ratio;
+            int center = (int) Math.floor(position);
+            double fraction = position - center;
+            // sin(pi*(fraction-k)) only changes sign from one tap to the next
+            double sinPiFraction = Math.sin(Math.PI * fraction);
+            double sum = 0;
+            for (int k = -INTERPOLATION_HALF_WIDTH + 1; k <= INTERPOLATION_HALF_WIDTH; k++) {
+                int index = center + k;
+                if (index < 0 || index >= input.length) {
+                    continue;
+                }
+                double x = fraction - k;
+                double sinc = Math.abs(x) < 1e-9 ? 1 : ((k % 2 == 0 ? 1 : -1) * sinPiFraction) / (Math.PI * x);
+                double w = 2 * Math.PI * (x + INTERPOLATION_HALF_WIDTH) / (2 * INTERPOLATION_HALF_WIDTH);
+                double window = 0.42 - 0.5 * Math.cos(w) + 0.08 * Math.cos(2 * w);
+                sum += input[index] * sinc * window;
+            }
+            output[i] = (float) sum;
+        }
+        return output;
+    }
+
+    /**
+     * Linear convolution computed with a power of two FFT, truncated to the length of the signal.
+     */
+    private static float[] convolve(float[] signal, float[] impulseResponse) {
+        int n = DecoderUtils.nextPowerOfTwo(signal.length + impulseResponse.length - 1);
+        float[] a = new float[n];
+        float[] b = new float[n];
+        System.arraycopy(signal, 0, a, 0, signal.length);
+        System.arraycopy(impulseResponse, 0, b, 0, impulseResponse.length);
+        FloatFFT_1D fft = new FloatFFT_1D(n);
+        fft.realForward(a);
+        fft.realForward(b);
+        a[0] *= b[0];
+        a[1] *= b[1]; // Nyquist bin
+        for (int k = 1; k < n / 2; k++) {
+            float re = a[2*k] * b[2*k] - a[2*k+1] * b[2*k+1];
+            float im = a[2*k] * b[2*k+1] + a[2*k+1] * b[2*k];
+            a[2*k] = re;
+            a[2*k+1] = im;
+        }
+        fft.realInverse(a, true);
+        float[] output = new float[signal.length];
+        System.arraycopy(a, 0, output, 0, signal.length);
+        return output;
+    }
+
+    private void lowPass(float[] audio) {
+        Butterworth butterworth = new Butterworth();
+        butterworth.lowPass(rollOffOrder, sampleRate, rollOffFrequency);
+        for (int i = 0; i < audio.length; i++) {
+            audio[i] = (float) butterworth.filter(audio[i]);
+        }
+    }
+
+    private void addNoise(float[] audio, float emittedRms) {
+        if (noiseType == NOISE_NONE || audio.length == 0) {
+            return;
+        }
+        float[] noise = new float[audio.length];
+        if (noiseType == NOISE_WHITE) {
+            for (int i = 0; i < noise.length; i++) {
+                noise[i] = (float) random.nextGaussian();
+            }
+        } else {
+            // Pink noise filter of P. Kellet (refined version), accurate to 0.05dB above 9Hz at 44.1kHz
+            double b0 = 0, b1 = 0, b2 = 0, b3 = 0, b4 = 0, b5 = 0, b6 = 0;
+            for (int i = 0; i < noise.length; i++) {
+                double white = random.nextGaussian();
+                b0 = 0.99886 * b0 + white * 0.0555179;
+                b1 = 0.99332 * b1 + white * 0.0750759;
+                b2 = 0.96900 * b2 + white * 0.1538520;
+                b3 = 0.86650 * b3 + white * 0.3104856;
+                b4 = 0.55000 * b4 + white * 0.5329522;
+                b5 = -0.7616 * b5 - white * 0.0168980;
+                noise[i] = (float) (b0 + b1 + b2 + b3 + b4 + b5 + b6 + white * 0.5362);
+                b6 = white * 0.115926;
+            }
+        }
+        // Scaled on the generated noise, so that the SNR is exact
+        float gain = (float) (emittedRms / Math.pow(10, snrDb / 20) / rms(noise, 0, noise.length));
+        for (int i = 0; i < audio.length; i++) {
+            audio[i] += gain * noise[i];
+        }
+    }
+
+    private short[] toShort(float[] audio) {
+        short[] samples = new short[audio.length];
+        for (int i = 0; i < audio.length; i++) {
+            float value = Math.max(-clippingLevel, Math.min(clippingLevel, audio[i]));
+            samples[i] = (short) Math.round(value * Short.MAX_VALUE);
+        }
+        return samples;
+    }
+
+    /**
+     * @return the root mean square of the values between from (included) and to (excluded)
+     */
+    private static float rms(float[] values, int from, int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += values[i] * values[i];
+        }
+        return (float) Math.sqrt(sum / Math.max(1, to - from));
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChannelSimulatorTest {
+    private static final int FS = 44100;
+    private static final int PADDING = 4410;
+
+    @Test
+    public void perfectChannelOnlyScalesTheMessage() {
+        short[] message = sine(1000, 0.5, FS);
+        ChannelSimulator channel = new ChannelSimulator(FS, 1);
+        channel.setSignalLevel(0.5f);
+        short[] received = channel.transmit(message, PADDING);
+
+        assertEquals(message.length + 2 * PADDING, received.length);
+        for (int i = 0; i < message.length; i++) {
+            assertEquals(Math.round(0.5f * message[i]), received[PADDING + i], 1);
+        }
+        assertEquals(0, rms(received, 0, PADDING), 0);
+    }
+
+    @Test
+    public void noiseMatchesTheSnr() {
+        short[] message = sine(18000, 1.0, FS);
+        for (int noiseType : new int[] {ChannelSimulator.NOISE_WHITE, ChannelSimulator.NOISE_PINK}) {
+            ChannelSimulator channel = new ChannelSimulator(FS, 2);
+            channel.setSignalLevel(0.5f);
+            channel.setNoise(noiseType, 10);
+            short[] noise = channel.receiveNoiseOnly(message, FS * 2);
+            double snr = 20 * Math.log10(0.5 * rms(message, 0, message.length) / rms(noise, 0, noise.length));
+            assertEquals(10, snr, 0.1);
+        }
+    }
+
+    @Test
+    public void clockDriftStretchesTheMessage() {
+        double drift = 1000;
+        short[] message = sine(1000, 0.1, FS);
+        ChannelSimulator channel = new ChannelSimulator(FS, 3);
+        channel.setSignalLevel(1);
+        channel.setClockDrift(drift);
+        short[] received = channel.transmit(message, 0);
+
+        assertEquals(Math.floor((message.length - 1) * (1 + drift * 1e-6)) + 1, received.length, 0);
+        // Far from the edges, the interpolation matches the stretched sine
+        for (int i = 100; i < received.length - 100; i++) {
+            double expected = 0.9 * Short.MAX_VALUE * Math.sin(2 * Math.PI * 1000 * i / (FS * (1 + drift * 1e-6)));
+            assertEquals(expected, received[i], 5);
+        }
+    }
+
+    @Test
+    public void rollOffAttenuatesUltrasound() {
+        ChannelSimulator channel = new ChannelSimulator(FS, 4);
+        channel.setSignalLevel(1);
+        channel.setRollOff(10000, 4);
+        short[] audible = channel.transmit(sine(1000, 0.5, FS), 0);
+        short[] ultrasound = channel.transmit(sine(19000, 0.5, FS), 0);
+
+        double audibleGain = rms(audible, FS / 10, audible.length) / rms(sine(1000, 0.5, FS), FS / 10, audible.length);
+        double ultrasoundGain = rms(ultrasound, FS / 10, ultrasound.length) / rms(sine(19000, 0.5, FS), FS / 10, ultrasound.length);
+        assertEquals(0, 20 * Math.log10(audibleGain), 0.1);
+        assertTrue("Gain " + 20 * Math.log10(ultrasoundGain), 20 * Math.log10(ultrasoundGain) < -20);
+    }
+
+    @Test
+    public void reverberationAddsATail() {
+        short[] message = sine(18000, 0.2, FS);
+        ChannelSimulator channel = new ChannelSimulator(FS, 5);
+        channel.setImpulseResponse(new float[] {1});
+        short[] dry = channel.transmit(message, PADDING);
+
+        float[] impulseResponse = ChannelSimulator.createRoomImpulseResponse(FS, 0.1, 0, 6);
+        double reverberantEnergy = 0;
+        for (int i = 1; i < impulseResponse.length; i++) {
+            reverberantEnergy += impulseResponse[i] * impulseResponse[i];
+        }
+        assertEquals(1, impulseResponse[0], 0);
+        assertEquals(1, reverberantEnergy, 1e-3);
+
+        channel.setImpulseResponse(impulseResponse);
+        short[] wet = channel.transmit(message, PADDING);
+        assertEquals(0, rms(dry, PADDING + message.length, dry.length), 0);
+        assertTrue(rms(wet, PADDING + message.length, PADDING + message.length + FS / 100) > 0.1 * rms(dry, PADDING, PADDING + message.length));
+        assertArrayEquals(new short[PADDING], Arrays.copyOf(wet, PADDING));
+    }
+
+    @Test
+    public void clippingLimitsTheAmplitude() {
+        ChannelSimulator channel = new ChannelSimulator(FS, 7);
+        channel.setSignalLevel(1);
+        channel.setClippingLevel(0.25f);
+        short[] received = channel.transmit(sine(1000, 0.1, FS), 0);
+        int max = 0;
+        for (short sample : received) {
+            max = Math.max(max, Math.abs(sample));
+        }
+        assertEquals(Math.round(0.25f * Short.MAX_VALUE), max);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsARollOffAboveNyquist() {
+        new ChannelSimulator(FS, 8).setRollOff(FS, 2);
+    }
+
+    /**
+     * Sine at 90% of the full scale.
+     */
+    private static short[] sine(double frequency, double durationSeconds, int sampleRate) {
+        short[] samples = new short[(int) (durationSeconds * sampleRate)];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) Math.round(0.9 * Short.MAX_VALUE * Math.sin(2 * Math.PI * frequency * i / sampleRate));
+        }
+        return samples;
+    }
+
+    private static double rms(short[] samples, int from, int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += (double) samples[i] * samples[i];
+        }
+        return Math.sqrt(sum / (to - from));
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import at.ac.fhstp.sonitalk.utils.CRC;
+import at.ac.fhstp.sonitalk.utils.ConfigConstants;
+
+/**
+ * Measures how the settings of the decoder trade accuracy for CPU time. Random messages are sent
+ * through simulated channels (noise, reverberation, clock drift, roll-off and clipping) and
+ * decoded with every setting, which reports for each channel:
+ * - the share of messages detected at least once and the share decoded with a correct CRC,
+ * - the bit error rate over all detections, before the CRC check,
+ * - the false detections and false CRC passes per minute of noise without any message,
+ * - the CPU time spent per second of audio (detection and demodulation, on one thread).
+ * Settings are varied one at a time around the defaults of the decoder (stepFactor,
+ * bandPassFilterOrder, startFactor and endFactor together, aggregation function). Not a unit
+ * test, run its main function (optional arguments: number of messages per channel, default 10,
+ * seconds of noise per channel, default 30, and "grid" to sweep every combination of settings).
+ */
+public class DecoderSettingsSweep {
+    private static final int FS = 44100;
+    private static final int FREQUENCY_OFFSET_FOR_SPECTROGRAM = 50;
+
+    private static final int[] STEP_FACTORS = {4, 6, 8, 12, 16};
+    private static final int[] BAND_PASS_FILTER_ORDERS = {4, 6, 8, 10, 12};
+    private static final double[] START_END_FACTORS = {1.5, 2.0, 2.5, 3.0, 4.0};
+    private static final String[] AGGREGATION_FUNCTIONS = {"mean", "max", "median", "trimmedmean"};
+    private static final Settings DEFAULT_SETTINGS = new Settings(8, 8, 2.0, "median");
+
+    public static void main(String[] args) {
+        int nMessages = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int noiseSeconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        boolean grid = args.length > 2 && args[2].equals("grid");
+        SoniTalkConfig config = new SoniTalkConfig(18000, 100, 0, 10, 16, 100);
+
+        List<Channel> channels = createChannels(config, nMessages, noiseSeconds);
+        List<Settings> settingsList = grid ? gridSettings() : oneAtATimeSettings();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        System.out.println(String.format(Locale.US, "%d settings, %d channels, %d messages and %d s of noise per channel",
+                settingsList.size(), channels.size(), nMessages, noiseSeconds));
+        measure(config, DEFAULT_SETTINGS, channels.get(0), threads); // Warm up
+
+        System.out.println(String.format(Locale.US, "%-32s %-16s %9s %9s %9s %9s %9s %9s",
+                "settings", "channel", "detected", "crc pass", "ber", "fd/min", "fcrc/min", "cpu ms/s"));
+        for (Settings settings : settingsList) {
+            for (Channel channel : channels) {
+                Result result = measure(config, settings, channel, threads);
+                System.out.println(String.format(Locale.US, "%-32s %-16s %8.1f%% %8.1f%% %9.5f %9.2f %9.2f %9.2f",
+                        settings, channel.name,
+                        100.0 * result.nDetected / channel.messages.size(),
+                        100.0 * result.nCrcPassed / channel.messages.size(),
+                        result.nBits == 0 ? Double.NaN : (double) result.nBitErrors / result.nBits,
+                        result.nFalseDetections * 60.0 * FS / channel.noise.length,
+                        result.nFalseCrcPasses * 60.0 * FS / channel.noise.length,
+                        result.cpuNanos / 1e6 / result.audioSeconds));
+            }
+        }
+    }
+
+    private static List<Channel> createChannels(SoniTalkConfig config, int nMessages, int noiseSeconds) {
+        List<Channel> channels = new ArrayList<>();
+        ChannelSimulator channel;
+
+        channel = new ChannelSimulator(FS, 1);
+        channel.setNoise(ChannelSimulator.NOISE_WHITE, 30);
+        channels.add(new Channel("white 30dB", channel, config, nMessages, noiseSeconds));
+
+        channel = new ChannelSimulator(FS, 2);
+        channel.setNoise(ChannelSimulator.NOISE_WHITE, 10);
+        channels.add(new Channel("white 10dB", channel, config, nMessages, noiseSeconds));
+
+        channel = new ChannelSimulator(FS, 3);
+        channel.setNoise(ChannelSimulator.NOISE_WHITE, 0);
+        channels.add(new Channel("white 0dB", channel, config, nMessages, noiseSeconds));
+
+        channel = new ChannelSimulator(FS, 4);
+        channel.setNoise(ChannelSimulator.NOISE_PINK, 0);
+        channels.add(new Channel("pink 0dB", channel, config, nMessages, noiseSeconds));
+
+        channel = new ChannelSimulator(FS, 5);
+        channel.setImpulseResponse(ChannelSimulator.createRoomImpulseResponse(FS, 0.3, 6, 5));
+        channel.setNoise(ChannelSimulator.NOISE_WHITE, 20);
+        channels.add(new Channel("room rt60 0.3s", channel, config, nMessages, noiseSeconds));
+
+        channel = new ChannelSimulator(FS, 6);
+        channel.setClockDrift(500);
+        channel.setNoise(ChannelSimulator.NOISE_WHITE, 20);
+        channels.add(new Channel("drift 500ppm", channel, config, nMessages, noiseSeconds));
+
+        channel = new ChannelSimulator(FS, 7);
+        channel.setRollOff(18000, 2);
+        channel.setNoise(ChannelSimulator.NOISE_WHITE, 20);
+        channels.add(new Channel("roll-off 18kHz", channel, config, nMessages, noiseSeconds));
+
+        channel = new ChannelSimulator(FS, 8);
+        channel.setSignalLevel(0.4f);
+        channel.setClippingLevel(0.3f);
+        channel.setNoise(ChannelSimulator.NOISE_WHITE, 20);
+        channels.add(new Channel("clipping", channel, config, nMessages, noiseSeconds));
+        return channels;
+    }
+
+    private static List<Settings> oneAtATimeSettings() {
+        List<Settings> settingsList = new ArrayList<>();
+        settingsList.add(DEFAULT_SETTINGS);
+        Settings d = DEFAULT_SETTINGS;
+        for (int stepFactor : STEP_FACTORS) {
+            if (stepFactor != d.stepFactor) settingsList.add(new Settings(stepFactor, d.bandPassFilterOrder, d.startEndFactor, d.aggFcn));
+        }
+        for (int bandPassFilterOrder : BAND_PASS_FILTER_ORDERS) {
+            if (bandPassFilterOrder != d.bandPassFilterOrder) settingsList.add(new Settings(d.stepFactor, bandPassFilterOrder, d.startEndFactor, d.aggFcn));
+        }
+        for (double startEndFactor : START_END_FACTORS) {
+            if (startEndFactor != d.startEndFactor) settingsList.add(new Settings(d.stepFactor, d.bandPassFilterOrder, startEndFactor, d.aggFcn));
+        }
+        for (String aggFcn : AGGREGATION_FUNCTIONS) {
+            if (!aggFcn.equals(d.aggFcn)) settingsList.add(new Settings(d.stepFactor, d.bandPassFilterOrder, d.startEndFactor, aggFcn));
+        }
+        return settingsList;
+    }
+
+    private static List<Settings> gridSettings() {
+        List<Settings> settingsList = new ArrayList<>();
+        for (int stepFactor : STEP_FACTORS) {
+            for (int bandPassFilterOrder : BAND_PASS_FILTER_ORDERS) {
+                for (double startEndFactor : START_END_FACTORS) {
+                    for (String aggFcn : AGGREGATION_FUNCTIONS) {
+                        settingsList.add(new Settings(stepFactor, bandPassFilterOrder, startEndFactor, aggFcn));
+                    }
+                }
+            }
+        }
+        return settingsList;
+    }
+
+    /*
+     * Decodes every message of the channel and its noise with a new pipeline.
+     */
+    private static Result measure(SoniTalkConfig config, Settings settings, Channel channel, ThreadMXBean threads) {
+        DecodingPipeline pipeline = new DecodingPipeline(FS, config, settings.stepFactor, FREQUENCY_OFFSET_FOR_SPECTROGRAM,
+                settings.bandPassFilterOrder, settings.startEndFactor, settings.startEndFactor);
+        pipeline.setAggregationFunction(settings.aggFcn);
+        pipeline.setSkipDecodedMessages(true);
+        Result result = new Result();
+        for (int m = 0; m < channel.messages.size(); m++) {
+            int[] expectedBits = channel.expectedBits.get(m);
+            boolean detected = false;
+            boolean crcPassed = false;
+            for (Detection detection : decode(pipeline, channel.messages.get(m), result, threads)) {
+                detected = true;
+                int bitErrors = 0;
+                for (int i = 0; i < expectedBits.length; i++) {
+                    if (detection.bits[i] != expectedBits[i]) bitErrors++;
+                }
+                result.nBits += expectedBits.length;
+                result.nBitErrors += bitErrors;
+                crcPassed |= detection.crcCorrect && bitErrors == 0;
+            }
+            if (detected) result.nDetected++;
+            if (crcPassed) result.nCrcPassed++;
+        }
+        for (Detection detection : decode(pipeline, channel.noise, result, threads)) {
+            result.nFalseDetections++;
+            if (detection.crcCorrect) result.nFalseCrcPasses++;
+        }
+        return result;
+    }
+
+    private static List<Detection> decode(DecodingPipeline pipeline, short[] audio, Result result, ThreadMXBean threads) {
+        pipeline.reset();
+        List<Detection> detections = new ArrayList<>();
+        int analysisWinStep = pipeline.getAnalysisWinStep();
+        short[] stepBuffer = new short[analysisWinStep];
+        float[] currentData = new float[analysisWinStep];
+        long start = threads.getCurrentThreadCpuTime();
+        for (int offset = 0; offset + analysisWinStep <= audio.length; offset += analysisWinStep) {
+            System.arraycopy(audio, offset, stepBuffer, 0, analysisWinStep);
+            DecodingPipeline.convertShortToFloat(stepBuffer, currentData, analysisWinStep);
+            SoniTalkMessage message = pipeline.addSamples(currentData, System.nanoTime());
+            if (message != null) {
+                detections.add(new Detection(pipeline.getMessageBits().clone(), message.isCrcCorrect()));
+            }
+        }
+        result.cpuNanos += threads.getCurrentThreadCpuTime() - start;
+        result.audioSeconds += (double) audio.length / FS;
+        return detections;
+    }
+
+    /*
+     * Bits of the frame as the encoder sends them: the payload, then the CRC, most significant bit first.
+     */
+    private static int[] getFrameBits(byte[] payload) {
+        CRC crc = new CRC();
+        byte[] frame = new byte[payload.length + crc.getParityLength() / 8];
+        System.arraycopy(payload, 0, frame, 0, payload.length);
+        byte[] parity = crc.getParityBytes(frame, payload.length);
+        System.arraycopy(parity, 0, frame, payload.length, parity.length);
+        int[] bits = new int[frame.length * 8];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = (frame[i / 8] >> (7 - i % 8)) & 1;
+        }
+        return bits;
+    }
+
+    private static class Settings {
+        final int stepFactor;
+        final int bandPassFilterOrder;
+        final double startEndFactor;
+        final String aggFcn;
+
+        Settings(int stepFactor, int bandPassFilterOrder, double startEndFactor, String aggFcn) {
+            this.stepFactor = stepFactor;
+            this.bandPassFilterOrder = bandPassFilterOrder;
+            this.startEndFactor = startEndFactor;
+            this.aggFcn = aggFcn;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "step %d, order %d, factor %.1f, %s", stepFactor, bandPassFilterOrder, startEndFactor, aggFcn);
+        }
+    }
+
+    /*
+     * Messages sent through a simulated channel, each one surrounded by half a history buffer of
+     * noise, and noise received without any message.
+     */
+    private static class Channel {
+        final String name;
+        final List<short[]> messages = new ArrayList<>();
+        final List<int[]> expectedBits = new ArrayList<>();
+        final short[] noise;
+
+        Channel(String name, ChannelSimulator simulator, SoniTalkConfig config, int nMessages, int noiseSeconds) {
+            this.name = name;
+            int payloadLength = config.getnMessageBlocks() * (config.getnFrequencies() / 8) - (ConfigConstants.GENERATOR_POLYNOM.length - 1) / 8;
+            int padding = new DecodingPipeline(FS, config, 8, FREQUENCY_OFFSET_FOR_SPECTROGRAM, 8, 2.0, 2.0).getHistoryBufferSize() / 2;
+            SoniTalkEncoder encoder = new SoniTalkEncoder(FS, config);
+            Random random = new Random(name.hashCode());
+            short[] audio = null;
+            for (int m = 0; m < nMessages; m++) {
+                byte[] payload = new byte[payloadLength];
+                random.nextBytes(payload);
+                audio = encoder.generateMessage(payload).getRawAudio();
+                messages.add(simulator.transmit(audio, padding));
+                expectedBits.add(getFrameBits(payload));
+            }
+            noise = simulator.receiveNoiseOnly(audio, noiseSeconds * FS);
+        }
+    }
+
+    private static class Detection {
+        final int[] bits;
+        final boolean crcCorrect;
+
+        Detection(int[] bits, boolean crcCorrect) {
+            this.bits = bits;
+            this.crcCorrect = crcCorrect;
+        }
+    }
+
+    private static class Result {
+        int nDetected;
+        int nCrcPassed;
+        long nBits;
+        long nBitErrors;
+        int nFalseDetections;
+        int nFalseCrcPasses;
+        long cpuNanos;
+        double audioSeconds;
+    }
+}
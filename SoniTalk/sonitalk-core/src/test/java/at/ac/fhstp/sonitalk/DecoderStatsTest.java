@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DecoderStatsTest {
+    private static final int FS = 44100;
+    private static final int HISTORY_BUFFER_SIZE = 4410 * 22;
+
+    private final SoniTalkConfig config = new SoniTalkConfig(18000, 100, 0, 10, 16, 100);
+
+    @Test
+    public void countsEveryStepAndMessage() {
+        short[] recording = SyntheticSignals.generateRecording(config, FS, HISTORY_BUFFER_SIZE, new Random(7),
+                "stats".getBytes(StandardCharsets.UTF_8));
+        SoniTalkOfflineDecoder decoder = new SoniTalkOfflineDecoder(FS, config);
+        List<SoniTalkMessage> messages = decoder.decode(recording);
+        DecoderStats stats = decoder.getStats();
+
+        int nCorrect = 0;
+        for (SoniTalkMessage message : messages) {
+            if (message.isCrcCorrect()) {
+                nCorrect++;
+            }
+        }
+        assertTrue(nCorrect > 0);
+        assertEquals(nCorrect, stats.getCrcPasses());
+        assertEquals(messages.size(), stats.getCrcPasses() + stats.getCrcFailures());
+        assertEquals(messages.size(), stats.getCandidates());
+        assertTrue(stats.getStartBlockHits() >= stats.getCandidates());
+        assertEquals(0, stats.getHopsGated());
+        assertEquals(0, stats.getHopsSkipped());
+
+        assertEquals(stats.getHopsAnalyzed(), stats.getReadToDetect().getCount());
+        assertEquals(messages.size(), stats.getDetectToDecode().getCount());
+        assertEquals(0, stats.getDecodeToListener().getCount());
+        assertTrue(stats.getDetectToDecode().getPercentileNanos(50) > 0);
+        assertTrue(stats.getHistoryBufferBytesAllocated() > 0);
+
+        // The statistics add up over the recordings
+        decoder.decode(recording);
+        assertEquals(2 * stats.getHopsAnalyzed(), decoder.getStats().getHopsAnalyzed());
+        assertEquals(2 * stats.getCrcPasses(), decoder.getStats().getCrcPasses());
+    }
+
+    @Test
+    public void percentilesAreBucketUpperBounds() {
+        long[] buckets = new long[64];
+        buckets[3] = 90; // [4;8) ns
+        buckets[10] = 10; // [512;1024) ns
+        DecoderStats.LatencyHistogram histogram = new DecoderStats.LatencyHistogram(buckets, 90 * 5 + 10 * 600);
+        assertEquals(100, histogram.getCount());
+        assertEquals(64, histogram.getMeanNanos());
+        assertEquals(8, histogram.getPercentileNanos(50));
+        assertEquals(8, histogram.getPercentileNanos(90));
+        assertEquals(1024, histogram.getPercentileNanos(99));
+    }
+}
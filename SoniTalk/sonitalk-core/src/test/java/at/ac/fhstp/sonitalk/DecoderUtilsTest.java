@@ -41,4 +41,31 @@ public class DecoderUtilsTest {
         assertEquals(64, DecoderUtils.nextPowerOfTwo(64));
         assertEquals(4096, DecoderUtils.nextPowerOfTwo(2205));
     }
+
+    @Test
+    public void nearestPowerOfTwo() throws Exception {
+        assertEquals(4096, DecoderUtils.nearestPowerOfTwo(4410));
+        assertEquals(2048, DecoderUtils.nearestPowerOfTwo(2206));
+        assertEquals(512, DecoderUtils.nearestPowerOfTwo(442));
+        assertEquals(8, DecoderUtils.nearestPowerOfTwo(6));
+        assertEquals(64, DecoderUtils.nearestPowerOfTwo(64));
+    }
+
+    @Test
+    public void freq2idxRoundsTheExactBin() throws Exception {
+        assertEquals(1800, DecoderUtils.freq2bin(18000, 44100, 4410), 0.01);
+        assertEquals(1671.84f, DecoderUtils.freq2bin(18000, 44100, 4096), 0.01);
+        assertEquals(1801, DecoderUtils.freq2idx(18000, 44100, 4410), 0);
+        assertEquals(1673, DecoderUtils.freq2idx(18000, 44100, 4096), 0);
+    }
+
+    @Test
+    public void interpolate() throws Exception {
+        float[] data = {0, 1, 2, 4, -8};
+        assertEquals(4, DecoderUtils.interpolate(data, 1, 2), 0);
+        assertEquals(3, DecoderUtils.interpolate(data, 1, 1.5f), 1e-6);
+        assertEquals(-2, DecoderUtils.interpolate(data, 0, 3.5f), 1e-6);
+        // Integer positions do not read the next value, the last one can be read
+        assertEquals(-8, DecoderUtils.interpolate(data, 0, 4), 0);
+    }
 }
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import at.ac.fhstp.sonitalk.utils.CRC;
+import at.ac.fhstp.sonitalk.utils.CircularArray;
+import at.ac.fhstp.sonitalk.utils.GoertzelDemodulator;
+import at.ac.fhstp.sonitalk.utils.HammingWindow;
+import at.ac.fhstp.sonitalk.utils.HilbertBlockDetector;
+import at.ac.fhstp.sonitalk.utils.RealFFT;
+import at.ac.fhstp.sonitalk.utils.RollingSpectrogram;
+import at.ac.fhstp.sonitalk.utils.SpectrogramDemodulator;
+import at.ac.fhstp.sonitalk.utils.SpectrogramLayout;
+import at.ac.fhstp.sonitalk.utils.SpectrogramWorkspace;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DemodulatorTest {
+    private static final int FS = 44100;
+    private static final int BITPERIOD_SAMPLES = 4410;
+    private static final int ANALYSIS_WIN_LEN = BITPERIOD_SAMPLES / 2;
+    private static final int ANALYSIS_WIN_STEP = Math.round((float) ANALYSIS_WIN_LEN / 8);
+    private static final int N_BLOCKS = 22;
+    private static final int HISTORY_BUFFER_SIZE = BITPERIOD_SAMPLES * N_BLOCKS;
+
+    private final SoniTalkConfig config = new SoniTalkConfig(18000, 100, 0, 10, 16, 100);
+    private final SpectrogramLayout layout = new SpectrogramLayout(FS, config, BITPERIOD_SAMPLES, ANALYSIS_WIN_STEP, HISTORY_BUFFER_SIZE, 50);
+
+    @Test
+    public void sameBitsOnEncoderOutput() {
+        Random random = new Random(42);
+        int nDecoded = 0;
+        for (int n = 0; n < 5; n++) {
+            byte[] data = new byte[1 + random.nextInt(16)];
+            random.nextBytes(data);
+            nDecoded += assertSameBitsOnDetections(generateStream(data, 0.1f, 0.001, random), layout);
+        }
+        assertTrue(nDecoded > 0);
+    }
+
+    @Test
+    public void sameBitsWithPowerOfTwoFFT() {
+        // Truncated and zero-padded columns
+        for (int fftLength : new int[] {4096, 8192}) {
+            SpectrogramLayout powerOfTwoLayout = new SpectrogramLayout(FS, config, BITPERIOD_SAMPLES, ANALYSIS_WIN_STEP, HISTORY_BUFFER_SIZE, 50, fftLength);
+            Random random = new Random(42);
+            int nDecoded = 0;
+            for (int n = 0; n < 3; n++) {
+                byte[] data = new byte[1 + random.nextInt(16)];
+                random.nextBytes(data);
+                nDecoded += assertSameBitsOnDetections(generateStream(data, 0.1f, 0.001, random), powerOfTwoLayout);
+            }
+            assertTrue("FFT length " + fftLength, nDecoded > 0);
+        }
+    }
+
+    @Test
+    public void carriersBetweenBins() {
+        SpectrogramLayout powerOfTwoLayout = new SpectrogramLayout(FS, config, BITPERIOD_SAMPLES, ANALYSIS_WIN_STEP, HISTORY_BUFFER_SIZE, 50, 4096);
+        assertEquals(4096, powerOfTwoLayout.getFrameLength());
+        assertEquals(157, powerOfTwoLayout.getFrameStart(0));
+        int nFrequencies = config.getnFrequencies();
+        for (int m = 0; m < nFrequencies; m++) {
+            // Reversed like the integer indices of the bit period layout
+            float frequency = config.getFrequencyZero() + (nFrequencies - 1 - m) * config.getFrequencySpace();
+            float bin = powerOfTwoLayout.getLowerCutoffFrequencyIdx() + powerOfTwoLayout.getFrequencyCenterPosition(m);
+            assertEquals(frequency, bin * FS / 4096, 0.01);
+            assertEquals(layout.getFrequencyCenterPosition(m), Math.round(layout.getFrequencyCenterPosition(m)), 0);
+        }
+    }
+
+    @Test
+    public void sameBitsOnNoisyEncoderOutput() {
+        Random random = new Random(7);
+        for (int n = 0; n < 5; n++) {
+            byte[] data = new byte[1 + random.nextInt(16)];
+            random.nextBytes(data);
+            assertSameBitsOnDetections(generateStream(data, 0.05f, 0.005, random), layout);
+        }
+    }
+
+    @Test
+    public void spectrogramDemodulatorDoesNotAllocate() {
+        float[] history = SyntheticSignals.generateNoise(HISTORY_BUFFER_SIZE, 0.1, new Random(1));
+        SpectrogramDemodulator demodulator = new SpectrogramDemodulator(layout, new SpectrogramWorkspace(layout), config.getnFrequencies(), 1, 1, "median");
+        int[] bits = new int[config.getnMessageBlocks() * config.getnFrequencies()];
+        demodulator.demodulate(history, bits); // Warm up
+
+        long baseline = getAllocatedBytes();
+        baseline = getAllocatedBytes() - baseline; // Cost of the measurement itself
+        long before = getAllocatedBytes();
+        for (int i = 0; i < 5; i++) {
+            demodulator.demodulate(history, bits);
+        }
+        long allocated = getAllocatedBytes() - before - baseline;
+
+        // A single column of the former jagged arrays is already larger than this
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    @Test
+    public void spectrumIsOnlyComputedWhenRequested() {
+        float[] history = SyntheticSignals.generateNoise(HISTORY_BUFFER_SIZE, 0.1, new Random(2));
+        SpectrogramDemodulator demodulator = new SpectrogramDemodulator(layout, new SpectrogramWorkspace(layout), config.getnFrequencies(), 1, 1, "median");
+        int[] bits = new int[config.getnMessageBlocks() * config.getnFrequencies()];
+
+        demodulator.demodulate(history, bits);
+        assertEquals(layout.getnColumns(), demodulator.getSpectrum().length);
+
+        demodulator.setSpectrumComputed(false);
+        demodulator.demodulate(history, bits);
+        assertNull(demodulator.getSpectrum());
+    }
+
+    @Test
+    public void freshPipelineComputesNoSpectrum() {
+        DecodingPipeline pipeline = new DecodingPipeline(FS, config, 8, 50, 8, 2.0, 2.0);
+        float[] history = SyntheticSignals.generateNoise(pipeline.getHistoryBufferSize(), 0.1, new Random(3));
+
+        pipeline.analyzeMessage(history, System.nanoTime());
+        assertNull(pipeline.getSpectrum());
+
+        pipeline.setSpectrumRequired(true);
+        pipeline.analyzeMessage(history, System.nanoTime());
+        assertEquals(layout.getnColumns(), pipeline.getSpectrum().length);
+    }
+
+    @Test
+    public void rollingColumnsMatchColumnsOfTheHistory() {
+        float[] stream = SyntheticSignals.generateMessageStream(config, FS, N_BLOCKS, 42);
+        RollingSpectrogram spectrogram = new RollingSpectrogram(layout, ANALYSIS_WIN_STEP, HISTORY_BUFFER_SIZE);
+        CircularArray historyBuffer = new CircularArray(HISTORY_BUFFER_SIZE);
+        float[] hop = new float[ANALYSIS_WIN_STEP];
+        float[] expected = new float[layout.getnBins()];
+
+        int nChecked = 0;
+        for (int position = 0; position + ANALYSIS_WIN_STEP <= stream.length; position += ANALYSIS_WIN_STEP) {
+            System.arraycopy(stream, position, hop, 0, ANALYSIS_WIN_STEP);
+            historyBuffer.add(hop);
+            spectrogram.update(historyBuffer);
+            // Every column was computed on an earlier step once the history is full
+            if (position < HISTORY_BUFFER_SIZE || (position / ANALYSIS_WIN_STEP) % 37 != 0) {
+                continue;
+            }
+            float[] history = historyBuffer.getArray();
+            for (int column = 0; column < spectrogram.getnColumns(); column += 13) {
+                computeColumn(history, column * ANALYSIS_WIN_STEP, expected);
+                int offset = spectrogram.getColumnOffset(column);
+                for (int i = 0; i < expected.length; i++) {
+                    assertEquals("Column " + column + " at sample " + position, expected[i], spectrogram.getValues()[offset + i], 0);
+                }
+                nChecked++;
+            }
+        }
+        assertTrue(nChecked > 0);
+    }
+
+    /*
+     * One normalized column of the band, computed like the SpectrogramDemodulator does.
+     */
+    private void computeColumn(float[] history, int columnStart, float[] output) {
+        int winLen = layout.getWinLenInSamples();
+        float[] column = new float[winLen];
+        for (int i = 0; i < winLen; i++) {
+            column[i] = history[columnStart + i];
+        }
+        new HammingWindow(winLen).applyWindow(column);
+        new RealFFT(winLen).realForward(column);
+        double logSum = 0;
+        for (int i = 0; i < output.length; i++) {
+            int bin = layout.getLowerCutoffFrequencyIdx() + i;
+            float absolute = (float) Math.sqrt(column[2*bin] * column[2*bin] + column[2*bin+1] * column[2*bin+1]);
+            output[i] = (float) Math.log(absolute == 0 ? 0.0000001 : absolute);
+            logSum += output[i];
+        }
+        for (int i = 0; i < output.length; i++) {
+            output[i] = (float) (output[i] / logSum);
+        }
+    }
+
+    private static long getAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /*
+     * Encoded message, attenuated and surrounded by noise, as it would reach the microphone.
+     */
+    private float[] generateStream(byte[] data, float attenuation, double noiseStandardDeviation, Random random) {
+        short[] audio = new SoniTalkEncoder(FS, config).generateMessage(data).getRawAudio();
+        int padding = HISTORY_BUFFER_SIZE / 2;
+        float[] stream = SyntheticSignals.generateNoise(padding * 2 + audio.length, noiseStandardDeviation, random);
+        for (int i = 0; i < audio.length; i++) {
+            stream[padding + i] += ((float) audio[i]) / Short.MAX_VALUE * attenuation;
+        }
+        return stream;
+    }
+
+    /*
+     * Runs the detection like the decoder does and compares both demodulators on every detection.
+     * Returns the number of detections decoded with a correct CRC.
+     */
+    private int assertSameBitsOnDetections(float[] stream, SpectrogramLayout layout) {
+        HilbertBlockDetector detector = new HilbertBlockDetector(FS, config, ANALYSIS_WIN_LEN, 8, 2.0, 2.0);
+        SpectrogramDemodulator reference = new SpectrogramDemodulator(layout, new SpectrogramWorkspace(layout), config.getnFrequencies(), 1, 1, "median");
+        GoertzelDemodulator goertzel = new GoertzelDemodulator(layout, config.getnFrequencies(), 1, 1, "median");
+        SpectrogramDemodulator sparse = new SpectrogramDemodulator(layout, new SpectrogramWorkspace(layout), config.getnFrequencies(), 1, 1, "median");
+        sparse.setSpectrumComputed(false);
+        CircularArray historyBuffer = new CircularArray(HISTORY_BUFFER_SIZE);
+        float[] hop = new float[ANALYSIS_WIN_STEP];
+        int[] referenceBits = new int[config.getnMessageBlocks() * config.getnFrequencies()];
+        int[] goertzelBits = new int[referenceBits.length];
+        int[] sparseBits = new int[referenceBits.length];
+
+        int nDetections = 0;
+        int nDecoded = 0;
+        for (int position = 0; position + ANALYSIS_WIN_STEP <= stream.length; position += ANALYSIS_WIN_STEP) {
+            System.arraycopy(stream, position, hop, 0, ANALYSIS_WIN_STEP);
+            historyBuffer.add(hop);
+            if (position + ANALYSIS_WIN_STEP < HISTORY_BUFFER_SIZE) {
+                continue;
+            }
+            if (detector.isStartBlock(historyBuffer) && detector.isEndBlock(historyBuffer)) {
+                float[] history = historyBuffer.getArray();
+                reference.demodulate(history, referenceBits);
+                goertzel.demodulate(history, goertzelBits);
+                sparse.demodulate(history, sparseBits);
+                assertArrayEquals("Detection at sample " + position, referenceBits, goertzelBits);
+                assertArrayEquals("Detection at sample " + position, referenceBits, sparseBits);
+                nDetections++;
+                if (new CRC().checkMessageCRC(referenceBits) == 0) {
+                    nDecoded++;
+                }
+            }
+        }
+        assertTrue(nDetections > 0);
+        return nDecoded;
+    }
+}
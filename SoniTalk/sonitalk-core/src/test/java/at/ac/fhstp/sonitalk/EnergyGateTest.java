@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import at.ac.fhstp.sonitalk.utils.EnergyGate;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EnergyGateTest {
+    private static final int FS = 44100;
+    private static final int BITPERIOD_SAMPLES = 4410;
+    private static final int ANALYSIS_WIN_LEN = BITPERIOD_SAMPLES / 2;
+    private static final int ANALYSIS_WIN_STEP = Math.round((float) ANALYSIS_WIN_LEN / 8);
+    private static final int HISTORY_BUFFER_SIZE = BITPERIOD_SAMPLES * 22;
+
+    private final SoniTalkConfig config = new SoniTalkConfig(18000, 100, 0, 10, 16, 100);
+
+    @Test
+    public void closedOnNoiseOpenOnMessage() {
+        EnergyGate gate = new EnergyGate(FS, config, ANALYSIS_WIN_LEN, ANALYSIS_WIN_STEP, 8, EnergyGate.DEFAULT_THRESHOLD_FACTOR);
+        float[] noise = SyntheticSignals.generateNoise(FS * 5, 0.002, new Random(4));
+        float[] hop = new float[ANALYSIS_WIN_STEP];
+        boolean open = true;
+        int nOpenAfterOneSecond = 0;
+        for (int position = 0; position + ANALYSIS_WIN_STEP <= noise.length; position += ANALYSIS_WIN_STEP) {
+            System.arraycopy(noise, position, hop, 0, ANALYSIS_WIN_STEP);
+            open = gate.onSamplesAdded(hop, ANALYSIS_WIN_STEP);
+            if (open && position > FS) {
+                nOpenAfterOneSecond++;
+            }
+        }
+        assertFalse(open);
+        assertTrue("Open on " + nOpenAfterOneSecond + " steps of noise", nOpenAfterOneSecond < 10);
+
+        short[] message = new SoniTalkEncoder(FS, config).generateMessage("gate".getBytes(StandardCharsets.UTF_8)).getRawAudio();
+        float[] quietNoise = SyntheticSignals.generateNoise(message.length, 0.002, new Random(5));
+        for (int position = 0; position + ANALYSIS_WIN_STEP <= message.length; position += ANALYSIS_WIN_STEP) {
+            for (int i = 0; i < ANALYSIS_WIN_STEP; i++) {
+                hop[i] = quietNoise[position + i] + 0.1f * message[position + i] / Short.MAX_VALUE;
+            }
+            // The whole message contains energy in the band, the end block included
+            assertTrue("Closed at sample " + position, gate.onSamplesAdded(hop, ANALYSIS_WIN_STEP) || position < ANALYSIS_WIN_LEN);
+        }
+    }
+
+    @Test
+    public void sameMessagesWithGate() {
+        short[] recording = SyntheticSignals.generateRecording(config, FS, HISTORY_BUFFER_SIZE * 2, new Random(6),
+                "first".getBytes(StandardCharsets.UTF_8),
+                "second".getBytes(StandardCharsets.UTF_8));
+        SoniTalkOfflineDecoder decoder = new SoniTalkOfflineDecoder(FS, config);
+        List<SoniTalkMessage> expected = getCorrectMessages(decoder.decode(recording));
+        assertTrue(expected.size() > 0);
+        assertEquals(0, decoder.getGatedTimeMillis());
+
+        decoder.setEnergyGateEnabled(true);
+        List<SoniTalkMessage> actual = getCorrectMessages(decoder.decode(recording));
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i).getMessage(), actual.get(i).getMessage());
+            assertEquals(expected.get(i).getSampleOffset(), actual.get(i).getSampleOffset());
+        }
+        // Most of the padding is noise only
+        long recordingMillis = recording.length * 1000L / FS;
+        assertTrue("Gated " + decoder.getGatedTimeMillis() + " of " + recordingMillis + "ms", decoder.getGatedTimeMillis() > recordingMillis / 4);
+    }
+
+    private static List<SoniTalkMessage> getCorrectMessages(List<SoniTalkMessage> messages) {
+        List<SoniTalkMessage> correctMessages = new ArrayList<>();
+        for (SoniTalkMessage message : messages) {
+            if (message.isCrcCorrect()) {
+                correctMessages.add(message);
+            }
+        }
+        return correctMessages;
+    }
+}
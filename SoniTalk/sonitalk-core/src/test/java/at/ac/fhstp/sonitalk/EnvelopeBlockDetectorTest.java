@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import at.ac.fhstp.sonitalk.utils.BlockDetector;
+import at.ac.fhstp.sonitalk.utils.CircularArray;
+import at.ac.fhstp.sonitalk.utils.EnvelopeBlockDetector;
+import at.ac.fhstp.sonitalk.utils.HilbertBlockDetector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EnvelopeBlockDetectorTest {
+    private static final int FS = 44100;
+    private static final int BITPERIOD_SAMPLES = 4410;
+    private static final int ANALYSIS_WIN_LEN = BITPERIOD_SAMPLES / 2;
+    private static final int ANALYSIS_WIN_STEP = Math.round((float) ANALYSIS_WIN_LEN / 8);
+    private static final int N_BLOCKS = 22;
+    private static final int HISTORY_BUFFER_SIZE = BITPERIOD_SAMPLES * N_BLOCKS;
+
+    private final SoniTalkConfig config = new SoniTalkConfig(18000, 100, 0, 10, 16, 100);
+
+    @Test
+    public void detectsMessageLikeHilbert() throws Exception {
+        float[] stream = SyntheticSignals.generateMessageStream(config, FS, N_BLOCKS, 42);
+        List<Integer> envelopeDetections = detectMessages(new EnvelopeBlockDetector(FS, config, ANALYSIS_WIN_LEN, HISTORY_BUFFER_SIZE, 8, 2.0, 2.0), stream);
+        List<Integer> hilbertDetections = detectMessages(new HilbertBlockDetector(FS, config, ANALYSIS_WIN_LEN, 8, 2.0, 2.0), stream);
+
+        assertFalse(envelopeDetections.isEmpty());
+        // Every detection must be close (within one bit) to a detection of the Hilbert detector
+        for (int position : envelopeDetections) {
+            assertTrue("Unexpected detection at sample " + position,
+                    position >= hilbertDetections.get(0) - BITPERIOD_SAMPLES
+                            && position <= hilbertDetections.get(hilbertDetections.size() - 1) + BITPERIOD_SAMPLES);
+        }
+    }
+
+    @Test
+    public void noDetectionOnNoise() throws Exception {
+        float[] noise = SyntheticSignals.generateNoise(HISTORY_BUFFER_SIZE * 3, 0.05, new Random(7));
+        List<Integer> detections = detectMessages(new EnvelopeBlockDetector(FS, config, ANALYSIS_WIN_LEN, HISTORY_BUFFER_SIZE, 8, 2.0, 2.0), noise);
+        assertEquals(0, detections.size());
+    }
+
+    /**
+     * Streams the signal hop by hop like the decoder and returns the positions where both a start
+     * and an end block were detected.
+     */
+    private static List<Integer> detectMessages(BlockDetector detector, float[] stream) {
+        List<Integer> detections = new ArrayList<>();
+        CircularArray historyBuffer = new CircularArray(HISTORY_BUFFER_SIZE);
+        float[] hop = new float[ANALYSIS_WIN_STEP];
+        for (int position = 0; position + ANALYSIS_WIN_STEP <= stream.length; position += ANALYSIS_WIN_STEP) {
+            System.arraycopy(stream, position, hop, 0, ANALYSIS_WIN_STEP);
+            historyBuffer.add(hop);
+            detector.onSamplesAdded(hop, ANALYSIS_WIN_STEP);
+            if (position + ANALYSIS_WIN_STEP >= HISTORY_BUFFER_SIZE
+                    && detector.isStartBlock(historyBuffer) && detector.isEndBlock(historyBuffer)) {
+                detections.add(position);
+            }
+        }
+        return detections;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import at.ac.fhstp.sonitalk.utils.CRC;
+import at.ac.fhstp.sonitalk.utils.ConfigConstants;
+import at.ac.fhstp.sonitalk.utils.DecoderUtils;
+import at.ac.fhstp.sonitalk.utils.FrameDecoder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrameDecoderTest {
+    private static final int N_BITS = 10 * 16; // Default config: 10 message blocks of 16 frequencies
+
+    private final CRC crc = new CRC();
+
+    @Test
+    public void sameMessageAsTheBitStrings() {
+        FrameDecoder frameDecoder = new FrameDecoder(crc, N_BITS);
+        for (String text : new String[]{"", "Hello", "Hello SoniTalk", "18 bytes of text!!"}) {
+            int[] bits = encodeFrame(text.getBytes(StandardCharsets.UTF_8));
+            assertEquals(0, frameDecoder.decode(bits));
+            assertArrayEquals(decodeWithBitStrings(bits), frameDecoder.getPayload());
+            assertEquals(text, new String(frameDecoder.getPayload(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void onlyRemovesTheTrailingFillingBytes() {
+        FrameDecoder frameDecoder = new FrameDecoder(crc, N_BITS);
+        byte[] data = {1, ConfigConstants.CONTROL_FILLING_BYTE, 2, 3};
+        int[] bits = encodeFrame(data);
+        assertEquals(0, frameDecoder.decode(bits));
+        assertArrayEquals(data, frameDecoder.getPayload());
+
+        // Data containing the error detection bits of the frame
+        byte[] parity = crc.getParityBytes(new byte[]{7, 7}, 2);
+        data = new byte[]{parity[0], parity[1], 7, 7};
+        assertEquals(0, frameDecoder.decode(encodeFrame(data)));
+        assertArrayEquals(data, frameDecoder.getPayload());
+    }
+
+    @Test
+    public void detectsWrongBits() {
+        FrameDecoder frameDecoder = new FrameDecoder(crc, N_BITS);
+        int[] bits = encodeFrame("Hello SoniTalk".getBytes(StandardCharsets.UTF_8));
+        Random random = new Random(20);
+        for (int n = 0; n < 100; n++) {
+            int[] received = bits.clone();
+            received[random.nextInt(N_BITS)] ^= 1;
+            assertTrue(frameDecoder.decode(received) > 0);
+            assertEquals(crc.checkMessageCRC(received), frameDecoder.decode(received));
+        }
+    }
+
+    @Test
+    public void framesNotMadeOfWholeBytes() {
+        // 10 blocks of 12 frequencies: 104 bits of data and filling, 16 error detection bits
+        FrameDecoder frameDecoder = new FrameDecoder(crc, 120);
+        byte[] data = "Hi!".getBytes(StandardCharsets.UTF_8);
+        byte[] frame = Arrays.copyOf(data, 13);
+        Arrays.fill(frame, data.length, frame.length, ConfigConstants.CONTROL_FILLING_BYTE);
+        int[] bits = toBits(frame, crc.getParityBytes(frame, frame.length));
+        assertEquals(120, bits.length);
+        assertEquals(0, frameDecoder.decode(bits));
+        assertArrayEquals(data, frameDecoder.getPayload());
+    }
+
+    /*
+     * Frame of the default config, filled like the SoniTalkEncoder does.
+     */
+    private int[] encodeFrame(byte[] data) {
+        byte[] frame = Arrays.copyOf(data, (N_BITS - crc.getParityLength()) / 8);
+        Arrays.fill(frame, data.length, frame.length, ConfigConstants.CONTROL_FILLING_BYTE);
+        return toBits(frame, crc.getParityBytes(frame, frame.length));
+    }
+
+    private static int[] toBits(byte[] frame, byte[] parity) {
+        int[] bits = new int[(frame.length + parity.length) * 8];
+        for (int i = 0; i < bits.length; i++) {
+            byte value = i / 8 < frame.length ? frame[i / 8] : parity[i / 8 - frame.length];
+            bits[i] = (value >> (7 - i % 8)) & 1;
+        }
+        return bits;
+    }
+
+    /*
+     * How the DecodingPipeline used to decode the bits.
+     */
+    private static byte[] decodeWithBitStrings(int[] bits) {
+        String decodedBitSequence = Arrays.toString(bits).replace(", ", "").replace("[", "").replace("]", "");
+        String bitSequenceWithoutFillingAndCRC = DecoderUtils.removeFillingCharsAndCRCChars(decodedBitSequence, ConfigConstants.GENERATOR_POLYNOM.length);
+        return DecoderUtils.binaryToBytes(bitSequenceWithoutFillingAndCRC);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import at.ac.fhstp.sonitalk.utils.HeterodyneDecimator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HeterodyneDecimatorTest {
+    private static final int FS = 44100;
+    private static final int OUTPUT_STEP = 39;
+
+    private final SoniTalkConfig config = new SoniTalkConfig(18000, 100, 0, 10, 16, 100);
+
+    @Test
+    public void shiftsTheCarriersDown() {
+        for (int decimationFactor : new int[] {7, 10}) {
+            HeterodyneDecimator decimator = new HeterodyneDecimator(FS, config, 50, decimationFactor);
+            int outputRate = FS / decimationFactor;
+            assertEquals(outputRate, decimator.getOutputSampleRate());
+            int shiftedF0 = decimator.getShiftedConfig().getFrequencyZero();
+            assertEquals(config.getFrequencyZero() - decimator.getFrequencyShift(), shiftedF0);
+            assertTrue(shiftedF0 > 0 && shiftedF0 + 16 * 100 < outputRate / 2);
+
+            for (int carrier = 0; carrier < 16; carrier += 5) {
+                double frequency = 18000 + carrier * 100;
+                float[] output = process(decimator, sine(frequency, FS));
+                int skip = decimator.getFilterLength() / decimationFactor + 1;
+                assertEquals("Carrier " + carrier + ", factor " + decimationFactor, 0.5, amplitude(output, skip, frequency - decimator.getFrequencyShift(), outputRate), 0.005);
+                assertEquals(0.5 / Math.sqrt(2), rms(output, skip), 0.005); // Nothing else
+            }
+            decimator.reset();
+        }
+    }
+
+    @Test
+    public void removesTheAudibleRange() {
+        HeterodyneDecimator decimator = new HeterodyneDecimator(FS, config, 50, 7);
+        for (double frequency : new double[] {440, 5000, 15000, 16500, 21500}) {
+            decimator.reset();
+            float[] output = process(decimator, sine(frequency, FS));
+            double attenuation = 20 * Math.log10(rms(output, decimator.getFilterLength()) / (0.5 / Math.sqrt(2)));
+            assertTrue(frequency + "Hz attenuated by " + attenuation + "dB", attenuation < -55);
+        }
+    }
+
+    @Test
+    public void continuesTheStreamOnceTheFilterIsFilled() {
+        HeterodyneDecimator decimator = new HeterodyneDecimator(FS, config, 50, 7);
+        float[] input = SyntheticSignals.generateNoise(FS, 0.1, new Random(5));
+        float[] expected = process(decimator, input);
+
+        // Starts in the middle of the stream, like a segment of the SoniTalkBatchDecoder
+        int start = 50 * OUTPUT_STEP * 7;
+        decimator.reset(start);
+        float[] output = process(decimator, Arrays.copyOfRange(input, start, input.length));
+        int skip = decimator.getFilterLength() / 7 + 1;
+        assertArrayEquals(Arrays.copyOfRange(expected, start / 7 + skip, expected.length),
+                Arrays.copyOfRange(output, skip, output.length), 0);
+    }
+
+    @Test
+    public void largestFactorKeepsTheBand() {
+        assertEquals(10, HeterodyneDecimator.getMaxDecimationFactor(FS, config, 50));
+        assertEquals(1, HeterodyneDecimator.getMaxDecimationFactor(FS, new SoniTalkConfig(2000, 100, 0, 10, 200, 100), 50));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsFactorsNotDividingTheSampleRate() {
+        new HeterodyneDecimator(FS, config, 50, 8);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsFactorsTooLargeForTheBand() {
+        new HeterodyneDecimator(FS, config, 50, 12);
+    }
+
+    private static float[] process(HeterodyneDecimator decimator, float[] input) {
+        int step = OUTPUT_STEP * decimator.getDecimationFactor();
+        float[] output = new float[input.length / step * OUTPUT_STEP];
+        float[] block = new float[step];
+        float[] decimated = new float[OUTPUT_STEP];
+        for (int i = 0; i + step <= input.length; i += step) {
+            System.arraycopy(input, i, block, 0, step);
+            decimator.process(block, step, decimated);
+            System.arraycopy(decimated, 0, output, i / step * OUTPUT_STEP, OUTPUT_STEP);
+        }
+        return output;
+    }
+
+    private static float[] sine(double frequency, int length) {
+        float[] samples = new float[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = (float) (0.5 * Math.cos(2 * Math.PI * frequency * i / FS));
+        }
+        return samples;
+    }
+
+    /*
+     * Amplitude of the given frequency, over a whole number of periods.
+     */
+    private static double amplitude(float[] values, int from, double frequency, int sampleRate) {
+        double re = 0;
+        double im = 0;
+        for (int i = from; i < values.length; i++) {
+            re += values[i] * Math.cos(2 * Math.PI * frequency * i / sampleRate);
+            im += values[i] * Math.sin(2 * Math.PI * frequency * i / sampleRate);
+        }
+        return 2 * Math.sqrt(re * re + im * im) / (values.length - from);
+    }
+
+    private static double rms(float[] values, int from) {
+        double sum = 0;
+        for (int i = from; i < values.length; i++) {
+            sum += values[i] * values[i];
+        }
+        return Math.sqrt(sum / (values.length - from));
+    }
+}
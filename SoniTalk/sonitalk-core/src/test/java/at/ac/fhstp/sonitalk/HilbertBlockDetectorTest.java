@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import at.ac.fhstp.sonitalk.utils.CircularArray;
+import at.ac.fhstp.sonitalk.utils.DecoderUtils;
+import at.ac.fhstp.sonitalk.utils.HilbertBlockDetector;
+import marytts.util.math.ComplexArray;
+import marytts.util.math.Hilbert;
+import uk.me.berndporr.iirj.Butterworth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HilbertBlockDetectorTest {
+    private static final int FS = 44100;
+    private static final int BITPERIOD_SAMPLES = 4410;
+    private static final int ANALYSIS_WIN_LEN = BITPERIOD_SAMPLES / 2;
+    private static final int ANALYSIS_WIN_STEP = Math.round((float) ANALYSIS_WIN_LEN / 8);
+    private static final int N_BLOCKS = 22;
+    private static final int HISTORY_BUFFER_SIZE = BITPERIOD_SAMPLES * N_BLOCKS;
+
+    private final SoniTalkConfig config = new SoniTalkConfig(18000, 100, 0, 10, 16, 100);
+
+    @Test
+    public void sameDecisionsAsReference() throws Exception {
+        float[] stream = SyntheticSignals.generateMessageStream(config, FS, N_BLOCKS, 42);
+        HilbertBlockDetector detector = new HilbertBlockDetector(FS, config, ANALYSIS_WIN_LEN, 8, 2.0, 2.0);
+        CircularArray historyBuffer = new CircularArray(HISTORY_BUFFER_SIZE);
+        float[] hop = new float[ANALYSIS_WIN_STEP];
+
+        int nStartBlocks = 0;
+        int nMessages = 0;
+        for (int position = 0; position + ANALYSIS_WIN_STEP <= stream.length; position += ANALYSIS_WIN_STEP) {
+            System.arraycopy(stream, position, hop, 0, ANALYSIS_WIN_STEP);
+            historyBuffer.add(hop);
+            if (position + ANALYSIS_WIN_STEP < HISTORY_BUFFER_SIZE) {
+                continue;
+            }
+            float[] history = historyBuffer.getArray();
+            boolean start = detector.isStartBlock(historyBuffer);
+            boolean end = detector.isEndBlock(historyBuffer);
+            assertEquals("Start decision at sample " + position, referenceIsStartBlock(history), start);
+            assertEquals("End decision at sample " + position, referenceIsEndBlock(history), end);
+            if (start) nStartBlocks++;
+            if (start && end) nMessages++;
+        }
+        assertTrue(nStartBlocks > 0);
+        assertTrue(nMessages > 0);
+    }
+
+    @Test
+    public void noAllocationPerStep() throws Exception {
+        float[] stream = SyntheticSignals.generateMessageStream(config, FS, N_BLOCKS, 42);
+        HilbertBlockDetector detector = new HilbertBlockDetector(FS, config, ANALYSIS_WIN_LEN, 8, 2.0, 2.0);
+        CircularArray historyBuffer = new CircularArray(HISTORY_BUFFER_SIZE);
+        float[] hop = new float[ANALYSIS_WIN_STEP];
+        for (int position = 0; position < HISTORY_BUFFER_SIZE; position += ANALYSIS_WIN_STEP) {
+            System.arraycopy(stream, position, hop, 0, ANALYSIS_WIN_STEP);
+            historyBuffer.add(hop);
+        }
+
+        int nSteps = 500;
+        runSteps(detector, historyBuffer, nSteps); // Warm up
+        long baseline = getAllocatedBytes();
+        baseline = getAllocatedBytes() - baseline; // Cost of the measurement itself
+        long before = getAllocatedBytes();
+        runSteps(detector, historyBuffer, nSteps);
+        long allocated = getAllocatedBytes() - before - baseline;
+
+        assertTrue("Allocated " + allocated + " bytes in " + nSteps + " steps", allocated < nSteps);
+    }
+
+    private static void runSteps(HilbertBlockDetector detector, CircularArray historyBuffer, int nSteps) {
+        for (int i = 0; i < nSteps; i++) {
+            detector.isStartBlock(historyBuffer);
+            detector.isEndBlock(historyBuffer);
+            historyBuffer.incrementAnalysisIndex(ANALYSIS_WIN_STEP);
+        }
+    }
+
+    private static long getAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /*
+     * Reference implementation, as the decoder used to do it before reusing its filters and buffers.
+     */
+    private boolean referenceIsStartBlock(float[] history) {
+        float[] firstWindow = new float[ANALYSIS_WIN_LEN];
+        System.arraycopy(history, 0, firstWindow, 0, ANALYSIS_WIN_LEN);
+        return referenceBandSum(firstWindow, true) > 2.0 * referenceBandSum(firstWindow, false);
+    }
+
+    private boolean referenceIsEndBlock(float[] history) {
+        float[] lastWindow = new float[ANALYSIS_WIN_LEN];
+        System.arraycopy(history, history.length - ANALYSIS_WIN_LEN, lastWindow, 0, ANALYSIS_WIN_LEN);
+        return referenceBandSum(lastWindow, false) > 2.0 * referenceBandSum(lastWindow, true);
+    }
+
+    private double referenceBandSum(float[] window, boolean upper) {
+        int bandpassWidth = config.getFrequencySpace() * (config.getnFrequencies() / 2);
+        int centerFrequency = config.getFrequencyZero() + (upper ? bandpassWidth : 0) + (bandpassWidth / 2);
+        Butterworth butterworth = new Butterworth();
+        butterworth.bandPass(8, FS, centerFrequency, bandpassWidth);
+        double[] response = new double[DecoderUtils.nextPowerOfTwo(window.length)];
+        for (int i = 0; i < window.length; i++) {
+            response[i] = butterworth.filter(window[i]);
+        }
+        ComplexArray analytic = Hilbert.transform(response);
+        double sum = 0;
+        for (int i = 0; i < analytic.real.length; i++) {
+            sum += DecoderUtils.getComplexAbsolute(analytic.real[i], analytic.imag[i]);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import at.ac.fhstp.sonitalk.utils.RealFFT;
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+
+import static org.junit.Assert.assertEquals;
+
+public class RealFFTTest {
+
+    @Test
+    public void sameResultAsJTransforms() {
+        Random random = new Random(42);
+        for (int n : new int[]{2, 4, 6, 8, 100, 194, 402, 1024, 1103 * 2, 2205 * 2, 4096}) {
+            float[] actual = new float[n];
+            double[] expected = new double[n];
+            for (int i = 0; i < n; i++) {
+                actual[i] = random.nextFloat() * 2 - 1;
+                expected[i] = actual[i];
+            }
+            new DoubleFFT_1D(n).realForward(expected);
+            RealFFT fft = new RealFFT(n);
+            fft.realForward(actual);
+            // Single precision: the error grows with the magnitudes, about sqrt(n) for random samples
+            double tolerance = 1e-5 * Math.sqrt(n);
+            for (int i = 0; i < n; i++) {
+                assertEquals("n = " + n + ", index " + i, expected[i], actual[i], tolerance);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void oddLengthIsRejected() {
+        new RealFFT(4411);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import at.ac.fhstp.sonitalk.utils.SampleRingBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SampleRingBufferTest {
+
+    @Test
+    public void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(262144, new SampleRingBuffer(5 * 44100).getCapacity());
+        assertEquals(256, new SampleRingBuffer(200).getCapacity());
+    }
+
+    @Test
+    public void readsSamplesInOrderAcrossTheEnd() {
+        SampleRingBuffer ring = new SampleRingBuffer(16);
+        short[] chunk = new short[5];
+        short[] out = new short[5];
+        short next = 0;
+        short expected = 0;
+        for (int i = 0; i < 20; i++) {
+            for (int j = 0; j < chunk.length; j++) {
+                chunk[j] = next++;
+            }
+            assertEquals(5, ring.write(chunk, 0, chunk.length));
+            assertTrue(ring.read(out, 0, out.length));
+            for (short sample : out) {
+                assertEquals(expected++, sample);
+            }
+        }
+        assertFalse(ring.read(out, 0, 1));
+    }
+
+    @Test
+    public void countsOverruns() {
+        SampleRingBuffer ring = new SampleRingBuffer(16);
+        short[] chunk = new short[10];
+        assertEquals(10, ring.write(chunk, 0, chunk.length));
+        assertEquals(6, ring.write(chunk, 0, chunk.length));
+        assertEquals(0, ring.write(chunk, 0, chunk.length));
+        assertEquals(2, ring.getOverrunCount());
+        assertEquals(14, ring.getDroppedSampleCount());
+        assertEquals(16, ring.available());
+
+        ring.clear();
+        assertEquals(0, ring.available());
+        assertEquals(10, ring.write(chunk, 0, chunk.length));
+        assertEquals(2, ring.getOverrunCount());
+    }
+
+    @Test
+    public void awaitTimesOutWithoutSamples() {
+        SampleRingBuffer ring = new SampleRingBuffer(16);
+        assertFalse(ring.awaitAvailable(1, 10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(timeout = 30000)
+    public void concurrentProducerAndConsumer() throws InterruptedException {
+        final SampleRingBuffer ring = new SampleRingBuffer(1024);
+        final int total = 2000000;
+        final int hop = 276;
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                short[] chunk = new short[100];
+                int next = 0;
+                while (next < total) {
+                    int length = Math.min(chunk.length, total - next);
+                    for (int j = 0; j < length; j++) {
+                        chunk[j] = (short) (next + j);
+                    }
+                    // Retries what was dropped, so that the sequence stays complete
+                    next += ring.write(chunk, 0, length);
+                }
+            }
+        });
+        producer.start();
+
+        short[] out = new short[hop];
+        int expected = 0;
+        while (expected + hop <= total) {
+            assertTrue(ring.awaitAvailable(hop, 10, TimeUnit.SECONDS));
+            assertTrue(ring.read(out, 0, hop));
+            for (short sample : out) {
+                assertEquals((short) expected++, sample);
+            }
+        }
+        producer.join();
+        assertEquals(total - expected, ring.available());
+    }
+
+    @Test(timeout = 30000)
+    public void waitingProducerNeverDrops() throws InterruptedException {
+        final SampleRingBuffer ring = new SampleRingBuffer(1024);
+        final int total = 2000000;
+        final int hop = 276;
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                short[] chunk = new short[100];
+                int next = 0;
+                while (next < total) {
+                    int length = Math.min(chunk.length, total - next);
+                    for (int j = 0; j < length; j++) {
+                        chunk[j] = (short) (next + j);
+                    }
+                    if (ring.awaitFree(length, 10, TimeUnit.SECONDS)) {
+                        next += ring.write(chunk, 0, length);
+                    }
+                }
+            }
+        });
+        producer.start();
+
+        short[] out = new short[hop];
+        int expected = 0;
+        while (expected + hop <= total) {
+            assertTrue(ring.awaitAvailable(hop, 10, TimeUnit.SECONDS));
+            assertTrue(ring.read(out, 0, hop));
+            for (short sample : out) {
+                assertEquals((short) expected++, sample);
+            }
+        }
+        producer.join();
+        assertEquals(0, ring.getOverrunCount());
+        assertEquals(total - expected, ring.available());
+        assertEquals(ring.getCapacity() - ring.available(), ring.free());
+    }
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import at.ac.fhstp.sonitalk.utils.SignalGenerator;
+import at.ac.fhstp.sonitalk.utils.SignalType;
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class SignalGeneratorTest {
+    private static final int FS = 44100;
+
+    private final SoniTalkConfig[] configs = {
+            new SoniTalkConfig(18000, 100, 0, 10, 16, 100),
+            new SoniTalkConfig(18000, 100, 50, 10, 16, 100),
+            new SoniTalkConfig(17500, 100, 0, 10, 8, 100),
+            new SoniTalkConfig(18000, 50, 0, 10, 16, 100),
+            new SoniTalkConfig(4000, 100, 0, 10, 24, 100)
+    };
+
+    @Test
+    public void sameBlocksAsReference() {
+        for (SoniTalkConfig config : configs) {
+            // The second generator reads the blocks generated by the first one from the cache
+            for (int generator = 0; generator < 2; generator++) {
+                assertSameBlocks(config, new SignalGenerator(FS, config), new ReferenceSignalGenerator(FS, config));
+            }
+        }
+    }
+
+    @Test
+    public void sameBlocksWithoutCache() {
+        SignalGenerator.setTemplateCacheCapacity(0);
+        try {
+            for (SoniTalkConfig config : configs) {
+                assertSameBlocks(config, new SignalGenerator(FS, config), new ReferenceSignalGenerator(FS, config));
+            }
+        } finally {
+            SignalGenerator.setTemplateCacheCapacity(SignalGenerator.DEFAULT_TEMPLATE_CACHE_CAPACITY);
+        }
+    }
+
+    @Test
+    public void returnedBlocksCanBeModified() {
+        SoniTalkConfig config = configs[0];
+        SignalGenerator signalGenerator = new SignalGenerator(FS, config);
+        String[] bits = getStartBits(config.getnFrequencies());
+        short[] block = signalGenerator.getSignalBlock(SignalType.PLAYCONFIG, bits);
+        short[] expected = block.clone();
+        Arrays.fill(block, (short) 0);
+        assertArrayEquals(expected, signalGenerator.getSignalBlock(SignalType.PLAYCONFIG, bits));
+    }
+
+    @Test
+    public void modifiedConfigIsNotReadFromTheCache() {
+        SoniTalkConfig config = new SoniTalkConfig(18000, 100, 0, 10, 16, 100);
+        String[] bits = getStartBits(config.getnFrequencies());
+        new SignalGenerator(FS, config).getSignalBlock(SignalType.PLAYCONFIG, bits);
+        config.setBitperiod(50);
+        short[] after = new SignalGenerator(FS, config).getSignalBlock(SignalType.PLAYCONFIG, bits);
+        assertArrayEquals(new ReferenceSignalGenerator(FS, config).getSignalBlock(SignalType.PLAYCONFIG, bits), after);
+    }
+
+    /*
+     * Generates the blocks of a few messages in the order of the encoder (start and end blocks,
+     * pause, then data and inverted data blocks), with some blocks repeated and some blocks with
+     * only one frequency. The normalization depends on the blocks generated before.
+     */
+    private static void assertSameBlocks(SoniTalkConfig config, SignalGenerator signalGenerator, ReferenceSignalGenerator reference) {
+        int nFrequencies = config.getnFrequencies();
+        Random random = new Random(42);
+        for (int message = 0; message < 3; message++) {
+            List<String[]> blocks = new ArrayList<>();
+            blocks.add(getStartBits(nFrequencies));
+            String[] endBits = new String[nFrequencies];
+            Arrays.fill(endBits, 0, nFrequencies / 2, "1");
+            Arrays.fill(endBits, nFrequencies / 2, nFrequencies, "0");
+            blocks.add(endBits);
+            for (int block = 0; block < config.getnMessageBlocks(); block++) {
+                String[] bits = new String[nFrequencies];
+                String[] invertedBits = new String[nFrequencies];
+                for (int i = 0; i < nFrequencies; i++) {
+                    boolean bit = message == 1 ? (block + i) % 2 == 0 : random.nextBoolean();
+                    bits[i] = bit ? "1" : "0";
+                    invertedBits[i] = bit ? "0" : "1";
+                }
+                if (block == 0) {
+                    Arrays.fill(bits, "0");
+                    bits[random.nextInt(nFrequencies)] = "1";
+                }
+                blocks.add(bits);
+                blocks.add(invertedBits);
+            }
+
+            for (String[] bits : blocks) {
+                assertArrayEquals(reference.getSignalBlock(SignalType.PLAYCONFIG, bits), signalGenerator.getSignalBlock(SignalType.PLAYCONFIG, bits));
+            }
+            if (config.getPauseperiod() != 0) {
+                String[] pauseBits = new String[nFrequencies];
+                Arrays.fill(pauseBits, "0");
+                assertArrayEquals(reference.getSignalBlock(SignalType.PAUSECONFIG, pauseBits), signalGenerator.getSignalBlock(SignalType.PAUSECONFIG, pauseBits));
+            }
+        }
+    }
+
+    private static String[] getStartBits(int nFrequencies) {
+        String[] startBits = new String[nFrequencies];
+        Arrays.fill(startBits, 0, (nFrequencies / 2) - 1, "0");
+        Arrays.fill(startBits, nFrequencies / 2, nFrequencies, "1");
+        return startBits;
+    }
+
+    /*
+     * Reference implementation, as the generator did it before caching the generated blocks.
+     */
+    private static class ReferenceSignalGenerator {
+        private SoniTalkConfig config;
+        private int fs;
+        private int winLen = 500;
+        private int winLenSamples;
+        private double max = 0;
+        private double[][] whiteNoiseBands;
+        private double[] cutoffFreqDownIdx;
+        private double[] cutoffFreqUpIdx;
+        private double bandWidth;
+
+        ReferenceSignalGenerator(int sampleRate, SoniTalkConfig config){
+            this.config = config;
+            this.fs = sampleRate;
+
+            int f0 = config.getFrequencyZero();
+            if ((f0*2) > fs) {
+                throw new IllegalArgumentException("Sample rate cannot be lower than two times the frequency zero. Please try a sample rate of 44100Hz and f0 under 22050Hz");
+            }
+        }
+
+        short[] getSignalBlock(final SignalType signalType, String[] bitStringArray){
+            return transformDoubleArrayIntoShortArray(signalType, bitStringArray);
+        }
+
+        private double[] generateSignalBlock(SignalType signalType, String[] bitStringArray){
+            if(signalType.equals(SignalType.PLAYCONFIG)) {
+                winLen = config.getBitperiod();
+            }else if(signalType.equals(SignalType.PAUSECONFIG)) {
+                winLen = config.getPauseperiod();
+            }
+            whiteNoiseBands = useSignalConfig(signalType, bitStringArray);
+            if (winLen==0){winLen= 30;}
+            winLenSamples = winLen*fs/1000;
+
+            if(winLenSamples%2 == 1){
+                winLenSamples+=1;
+            }
+
+            if(whiteNoiseBands.length>1) {
+                double[][] temp = new double[1][2];
+                for (int i = 1; i < whiteNoiseBands.length; i++) {
+                    for (int j = 0; j < whiteNoiseBands.length - i; j++) {
+                        if (whiteNoiseBands[j][0] > whiteNoiseBands[j + 1][0]) {
+                            temp[0][0] = whiteNoiseBands[j][0];
+                            temp[0][1] = whiteNoiseBands[j][1];
+                            whiteNoiseBands[j][0] = whiteNoiseBands[j + 1][0];
+                            whiteNoiseBands[j][1] = whiteNoiseBands[j + 1][1];
+                            whiteNoiseBands[j + 1][0] = temp[0][0];
+                            whiteNoiseBands[j + 1][1] = temp[0][1];
+                        }
+                    }
+                }
+            }
+
+            cutoffFreqUpIdx = new double[whiteNoiseBands.length];
+            cutoffFreqDownIdx = new double[whiteNoiseBands.length];
+
+            for(int i = 0; i<whiteNoiseBands.length; i++) {
+                double freqDown = whiteNoiseBands[i][0];
+                double freqUp = whiteNoiseBands[i][1];
+                cutoffFreqDownIdx[i] = Math.round(freqDown / (fs / 2) * (winLen * fs / 1000) + 1);
+                cutoffFreqUpIdx[i] = Math.round(freqUp / (fs / 2) * (winLen * fs / 1000) + 1);
+            }
+
+            double[] signal = new double[winLenSamples];
+
+            Random randomGen = new Random(42);
+            for (int j = 0; j < winLenSamples; j++) {
+                signal[j] = randomGen.nextDouble();
+            }
+
+            double[] complexWhiteNoise = doFFT(winLenSamples, signal);
+
+            return complexWhiteNoise;
+        }
+
+        private double[] normalizeWhitenoiseSignal(SignalType signalType, String[] bitStringArray){
+            double[] complexWhiteNoise = generateSignalBlock(signalType, bitStringArray);
+            for (int i = 0; i < (winLenSamples * 2); i++) {
+                if (Math.abs(complexWhiteNoise[i]) > max) {
+                    max = Math.abs(complexWhiteNoise[i]);
+                }
+            }
+
+            double[] helpNoise = new double[winLenSamples];
+            int noiseCounter = 0;
+            for (int l = 0; l < (winLenSamples * 2); l++) {
+                if (l % 2 == 0) {
+                    helpNoise[noiseCounter] = (complexWhiteNoise[l] / max);
+                    noiseCounter++;
+                }
+            }
+
+            return helpNoise;
+        }
+
+        private double[] makeFadeInAndFadeOut(SignalType signalType, String[] bitStringArray){
+            double[] helpNoiseFull = normalizeWhitenoiseSignal(signalType, bitStringArray);
+            if(signalType.equals(SignalType.PLAYCONFIG)) {
+                winLen = config.getBitperiod();
+            }else if(signalType.equals(SignalType.PAUSECONFIG)) {
+                winLen= config.getPauseperiod();
+            }
+            winLenSamples = winLen*fs/1000;
+            if(winLenSamples%2 == 1){
+                winLenSamples+=1;
+            }
+            double[] helpNoise = new double[winLenSamples];
+            for(int m = 0; m < winLenSamples; m++) {
+                helpNoise[m] = helpNoiseFull[m];
+            }
+
+            int fadeAmount = 3;
+            int fadeSamples = Math.round(helpNoise.length/fadeAmount);
+            for (int i = 0; i < fadeSamples; i++) {
+                helpNoise[i] = (helpNoise[i] * ((double) i / (double) fadeSamples));
+            }
+
+            for (int i = 0; i < fadeSamples; i++) {
+                helpNoise[helpNoise.length - (fadeSamples - (fadeSamples - i)) - 1] = (helpNoise[helpNoise.length - (fadeSamples - (fadeSamples - i)) - 1] * ((double) i / (double) fadeSamples));
+            }
+
+            return helpNoise;
+        }
+
+        private short[] transformDoubleArrayIntoShortArray(SignalType signalType, String[] bitStringArray){
+            double[] helpNoise = makeFadeInAndFadeOut(signalType, bitStringArray);
+
+            for (int i = 0; i < winLenSamples; i++) {
+                if(helpNoise[i] > 1){
+                    helpNoise[i] = 1;
+                }
+                if(helpNoise[i] < -1){
+                    helpNoise[i] = -1;
+                }
+            }
+
+            short[] whiteNoise = new short[winLenSamples];
+
+            for (int i = 0; i < winLenSamples; i++) {
+                whiteNoise[i] = (short) (helpNoise[i] * 32760);
+                if(whiteNoise[i] > 32760){
+                    whiteNoise[i] = 32760;
+                }
+                if(whiteNoise[i] < -32760){
+                    whiteNoise[i] = -32760;
+                }
+            }
+
+            return whiteNoise;
+        }
+
+        private double[] doFFT(int fftSize, double[] inputSignal) {
+
+            DoubleFFT_1D mFFT = new DoubleFFT_1D(fftSize);
+
+            double[] complexSignal = new double[winLenSamples * 2];
+
+            System.arraycopy(inputSignal, 0, complexSignal, 0, winLenSamples);
+
+            mFFT.realForwardFull(complexSignal);
+
+            double minFreq = cutoffFreqDownIdx[0];
+            double maxFreq = cutoffFreqUpIdx[whiteNoiseBands.length-1];
+
+            for (double j = 0; j < minFreq; j++) {
+                complexSignal[(int)j] = 0.0f;
+            }
+
+            double helpWinLenSamples = winLenSamples * 2;
+            for (double j = (helpWinLenSamples - (minFreq-1)); j < helpWinLenSamples; j++) {
+                complexSignal[(int)j] = 0.0f;
+            }
+
+            double helpUpSamples = winLenSamples - (maxFreq+1);
+            for (double j = winLenSamples - helpUpSamples; j < winLenSamples + helpUpSamples; j++) {
+                complexSignal[(int)j] = 0.0f;
+            }
+
+            if(whiteNoiseBands.length>1) {
+                for (int k = 0; k < whiteNoiseBands.length-1; k++) {
+                    for (double l = cutoffFreqUpIdx[k]+1; l < cutoffFreqDownIdx[k+1]; l++) {
+                        complexSignal[(int)l] = 0.0f;
+                    }
+                    int helpSamples = winLenSamples * 2;
+                    for (double l = helpSamples-cutoffFreqDownIdx[k+1]+1; l < helpSamples-cutoffFreqUpIdx[k]; l++) {
+                        complexSignal[(int)l] = 0.0f;
+                    }
+                }
+
+                for (int k = 0; k < whiteNoiseBands.length; k++) {
+                    for (double l = cutoffFreqDownIdx[k]; l <= cutoffFreqUpIdx[k]; l++) {
+                        complexSignal[(int)l] = 1000;
+                    }
+                    int helpSamples = winLenSamples * 2;
+
+                    for (double l = helpSamples-cutoffFreqUpIdx[k]; l <= helpSamples-cutoffFreqDownIdx[k]; l++) {
+                        complexSignal[(int)l] = 1000;
+                    }
+                }
+            }
+
+            mFFT.complexInverse(complexSignal,false);
+
+            return complexSignal;
+
+        }
+
+        private double[][] useSignalConfig(SignalType signalTypeConfig, String[] bitStringArray) {
+            double[][] frequencyBands;
+            bandWidth = 1;
+
+            int numberOfFrequencies = config.getnFrequencies();
+
+            String[] mLine = new String[numberOfFrequencies];
+            int freqCounter = 0;
+
+            switch (signalTypeConfig) {
+                case PLAYCONFIG:
+                    int frequencyZero = config.getFrequencyZero();
+                    int spaceBetweenFrequencies = config.getFrequencySpace();
+
+                    for(int i = 0; i<numberOfFrequencies; i++) {
+                        if(bitStringArray[i]!=null) {
+                            if (bitStringArray[i].equals("0")) {
+
+                            } else if (bitStringArray[i].equals("1")) {
+                                mLine[freqCounter] = String.valueOf((frequencyZero + (i * spaceBetweenFrequencies)));
+                                freqCounter++;
+                            }
+                        }
+                    }
+
+                    break;
+                case PAUSECONFIG:
+                    int frequencyPause = config.getFrequencyZero();
+                    int spaceBetweenFrequencies_ = config.getFrequencySpace();
+
+                    for(int i = 0; i<numberOfFrequencies; i++) {
+                        if(bitStringArray[i]!=null) {
+                            if (bitStringArray[i].equals("0")) {
+                                mLine[i] = "0";
+                                freqCounter++;
+                            } else if (bitStringArray[i].equals("1")) {
+                                mLine[freqCounter] = String.valueOf((frequencyPause + (i * spaceBetweenFrequencies_)));
+                                freqCounter++;
+                            }
+                        }
+                    }
+                    break;
+            }
+
+             frequencyBands = new double[freqCounter][2];
+             for(int j = 0; j<freqCounter; j++) {
+                if(mLine[j].equals("0")){
+                    frequencyBands[j][0] = 0;
+                    frequencyBands[j][1] = 0;
+                }else {
+                    frequencyBands[j][0] = (Integer.parseInt(mLine[j]) - (bandWidth / 2));
+                    frequencyBands[j][1] = (Integer.parseInt(mLine[j]) + (bandWidth / 2));
+                }
+            }
+
+            return frequencyBands;
+
+        }
+    }
+}
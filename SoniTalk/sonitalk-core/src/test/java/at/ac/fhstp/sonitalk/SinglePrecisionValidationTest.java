@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import at.ac.fhstp.sonitalk.utils.BandPassFilter;
+import uk.me.berndporr.iirj.Butterworth;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The decoder runs in single precision. Checks that it still decides every bit of the encoder's
+ * own output correctly, for the bundled configs (assets/configs of the SDK and of the demo app)
+ * and every detection and demodulation mode, and that it decides exactly the same bits as the
+ * double precision decoder did for every candidate, CRC failures included.
+ * short_ultrasonic (50ms bits) is not decoded correctly from synthetic audio, in double precision
+ * neither, only the comparison with double precision covers its bits.
+ */
+public class SinglePrecisionValidationTest {
+    private static final int FS = 44100;
+
+    // default_config, hearable10000, hearable4000, near_ultrasonic, short_ultrasonic
+    private static final SoniTalkConfig[] BUNDLED_CONFIGS = {
+            new SoniTalkConfig(18000, 100, 0, 10, 16, 100),
+            new SoniTalkConfig(10000, 100, 0, 10, 16, 100),
+            new SoniTalkConfig(4000, 100, 0, 10, 24, 100),
+            new SoniTalkConfig(17500, 100, 0, 10, 8, 100),
+            new SoniTalkConfig(18000, 50, 0, 10, 16, 100)
+    };
+    private static final int SHORT_ULTRASONIC = 4;
+    private static final int[] DETECTION_MODES = {DecoderModes.DETECTION_MODE_HILBERT, DecoderModes.DETECTION_MODE_ENVELOPE};
+    private static final int[] DEMODULATION_MODES = {DecoderModes.DEMODULATION_MODE_SPECTROGRAM, DecoderModes.DEMODULATION_MODE_GOERTZEL, DecoderModes.DEMODULATION_MODE_ROLLING};
+
+    // Candidates of the last double precision decoder, see the comments of the file for its format
+    private static final String DOUBLE_PRECISION_BITS = "double_precision_bits.txt";
+
+    @Test
+    public void decodesEveryBitOfEveryBundledConfig() {
+        for (int c = 0; c < BUNDLED_CONFIGS.length; c++) {
+            SoniTalkConfig config = BUNDLED_CONFIGS[c];
+            byte[] payload = getFullPayload(config);
+            short[] recording = generateRecording(c);
+            for (int detectionMode : DETECTION_MODES) {
+                for (int demodulationMode : DEMODULATION_MODES) {
+                    String name = "Config " + c + ", detection " + detectionMode + ", demodulation " + demodulationMode;
+                    SoniTalkOfflineDecoder decoder = new SoniTalkOfflineDecoder(FS, config);
+                    decoder.setDetectionMode(detectionMode);
+                    decoder.setDemodulationMode(demodulationMode);
+                    int nDecoded = 0;
+                    for (SoniTalkMessage message : decoder.decode(recording)) {
+                        if (message.isCrcCorrect()) {
+                            assertArrayEquals(name, payload, message.getMessage());
+                            nDecoded++;
+                        }
+                    }
+                    if (c == SHORT_ULTRASONIC) {
+                        assertTrue(name, decoder.getStats().getCandidates() > 0);
+                    }
+                    else {
+                        assertTrue(name, nDecoded > 0);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void decidesTheSameBitsAsDoublePrecision() throws IOException {
+        List<String> expected = readDoublePrecisionBits();
+        List<String> actual = new ArrayList<>();
+        for (int c = 0; c < BUNDLED_CONFIGS.length; c++) {
+            short[] recording = generateRecording(c);
+            for (int detectionMode : DETECTION_MODES) {
+                for (int demodulationMode : DEMODULATION_MODES) {
+                    DecodingPipeline pipeline = new DecodingPipeline(FS, BUNDLED_CONFIGS[c], 8, 50, 8, 2.0, 2.0);
+                    pipeline.setDetectionMode(detectionMode);
+                    pipeline.setDemodulationMode(demodulationMode);
+                    int analysisWinStep = pipeline.getAnalysisWinStep();
+                    short[] stepBuffer = new short[analysisWinStep];
+                    float[] currentData = new float[analysisWinStep];
+                    for (int start = 0; start + analysisWinStep <= recording.length; start += analysisWinStep) {
+                        System.arraycopy(recording, start, stepBuffer, 0, analysisWinStep);
+                        DecodingPipeline.convertShortToFloat(stepBuffer, currentData, analysisWinStep);
+                        SoniTalkMessage message = pipeline.addSamples(currentData, System.nanoTime());
+                        if (message != null) {
+                            actual.add(c + " " + detectionMode + " " + demodulationMode + " " + message.getSampleOffset()
+                                    + " " + message.isCrcCorrect() + " " + toHex(pipeline.getMessageBits()));
+                        }
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < Math.min(expected.size(), actual.size()); i++) {
+            assertEquals("Candidate " + i, expected.get(i), actual.get(i));
+        }
+        assertEquals(expected.size(), actual.size());
+    }
+
+    @Test
+    public void bandPassFilterMatchesDoublePrecision() {
+        for (SoniTalkConfig config : BUNDLED_CONFIGS) {
+            int bandWidth = config.getFrequencySpace() * config.getnFrequencies() / 2;
+            int centerFrequency = config.getFrequencyZero() + bandWidth / 2;
+            Butterworth reference = new Butterworth();
+            reference.bandPass(8, FS, centerFrequency, bandWidth);
+            BandPassFilter filter = new BandPassFilter(8, FS, centerFrequency, bandWidth);
+
+            float[] noise = SyntheticSignals.generateNoise(FS, 0.1, new Random(config.getFrequencyZero()));
+            double errorEnergy = 0;
+            double referenceEnergy = 0;
+            for (float sample : noise) {
+                double expected = reference.filter(sample);
+                double error = filter.filter(sample) - expected;
+                errorEnergy += error * error;
+                referenceEnergy += expected * expected;
+            }
+            // Far below the differences the detection factors (2.0) look at
+            assertEquals(0, errorEnergy / referenceEnergy, 1e-6);
+        }
+    }
+
+    private static short[] generateRecording(int configIndex) {
+        SoniTalkConfig config = BUNDLED_CONFIGS[configIndex];
+        return SyntheticSignals.generateRecording(config, FS, FS, new Random(10 + configIndex), getFullPayload(config));
+    }
+
+    private static List<String> readDoublePrecisionBits() throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                SinglePrecisionValidationTest.class.getResourceAsStream(DOUBLE_PRECISION_BITS), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+
+    /*
+     * Four bits per hexadecimal digit, first bit first (the bit arrays are multiples of 8 bits).
+     */
+    private static String toHex(int[] bits) {
+        StringBuilder hex = new StringBuilder();
+        for (int i = 0; i < bits.length; i += 4) {
+            hex.append(Integer.toHexString(bits[i] << 3 | bits[i + 1] << 2 | bits[i + 2] << 1 | bits[i + 3]));
+        }
+        return hex.toString();
+    }
+
+    /*
+     * Text filling the whole message, so that every carrier of every block carries data. Text
+     * keeps the last byte apart from the filling characters, which the decoder removes.
+     */
+    private static byte[] getFullPayload(SoniTalkConfig config) {
+        byte[] text = "The quick brown fox jumps over the lazy dog.".getBytes(StandardCharsets.UTF_8);
+        byte[] payload = new byte[config.getnMessageBlocks() * config.getnFrequencies() / 8 - 2];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = text[i % text.length];
+        }
+        return payload;
+    }
+}
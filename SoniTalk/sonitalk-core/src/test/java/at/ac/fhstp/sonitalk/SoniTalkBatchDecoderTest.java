@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SoniTalkBatchDecoderTest {
+    private static final int FS = 44100;
+    private static final int HISTORY_BUFFER_SIZE = 4410 * 22;
+
+    private final SoniTalkConfig config = new SoniTalkConfig(18000, 100, 0, 10, 16, 100);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sameMessagesAsSequentialDecoding() {
+        short[] recording = generateRecording();
+        List<SoniTalkMessage> expected = new SoniTalkOfflineDecoder(FS, config).decode(recording);
+        assertTrue(expected.size() > 0);
+
+        // Short segments, so that messages fall on the boundaries
+        for (int segmentLength : new int[]{HISTORY_BUFFER_SIZE / 3, HISTORY_BUFFER_SIZE, 0}) {
+            SoniTalkBatchDecoder decoder = new SoniTalkBatchDecoder(FS, config, new ForkJoinPool(4));
+            decoder.setSegmentLengthInSamples(segmentLength);
+            assertSameMessages(expected, decoder.decode(recording));
+        }
+    }
+
+    @Test
+    public void sameMessagesAsSequentialDecodingAfterDecimation() {
+        short[] recording = generateRecording();
+        for (int decimationFactor : new int[] {7, 10}) {
+            List<SoniTalkMessage> expected = new SoniTalkOfflineDecoder(FS, config, 8, 50, 8, 2.0, 2.0, decimationFactor).decode(recording);
+            assertTrue(expected.size() > 0);
+
+            for (int segmentLength : new int[]{HISTORY_BUFFER_SIZE / 3, HISTORY_BUFFER_SIZE, 0}) {
+                SoniTalkBatchDecoder decoder = new SoniTalkBatchDecoder(FS, config, 8, 50, 8, 2.0, 2.0, decimationFactor, new ForkJoinPool(4));
+                decoder.setSegmentLengthInSamples(segmentLength);
+                assertSameMessages(expected, decoder.decode(recording));
+            }
+        }
+    }
+
+    @Test
+    public void decodesMappedWavFile() throws IOException {
+        short[] recording = generateRecording();
+        List<SoniTalkMessage> expected = new SoniTalkOfflineDecoder(FS, config).decode(recording);
+
+        File wavFile = folder.newFile("recording.wav");
+        try (OutputStream out = new FileOutputStream(wavFile)) {
+            out.write(SyntheticSignals.toWav(recording, FS, 2));
+        }
+        SoniTalkBatchDecoder decoder = new SoniTalkBatchDecoder(FS, config, new ForkJoinPool(2));
+        decoder.setSegmentLengthInSamples(HISTORY_BUFFER_SIZE);
+        assertSameMessages(expected, decoder.decodeWav(wavFile));
+    }
+
+    @Test
+    public void skipsDecodedMessagesLikeSequentialDecoding() {
+        short[] recording = SyntheticSignals.generateRecording(config, FS, 100, new Random(13),
+                "again".getBytes(StandardCharsets.UTF_8),
+                "again".getBytes(StandardCharsets.UTF_8),
+                "and again".getBytes(StandardCharsets.UTF_8));
+        SoniTalkOfflineDecoder offlineDecoder = new SoniTalkOfflineDecoder(FS, config);
+        offlineDecoder.setSkipDecodedMessages(true);
+        List<SoniTalkMessage> expected = offlineDecoder.decode(recording);
+        assertTrue(expected.size() > 0);
+
+        for (int segmentLength : new int[]{HISTORY_BUFFER_SIZE / 3, HISTORY_BUFFER_SIZE, 0}) {
+            SoniTalkBatchDecoder decoder = new SoniTalkBatchDecoder(FS, config, new ForkJoinPool(4));
+            decoder.setSegmentLengthInSamples(segmentLength);
+            decoder.setSkipDecodedMessages(true);
+            assertSameMessages(expected, decoder.decode(recording));
+        }
+    }
+
+    @Test
+    public void overlapCoversTheHistoryBuffer() {
+        assertTrue(new SoniTalkBatchDecoder(FS, config).getOverlapInSamples() >= HISTORY_BUFFER_SIZE);
+    }
+
+    private short[] generateRecording() {
+        return SyntheticSignals.generateRecording(config, FS, HISTORY_BUFFER_SIZE / 3, new Random(11),
+                "first".getBytes(StandardCharsets.UTF_8),
+                "second message".getBytes(StandardCharsets.UTF_8),
+                "3".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertSameMessages(List<SoniTalkMessage> expected, List<SoniTalkMessage> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i).getMessage(), actual.get(i).getMessage());
+            assertEquals(expected.get(i).isCrcCorrect(), actual.get(i).isCrcCorrect());
+            assertEquals(expected.get(i).getSampleOffset(), actual.get(i).getSampleOffset());
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import at.ac.fhstp.sonitalk.utils.CRC;
+import at.ac.fhstp.sonitalk.utils.ConfigConstants;
+import at.ac.fhstp.sonitalk.utils.EncoderUtils;
+import at.ac.fhstp.sonitalk.utils.SignalGenerator;
+import at.ac.fhstp.sonitalk.utils.SignalType;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SoniTalkEncoderTest {
+    private static final int FS = 44100;
+
+    private final SoniTalkConfig[] configs = {
+            new SoniTalkConfig(18000, 100, 0, 10, 16, 100),
+            new SoniTalkConfig(18000, 100, 50, 10, 16, 100),
+            new SoniTalkConfig(17500, 100, 0, 10, 8, 100),
+            new SoniTalkConfig(4000, 100, 0, 10, 24, 100)
+    };
+
+    @Test
+    public void sameAudioAsStringEncoder() {
+        byte[][] payloads = {
+                "".getBytes(StandardCharsets.UTF_8),
+                "3".getBytes(StandardCharsets.UTF_8),
+                "Hello SoniTalk".getBytes(StandardCharsets.UTF_8)
+        };
+        for (SoniTalkConfig config : configs) {
+            for (byte[] payload : payloads) {
+                if (EncoderUtils.isAllowedByteArraySize(payload, config)) {
+                    assertArrayEquals(new ReferenceEncoder(FS, config).encode(payload),
+                            new SoniTalkEncoder(FS, config).generateMessage(payload).getRawAudio());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void decodesMessageStartingWithOneBit() {
+        SoniTalkConfig config = configs[0];
+        byte[] data = "\u00e9t\u00e9".getBytes(StandardCharsets.UTF_8); // First byte 0xC3
+        short[] recording = SyntheticSignals.generateRecording(config, FS, 4410 * 11, new Random(3), data);
+        List<SoniTalkMessage> messages = new SoniTalkOfflineDecoder(FS, config).decode(recording);
+
+        int nDecoded = 0;
+        for (SoniTalkMessage message : messages) {
+            if (message.isCrcCorrect()) {
+                assertArrayEquals(data, message.getMessage());
+                nDecoded++;
+            }
+        }
+        assertTrue(nDecoded > 0);
+    }
+
+    @Test
+    public void messageDurationCoversTheEncodedAudio() {
+        for (SoniTalkConfig config : configs) {
+            short[] audio = new SoniTalkEncoder(FS, config).generateMessage(new byte[]{1}).getRawAudio();
+            assertTrue(audio.length <= (long) config.getMessageDurationMillis() * FS / 1000);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooLongMessageIsRejected() {
+        SoniTalkConfig config = configs[0];
+        byte[] data = new byte[config.getnMessageBlocks() * config.getnFrequencies() / 8 - 1];
+        Arrays.fill(data, (byte) 'a');
+        new SoniTalkEncoder(FS, config).generateMessage(data);
+    }
+
+    /*
+     * Reference implementation, as the encoder did it with bit strings. The first bit of the
+     * payload is left out of the parity bits on Java 8 and later (CRC.parityBit drops the first
+     * element of split("")), so it is only used with payloads starting with a zero bit.
+     */
+    private static class ReferenceEncoder {
+        private final SoniTalkConfig config;
+        private final SignalGenerator signalGen;
+        private final CRC crc = new CRC();
+
+        ReferenceEncoder(int sampleRate, SoniTalkConfig config) {
+            this.config = config;
+            this.signalGen = new SignalGenerator(sampleRate, config);
+        }
+
+        short[] encode(byte[] data){
+            short[] encodedMessage = null;
+            String bitOfText = new EncoderUtils().getStringOfEncodedBits(data, config);
+            boolean doubleInverted = true;
+
+            int nMessageBlocks = config.getnMessageBlocks();
+            int numberOfFrequencies = config.getnFrequencies();
+            int maxBytes = nMessageBlocks*(numberOfFrequencies/8) - (ConfigConstants.GENERATOR_POLYNOM.length-1) / 8;
+
+            String[] bitStringArray = createStringArrayWithParityOfBitText(bitOfText, numberOfFrequencies, maxBytes, ConfigConstants.GENERATOR_POLYNOM);
+
+            int messageLength = bitStringArray.length;
+            double mesLengthDividedNumFreq = Math.round(messageLength/numberOfFrequencies);
+            if(mesLengthDividedNumFreq<((float)messageLength/numberOfFrequencies)){
+                mesLengthDividedNumFreq++;
+            }
+            String[] bitStringArrayInverted = createInvertedStringArray(bitStringArray, messageLength);
+
+            encodedMessage = generateContainerArraysAndFillWithSignalData(bitStringArray, bitStringArrayInverted, mesLengthDividedNumFreq, numberOfFrequencies, doubleInverted, messageLength);
+
+            return encodedMessage;
+        }
+        private String[] createStringArrayWithParityOfBitText(String bitOfText, int numberOfFrequencies, int maxBytes, byte[] generatorPolynom){
+            int parityLength = generatorPolynom.length - 1;
+            int restModulo = (bitOfText.length() + parityLength)%numberOfFrequencies;
+
+            while(restModulo!=0 || (bitOfText.length()/8) < maxBytes){
+                bitOfText = bitOfText + ConfigConstants.CONTROL_FILLING_CHARACTER;
+                restModulo = (bitOfText.length() + parityLength)%numberOfFrequencies;
+            }
+
+            bitOfText = bitOfText + crc.parityBit(bitOfText);
+
+            String[] bitStringArray = bitOfText.split("");
+
+            if (bitStringArray.length > 0 && bitStringArray[0].isEmpty()) {
+                bitStringArray = Arrays.copyOfRange(bitStringArray, 1, bitStringArray.length);
+            }
+
+            return bitStringArray;
+        }
+        private String[] createInvertedStringArray(String[] bitStringArray, int messageLength/*, int numberOfFrequencies, double mesLengthDividedNumFreq*/){
+            String[] bitStringArrayInverted = new String[messageLength];
+            for(int i = 0; i< messageLength; i++){
+                if(bitStringArray[i].equals("0")){
+                    bitStringArrayInverted[i] = "1";
+                }else if(bitStringArray[i].equals("1")){
+                    bitStringArrayInverted[i] = "0";
+                }
+            }
+            return bitStringArrayInverted;
+        }
+        private short[] generateContainerArraysAndFillWithSignalData(String[] bitStringArray, String[] bitStringArrayInverted, double mesLengthDividedNumFreq, int numberOfFrequencies, boolean doubleInverted, int messageLength){
+            short[] encodedMessage = null;
+
+            String[][] messageSplitted = new String[(int)mesLengthDividedNumFreq][numberOfFrequencies];
+            String[][] messageSplittedInverted = new String[(int)mesLengthDividedNumFreq][numberOfFrequencies];
+
+            for(int j = 0; j<mesLengthDividedNumFreq; j++) {
+                if ((j + 1) != mesLengthDividedNumFreq) {
+                    for (int i = 0; i < numberOfFrequencies; i++) {
+                        messageSplitted[j][i] = bitStringArray[i+(numberOfFrequencies*j)];
+                        messageSplittedInverted[j][i] = bitStringArrayInverted[i+(numberOfFrequencies*j)];
+                    }
+                }else if(messageLength%numberOfFrequencies==0){
+                    for (int i = 0; i < numberOfFrequencies; i++) {
+                        messageSplitted[j][i] = bitStringArray[i+(numberOfFrequencies*j)];
+                        messageSplittedInverted[j][i] = bitStringArrayInverted[i+(numberOfFrequencies*j)];
+                    }
+                }else {
+                    int rest = messageLength % numberOfFrequencies;
+                    for (int i = 0; i < rest; i++) {
+                        messageSplitted[j][i] = bitStringArray[i+(numberOfFrequencies*j)];
+                        messageSplittedInverted[j][i] = bitStringArrayInverted[i+(numberOfFrequencies*j)];
+                    }
+                }
+            }
+
+            short[][] frequencyZeroTrack = new short[(int) mesLengthDividedNumFreq][];
+            short[][] frequencyZeroTrackInverted = new short[(int) mesLengthDividedNumFreq][];
+
+            String[] protoArrayStart = new String[numberOfFrequencies];
+            Arrays.fill(protoArrayStart, 0, (numberOfFrequencies/2)-1, "0");
+            Arrays.fill(protoArrayStart, numberOfFrequencies/2, numberOfFrequencies, "1");
+            short[] protoTrackStart = signalGen.getSignalBlock(SignalType.PLAYCONFIG, protoArrayStart);
+            String[] protoArrayEnd = new String[numberOfFrequencies];
+            Arrays.fill(protoArrayEnd, 0, numberOfFrequencies/2, "1");
+            Arrays.fill(protoArrayEnd, numberOfFrequencies/2, numberOfFrequencies, "0");
+            short[] protoTrackEnd = signalGen.getSignalBlock(SignalType.PLAYCONFIG, protoArrayEnd);
+
+            int pauseduration = config.getPauseperiod();
+            short[] pauseTrack = null;
+            if(pauseduration != 0) {
+
+                String[] pauseArray = new String[numberOfFrequencies];
+                Arrays.fill(pauseArray, "0");
+                pauseTrack = signalGen.getSignalBlock(SignalType.PAUSECONFIG, pauseArray);
+
+            }
+
+            for(int k=0;k<mesLengthDividedNumFreq;k++) {
+                frequencyZeroTrack[k] = signalGen.getSignalBlock(SignalType.PLAYCONFIG, messageSplitted[k]);
+                frequencyZeroTrackInverted[k] = signalGen.getSignalBlock(SignalType.PLAYCONFIG, messageSplittedInverted[k]);
+            }
+
+            encodedMessage = concatenateSignalBlocks(frequencyZeroTrack, frequencyZeroTrackInverted, protoTrackStart, protoTrackEnd, pauseTrack, pauseduration, doubleInverted);
+
+            return encodedMessage;
+        }
+        private short[] concatenateSignalBlocks(short[][] frequencyZeroTrack, short[][] frequencyZeroTrackInverted, short[] protoTrackStart, short[] protoTrackEnd, short[] pauseTrack, int pauseduration, boolean doubleInverted){
+            short[] encodedMessage = null;
+
+            for(int i=0; i<frequencyZeroTrack.length; i++){
+                if(i==0){
+                    encodedMessage = ArrayUtils.addAll(encodedMessage,protoTrackStart);
+                    if(pauseduration != 0) {
+                        encodedMessage = ArrayUtils.addAll(encodedMessage, pauseTrack);
+                    }
+                }
+                encodedMessage = ArrayUtils.addAll(encodedMessage,frequencyZeroTrack[i]);
+                if(doubleInverted) {
+                    encodedMessage = ArrayUtils.addAll(encodedMessage, pauseTrack);
+                    encodedMessage = ArrayUtils.addAll(encodedMessage, frequencyZeroTrackInverted[i]);
+                }
+                if(i+1!=frequencyZeroTrack.length){
+                    if(pauseduration != 0) {
+                        encodedMessage = ArrayUtils.addAll(encodedMessage, pauseTrack);
+                    }
+                }
+                if((i+1)==frequencyZeroTrack.length){
+                    if(pauseduration != 0) {
+                        encodedMessage = ArrayUtils.addAll(encodedMessage, pauseTrack);
+                    }
+                    encodedMessage = ArrayUtils.addAll(encodedMessage,protoTrackEnd);
+                }
+            }
+
+            return encodedMessage;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SoniTalkOfflineDecoderTest {
+    private static final int FS = 44100;
+    private static final int BITPERIOD_SAMPLES = 4410;
+    private static final int HISTORY_BUFFER_SIZE = BITPERIOD_SAMPLES * 22;
+    private static final int PADDING = HISTORY_BUFFER_SIZE / 2;
+
+    private final SoniTalkConfig config = new SoniTalkConfig(18000, 100, 0, 10, 16, 100);
+    private final byte[] data = "Hello SoniTalk".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void decodesMessageWithItsOffset() {
+        short[] recording = SyntheticSignals.generateRecording(config, FS, PADDING, new Random(3), data);
+        List<SoniTalkMessage> messages = new SoniTalkOfflineDecoder(FS, config).decode(recording);
+
+        int nDecoded = 0;
+        for (SoniTalkMessage message : messages) {
+            if (message.isCrcCorrect()) {
+                assertArrayEquals(data, message.getMessage());
+                assertTrue("Offset " + message.getSampleOffset(), Math.abs(message.getSampleOffset() - PADDING) <= BITPERIOD_SAMPLES);
+                nDecoded++;
+            }
+        }
+        assertTrue(nDecoded > 0);
+    }
+
+    @Test
+    public void sameMessagesFromEverySource() throws IOException {
+        short[] recording = SyntheticSignals.generateRecording(config, FS, PADDING, new Random(5), data);
+        SoniTalkOfflineDecoder decoder = new SoniTalkOfflineDecoder(FS, config);
+        List<SoniTalkMessage> expected = decoder.decode(recording);
+        assertTrue(expected.size() > 0);
+
+        assertSameMessages(expected, decoder.decode(new ByteArrayInputStream(SyntheticSignals.toPcm(recording, 1))));
+        assertSameMessages(expected, decoder.decodeWav(new ByteArrayInputStream(SyntheticSignals.toWav(recording, FS, 1))));
+        assertSameMessages(expected, decoder.decodeWav(new ByteArrayInputStream(SyntheticSignals.toWav(recording, FS, 2))));
+    }
+
+    @Test
+    public void decodesWithRollingSpectrogram() {
+        short[] recording = SyntheticSignals.generateRecording(config, FS, PADDING, new Random(3), data);
+        SoniTalkOfflineDecoder decoder = new SoniTalkOfflineDecoder(FS, config);
+        decoder.setDemodulationMode(DecoderModes.DEMODULATION_MODE_ROLLING);
+
+        int nDecoded = 0;
+        for (SoniTalkMessage message : decoder.decode(recording)) {
+            if (message.isCrcCorrect()) {
+                assertArrayEquals(data, message.getMessage());
+                nDecoded++;
+            }
+        }
+        assertTrue(nDecoded > 0);
+
+        // Decoding again starts with an empty spectrogram
+        assertEquals(nDecoded, countCorrectMessages(decoder.decode(recording)));
+    }
+
+    @Test
+    public void decodesAfterDecimation() {
+        short[] recording = SyntheticSignals.generateRecording(config, FS, PADDING, new Random(3), data);
+        for (int decimationFactor : new int[] {7, 10}) {
+            for (int demodulationMode : new int[] {DecoderModes.DEMODULATION_MODE_SPECTROGRAM, DecoderModes.DEMODULATION_MODE_ROLLING}) {
+                SoniTalkOfflineDecoder decoder = new SoniTalkOfflineDecoder(FS, config, 8, 50, 8, 2.0, 2.0, decimationFactor);
+                decoder.setDemodulationMode(demodulationMode);
+                int nDecoded = 0;
+                for (SoniTalkMessage message : decoder.decode(recording)) {
+                    if (message.isCrcCorrect()) {
+                        assertArrayEquals(data, message.getMessage());
+                        assertTrue("Offset " + message.getSampleOffset(), Math.abs(message.getSampleOffset() - PADDING) <= BITPERIOD_SAMPLES);
+                        nDecoded++;
+                    }
+                }
+                assertTrue("Decimation factor " + decimationFactor + ", demodulation mode " + demodulationMode, nDecoded > 0);
+            }
+        }
+    }
+
+    @Test
+    public void decodesWithPowerOfTwoSpectrogram() {
+        // The 50ms bit period of short_ultrasonic has 20Hz bins which are not aligned on the carriers
+        SoniTalkConfig shortConfig = new SoniTalkConfig(18000, 50, 0, 10, 16, 100);
+        for (SoniTalkConfig testedConfig : new SoniTalkConfig[] {config, shortConfig}) {
+            short[] recording = SyntheticSignals.generateRecording(testedConfig, FS, PADDING, new Random(3), data);
+            for (int demodulationMode : new int[] {DecoderModes.DEMODULATION_MODE_SPECTROGRAM, DecoderModes.DEMODULATION_MODE_GOERTZEL, DecoderModes.DEMODULATION_MODE_ROLLING}) {
+                SoniTalkOfflineDecoder decoder = new SoniTalkOfflineDecoder(FS, testedConfig);
+                decoder.setDemodulationMode(demodulationMode);
+                decoder.setSpectrogramSizing(DecoderModes.SPECTROGRAM_SIZING_POWER_OF_TWO);
+                int nDecoded = 0;
+                for (SoniTalkMessage message : decoder.decode(recording)) {
+                    if (message.isCrcCorrect()) {
+                        assertArrayEquals(data, message.getMessage());
+                        nDecoded++;
+                    }
+                }
+                assertTrue("Bit period " + testedConfig.getBitperiod() + ", demodulation mode " + demodulationMode, nDecoded > 0);
+            }
+        }
+    }
+
+    @Test
+    public void skipsDecodedMessagesSentBackToBack() {
+        byte[][] sent = {"one".getBytes(StandardCharsets.UTF_8), "two".getBytes(StandardCharsets.UTF_8), "three".getBytes(StandardCharsets.UTF_8)};
+        short[] recording = SyntheticSignals.generateRecording(config, FS, 100, new Random(9), sent);
+        SoniTalkOfflineDecoder decoder = new SoniTalkOfflineDecoder(FS, config);
+        // Without skipping, each message is detected on several steps
+        assertTrue(countCorrectMessages(decoder.decode(recording)) > sent.length);
+
+        decoder.setSkipDecodedMessages(true);
+        List<SoniTalkMessage> messages = decoder.decode(recording);
+        assertEquals(sent.length, countCorrectMessages(messages));
+        int m = 0;
+        for (SoniTalkMessage message : messages) {
+            if (message.isCrcCorrect()) {
+                assertArrayEquals(sent[m++], message.getMessage());
+            }
+        }
+    }
+
+    private static int countCorrectMessages(List<SoniTalkMessage> messages) {
+        int nCorrect = 0;
+        for (SoniTalkMessage message : messages) {
+            if (message.isCrcCorrect()) {
+                nCorrect++;
+            }
+        }
+        return nCorrect;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wavWithAnotherSampleRateIsRejected() throws IOException {
+        new SoniTalkOfflineDecoder(FS, config).decodeWav(new ByteArrayInputStream(SyntheticSignals.toWav(new short[100], 48000, 1)));
+    }
+
+    @Test(expected = IOException.class)
+    public void notAWavIsRejected() throws IOException {
+        new SoniTalkOfflineDecoder(FS, config).decodeWav(new ByteArrayInputStream(new byte[64]));
+    }
+
+    private static void assertSameMessages(List<SoniTalkMessage> expected, List<SoniTalkMessage> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i).getMessage(), actual.get(i).getMessage());
+            assertEquals(expected.get(i).isCrcCorrect(), actual.get(i).isCrcCorrect());
+            assertEquals(expected.get(i).getSampleOffset(), actual.get(i).getSampleOffset());
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Test signals made of sine carriers, to exercise the detection without the encoder.
+ */
+public class SyntheticSignals {
+
+    /**
+     * Generates noise, a start block (upper frequencies), random data blocks, an end block (lower
+     * frequencies) and noise again. The message is surrounded by half a message of noise on each side.
+     */
+    public static float[] generateMessageStream(SoniTalkConfig config, int sampleRate, int nBlocks, long seed) {
+        Random random = new Random(seed);
+        int nFrequencies = config.getnFrequencies();
+        int bitperiodInSamples = Math.round(config.getBitperiod() * (float) sampleRate / 1000);
+        int messageLength = bitperiodInSamples * nBlocks;
+        int padding = messageLength / 2;
+        float[] stream = generateNoise(padding * 2 + messageLength, 0.01, random);
+        for (int block = 0; block < nBlocks; block++) {
+            boolean[] carriers = new boolean[nFrequencies];
+            for (int f = 0; f < nFrequencies; f++) {
+                if (block == 0) carriers[f] = f >= nFrequencies / 2;
+                else if (block == nBlocks - 1) carriers[f] = f < nFrequencies / 2;
+                else carriers[f] = random.nextBoolean();
+            }
+            int blockStart = padding + block * bitperiodInSamples;
+            for (int i = 0; i < bitperiodInSamples; i++) {
+                double t = (double) (blockStart + i) / sampleRate;
+                for (int f = 0; f < nFrequencies; f++) {
+                    if (carriers[f]) {
+                        stream[blockStart + i] += (float) (0.05 * Math.sin(2 * Math.PI * (config.getFrequencyZero() + f * config.getFrequencySpace()) * t));
+                    }
+                }
+            }
+        }
+        return stream;
+    }
+
+    /**
+     * Generates white gaussian noise.
+     */
+    public static float[] generateNoise(int length, double standardDeviation, Random random) {
+        float[] noise = new float[length];
+        for (int i = 0; i < length; i++) {
+            noise[i] = (float) (random.nextGaussian() * standardDeviation);
+        }
+        return noise;
+    }
+
+    /**
+     * Encoded messages, attenuated and surrounded by noise, as they would be recorded. The
+     * messages are separated by padding samples, the recording starts and ends with padding.
+     */
+    public static short[] generateRecording(SoniTalkConfig config, int sampleRate, int padding, Random random, byte[]... messages) {
+        short[][] audio = new short[messages.length][];
+        int length = padding;
+        for (int m = 0; m < messages.length; m++) {
+            audio[m] = new SoniTalkEncoder(sampleRate, config).generateMessage(messages[m]).getRawAudio();
+            length += audio[m].length + padding;
+        }
+        float[] recording = generateNoise(length, 0.002, random);
+        int messageStart = padding;
+        for (short[] message : audio) {
+            for (int i = 0; i < message.length; i++) {
+                recording[messageStart + i] += 0.1f * message[i] / Short.MAX_VALUE;
+            }
+            messageStart += message.length + padding;
+        }
+        short[] samples = new short[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = (short) (recording[i] * Short.MAX_VALUE);
+        }
+        return samples;
+    }
+
+    /**
+     * Little-endian PCM, the recording is written on the first channel and its opposite on the others.
+     */
+    public static byte[] toPcm(short[] samples, int nChannels) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (short sample : samples) {
+            for (int c = 0; c < nChannels; c++) {
+                short value = c == 0 ? sample : (short) -sample;
+                out.write(value & 0xFF);
+                out.write((value >> 8) & 0xFF);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 16 bits PCM WAV file, with a metadata chunk before the data.
+     */
+    public static byte[] toWav(short[] samples, int sampleRate, int nChannels) {
+        byte[] pcm = toPcm(samples, nChannels);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeTag(out, "RIFF");
+        writeInt(out, 4 + 8 + 16 + 8 + 4 + 8 + pcm.length);
+        writeTag(out, "WAVE");
+        writeTag(out, "fmt ");
+        writeInt(out, 16);
+        writeShort(out, 1);
+        writeShort(out, nChannels);
+        writeInt(out, sampleRate);
+        writeInt(out, sampleRate * nChannels * 2);
+        writeShort(out, nChannels * 2);
+        writeShort(out, 16);
+        writeTag(out, "LIST"); // Metadata chunk, should be skipped
+        writeInt(out, 3);
+        out.write(new byte[4], 0, 4); // Padded to an even size
+        writeTag(out, "data");
+        writeInt(out, pcm.length);
+        out.write(pcm, 0, pcm.length);
+        return out.toByteArray();
+    }
+
+    private static void writeTag(ByteArrayOutputStream out, String tag) {
+        byte[] bytes = tag.getBytes(StandardCharsets.US_ASCII);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xFF);
+        out.write((value >> 8) & 0xFF);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        writeShort(out, value);
+        writeShort(out, value >> 16);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import at.ac.fhstp.sonitalk.utils.WavFileSink;
+import at.ac.fhstp.sonitalk.utils.WavHeader;
+
+import static org.junit.Assert.assertEquals;
+
+public class WavFileSinkTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writesReadableWavFiles() throws IOException {
+        File file = folder.newFile("message.wav");
+        short[] samples = {0, 1, -1, Short.MAX_VALUE, Short.MIN_VALUE, 1234};
+
+        WavFileSink sink = new WavFileSink(file, 44100);
+        assertEquals(2, sink.write(samples, 0, 2));
+        assertEquals(4, sink.write(samples, 2, 4));
+        sink.release();
+
+        try (InputStream in = new FileInputStream(file)) {
+            WavHeader header = WavHeader.read(in);
+            assertEquals(44100, header.getSampleRate());
+            assertEquals(1, header.getnChannels());
+            assertEquals(samples.length * 2, header.getDataSize());
+            DataInputStream data = new DataInputStream(in);
+            for (short sample : samples) {
+                int low = data.readUnsignedByte();
+                int high = data.readByte();
+                assertEquals(sample, (short) ((high << 8) | low));
+            }
+        }
+    }
+}
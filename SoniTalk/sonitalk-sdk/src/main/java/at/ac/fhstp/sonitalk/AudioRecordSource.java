@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2019. Alexis Ringot, Florian Taurer, Matthias Zeppelzauer.
+ *
+ * This file is part of SoniTalk Android SDK.
+ *
+ * SoniTalk Android SDK is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SoniTalk Android SDK is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with SoniTalk Android SDK.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.ac.fhstp.sonitalk;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.util.Log;
+
+/**
+ * AudioSource recording the microphone with an AudioRecord (mono, 16 bits PCM). The thread
+ * starting the recording is set to audio priority, it should be the one reading the audio.
+ * SoniTalkDecoder uses MediaRecorder.AudioSource.MIC by default, another input can be used by
+ * creating a decoder with an AudioRecordSource (see SoniTalkContext.getDecoder(AudioSource, SoniTalkConfig)).
+ */
+public class AudioRecordSource implements AudioSource {
+    private static final String TAG = AudioRecordSource.class.getSimpleName();
+
+    private final AudioRecord audioRecorder;
+    private final int Fs;
+
+    private AudioRecordSource(AudioRecord audioRecorder, int sampleRate) {
+        this.audioRecorder = audioRecorder;
+        this.Fs = sampleRate;
+    }
+
+    /**
+     * Opens the microphone. The RECORD_AUDIO permission is needed.
+     * @param audioSource input to record, one of the MediaRecorder.AudioSource constants (e.g. MIC or UNPROCESSED)
+     * @param sampleRate sample rate of the recording
+     * @param requestedBufferSize size of the buffer of the AudioRecord in bytes, at least the minimum buffer size is used
+     * @return the source, or null if the AudioRecord could not be initialized
+     */
+    public static AudioRecordSource create(int audioSource, int sampleRate, int requestedBufferSize) {
+        int minBufferSize = AudioRecord.getMinBufferSize(sampleRate,
+                AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT);
+
+        if(minBufferSize < 0) {
+            Log.e(TAG, "Error getting the minimal buffer size: " + minBufferSize);
+            return null;
+        }
+
+        try {
+            // Initialize the buffer size such that at least the minimum size is buffered
+            int audioRecorderBufferSize = Math.max(requestedBufferSize, minBufferSize);
+            AudioRecord audioRecorder = new AudioRecord(audioSource,
+                    sampleRate, AudioFormat.CHANNEL_IN_MONO,
+                    AudioFormat.ENCODING_PCM_16BIT, audioRecorderBufferSize);
+
+            if (audioRecorder.getState() != AudioRecord.STATE_INITIALIZED) {
+                Log.e(TAG, "Could not open the audio recorder, initialization failed !");
+                audioRecorder.release();
+                return null;
+            }
+            return new AudioRecordSource(audioRecorder, sampleRate);
+        } catch(IllegalArgumentException e) {
+            Log.e(TAG, "Audio Recorder was not initialized because of an IllegalArgumentException. Error message: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public int getSampleRate() {
+        return Fs;
+    }
+
+    @Override
+    public boolean isRealTime() {
+        return true;
+    }
+
+    @Override
+    public boolean start() {
+        android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_URGENT_AUDIO);
+        audioRecorder.startRecording();
+
+        // Wait until the audio recorder records ...
+        if (audioRecorder.getRecordingState() != AudioRecord.RECORDSTATE_RECORDING) {
+            try {
+                Log.e("AudiorecorderState", "Not recording, calling thread.sleep");
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();  // set interrupt flag
+                return false;
+            }
+            return audioRecorder.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING;
+        }
+        return true;
+    }
+
+    @Override
+    public int read(short[] buffer, int offset, int length) {
+        int readSamples = audioRecorder.read(buffer, offset, length);
+        // Errors are negative, like END_OF_STREAM, nothing was read
+        return Math.max(readSamples, 0);
+    }
+
+    @Override
+    public void stop() {
+        if (audioRecorder.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING) {
+            audioRecorder.stop();
+        }
+    }
+
+    @Override
+    public void release() {
+        if (audioRecorder.getState() == AudioRecord.STATE_INITIALIZED) {
+            stop();
+        }
+        audioRecorder.release(); //release the recorder resources
+    }
+}
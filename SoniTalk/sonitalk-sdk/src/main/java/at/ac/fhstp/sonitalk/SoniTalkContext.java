@@ -142,6 +142,34 @@ public class SoniTalkContext {
         return new SoniTalkDecoder(this, sampleRate, config);
     }
 
+    /**
+     * Creates a decoder analyzing the band of the carriers at a reduced sample rate: the band is
+     * moved down and decimated before the detection and the demodulation, which then cost about
+     * decimationFactor times less. The raw audio and the spectrum of the received messages are
+     * those of the decimated signal.
+     * @param sampleRate is used to start the decoder with the correct sample rate
+     * @param config can be generated with the utility class ConfigFactory and
+     *               holds configurations for the decoder
+     * @param decimationFactor divisor of the sample rate, at most HeterodyneDecimator.getMaxDecimationFactor() (e.g. 7 for the default config at 44100Hz)
+     * @return a new SoniTalkDecoder
+     */
+    public SoniTalkDecoder getDecoder(int sampleRate, SoniTalkConfig config, int decimationFactor) {
+        return new SoniTalkDecoder(this, sampleRate, config, decimationFactor);
+    }
+
+    /**
+     * Creates a decoder reading another AudioSource than the default microphone, e.g. an
+     * AudioRecordSource with another MediaRecorder.AudioSource, or a file. The decoder does not
+     * release the source, release it once the decoder is stopped.
+     * @param audioSource source of the audio, the decoder uses its sample rate
+     * @param config can be generated with the utility class ConfigFactory and
+     *               holds configurations for the decoder
+     * @return a new SoniTalkDecoder
+     */
+    public SoniTalkDecoder getDecoder(AudioSource audioSource, SoniTalkConfig config) {
+        return new SoniTalkDecoder(this, audioSource, config, 8, 50, false, 8, 2.0, 2.0);
+    }
+
     //TODO: If people ask for it, provide a constructor with stepFactor, bandPassFilterOrder, and/or startFactor/endFactor ?
 
     /**
@@ -181,7 +209,7 @@ public class SoniTalkContext {
      * @return a new SoniTalkEncoder
      */
     public SoniTalkEncoder getEncoder(SoniTalkConfig config){
-        return new SoniTalkEncoder(this, config);
+        return new SoniTalkEncoder(config);
     }
 
     /**
@@ -192,7 +220,7 @@ public class SoniTalkContext {
      * @return a new SoniTalkEncoder
      */
     public SoniTalkEncoder getEncoder(int sampleRate, SoniTalkConfig config){
-        return new SoniTalkEncoder(this, sampleRate, config);
+        return new SoniTalkEncoder(sampleRate, config);
     }
 
     /**
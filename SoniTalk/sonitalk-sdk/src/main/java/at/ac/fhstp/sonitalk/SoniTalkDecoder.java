@@ -29,21 +29,11 @@ import android.util.Log;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import at.ac.fhstp.sonitalk.exceptions.DecoderStateException;
-import at.ac.fhstp.sonitalk.utils.CRC;
-import at.ac.fhstp.sonitalk.utils.CircularArray;
-import at.ac.fhstp.sonitalk.utils.ConfigConstants;
-import at.ac.fhstp.sonitalk.utils.DecoderUtils;
-import at.ac.fhstp.sonitalk.utils.HammingWindow;
-import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
-import marytts.util.math.ComplexArray;
-import marytts.util.math.Hilbert;
-import uk.me.berndporr.iirj.Butterworth;
 
 /**
  * Handles the capture of audio, the detection of messages and their decoding. The receiveBackground
@@ -59,6 +49,21 @@ public class SoniTalkDecoder {
     @IntDef({STATE_INITIALIZED, STATE_LISTENING, STATE_CANCELLED, STATE_STOPPED})
     /*package-private*/ @interface DecoderState {}
 
+    // Define the list of accepted constants for DetectionMode annotation
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({DETECTION_MODE_HILBERT, DETECTION_MODE_ENVELOPE})
+    public @interface DetectionMode {}
+
+    // Define the list of accepted constants for DemodulationMode annotation
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({DEMODULATION_MODE_SPECTROGRAM, DEMODULATION_MODE_GOERTZEL, DEMODULATION_MODE_ROLLING})
+    public @interface DemodulationMode {}
+
+    // Define the list of accepted constants for SpectrogramSizing annotation
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({SPECTROGRAM_SIZING_BIT_PERIOD, SPECTROGRAM_SIZING_POWER_OF_TWO})
+    public @interface SpectrogramSizing {}
+
     /**
      * Interface defining the callbacks to implement in order to receive messages from a SoniTalk Decoder.
      */
@@ -95,17 +100,47 @@ public class SoniTalkDecoder {
     /*package-private*/ static final int STATE_CANCELLED = 2;
     /*package-private*/ static final int STATE_STOPPED = 3;
 
+    // DetectionMode constants, see DecoderModes
+    /**
+     * See {@link DecoderModes#DETECTION_MODE_HILBERT} (default).
+     */
+    public static final int DETECTION_MODE_HILBERT = DecoderModes.DETECTION_MODE_HILBERT;
+    /**
+     * See {@link DecoderModes#DETECTION_MODE_ENVELOPE}.
+     */
+    public static final int DETECTION_MODE_ENVELOPE = DecoderModes.DETECTION_MODE_ENVELOPE;
+
+    // DemodulationMode constants, see DecoderModes
+    /**
+     * See {@link DecoderModes#DEMODULATION_MODE_SPECTROGRAM} (default).
+     */
+    public static final int DEMODULATION_MODE_SPECTROGRAM = DecoderModes.DEMODULATION_MODE_SPECTROGRAM;
+    /**
+     * See {@link DecoderModes#DEMODULATION_MODE_GOERTZEL}.
+     */
+    public static final int DEMODULATION_MODE_GOERTZEL = DecoderModes.DEMODULATION_MODE_GOERTZEL;
+    /**
+     * See {@link DecoderModes#DEMODULATION_MODE_ROLLING}.
+     */
+    public static final int DEMODULATION_MODE_ROLLING = DecoderModes.DEMODULATION_MODE_ROLLING;
+
+    // SpectrogramSizing constants, see DecoderModes
+    /**
+     * See {@link DecoderModes#SPECTROGRAM_SIZING_BIT_PERIOD} (default).
+     */
+    public static final int SPECTROGRAM_SIZING_BIT_PERIOD = DecoderModes.SPECTROGRAM_SIZING_BIT_PERIOD;
+    /**
+     * See {@link DecoderModes#SPECTROGRAM_SIZING_POWER_OF_TWO}.
+     */
+    public static final int SPECTROGRAM_SIZING_POWER_OF_TWO = DecoderModes.SPECTROGRAM_SIZING_POWER_OF_TWO;
+
     private List<MessageListener> messageListeners = new ArrayList<>();
     private List<SpectrumListener> spectrumListeners = new ArrayList<>();
 
-    private AudioRecord audioRecorder;
-
-    // Needed for the encoder part
-    private int bitperiodInSamples;
-    private int pauseperiodInSamples;
+    // Source given by the application, the microphone is used (and opened at every start) if null
+    private final AudioSource audioSource;
 
     private boolean silentMode = false;// Skips the viz ?
-    private boolean returnRawAudio = false;
 
     // AudioRecord doc says: "The sample rate expressed in Hertz. 44100Hz is currently the only rate that is guaranteed to work on all devices"
     private int Fs; // Should always be larger than two times the f0
@@ -119,68 +154,57 @@ public class SoniTalkDecoder {
     private int bandPassFilterOrder;// = 8;
     private int stepFactor;// = 8;
 
-    private int nNeighborsFreqUpDown = 1;
-    private int nNeighborsTimeLeftRight = 1;
-    private String aggFcn = "median";
-
     private int requestCode;
 
-
-    /**
-     * nBlocks refers to the previous naming. It corresponds to 2 + (nMessageBlocks * 2)
-     * The current specification groups the two "blocks" of each bit (hence the     * 2).
-     */
-    private int nBlocks;
-    private int frequencies[];
-    private int bandpassWidth;// = frequencySpace*(nFrequencies/2);
-    private int winLenForSpectrogram;
-    private int winLenForSpectrogramInSamples ;
     private int frequencyOffsetForSpectrogram;// = 50;
 
     private int analysisWinLen;
     private int analysisWinStep;
-    private int nAnalysisWindowsPerBit;
-    private int nAnalysisWindowsPerPause;
-    private int historyBufferSize;
     private int audioRecorderBufferSize;
     private int minBufferSize;
-    private int addedLen;
 
-    private final CircularArray historyBuffer;
+    private final DecodingPipeline pipeline;
+
+    // Seconds of audio the capture thread can get ahead of the analysis before samples are dropped
+    private static final int CAPTURE_BUFFER_SECONDS = 5;
+
+    // Captures the microphone and runs the analysis in a separate Thread
+    private final CaptureLoop captureLoop;
+
+    // Duty cycle, the microphone is used continuously when dutyCycleSleepMillis is 0
+    private long dutyCycleListenMillis = 0;
+    private long dutyCycleSleepMillis = 0;
 
-    private boolean loopStopped = false;
     private Handler delayhandler = new Handler();
     private ExecutorService threadExecutor = Executors.newSingleThreadExecutor();
     private int decoderState = STATE_INITIALIZED;
 
-    private long readTimestamp;
-
-    private CRC crc;
-
     /*package private*/SoniTalkDecoder(SoniTalkContext soniTalkContext, int sampleRate, SoniTalkConfig config) {
         this(soniTalkContext, sampleRate, config, 8, 50, false);
     }
 
+    /*package private*/SoniTalkDecoder(SoniTalkContext soniTalkContext, int sampleRate, SoniTalkConfig config, int decimationFactor) {
+        this(soniTalkContext, sampleRate, null, config, 8, 50, false, 8, 2.0, 2.0, decimationFactor);
+    }
+
     /*package private*/SoniTalkDecoder(SoniTalkContext soniTalkContext, int sampleRate, SoniTalkConfig config, int stepFactor, int frequencyOffsetForSpectrogram, boolean silentMode) {
         this(soniTalkContext, sampleRate, config, stepFactor, frequencyOffsetForSpectrogram, silentMode, 8, 2.0, 2.0);
     }
 
     /*package private*/SoniTalkDecoder(SoniTalkContext soniTalkContext, int sampleRate, SoniTalkConfig config, int stepFactor, int frequencyOffsetForSpectrogram, boolean silentMode, int bandPassFilterOrder, double startFactor, double endFactor) {
+        this(soniTalkContext, sampleRate, null, config, stepFactor, frequencyOffsetForSpectrogram, silentMode, bandPassFilterOrder, startFactor, endFactor, 1);
+    }
+
+    /*package private*/SoniTalkDecoder(SoniTalkContext soniTalkContext, AudioSource audioSource, SoniTalkConfig config, int stepFactor, int frequencyOffsetForSpectrogram, boolean silentMode, int bandPassFilterOrder, double startFactor, double endFactor) {
+        this(soniTalkContext, audioSource.getSampleRate(), audioSource, config, stepFactor, frequencyOffsetForSpectrogram, silentMode, bandPassFilterOrder, startFactor, endFactor, 1);
+    }
+
+    private SoniTalkDecoder(SoniTalkContext soniTalkContext, int sampleRate, AudioSource audioSource, SoniTalkConfig config, int stepFactor, int frequencyOffsetForSpectrogram, boolean silentMode, int bandPassFilterOrder, double startFactor, double endFactor, int decimationFactor) {
         this.soniTalkContext = soniTalkContext;
+        this.audioSource = audioSource;
 //TODO: check if f0 is higher than frequency offset.
         this.Fs = sampleRate;
         this.config = config;
-        this.crc = new CRC();
-
-        int f0 = config.getFrequencyZero();
-        if ((f0*2) > Fs) {
-            throw new IllegalArgumentException("Sample rate cannot be lower than two times the frequency zero. Please try a sample rate of 44100Hz and f0 under 22050Hz");
-        }
-        int bitperiod = config.getBitperiod();
-        int pauseperiod = config.getPauseperiod();
-        int nMessageBlocks = config.getnMessageBlocks();
-        int nFrequencies = config.getnFrequencies();
-        int frequencySpace = config.getFrequencySpace();
 
         this.silentMode = silentMode;
         this.frequencyOffsetForSpectrogram = frequencyOffsetForSpectrogram;
@@ -202,42 +226,32 @@ public class SoniTalkDecoder {
         Log.d("AllSettings", "stepFactor: " + this.stepFactor);
         */
 
-        bandpassWidth = frequencySpace *(nFrequencies /2);
+        // Geometry of the analysis, detection and demodulation are shared with the SoniTalkOfflineDecoder
+        pipeline = new DecodingPipeline(Fs, config, stepFactor, frequencyOffsetForSpectrogram, bandPassFilterOrder, startFactor, endFactor, decimationFactor);
+        analysisWinStep = pipeline.getAnalysisWinStep();
+        analysisWinLen = pipeline.getAnalysisWinLen();
+        captureLoop = new CaptureLoop(pipeline, Fs, CAPTURE_BUFFER_SECONDS * Fs, new CaptureLoop.Callback() {
+            @Override
+            public void onListening() {
+                setDecoderState(STATE_LISTENING);
+            }
 
-        winLenForSpectrogram = bitperiod;
-        winLenForSpectrogramInSamples = Math.round(Fs * (float) winLenForSpectrogram/1000);
-        if (winLenForSpectrogramInSamples % 2 != 0) {
-            winLenForSpectrogramInSamples ++; // Make sure winLenForSpectrogramInSamples is even
-        }
-        //Log.d("AllSettings", "SpectLen in Samples: " + String.valueOf(winLenForSpectrogramInSamples));
+            @Override
+            public void onMessageDecoded(SoniTalkMessage message) {
+                SoniTalkDecoder.this.onMessageDecoded(message);
+            }
 
-        frequencies = new int[nFrequencies];
-        for(int i = 0; i < nFrequencies; i++){
-            frequencies[i] = f0 + frequencySpace *i;
-        }
-        this.nBlocks = (int)Math.ceil(nMessageBlocks*2)+2;
-        this.bitperiodInSamples = (int)Math.round(bitperiod * (float)sampleRate/1000);
-        this.pauseperiodInSamples = (int)Math.round(pauseperiod * (float)sampleRate/1000);
-
-        //analysisWinLen = getMinWinLenDividableByStepFactor((int)Math.ceil(bitperiodInSamples), stepFactor);
-        analysisWinLen = (int)Math.round((float) bitperiodInSamples / 2 );
-        analysisWinStep = (int)Math.round((float) analysisWinLen/ this.stepFactor);
-
-        nAnalysisWindowsPerBit =  Math.round((bitperiodInSamples+pauseperiodInSamples)/(float)analysisWinStep); //number of analysis windows of bit+pause
-        nAnalysisWindowsPerPause =  Math.round(pauseperiodInSamples/(float)analysisWinStep) ; //number of analysis windows during a pause
-
-        addedLen = analysisWinLen; // Needed for stepping analysis
-        historyBufferSize = ((bitperiodInSamples*nBlocks+pauseperiodInSamples*(nBlocks-1)));
-        //Log.d("HistoryBufferSize", historyBufferSize +"");
-        //Log.d("nBlocks", nBlocks +"");
-        historyBuffer = new CircularArray(historyBufferSize);
+            @Override
+            public void onError(String errorMessage) {
+                notifyMessageListenersOfError(errorMessage);
+            }
+        });
         //analysisWinBuffer = new float[analysisWinLen];
         //historyBuffer1D = new float[analysisWinLen*10];
         //Log.d(TAG, "analysiswinlen: " + this.analysisWinLen);
         //Log.d(TAG, "analysiswinstep: " + this.analysisWinStep);
         //Log.d(TAG, "historybuffer1d: " + this.historyBuffer1D.length);
 
-        audioRecorder = getInitializedAudioRecorder();
         //Log.d(TAG, "Decoder default priority: " + String.valueOf(this.getPriority()));
         //this.setPriority(Process.THREAD_PRIORITY_BACKGROUND);
         //Log.d(TAG, "Decoder now in background priority: " + String.valueOf(this.getPriority()));
@@ -245,12 +259,13 @@ public class SoniTalkDecoder {
 
     /**
      * Checks the microphone permission and the data-over-sound permission before it
-     * starts the audiorecording. Every chunk of audio data will be added to the
-     * historyBuffer. While the loop is running and it is not stopped it records data.
-     * As soon as the historyBuffer is full every, it will be analyzed every loop run.
+     * starts the audiorecording. While the loop is running and it is not stopped it records data
+     * into the capture buffer of the CaptureLoop, at audio priority. The analysis runs in a
+     * separate Thread, so that a slow analysis step never blocks the microphone.
      */
     private void startDecoding() {
-        if (! soniTalkContext.checkMicrophonePermission()) {
+        boolean usesMicrophone = audioSource == null || audioSource instanceof AudioRecordSource;
+        if (usesMicrophone && ! soniTalkContext.checkMicrophonePermission()) {
             throw new SecurityException("Does not have android.permission.RECORD_AUDIO.");
         }
         if ( ! soniTalkContext.checkSelfPermission(requestCode)) {
@@ -260,559 +275,57 @@ public class SoniTalkDecoder {
         }
         soniTalkContext.showNotificationReceiving();
 
-        int readBytes = 0;
-        int neededBytes = analysisWinStep;
-        int counter = 1;
-        int analysisCounter = 0;
-
-        short tempBuffer[] = new short[neededBytes];
-        float currentData[] = new float[neededBytes];
-
-        // If the audio recorder couldn't be initialized
-        if (audioRecorder == null) {
-            // Generate a new Audio Decoder
-            audioRecorder = getInitializedAudioRecorder();
-        }
-
-        try {
-            audioRecorder.startRecording();
-
-            // Wait until the audio recorder records ...
-            if (audioRecorder.getRecordingState() != AudioRecord.RECORDSTATE_RECORDING) {
-                try {
-                    Log.e("AudiorecorderState", "Not recording, calling thread.sleep");
-                    Thread.sleep(10);
-                    if (audioRecorder.getRecordingState() != AudioRecord.RECORDSTATE_RECORDING) {
-                        notifyMessageListenersOfError("The microphone is not available.");
-                        if (audioRecorder.getState() == AudioRecord.STATE_INITIALIZED) {
-                            audioRecorder.stop();
-                        }
-                        audioRecorder.release(); //release the recorder resources
-                        return;
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();  // set interrupt flag
-                    notifyMessageListenersOfError("Audio error, could not start recording.");
-                    if (audioRecorder.getState() == AudioRecord.STATE_INITIALIZED) {
-                        audioRecorder.stop();
-                    }
-                    audioRecorder.release(); //release the recorder resources
-                    return;
-                }
+        AudioSource source = audioSource;
+        if (source == null) {
+            // The microphone is opened for each recording and released at the end
+            source = AudioRecordSource.create(MediaRecorder.AudioSource.MIC, Fs, getAudioRecorderBufferSize());
+            if (source == null) {
+                notifyMessageListenersOfError("Audio error, could not start recording.");
+                return;
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Could not start recording. Error: " + e.getMessage());
-            notifyMessageListenersOfError("Audio error, could not start recording.");
-            if (audioRecorder.getState() == AudioRecord.STATE_INITIALIZED) {
-                audioRecorder.stop();
-            }
-            audioRecorder.release(); //release the recorder resources
-            return;
         }
 
-        setDecoderState(STATE_LISTENING);
-
-        while (!isLoopStopped()) {
-            //for(int audioIndex = 0; audioIndex < stepFactor && !loopStopped; audioIndex++) { // NOTE: This for loop was used to know when a full winLen had been read, currently not used.
-            // ACTUAL AUDIO READ
-            readBytes = audioRecorder.read(tempBuffer, 0, neededBytes);
-
-            readTimestamp = System.nanoTime();
-            if (readBytes != neededBytes) {
-                //Log.e(TAG, "ERROR " + readBytes);
-            } else {
-                //Log.e(TAG, "ReadBytes " + readBytes);
-                convertShortToFloat(tempBuffer, currentData, readBytes);
-
-                synchronized (historyBuffer) {
-                    historyBuffer.add(currentData);
-                }
-                //if (counter < (historyBuffer.size() / neededBytes)) { //Note: Differs from Octave version
-                if (counter < (nBlocks*nAnalysisWindowsPerBit-nAnalysisWindowsPerPause)) { // Looks more like Octave version
-                    //Log.e("HistoryBuffer", "I am not full");
-                    //Log.d("HisoryBuffercounter", "Counter " + counter);
-                    //Log.d("HisoryBuffersize", "Size " + historyBuffer.size());
-                } else { // At this point the buffer is very close to be full
-                    analyzeHistoryBuffer();
-                }
-                counter++; // Octave version put it at the end
-            }
-            //}
-
-            //counter++;
-
-        } // THREAD-LOOP ENDS HERE
-
-        setDecoderState(STATE_STOPPED);
-
-        if (audioRecorder.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING) {
-            audioRecorder.stop();
+        long listenMillis;
+        long sleepMillis;
+        synchronized (this) {
+            listenMillis = dutyCycleListenMillis;
+            sleepMillis = dutyCycleSleepMillis;
+        }
+        if (captureLoop.run(source, listenMillis, sleepMillis)) {
+            setDecoderState(STATE_STOPPED);
+        }
+        if (source != audioSource) {
+            source.release(); //release the recorder resources
         }
-
-        audioRecorder.release();
-        audioRecorder = null;
         //analysisHistoryFillingBuffer = 0;
         //Log.d(TAG, "Message Decoder Thread stopped.");
     }
 
     /**
-     * Converts an input array from short to [-1.0;1.0] float, result is put into the (pre-allocated) output array
-     * @param input
-     * @param output Should be allocated beforehand
-     * @param arrayLength
-     */
-    private static void convertShortToFloat(short[] input, float[] output, int arrayLength) {
-        for (int i = 0; i < arrayLength; i++) {
-            // Do we actually need float anywhere ? Switch to double ?
-            output[i] = ((float) input[i]) / Short.MAX_VALUE;
-        }
-    }
-
-    /**
-     *
-     * Converts an input array from [-1.0;1.0] float to short full range and returns it
-     * @param input
-     * @return a short array containing short values with a distribution similar to the input one
+     * Size of the buffer of the AudioRecord in bytes, the minimum buffer size is used if it is larger.
      */
-    private static short [] convertFloatToShort(float[] input) {
-        short[] output = new short[input.length];
-        for (int i = 0; i < input.length; i++) {
-            // Do we actually need float anywhere ? Switch to double ?
-            output[i] = (short) (input[i] * Short.MAX_VALUE);
-        }
-        return output;
-    }
-
-    private AudioRecord getInitializedAudioRecorder() {
-        minBufferSize = AudioRecord.getMinBufferSize(Fs,
-                AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT);
-
-        if(minBufferSize < 0) {
-            Log.e(TAG, "Error getting the minimal buffer size: " + minBufferSize);
-            return null;
-        }
-
-        try {
-
-            audioRecorderBufferSize = analysisWinLen*10; // Empirically decided
-
-            // Initialize the buffer size such that at least the minimum size is buffered
-            if (audioRecorderBufferSize < minBufferSize) {
-                audioRecorderBufferSize = minBufferSize;
-                //Log.d(TAG, "Minimum buffersize will be used: " + audioRecorderBufferSize);
-            }
-            /*else {
-                audioRecorderBufferSize = audioRecorderBufferSize; // * 2;
-                //Log.d(TAG, "buffersize-else: " + audioRecorderBufferSize);
-            }*/
-
-            //audioRecorderBufferSize = audioRecorderBufferSize*10;
-            audioRecorder = new AudioRecord(MediaRecorder.AudioSource.MIC,
-                    Fs, AudioFormat.CHANNEL_IN_MONO,
-                    AudioFormat.ENCODING_PCM_16BIT, audioRecorderBufferSize);
-
-            if (audioRecorder.getState() != AudioRecord.STATE_INITIALIZED) {
-                Log.e(TAG, "Could not open the audio recorder, initialization failed !");
-                return null;
-            }
-        } catch(IllegalArgumentException e) {
-            //e.printStackTrace();
-            Log.e(TAG, "Audio Recorder was not initialized because of an IllegalArgumentException. Error message: " + e.getMessage());
-            return null;
-        }
-
-        return audioRecorder;
+    private int getAudioRecorderBufferSize() {
+        audioRecorderBufferSize = analysisWinLen*10; // Empirically decided
+        return audioRecorderBufferSize;
     }
 
     //ublic float[] getHistoryBuffer(){ synchronized (historyBuffer) {return historyBuffer.getArray();} }
 
 
-    private void analyzeHistoryBuffer(){
-        /* Will try with saving the whole buffer directly
-        float firstWindow[];
-        float lastWindow[];
-        synchronized (historyBuffer) {
-            //Log.e("HistoryBuffer", "I am full");
-            firstWindow = historyBuffer.getFirstWindow(analysisWinLen);
-            lastWindow = historyBuffer.getLastWindow(analysisWinLen);
-        }
-        */
-
-        float analysisHistoryBuffer[];
-        synchronized (historyBuffer) {
-            analysisHistoryBuffer = historyBuffer.getArray();
-        }
-        float firstWindow[] = new float[analysisWinLen];
-        float lastWindow[] = new float[analysisWinLen];
-        System.arraycopy(analysisHistoryBuffer, 0, firstWindow, 0, analysisWinLen);
-        System.arraycopy(analysisHistoryBuffer, analysisHistoryBuffer.length - analysisWinLen, lastWindow, 0, analysisWinLen);
-
-
-        float[] startResponseUpper = firstWindow.clone();
-        float[] startResponseLower = firstWindow.clone();
-
-        int nextPowerOfTwo = DecoderUtils.nextPowerOfTwo(analysisWinLen);
-        ////Log.d("nextPowerOfTwo", String.valueOf(nextPowerOfTwo));
-
-        double[] startResponseUpperDouble = new double[nextPowerOfTwo];
-        double[] startResponseLowerDouble = new double[nextPowerOfTwo];
-
-        int centerFrequencyBandPassDown = config.getFrequencyZero() + (bandpassWidth/2);
-        int centerFrequencyBandPassUp = config.getFrequencyZero() + bandpassWidth + (bandpassWidth/2);
-
-/*        // Only checking 2 frequencies for each band
-        int centerFrequencyBandPassDown = f0+450;//+(bandpassWidth/2);
-        int centerFrequencyBandPassUp = 18850;//f0 + bandpassWidth+(bandpassWidth/2);
-        bandpassWidth = 150;
-*/
-
-        Butterworth butterworthDown = new Butterworth();
-        butterworthDown.bandPass(bandPassFilterOrder,Fs,centerFrequencyBandPassDown,bandpassWidth);
-        Butterworth butterworthUp = new Butterworth();
-        butterworthUp.bandPass(bandPassFilterOrder,Fs,centerFrequencyBandPassUp,bandpassWidth);
-        for(int i = 0; i<startResponseLower.length; i++) {
-            startResponseUpperDouble[i] = butterworthUp.filter(startResponseUpper[i]);
-            startResponseLowerDouble[i] = butterworthDown.filter(startResponseLower[i]);
-        }
-
-        ComplexArray complexArrayStartResponseUpper = Hilbert.transform(startResponseUpperDouble);
-        ComplexArray complexArrayStartResponseLower = Hilbert.transform(startResponseLowerDouble);
-
-        double sumAbsStartResponseUpper = 0;
-        double sumAbsStartResponseLower = 0;
-        for(int i = 0; i<complexArrayStartResponseUpper.real.length; i++){
-            sumAbsStartResponseUpper += DecoderUtils.getComplexAbsolute(complexArrayStartResponseUpper.real[i], complexArrayStartResponseUpper.imag[i]);
-            sumAbsStartResponseLower += DecoderUtils.getComplexAbsolute(complexArrayStartResponseLower.real[i], complexArrayStartResponseLower.imag[i]);
-        }
-
-/* Without Hilbert
-        double sumAbsStartResponseUpper = 0;
-        double sumAbsStartResponseLower = 0;
-        for(int i = 0; i<startResponseUpperDouble.length; i++){
-            sumAbsStartResponseUpper += Math.abs(startResponseUpperDouble[i]);
-            sumAbsStartResponseLower += Math.abs(startResponseLowerDouble[i]);
-        }
-        */
-
-/* With individual frequencies
-        int frequencies[] = new int[nFrequencies];
-        for (int f = f0, i = 0; f < f0 + nFrequencies*frequencySpace; f += frequencySpace, i++) {
-            frequencies[i] = f;
-        }
-
-        double sumAbsStartResponseUpper = 0;
-        double sumAbsStartResponseLower = 0;
-        for(int fIndex = 0; fIndex < nFrequencies/2; fIndex++) {
-            int freqBandpassWidth = 50;
-            int centerFrequencyBandPassDown = frequencies[fIndex];
-            int centerFrequencyBandPassUp = frequencies[nFrequencies-1-fIndex];
-            Butterworth butterworthDown = new Butterworth();
-            butterworthDown.bandPass(bandPassFilterOrder,Fs,centerFrequencyBandPassDown,freqBandpassWidth);
-
-            Butterworth butterworthUp = new Butterworth();
-            butterworthUp.bandPass(bandPassFilterOrder,Fs,centerFrequencyBandPassUp,freqBandpassWidth);
-
-            for(int i = 0; i<startResponseLower.length; i++) {
-                startResponseUpperDouble[i] = butterworthUp.filter(startResponseUpper[i]);
-                startResponseLowerDouble[i] = butterworthDown.filter(startResponseLower[i]);
-            }
-
-            ComplexArray complexArrayStartResponseUpper = Hilbert.transform(startResponseUpperDouble);
-            ComplexArray complexArrayStartResponseLower = Hilbert.transform(startResponseLowerDouble);
-
-            for(int i = 0; i<complexArrayStartResponseUpper.real.length; i++){
-                sumAbsStartResponseUpper += getComplexAbsolute(complexArrayStartResponseUpper.real[i], complexArrayStartResponseUpper.imag[i]);
-                sumAbsStartResponseLower += getComplexAbsolute(complexArrayStartResponseLower.real[i], complexArrayStartResponseLower.imag[i]);
-            }
-        }*/
-
-        long startMessageTimestamp = System.nanoTime();
-        //Log.v("Timing", "From read to start message detection: " + String.valueOf((startMessageTimestamp-readTimestamp)/1000000) + "ms");
-
-        //Log.e("StartResponseAvgBefore", "detection with factor: " + sumAbsStartResponseUpper/sumAbsStartResponseLower);
-        if(sumAbsStartResponseUpper > startFactor * sumAbsStartResponseLower){
-            // IF THIS IS TRUE, WE HAVE A START BLOCK!
-            //Log.d("StartResponseAvg", "message start detected with factor: " + sumAbsStartResponseUpper/sumAbsStartResponseLower);
-            float[] endResponseUpper = lastWindow.clone();
-            float[] endResponseLower = lastWindow.clone();
-
-            double[] endResponseUpperDouble = new double[nextPowerOfTwo];
-            double[] endResponseLowerDouble = new double[nextPowerOfTwo];
-
-
-            /* With individual frequencies
-            double sumAbsEndResponseUpper = 0;
-            double sumAbsEndResponseLower = 0;
-            for(int fIndex = 0; fIndex < nFrequencies/2; fIndex++) {
-                int freqBandpassWidth = 50;
-                int centerFrequencyBandPassDown = frequencies[fIndex];
-                int centerFrequencyBandPassUp = frequencies[nFrequencies-1-fIndex];
-                Butterworth butterworthDownEnd = new Butterworth();
-                butterworthDownEnd.bandPass(bandPassFilterOrder,Fs,centerFrequencyBandPassDown,freqBandpassWidth);
-
-                Butterworth butterworthUpEnd = new Butterworth();
-                butterworthUpEnd.bandPass(bandPassFilterOrder,Fs,centerFrequencyBandPassUp,freqBandpassWidth);
-
-                for(int i = 0; i<endResponseUpper.length; i++) {
-                    endResponseUpperDouble[i] = butterworthUpEnd.filter(endResponseUpper[i]);
-                    endResponseLowerDouble[i] = butterworthDownEnd.filter(endResponseLower[i]);
-                }
-
-                ComplexArray complexArrayEndResponseUpper = Hilbert.transform(endResponseUpperDouble);
-                ComplexArray complexArrayEndResponseLower = Hilbert.transform(endResponseLowerDouble);
-
-                for(int i = 0; i<complexArrayEndResponseUpper.real.length; i++){
-                    sumAbsEndResponseUpper += getComplexAbsolute(complexArrayEndResponseUpper.real[i], complexArrayEndResponseUpper.imag[i]);
-                    sumAbsEndResponseLower += getComplexAbsolute(complexArrayEndResponseLower.real[i], complexArrayEndResponseLower.imag[i]);
-                }
-            }*/
-
-            Butterworth butterworthDownEnd = new Butterworth();
-            butterworthDownEnd.bandPass(bandPassFilterOrder,Fs,centerFrequencyBandPassDown,bandpassWidth);
-            Butterworth butterworthUpEnd = new Butterworth();
-            butterworthUpEnd.bandPass(bandPassFilterOrder,Fs,centerFrequencyBandPassUp,bandpassWidth);
-
-            for(int i = 0; i<endResponseLower.length; i++) {
-                endResponseUpperDouble[i] = butterworthUpEnd.filter(endResponseUpper[i]);
-                endResponseLowerDouble[i] = butterworthDownEnd.filter(endResponseLower[i]);
-            }
-
-            ComplexArray complexArrayEndResponseUpper = Hilbert.transform(endResponseUpperDouble);
-            ComplexArray complexArrayEndResponseLower = Hilbert.transform(endResponseLowerDouble);
-
-            double sumAbsEndResponseUpper = 0;
-            double sumAbsEndResponseLower = 0;
-            for(int i = 0; i<complexArrayEndResponseUpper.real.length; i++){
-                sumAbsEndResponseUpper += DecoderUtils.getComplexAbsolute(complexArrayEndResponseUpper.real[i], complexArrayEndResponseUpper.imag[i]);
-                sumAbsEndResponseLower += DecoderUtils.getComplexAbsolute(complexArrayEndResponseLower.real[i], complexArrayEndResponseLower.imag[i]);
-            }
-
-
-/* Without Hilbert
-            double sumAbsEndResponseUpper = 0;
-            double sumAbsEndResponseLower = 0;
-            for(int i = 0; i<endResponseUpperDouble.length; i++){
-                sumAbsEndResponseUpper += Math.abs(endResponseUpperDouble[i]);
-                sumAbsEndResponseLower += Math.abs(endResponseLowerDouble[i]);
-            }
-*/
-
-            long endMessageTimestamp = System.nanoTime();
-            ////Log.d("Timing", "From read to before end message detection: " + String.valueOf((endMessageTimestamp-readTimestamp)/1000000) + "ms");
-
-            //Log.d("EndResponseAvgBefore", "end factor: " + sumAbsEndResponseLower/sumAbsEndResponseUpper);
-            if(sumAbsEndResponseLower > endFactor * sumAbsEndResponseUpper) {
-                // THIS IS TRUE IN CASE WE FOUND AN END FRAME NOW ITS TIME TO DECODE THE MESSAGE IN BETWEEN
-                //Log.d("EndResponseAvg", "detection with factor: " + sumAbsEndResponseLower / sumAbsEndResponseUpper + " and " + sumAbsStartResponseUpper/sumAbsStartResponseLower);
-
-                analyzeMessage(analysisHistoryBuffer);
-
-            }
-
-        }
-
-        synchronized (historyBuffer) {
-            historyBuffer.incrementAnalysisIndex(analysisWinStep);
-        }
-    }
-
-    private void analyzeMessage(float[] analysisHistoryBuffer) {
-        int overlapForSpectrogramInSamples = winLenForSpectrogramInSamples - analysisWinStep;
-        //int overlapForSpectrogramInSamples = Math.round(winLenForSpectrogramInSamples * 0.875f);
-
-        // High overlap (8) makes the visualization more accurate but is quite slow. Low overlap (2) is a minimum to see something
-        int overlapFactor = Math.round((float) winLenForSpectrogramInSamples / (winLenForSpectrogramInSamples - overlapForSpectrogramInSamples));
-        // Make overlapFactor a parameter (overriding it is nice for demo purposes)
-        //overlapFactor = 8;
-        int nbWinLenForSpectrogram = Math.round(overlapFactor * (float) historyBufferSize / (float) winLenForSpectrogramInSamples);
-
-        //Log.d("nbWinLenForSpectrogram",String.valueOf(nbWinLenForSpectrogram));
-        //Log.d("overlapFactor",String.valueOf(overlapFactor));
-
-
-
-        /* Now passed as parameter to be sure we work on the right piece of data
-        float analysisHistoryBuffer[];
-        synchronized (historyBuffer) {
-            analysisHistoryBuffer = historyBuffer.getArray();
-        }
-        */
-
-        // Should we access the historyBuffer directly ?
-        double[][] historyBufferDouble = new double[nbWinLenForSpectrogram][winLenForSpectrogramInSamples];
-        for(int j = 0; j<historyBufferDouble.length;j++ ) {
-            int helpArrayCounter = 0;
-            //Log.d("ForLoopVal", String.valueOf(j*analysisWinLen));
-            for (int i = (j/overlapFactor)*winLenForSpectrogramInSamples + ((j%overlapFactor) * winLenForSpectrogramInSamples/overlapFactor); i < analysisHistoryBuffer.length && i < (1 + j/overlapFactor)*winLenForSpectrogramInSamples + ((j%overlapFactor) * winLenForSpectrogramInSamples/overlapFactor); i++) {
-                historyBufferDouble[j][helpArrayCounter] = (double) analysisHistoryBuffer[i];
-                helpArrayCounter++;
-            }
-        }
-        //double[][] historyBufferDoubleComplex = new double[nbWinLenForSpectrogram][winLenForSpectrogramInSamples];//[winLenForSpectrogramInSamples*2];
-        HammingWindow hammWin = new HammingWindow(winLenForSpectrogramInSamples);
-        DoubleFFT_1D mFFT = new DoubleFFT_1D(winLenForSpectrogramInSamples);
-        double[][] historyBufferDoubleAbsolute = new double[nbWinLenForSpectrogram][winLenForSpectrogramInSamples / 2];
-        float[][] historyBufferFloatNormalized = new float[nbWinLenForSpectrogram][historyBufferDoubleAbsolute[0].length];
-        double fftSum = 0;
-        int helpCounter;
-        for(int j = 0; j<historyBufferDoubleAbsolute.length;j++ ) {
-            // n is even [DONE on winLenForSpectrogramInSamples]
-            //double[] complexSignal = new double[winLenForSpectrogramInSamples];//[winLenForSpectrogramInSamples * 2];
-            hammWin.applyWindow(historyBufferDouble[j]);
-            //System.arraycopy(historyBufferDouble[j], 0, complexSignal, 0, winLenForSpectrogramInSamples);
-
-            mFFT.realForward(historyBufferDouble[j]);
-
-            // Get absolute value of the complex FFT result
-            helpCounter = 0;
-            //fftSum = 0;
-            for (int l = 0; l < historyBufferDouble[j].length ; l++) {
-                if (l % 2 == 0) { //Modulo 2 is used to get only the real (every second) value
-                    double absolute = DecoderUtils.getComplexAbsolute(historyBufferDouble[j][l],historyBufferDouble[j][l+1]);
-                    historyBufferDoubleAbsolute[j][helpCounter] = absolute;
-                    fftSum += absolute;
-                    helpCounter++;
-                }
-            }
-/*
-            // Normalize over one column [NOTE: It looks like results are better with fftSum over the whole spectrum, maybe because of the overlap]
-            for (int l = 0; l < historyBufferDoubleAbsolute[j].length ; l++) {
-                float normalized = 0.0001F;
-                if(fftSum != 0 && historyBufferDoubleAbsolute[j][l] != 0) {
-                    normalized = (float) (historyBufferDoubleAbsolute[j][l]/fftSum);
-                } // Else all the values are 0 so we do not really care ?
-                historyBufferFloatNormalized[j][l] = normalized;
-            }
-*/
-        }
-
-        //Log.d("NbValuesAbsFFT",String.valueOf(historyBufferDoubleAbsolute[0].length));
-
-        for(int j = 0; j<historyBufferFloatNormalized.length;j++ ) {
-            for (int i = 0; i < historyBufferDoubleAbsolute[0].length; i++) {
-                //historyBufferFloatNormalized[j][i] = (float) historyBufferDouble[j][i];
-                //if(historyBufferDoubleAbs[j][i] == 0) {
-                //    historyBufferFloatNormalized[j][i] = (float) Math.log(0.0000001);
-                //}else{
-                float normalized = 0.0001F;
-                if(fftSum != 0) {
-                    //  Normalize over one block at a time and check if it improves the visualization [NOTE: It looks like results are better with fftSum over the whole spectrum, maybe because of the overlap]
-                    normalized = (float) (historyBufferDoubleAbsolute[j][i]/fftSum);
-                } // Else all the values are 0 so we do not really care
-                //if (historyBufferDoubleAbsolute[j][i] != 0) {
-                //    normalized = (float) historyBufferDoubleAbsolute[j][i];
-                //}
-                historyBufferFloatNormalized[j][i] = normalized;
-                //}
-            }
+    private void onMessageDecoded(SoniTalkMessage message) {
+        long decodedTimestamp = System.nanoTime();
+        if (!silentMode && message.isCrcCorrect()) {
+            setLoopStopped();
         }
-
-
-        int lowerCutoffFrequency = frequencies[0]-frequencyOffsetForSpectrogram;
-        int upperCutoffFrequency = frequencies[frequencies.length-1]+frequencyOffsetForSpectrogram;
-        int lowerCutoffFrequencyIdx = (int)((float)lowerCutoffFrequency/(float)Fs*(float)winLenForSpectrogramInSamples);// + 1;
-        int upperCutoffFrequencyIdx = (int)((float)upperCutoffFrequency/(float)Fs*(float)winLenForSpectrogramInSamples);// + 1;
-
-
-        // Check if the normalization on a column instead on all the whole message really improved the detection.
-        // Cut away unimportant frequencies, logarithmize and then normalize
-        double[][] P = new double[nbWinLenForSpectrogram][upperCutoffFrequencyIdx-lowerCutoffFrequencyIdx + 1];
-        double[][] input = new double[nbWinLenForSpectrogram][upperCutoffFrequencyIdx-lowerCutoffFrequencyIdx + 1];
-        int arrayCounter;
-        double logSum;
-        for(int j = 0; j<historyBufferDoubleAbsolute.length; j++) {
-            arrayCounter = 0;
-            logSum = 0;
-            for(int i = lowerCutoffFrequencyIdx; i <= upperCutoffFrequencyIdx;i++) {
-                if(historyBufferDoubleAbsolute[j][i]==0){
-                    P[j][arrayCounter] = 0.0000001;
-                }else {
-                    P[j][arrayCounter] = historyBufferDoubleAbsolute[j][i];
-                }
-                P[j][arrayCounter] = Math.log(P[j][arrayCounter]);
-                logSum += P[j][arrayCounter];
-                arrayCounter++;
-            }
-
-            // Normalization
-            for(int i = 0; i <= upperCutoffFrequencyIdx-lowerCutoffFrequencyIdx; i++) {
-                input[j][i] = (float) (P[j][i] / logSum);
-            }
-        }
-
-
-        int step = winLenForSpectrogramInSamples-overlapForSpectrogramInSamples;
-        int nVectorsPerBlock =  overlapFactor;//Math.round(bitperiodInSamples/step); // Isn't nVectorsPerBlock equal to overlapFactor ?! Not in matlab.
-        int nVectorsPerPause =   Math.round((float) pauseperiodInSamples/step);
-        int[] blockCenters = new int[nBlocks]; //Math.round(nVectorsPerBlock/2);
-        int[] pauseCenters  = new int[nBlocks - 1]; //Math.round(nVectorsPerBlock+(nVectorsPerPause)/2);
-
-        // Compute block centers
-        // [CHECKED] blockCenters are equivalent to matlab indices
-        blockCenters[0] = Math.round((float) nVectorsPerBlock/2) - 1; //We substract one compared to Octave because indexes start at 0 in Java
-        pauseCenters[0] =  Math.round(nVectorsPerBlock+((float) nVectorsPerPause)/2); // No need to substract one again (it is based on blockCenters).
-        for(int i=1; i < nBlocks; i++) {
-            blockCenters[i] = blockCenters[i - 1] + nVectorsPerBlock + nVectorsPerPause;
-            if(i<nBlocks-1) pauseCenters[i] = pauseCenters[i - 1] + nVectorsPerBlock + nVectorsPerPause;
-            //Log.d("Block center ", i + " --> " + blockCenters[i]);
-        }
-
-        // [CHECKED] frequencyCenterIndices are equivalent to matlab indices (one below, but it starts at 0 in Java, at 1 in matlab)
-        float[][] frequencyCenterIndices = new float[nBlocks][config.getnFrequencies()];
-        // TODO: First loop not really needed
-        for(int k = 0; k<nBlocks; k++) {
-            for (int idxFrequencies = 0; idxFrequencies < config.getnFrequencies(); idxFrequencies++) {
-                // TODO: Upper and Lower inverted (hence the need for the loop going reverse a dozen lines below)
-                frequencyCenterIndices[k][idxFrequencies] = findClosestValueIn1DArray(frequencies[idxFrequencies], winLenForSpectrogramInSamples, input[k].length, upperCutoffFrequencyIdx, lowerCutoffFrequencyIdx); //computation is different than in Matlab
+        // The spectrum is only built for visualization, skip it if nobody listens
+        if (!spectrumListeners.isEmpty()) {
+            float[][] spectrum = pipeline.getSpectrum();
+            if (spectrum != null) {
+                notifySpectrumListeners(spectrum, message.isCrcCorrect());
             }
         }
 
-        //decode using spectrogram
-        int[] messageDecodedBySpec = new int[(nBlocks-2)/2 * config.getnFrequencies()];
-        arrayCounter = 0;
-        // Go through all message blocks, skipping start and end block with a stepsize of 2 (because we always have a normal block and an inverted block)
-        for(int j = 1; j<nBlocks-1; j=j+2){
-            for(int m = frequencyCenterIndices[j].length-1; m>=0; m--){
-                int currentCenterFreqIdx = (int)frequencyCenterIndices[j][m];
-
-                // Matlab values range between 0 and -20 or so, always negative and not so small
-                // Android values do not seem to have a clear range, sometimes positive sometimes negative, often close to 0
-                double currentBit = getPointAndNeighborsAggreagate(input, currentCenterFreqIdx, blockCenters[j], nNeighborsFreqUpDown, nNeighborsTimeLeftRight, aggFcn);
-                double currentBitInv = getPointAndNeighborsAggreagate(input, currentCenterFreqIdx, blockCenters[j + 1], nNeighborsFreqUpDown, nNeighborsTimeLeftRight, aggFcn);
-
-                // Check why we had to change > to <
-                if (currentBit < currentBitInv) {
-                    messageDecodedBySpec[arrayCounter] = 1;
-                }
-                else{
-                    messageDecodedBySpec[arrayCounter] = 0;
-                }
-                arrayCounter++;
-            }
-            //Log.d("arraycounter", String.valueOf(arrayCounter));
-        }
-        //Log.d("Decoded bit sequence", Arrays.toString(messageDecodedBySpec));
-
-        int parityCheckResult = crc.checkMessageCRC(messageDecodedBySpec/*, ConfigConstants.GENERATOR_POLYNOM*/);
-
-        if (!silentMode && parityCheckResult == 0) {
-            setLoopStopped(true);
-        }
-        notifySpectrumListeners(historyBufferFloatNormalized, parityCheckResult == 0);
-
-        // Decode message to UTF8
-        String decodedBitSequence = Arrays.toString(messageDecodedBySpec).replace(", ", "").replace("[","").replace("]","");
-        String bitSequenceWithoutFillingAndCRC = DecoderUtils.removeFillingCharsAndCRCChars(decodedBitSequence, ConfigConstants.GENERATOR_POLYNOM.length);
-        final byte[] receivedMessage = DecoderUtils.binaryToBytes(bitSequenceWithoutFillingAndCRC);
-
-        final long decodingTimeNanosecond = System.nanoTime()-readTimestamp;
-        //Log.d("Timing", "From read to received message: " + String.valueOf((decodingTimeNanosecond)/1000000) + "ms. CRC: " + String.valueOf(parityCheckResult));
-
-        SoniTalkMessage message = new SoniTalkMessage(receivedMessage, parityCheckResult == 0, decodingTimeNanosecond);
-        if (returnsRawAudio()) {
-            message.setRawAudio(convertFloatToShort(analysisHistoryBuffer));
-        }
-
+        pipeline.getStats().onListenersCalled(System.nanoTime() - decodedTimestamp);
         notifyMessageListeners(message);
 
         //Original Bitsequence for the text "Hello Sonitalk" from SoniTalk Encoder 0100100001100001011011000110110001101111001000000101001101101111011011100110100101110100011000010110110001101011000110010001100100011001000110010001110010010100
@@ -835,73 +348,13 @@ public class SoniTalkDecoder {
     }
 
 
-    private float findClosestValueIn1DArray(int value, int winlen, int arraylength, int upperIdx, int lowerIdx){
-        float arrayIndexRelative;
-        float arrayIndex;
-
-        float frequencyIndex = DecoderUtils.freq2idx(value, Fs, winlen);
-        arrayIndexRelative = DecoderUtils.getRelativeIndexPosition(frequencyIndex, upperIdx, lowerIdx);
-        arrayIndex = ((float)arraylength*arrayIndexRelative);
-        //Log.d("findClosest", "arrayIndex: " + arrayIndex);
-        //arrayIndex = frequencyIndex;
-        return arrayIndex;
-    }
-
-    /**
-     * Returns an aggregation (e.g. mean) of the values contained in the cell(s) around the one at [row][col] position
-     * Row and column are "reversed" compared to the matlab prototype
-     * @param data
-     * @param row Frequency center index
-     * @param col Block center index
-     * @param nRowsNeighborsLeftRight How many frequency-index rows to include (on the left AND right side)
-     * @param nColsNeighborsLeftRight How many block-index columns to include (on the left AND right side)
-     * @param aggFunction
-     * @return
-     */
-    private double getPointAndNeighborsAggreagate(double[][] data,int row,int col,int nRowsNeighborsLeftRight, int nColsNeighborsLeftRight, String aggFunction){
-        double val = -1;
-        int valuesRange = (nRowsNeighborsLeftRight+nColsNeighborsLeftRight+1)*(nRowsNeighborsLeftRight+nColsNeighborsLeftRight+1);//1+nRowsNeighborsLeftRight*2+nColsNeighborsLeftRight*2;
-        double[] values = new double[valuesRange];
-        int valuecounter = 0;
-
-        for(int i = nRowsNeighborsLeftRight*(-1); i <= nRowsNeighborsLeftRight; i++){
-            for(int j = nColsNeighborsLeftRight*(-1); j <= nColsNeighborsLeftRight; j++){
-                if(i!=0 || j!=0){ //[0,0] is done lower
-                    values[valuecounter] = data[col+j][row+i];
-                    valuecounter++;
-
-                }
-            }
-        }
-        // Note: Values are extremely similar on the same row (same frequency), but different for the frequencies above and under.
-        // Handling the [0,0] case
-        values[valuecounter] = data[col][row];
-
-        switch(aggFunction){
-            case "mean":
-                val = DecoderUtils.mean(values);
-                break;
-            case "max":
-                val = DecoderUtils.max(values);
-                break;
-            case "median":
-                Arrays.sort(values);
-                val = DecoderUtils.median(values);
-                break;
-        }
-        //Log.d("ValuesAgg", Arrays.toString(values));
-        //Log.d("ValAgg", val + "");
-
-        return val;
-    }
-
     /**
      * Called from receiveBackground(long delayMilliseconds) to cancel the job after delayMilliseconds
      *
      */
     private void cancelBackgroundReceiving() {
         //if (!isLoopStopped()) //Should stop anyways right ?
-        setLoopStopped(true);
+        setLoopStopped();
         setDecoderState(STATE_CANCELLED);
         soniTalkContext.cancelNotificationReceiving();
     }
@@ -962,7 +415,7 @@ public class SoniTalkDecoder {
      */
     public void stopReceiving() {
         //Log.d(TAG, "Stop receiving.");
-        setLoopStopped(true);
+        setLoopStopped();
 
         soniTalkContext.cancelNotificationReceiving();
 
@@ -970,6 +423,7 @@ public class SoniTalkDecoder {
         List<Runnable> cancelledRunnables = threadExecutor.shutdownNow();
         if (!cancelledRunnables.isEmpty())
             Log.d(TAG, "Cancelled " + cancelledRunnables.size() + " tasks.");
+        captureLoop.shutdown();
     }
 
     /**
@@ -977,7 +431,7 @@ public class SoniTalkDecoder {
      */
     public void pause() {
         //Log.d(TAG, "Pause receiving.");
-        setLoopStopped(true);
+        setLoopStopped();
         soniTalkContext.cancelNotificationReceiving();
     }
 
@@ -993,12 +447,8 @@ public class SoniTalkDecoder {
     }
 
 
-    private synchronized boolean isLoopStopped() {
-        return loopStopped;
-    }
-
-    private synchronized void setLoopStopped(boolean loopStopped) {// Consider using an internal object for the synchronization
-        this.loopStopped = loopStopped;
+    private void setLoopStopped() {
+        captureLoop.stop();
     }
 
     public void addMessageListener(MessageListener listener) {
@@ -1023,10 +473,14 @@ public class SoniTalkDecoder {
 
     public void addSpectrumListener(SpectrumListener listener) {
         this.spectrumListeners.add(listener);
+        pipeline.setSpectrumRequired(true);
     }
 
     public boolean removeSpectrumListener(SpectrumListener listener) {
-        return this.spectrumListeners.remove(listener);
+        boolean removed = this.spectrumListeners.remove(listener);
+        // The full spectrogram is only computed for the listeners
+        pipeline.setSpectrumRequired(!spectrumListeners.isEmpty());
+        return removed;
     }
 
     private void notifySpectrumListeners(float[][] spectrum, boolean crcIsCorrect) {
@@ -1044,12 +498,211 @@ public class SoniTalkDecoder {
         this.decoderState = state;
     }
 
+    /**
+     * Selects how start and end blocks are detected. Must be called before receiveBackground().
+     * @param detectionMode DETECTION_MODE_HILBERT (default) or DETECTION_MODE_ENVELOPE
+     * @throws DecoderStateException if the decoder is currently listening
+     */
+    public synchronized void setDetectionMode(@DetectionMode int detectionMode) throws DecoderStateException {
+        if (getDecoderState() == STATE_LISTENING) {
+            throw new DecoderStateException("Cannot change the detection mode of a Decoder already listening.");
+        }
+        pipeline.setDetectionMode(detectionMode);
+    }
+
+    /**
+     * Returns the current detection mode.
+     * @return DETECTION_MODE_HILBERT or DETECTION_MODE_ENVELOPE
+     */
+    @DetectionMode
+    public synchronized int getDetectionMode() {
+        return pipeline.getDetectionMode();
+    }
+
+    /**
+     * Selects how the bits of a detected message are decided. Must be called before receiveBackground().
+     * Note that the SpectrumListeners are only notified in DEMODULATION_MODE_SPECTROGRAM.
+     * @param demodulationMode DEMODULATION_MODE_SPECTROGRAM (default), DEMODULATION_MODE_GOERTZEL or DEMODULATION_MODE_ROLLING
+     * @throws DecoderStateException if the decoder is currently listening
+     */
+    public synchronized void setDemodulationMode(@DemodulationMode int demodulationMode) throws DecoderStateException {
+        if (getDecoderState() == STATE_LISTENING) {
+            throw new DecoderStateException("Cannot change the demodulation mode of a Decoder already listening.");
+        }
+        pipeline.setDemodulationMode(demodulationMode);
+    }
+
+    /**
+     * Returns the current demodulation mode.
+     * @return DEMODULATION_MODE_SPECTROGRAM, DEMODULATION_MODE_GOERTZEL or DEMODULATION_MODE_ROLLING
+     */
+    @DemodulationMode
+    public synchronized int getDemodulationMode() {
+        return pipeline.getDemodulationMode();
+    }
+
+    /**
+     * Selects the length of the FFT of each spectrogram column. Must be called before receiveBackground().
+     * @param spectrogramSizing SPECTROGRAM_SIZING_BIT_PERIOD (default) or SPECTROGRAM_SIZING_POWER_OF_TWO
+     * @throws DecoderStateException if the decoder is currently listening
+     */
+    public synchronized void setSpectrogramSizing(@SpectrogramSizing int spectrogramSizing) throws DecoderStateException {
+        if (getDecoderState() == STATE_LISTENING) {
+            throw new DecoderStateException("Cannot change the spectrogram sizing of a Decoder already listening.");
+        }
+        pipeline.setSpectrogramSizing(spectrogramSizing);
+    }
+
+    /**
+     * Returns the current spectrogram sizing.
+     * @return SPECTROGRAM_SIZING_BIT_PERIOD or SPECTROGRAM_SIZING_POWER_OF_TWO
+     */
+    @SpectrogramSizing
+    public synchronized int getSpectrogramSizing() {
+        return pipeline.getSpectrogramSizing();
+    }
+
+    /**
+     * Selects how the magnitudes of a carrier and its neighbors (in time and frequency) are
+     * aggregated before its bit is decided.
+     * @param aggFcn "mean", "max", "median" (default) or "trimmedmean"
+     * @throws DecoderStateException if the decoder is listening
+     */
+    public synchronized void setAggregationFunction(String aggFcn) throws DecoderStateException {
+        if (getDecoderState() == STATE_LISTENING) {
+            throw new DecoderStateException("Cannot change the aggregation function of a Decoder already listening.");
+        }
+        pipeline.setAggregationFunction(aggFcn);
+    }
+
+    /**
+     * Returns the current aggregation function.
+     * @return "mean", "max", "median" or "trimmedmean"
+     */
+    public synchronized String getAggregationFunction() {
+        return pipeline.getAggregationFunction();
+    }
+
+    /**
+     * Returns the number of times the analysis lagged so far behind the capture that audio had
+     * to be dropped. The capture never waits for the analysis.
+     * @return number of overruns since the creation of the decoder
+     */
+    public long getOverrunCount() {
+        return captureLoop.getOverrunCount();
+    }
+
+    /**
+     * Returns the number of audio samples dropped because of overruns.
+     * @return number of samples dropped since the creation of the decoder
+     */
+    public long getDroppedSampleCount() {
+        return captureLoop.getDroppedSampleCount();
+    }
+
+    /**
+     * Returns the number of reads from the microphone that returned less audio than requested
+     * (including errors). The audio which was read is still analyzed.
+     * @return number of short reads since the creation of the decoder
+     */
+    public long getShortReadCount() {
+        return captureLoop.getShortReadCount();
+    }
+
+    /**
+     * Returns a snapshot of the statistics of the decoder: analysis steps, detections, CRC checks,
+     * capture problems, latencies and buffer allocations. Collecting them is lock-free and cheap,
+     * this can be called at any time from any thread.
+     * @return the statistics since the creation of the decoder
+     */
+    public DecoderStats getStats() {
+        return pipeline.getStats().snapshot(captureLoop.getShortReadCount(), captureLoop.getOverrunCount(), captureLoop.getDroppedSampleCount());
+    }
+
+    /**
+     * Listens in windows of listenMillis separated by pauses of sleepMillis, instead of keeping the
+     * microphone open continuously, for messages sent repeatedly back to back (see
+     * setDutyCycle(long, long, long) for messages sent with an interval). Must be called before
+     * receiveBackground().
+     * @param listenMillis duration of each listening window, in milliseconds
+     * @param sleepMillis duration of the pauses, in milliseconds, 0 to listen continuously (default)
+     * @throws DecoderStateException if the decoder is currently listening
+     */
+    public synchronized void setDutyCycle(long listenMillis, long sleepMillis) throws DecoderStateException {
+        setDutyCycle(listenMillis, sleepMillis, 0);
+    }
+
+    /**
+     * Listens in windows of listenMillis separated by pauses of sleepMillis, instead of keeping the
+     * microphone open continuously. The AudioRecord is kept between the windows. The history is
+     * restarted at every window, a message is only decoded if a window records it completely: a
+     * window must be at least getMinimumListeningMillis(repetitionIntervalMillis) long. Must be
+     * called before receiveBackground().
+     * @param listenMillis duration of each listening window, in milliseconds
+     * @param sleepMillis duration of the pauses, in milliseconds, 0 to listen continuously (default)
+     * @param repetitionIntervalMillis delay between the end of a message and the start of its next
+     *                                 repetition, as passed to SoniTalkSender.send(), in milliseconds
+     * @throws DecoderStateException if the decoder is currently listening
+     */
+    public synchronized void setDutyCycle(long listenMillis, long sleepMillis, long repetitionIntervalMillis) throws DecoderStateException {
+        if (getDecoderState() == STATE_LISTENING) {
+            throw new DecoderStateException("Cannot change the duty cycle of a Decoder already listening.");
+        }
+        if (sleepMillis < 0) {
+            throw new IllegalArgumentException("The sleeping duration cannot be negative.");
+        }
+        if (sleepMillis > 0 && listenMillis < getMinimumListeningMillis(repetitionIntervalMillis)) {
+            throw new IllegalArgumentException("The listening windows must last at least " + getMinimumListeningMillis(repetitionIntervalMillis) + "ms with this configuration.");
+        }
+        this.dutyCycleListenMillis = listenMillis;
+        this.dutyCycleSleepMillis = sleepMillis;
+    }
+
+    /**
+     * Returns the shortest listening window accepted by setDutyCycle(long, long), for messages
+     * sent back to back: two message durations.
+     * @return the minimum duration of a listening window, in milliseconds
+     */
+    public long getMinimumListeningMillis() {
+        return getMinimumListeningMillis(0);
+    }
+
+    /**
+     * Returns the shortest listening window which always contains a complete message, when the
+     * messages are repeated with the given interval: one repetition period (message and interval)
+     * plus one message duration, in case the window starts just after the beginning of a message.
+     * @param repetitionIntervalMillis delay between the end of a message and the start of its next repetition, in milliseconds
+     * @return the minimum duration of a listening window, in milliseconds
+     */
+    public long getMinimumListeningMillis(long repetitionIntervalMillis) {
+        if (repetitionIntervalMillis < 0) {
+            throw new IllegalArgumentException("The repetition interval cannot be negative.");
+        }
+        return 2L * config.getMessageDurationMillis() + repetitionIntervalMillis;
+    }
+
+    /**
+     * Returns how long the microphone was recording, updated at the end of every listening window.
+     * @return the listening time since the creation of the decoder, in milliseconds
+     */
+    public long getListeningTimeMillis() {
+        return captureLoop.getListeningNanos() / 1000000;
+    }
+
+    /**
+     * Returns how long the microphone was paused by the duty cycle.
+     * @return the sleeping time since the creation of the decoder, in milliseconds
+     */
+    public long getSleepingTimeMillis() {
+        return captureLoop.getSleepingNanos() / 1000000;
+    }
+
     /**
      * Returns true if detected messages will be returned with the original audio.
      * @return true if detected messages will be returned with the original audio
      */
     public synchronized boolean returnsRawAudio() {
-        return returnRawAudio;
+        return pipeline.returnsRawAudio();
     }
 
     /**
@@ -1058,7 +711,57 @@ public class SoniTalkDecoder {
      * @param returnRawAudio
      */
     public synchronized void setReturnRawAudio(boolean returnRawAudio) {
-        this.returnRawAudio = returnRawAudio;
+        pipeline.setReturnRawAudio(returnRawAudio);
     }
-}
 
+    /**
+     * Enables a first detection stage measuring the energy in the band of the carriers. The
+     * (more expensive) detection of start and end blocks only runs when this energy rises above
+     * the noise floor, which is learnt while listening. Recommended for long listening sessions.
+     * Must be called before receiveBackground().
+     * @param enabled true to enable the energy gate (disabled by default)
+     * @throws DecoderStateException if the decoder is currently listening
+     */
+    public synchronized void setEnergyGateEnabled(boolean enabled) throws DecoderStateException {
+        if (getDecoderState() == STATE_LISTENING) {
+            throw new DecoderStateException("Cannot change the energy gate of a Decoder already listening.");
+        }
+        pipeline.setEnergyGateEnabled(enabled);
+    }
+
+    /**
+     * Returns true if the energy gate is enabled.
+     * @return true if the detection only runs when the band of the carriers contains more than noise
+     */
+    public synchronized boolean isEnergyGateEnabled() {
+        return pipeline.isEnergyGateEnabled();
+    }
+
+    /**
+     * Returns how much of the audio was not searched for messages because the energy gate was
+     * closed, i.e. the band of the carriers only contained noise.
+     * @return duration of the gated audio since the creation of the decoder, in milliseconds
+     */
+    public long getGatedTimeMillis() {
+        return pipeline.getGatedSampleCount() * 1000 / Fs;
+    }
+
+    /**
+     * Returns true if messages decoded with a correct CRC are skipped.
+     * @return true if the detection pauses after each decoded message
+     */
+    public synchronized boolean skipsDecodedMessages() {
+        return pipeline.skipsDecodedMessages();
+    }
+
+    /**
+     * Decides if the detection pauses after a message was decoded with a correct CRC, until the
+     * message has left the history. Otherwise the same message is usually detected on several
+     * consecutive steps and notified several times. Only useful in silent mode, where the decoder
+     * keeps listening after a message, e.g. to receive a message sent repeatedly.
+     * @param skipDecodedMessages true to skip decoded messages (false by default)
+     */
+    public synchronized void setSkipDecodedMessages(boolean skipDecodedMessages) {
+        pipeline.setSkipDecodedMessages(skipDecodedMessages);
+    }
+}
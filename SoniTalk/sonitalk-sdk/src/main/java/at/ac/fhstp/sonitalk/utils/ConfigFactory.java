@@ -33,7 +33,6 @@ import at.ac.fhstp.sonitalk.SoniTalkConfig;
 import at.ac.fhstp.sonitalk.SoniTalkDecoder;
 import at.ac.fhstp.sonitalk.exceptions.ConfigException;
 import at.ac.fhstp.sonitalk.utils.ConfigConstants;
-import marytts.util.math.ArrayUtils;
 
 /**
  * Utility class for building SoniTalkConfig objects from JSON files.